@@ -0,0 +1,193 @@
+package com.xiechanglei.code.wordx;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 分词场景的异步接口
+ * 每个请求在执行器中分词，返回CompletableFuture，调用方不需要自己包装线程池
+ * 运行时支持虚拟线程（JDK 21及以上）时默认每个请求一个虚拟线程，否则使用线程数等于并发上限的守护线程池
+ * 长文本的各个句子仍在分词算法的ForkJoinPool中并行切分，这个线程池的线程数固定，不会因为请求多而增加
+ * 同时分词的请求数不超过并发上限，超过的请求排队，排队时不占用线程，成千上万个请求同时到达也不会争抢CPU
+ */
+public class AsyncWordSegScene implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncWordSegScene.class);
+
+	private final WordSegScene scene;
+	private final Executor executor;
+	//自己创建的执行器，关闭时一起关闭，调用方传入的执行器由调用方管理
+	private final ExecutorService ownedExecutor;
+	private final int maxConcurrency;
+	private final AtomicInteger running = new AtomicInteger();
+	private final Queue<Task> waiting = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 使用默认的执行器，并发上限为CPU核数
+	 * @param scene 分词场景
+	 */
+	public AsyncWordSegScene(WordSegScene scene) {
+		this(scene, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 使用默认的执行器
+	 * @param scene 分词场景
+	 * @param maxConcurrency 同时分词的请求数上限
+	 */
+	public AsyncWordSegScene(WordSegScene scene, int maxConcurrency) {
+		this(scene, null, maxConcurrency);
+	}
+
+	/**
+	 * @param scene 分词场景
+	 * @param executor 执行分词的执行器，为null时使用默认的执行器
+	 * @param maxConcurrency 同时分词的请求数上限
+	 */
+	public AsyncWordSegScene(WordSegScene scene, Executor executor, int maxConcurrency) {
+		if (scene == null) {
+			throw new IllegalArgumentException("scene can not be null");
+		}
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("max concurrency must be positive: " + maxConcurrency);
+		}
+		this.scene = scene;
+		this.maxConcurrency = maxConcurrency;
+		if (executor == null) {
+			ownedExecutor = newDefaultExecutor(maxConcurrency);
+			this.executor = ownedExecutor;
+		} else {
+			ownedExecutor = null;
+			this.executor = executor;
+		}
+	}
+
+	public WordSegScene getScene() {
+		return scene;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * 正在分词的请求数
+	 */
+	public int getRunning() {
+		return running.get();
+	}
+
+	/**
+	 * 排队等待的请求数
+	 */
+	public int getWaiting() {
+		return waiting.size();
+	}
+
+	/**
+	 * 异步分词
+	 * 取消返回的future时，还在排队的请求不再分词，已经开始的请求会执行完
+	 * @param text 文本
+	 * @return 分词结果
+	 */
+	public CompletableFuture<List<Word>> segAsync(String text) {
+		Task task = new Task(text);
+		waiting.add(task);
+		dispatch();
+		return task.future;
+	}
+
+	/**
+	 * 并发数未达到上限时从队列中取出请求交给执行器
+	 * 请求入队后、请求完成后都会调用，两者之间不会漏掉排队的请求
+	 */
+	private void dispatch() {
+		while (true) {
+			int current = running.get();
+			if (current >= maxConcurrency || waiting.isEmpty()) {
+				return;
+			}
+			if (!running.compareAndSet(current, current + 1)) {
+				continue;
+			}
+			Task task = waiting.poll();
+			if (task == null) {
+				//被其它线程取走了，归还名额后再看一次队列
+				running.decrementAndGet();
+				continue;
+			}
+			try {
+				executor.execute(task);
+			} catch (RuntimeException e) {
+				//执行器已经关闭或拒绝了任务
+				running.decrementAndGet();
+				task.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * 关闭自己创建的执行器，调用方传入的执行器不关闭
+	 */
+	@Override
+	public void close() {
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * 运行时支持虚拟线程时每个任务一个虚拟线程，否则创建固定数目的守护线程
+	 * Executors.newVirtualThreadPerTaskExecutor是JDK 21的API，源码按Java 9编译（pom.xml中的maven.compiler.release），只能通过反射调用
+	 */
+	private static ExecutorService newDefaultExecutor(int threads) {
+		try {
+			ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			LOGGER.debug("异步分词使用虚拟线程");
+			return executor;
+		} catch (ReflectiveOperationException e) {
+			LOGGER.debug("运行时不支持虚拟线程，异步分词使用" + threads + "个平台线程");
+		}
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = runnable -> {
+			Thread thread = new Thread(runnable, "wordx-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return Executors.newFixedThreadPool(threads, factory);
+	}
+
+	private final class Task implements Runnable {
+		private final String text;
+		private final CompletableFuture<List<Word>> future = new CompletableFuture<>();
+
+		Task(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!future.isDone()) {
+					future.complete(scene.segSantance(text));
+				}
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				running.decrementAndGet();
+				dispatch();
+			}
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package com.xiechanglei.code.wordx;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 流式分词：订阅文本的Publisher，把每个文本的分词结果按原来的顺序发布给下游
+ * 收到的文本立即交给执行器分词，多个文本并行切分，结果按到达的顺序排队，下游请求多少就发布多少
+ * 已经请求但还没有发布的文本数不超过窗口大小，下游不请求时上游也停下来，内存占用与流的长度无关
+ * 只支持一个下游订阅者
+ */
+public class SegmentationProcessor implements Flow.Processor<String, List<Word>> {
+	private final Function<String, List<Word>> segmenter;
+	private final Executor executor;
+	private final int window;
+
+	//按文本到达的顺序排列，队首分词完成且下游有请求时才发布
+	private final Queue<CompletableFuture<List<Word>>> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicLong demand = new AtomicLong();
+	//发布由一个线程串行执行，其它线程只增加计数，由正在发布的线程多循环一次
+	private final AtomicInteger wip = new AtomicInteger();
+	private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+	private final AtomicReference<Flow.Subscriber<? super List<Word>>> downstream = new AtomicReference<>();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean upstreamDone;
+	private volatile Throwable upstreamError;
+	//下游请求的数量不合法，不再发布结果，直接通知下游出错
+	private volatile Throwable requestError;
+	private volatile boolean cancelled;
+	//只在发布线程中访问
+	private boolean terminated;
+
+	/**
+	 * 使用场景当前的分词算法分词，分词、细分和词性标注与segSantance相同
+	 * @param scene 分词场景
+	 * @param executor 执行分词的执行器
+	 * @param window 同时在处理（分词中或等待发布）的文本数上限
+	 */
+	public SegmentationProcessor(WordSegScene scene, Executor executor, int window) {
+		this(scene == null ? null : scene::segSantance, executor, window);
+	}
+
+	/**
+	 * @param segmenter 分词函数，会在执行器的多个线程中同时调用
+	 * @param executor 执行分词的执行器
+	 * @param window 同时在处理（分词中或等待发布）的文本数上限
+	 */
+	public SegmentationProcessor(Function<String, List<Word>> segmenter, Executor executor, int window) {
+		if (segmenter == null) {
+			throw new IllegalArgumentException("segmenter can not be null");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("executor can not be null");
+		}
+		if (window < 1) {
+			throw new IllegalArgumentException("window must be positive: " + window);
+		}
+		this.segmenter = segmenter;
+		this.executor = executor;
+		this.window = window;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * 已经收到但还没有发布的文本数，包括正在分词的
+	 */
+	public int getQueueDepth() {
+		return pending.size();
+	}
+
+	/**
+	 * 正在分词的文本数
+	 */
+	public int getRunning() {
+		return running.get();
+	}
+
+	/**
+	 * 下游已经请求但还没有发布的结果数
+	 */
+	public long getDemand() {
+		return demand.get();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super List<Word>> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber can not be null");
+		}
+		if (!downstream.compareAndSet(null, subscriber)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("SegmentationProcessor supports only one subscriber"));
+			return;
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				if (n <= 0) {
+					requestError = new IllegalArgumentException("request must be positive: " + n);
+					cancelUpstream();
+					drain();
+					return;
+				}
+				long current;
+				do {
+					current = demand.get();
+				} while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+				drain();
+			}
+
+			@Override
+			public void cancel() {
+				cancelUpstream();
+				drain();
+			}
+		});
+		start();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (!upstream.compareAndSet(null, subscription)) {
+			//已经订阅了一个上游
+			subscription.cancel();
+			return;
+		}
+		if (cancelled) {
+			subscription.cancel();
+			return;
+		}
+		start();
+	}
+
+	/**
+	 * 上游和下游都就绪后向上游请求一个窗口的文本
+	 */
+	private void start() {
+		Flow.Subscription subscription = upstream.get();
+		if (subscription != null && downstream.get() != null && started.compareAndSet(false, true)) {
+			subscription.request(window);
+		}
+	}
+
+	@Override
+	public void onNext(String text) {
+		if (cancelled) {
+			return;
+		}
+		CompletableFuture<List<Word>> future = new CompletableFuture<>();
+		pending.add(future);
+		running.incrementAndGet();
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(segmenter.apply(text));
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					running.decrementAndGet();
+					drain();
+				}
+			});
+		} catch (RuntimeException e) {
+			//执行器拒绝了任务
+			running.decrementAndGet();
+			future.completeExceptionally(e);
+			drain();
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		upstreamError = throwable;
+		upstreamDone = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		upstreamDone = true;
+		drain();
+	}
+
+	/**
+	 * 按顺序发布已经分词完成的结果，每发布一个向上游补充请求一个文本
+	 * 上游结束时先发布完已经收到的文本，再通知下游结束
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			Flow.Subscriber<? super List<Word>> subscriber = downstream.get();
+			if (subscriber != null && !terminated) {
+				if (requestError != null) {
+					terminate(subscriber, requestError);
+				} else if (cancelled) {
+					pending.clear();
+				} else {
+					emit(subscriber);
+				}
+			}
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	private void emit(Flow.Subscriber<? super List<Word>> subscriber) {
+		long emitted = 0;
+		long requested = demand.get();
+		CompletableFuture<List<Word>> head;
+		while (emitted < requested && !cancelled && (head = pending.peek()) != null && head.isDone()) {
+			pending.poll();
+			List<Word> words;
+			try {
+				words = head.join();
+			} catch (Throwable e) {
+				//分词出错，后面的结果不再发布
+				cancelUpstream();
+				terminate(subscriber, e.getCause() != null ? e.getCause() : e);
+				return;
+			}
+			subscriber.onNext(words);
+			emitted++;
+			Flow.Subscription subscription = upstream.get();
+			if (!upstreamDone && subscription != null) {
+				subscription.request(1);
+			}
+		}
+		if (emitted > 0) {
+			demand.addAndGet(-emitted);
+		}
+		if (upstreamDone && pending.isEmpty() && !cancelled) {
+			terminate(subscriber, upstreamError);
+		}
+	}
+
+	private void cancelUpstream() {
+		cancelled = true;
+		Flow.Subscription subscription = upstream.get();
+		if (subscription != null) {
+			subscription.cancel();
+		}
+		pending.clear();
+	}
+
+	private void terminate(Flow.Subscriber<? super List<Word>> subscriber, Throwable error) {
+		terminated = true;
+		pending.clear();
+		if (error != null) {
+			subscriber.onError(error);
+		} else {
+			subscriber.onComplete();
+		}
+	}
+}
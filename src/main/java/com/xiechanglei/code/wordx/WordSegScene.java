@@ -1,19 +1,53 @@
 package com.xiechanglei.code.wordx;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 
 public interface WordSegScene {
 
 	void addWord(String line, String tag);
 
+	// add with a frequency (or weight), returned by Word.getFrequency() when the word is segmented
+	void addWord(String line, String tag, int frequency);
+
 	void removeWord(String line);
 
 	void clearWord(String line);
 
+	// hide a word of the base dictionary in this scene, words added to the scene are not affected
+	void maskWord(String line);
+
+	void unmaskWord(String line);
+
+	// batch add, key is the word and value is the tag (may be null), published as one new version
+	void addWords(Map<String, String> words);
+
+	// batch remove, published as one new version
+	void removeWords(Collection<String> words);
+
+	// replace all words and refines with a new version built aside, readers switch over atomically
+	void reload(Map<String, String> words, Collection<String> refines);
+
+	// version of the current dictionary snapshot, increased by one each time a new snapshot is published,
+	// i.e. once per write call that touches the scene (a batch call or a reload counts once), not once per word
+	long getVersion();
+
 	void addRefine(String line);
 
+	// batch add refines, published as one new version
+	void addRefines(Collection<String> lines);
+
 	void removeRefine(String line);
 
 	void clearRefine(String line);
@@ -24,4 +58,22 @@ public interface WordSegScene {
 
 	List<Word> segSantance(String word);
 
+	// segment into a reusable buffer of offsets and tag ids, the buffer is cleared first, no objects are created per word
+	void segSantance(String text, TokenBuffer buffer);
+
+	// segment many documents, results are in the same order as the input
+	List<List<Word>> segBatch(List<String> texts);
+
+	// segment documents as they are read, the consumer is called on the calling thread in input order
+	void segBatch(Iterator<String> texts, Consumer<List<Word>> consumer);
+
+	// pool used by segBatch, null means the pool of the segmentation algorithm
+	void setBatchPool(ForkJoinPool pool);
+
+	// segment text read through a fixed-size buffer, words are passed to the consumer in order, the reader is not closed
+	void segStream(Reader reader, Consumer<Word> consumer) throws IOException;
+
+	// same as segStream(Reader, Consumer), decoding the channel with the charset
+	void segStream(ReadableByteChannel channel, Charset charset, Consumer<Word> consumer) throws IOException;
+
 }
@@ -1,5 +1,9 @@
 package com.xiechanglei.code.wordx;
 
+import java.util.Map;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+
 public interface WordSegmenter {
     //clear all dict
     void clearAll();
@@ -15,10 +19,28 @@ public interface WordSegmenter {
 
     void addBaseWord(String word, String tag);
 
+    // add with a frequency (or weight), returned by Word.getFrequency() when the word is segmented
+    void addBaseWord(String word, String tag, int frequency);
+
+    // batch add, key is the word and value is the tag (may be null)
+    void addBaseWords(Map<String, String> words);
+
     void removeBaseWord(String word);
 
     void clearBaseWord();
 
+    // replace the base dict, e.g. with a DoubleArrayDictionaryTrie loaded from an image
+    void setBaseDictionary(Dictionary dictionary);
+
+    // the current base dict, e.g. to check Dictionary.isBuildOnce() before a batch load
+    Dictionary getBaseDictionary();
+
+    // build a reverse index of the base dict, so ReverseMaximumMatching finds the longest word ending at a position in one walk
+    // kept when the base dict is replaced, throws IllegalArgumentException if the base dict does not support it
+    void setReverseIndex(boolean enabled);
+
+    boolean isReverseIndex();
+
     //add Punctuation
 
     void addQuantifier(String word);
@@ -1,6 +1,8 @@
 package com.xiechanglei.code.wordx.dictionary;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 /**
  * 词典操作接口
@@ -30,6 +32,219 @@ public interface Dictionary {
      */
     public boolean contains(String item);
 
+    /**
+     * 从指定的位置开始查找词典中最长的词，只需从根节点遍历一次
+     * @param text 文本
+     * @param start 从哪个下标索引开始
+     * @param limit 词的最大长度
+     * 比如：longestMatch("我爱写程序员",  3, 3);
+     * 如果“程序”和“程序员”都定义在词典中，则返回3
+     * @return 最长的词的长度，没有匹配的词则返回0
+     */
+    public default int longestMatch(String text, int start, int limit) {
+        for (int len = Math.min(limit, text.length() - start); len > 0; len--) {
+            if (contains(text, start, len)) {
+                return len;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 词的附加值（词频或权重），附加值和词尾标记存储在一起
+     * 不支持附加值的实现总是返回0
+     * @param item 文本
+     * @param start 指定的文本从哪个下标索引开始
+     * @param length 指定的文本的长度
+     * @return 附加值，不是词或没有设置附加值时返回0
+     */
+    public default int getPayload(String item, int start, int length) {
+        return 0;
+    }
+
+    /**
+     * 词的附加值（词频或权重）
+     * @param item 词
+     * @return 附加值，不是词或没有设置附加值时返回0
+     */
+    public default int getPayload(String item) {
+        return getPayload(item, 0, item.length());
+    }
+
+    /**
+     * 正向最长匹配，同时得到词的附加值，支持附加值的实现只需从根节点遍历一次
+     * @param text 文本
+     * @param start 从哪个下标索引开始
+     * @param limit 词的最大长度
+     * @return 匹配结果，用matchLength、matchPayload方法取出长度和附加值，没有匹配的词则返回0
+     */
+    public default long longestMatchWithPayload(String text, int start, int limit) {
+        int length = longestMatch(text, start, limit);
+        return length == 0 ? 0 : packMatch(length, getPayload(text, start, length));
+    }
+
+    /**
+     * 逆向最长匹配，同时得到词的附加值
+     * @param text 文本
+     * @param end 词的结束下标索引（不包含）
+     * @param limit 词的最大长度
+     * @return 匹配结果，用matchLength、matchPayload方法取出长度和附加值，没有匹配的词则返回0
+     */
+    public default long longestSuffixMatchWithPayload(String text, int end, int limit) {
+        int length = longestSuffixMatch(text, end, limit);
+        return length == 0 ? 0 : packMatch(length, getPayload(text, end - length, length));
+    }
+
+    /**
+     * 把长度和附加值打包为一个匹配结果，高32位为附加值，低32位为长度
+     * @param length 长度
+     * @param payload 附加值
+     * @return 匹配结果
+     */
+    public static long packMatch(int length, int payload) {
+        return ((long) payload << 32) | (length & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 从匹配结果中取出长度
+     * @param match longestMatchWithPayload或longestSuffixMatchWithPayload的返回值
+     * @return 长度
+     */
+    public static int matchLength(long match) {
+        return (int) match;
+    }
+
+    /**
+     * 从匹配结果中取出附加值
+     * @param match longestMatchWithPayload或longestSuffixMatchWithPayload的返回值
+     * @return 附加值
+     */
+    public static int matchPayload(long match) {
+        return (int) (match >>> 32);
+    }
+
+    /**
+     * 从指定的位置开始查找词典中所有的词（即文本的所有前缀词），只需从根节点遍历一次
+     * 按词的长度从短到长回调
+     * @param text 文本
+     * @param start 从哪个下标索引开始
+     * @param limit 词的最大长度
+     * @param handler 匹配回调
+     */
+    public default void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+        int max = Math.min(limit, text.length() - start);
+        for (int len = 1; len <= max; len++) {
+            if (contains(text, start, len)) {
+                handler.match(start, len);
+            }
+        }
+    }
+
+    /**
+     * 查找词典中以指定位置结尾的最长的词，供逆向最大匹配使用
+     * 启用反向索引后只需从反向索引的根节点向前遍历一次，否则逐个长度查询
+     * @param text 文本
+     * @param end 词的结束下标索引（不包含）
+     * @param limit 词的最大长度
+     * 比如：longestSuffixMatch("我爱写程序员",  6, 3);
+     * 如果“序员”和“程序员”都定义在词典中，则返回3
+     * @return 最长的词的长度，没有匹配的词则返回0
+     */
+    public default int longestSuffixMatch(String text, int end, int limit) {
+        for (int len = Math.min(limit, end); len > 0; len--) {
+            if (contains(text, end - len, len)) {
+                return len;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 启用或停用反向索引，反向索引把词按从后往前的顺序再存储一份
+     * 不支持反向索引的实现忽略此设置，调用后可以用isReverseIndex检查是否生效
+     * 反向索引建好后才对查找可见，建立期间不能同时增删词，由调用方保证
+     * @param enabled 是否启用
+     */
+    public default void setReverseIndex(boolean enabled) {
+    }
+
+    /**
+     * 是否已经启用反向索引
+     * @return 是否
+     */
+    public default boolean isReverseIndex() {
+        return false;
+    }
+
+    /**
+     * 是否支持遍历，即forEach、forEachWithPayload方法可以使用
+     * @return 是否
+     */
+    public default boolean isIterable() {
+        return false;
+    }
+
+    /**
+     * 遍历词典中的所有词，顺序由具体实现决定
+     * 不支持遍历的实现（isIterable返回false）抛出异常
+     * @param action 对每一个词执行的操作
+     */
+    public default void forEach(Consumer<String> action) {
+        throw new RuntimeException("not yet support menthod!");
+    }
+
+    /**
+     * 遍历词典中的所有词及其附加值，顺序由具体实现决定
+     * 不支持遍历的实现（isIterable返回false）抛出异常
+     * @param action 对每一个词及其附加值执行的操作
+     */
+    public default void forEachWithPayload(ObjIntConsumer<String> action) {
+        forEach(word -> action.accept(word, getPayload(word)));
+    }
+
+    /**
+     * 统计信息，用于监控内存占用和容量规划
+     * 默认实现遍历所有的词，只能统计词数、词长和词首字的分布；不支持遍历的实现只有最大词长
+     * @return 统计信息
+     */
+    public default DictionaryStats getStats() {
+        DictionaryStats.Builder builder = new DictionaryStats.Builder().maxLength(getMaxLength());
+        if (!isIterable()) {
+            return builder.build();
+        }
+        //每个词首字下的词数
+        int[] roots = new int[65536];
+        forEach(word -> {
+            builder.word(word.length());
+            roots[word.charAt(0)]++;
+        });
+        for (int count : roots) {
+            if (count > 0) {
+                builder.root(count);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 复制一份词典，修改副本不会影响原词典，反之亦然
+     * 构建后不可修改的实现和副本共用只读的数据
+     * 不支持复制的实现抛出异常
+     * @return 副本
+     */
+    public default Dictionary copy() {
+        throw new RuntimeException("not yet support menthod!");
+    }
+
+    /**
+     * 是否只能在clear方法之后用addAll方法构建一次，构建后不能再加词，如双数组
+     * 分批加载词时需要先收集所有的词，再调用一次addAll
+     * @return 是否
+     */
+    public default boolean isBuildOnce() {
+        return false;
+    }
+
     /**
      * 批量将词加入词典
      * @param items 集合中的每一个元素是一个词
@@ -37,11 +252,41 @@ public interface Dictionary {
     public void addAll(List<String> items);
 
     /**
-     * 将单个词加入词典
+     * 批量将词和附加值加入词典，只能构建一次的实现（isBuildOnce返回true）用这个方法构建带附加值的词典
+     * 同一个词出现多次时，后出现的非0附加值覆盖前面的
+     * @param items 集合中的每一个元素是一个词
+     * @param payloads 与items一一对应的附加值，为null时只加入词
+     */
+    public default void addAll(List<String> items, int[] payloads) {
+        if (payloads == null) {
+            addAll(items);
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (payloads[i] != 0) {
+                add(items.get(i), payloads[i]);
+            } else {
+                add(items.get(i));
+            }
+        }
+    }
+
+    /**
+     * 将单个词加入词典，词已经存在时保留原来的附加值
      * @param item 词
      */
     public void add(String item);
 
+    /**
+     * 将单个词加入词典并设置附加值（词频或权重），词已经存在时覆盖原来的附加值
+     * 不支持附加值的实现只加入词，忽略附加值
+     * @param item 词
+     * @param payload 附加值
+     */
+    public default void add(String item, int payload) {
+        add(item);
+    }
+
     /**
      * 批量将词从词典中删除
      * @param items 集合中的每一个元素是一个词
@@ -0,0 +1,217 @@
+package com.xiechanglei.code.wordx.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * 词典的统计信息：词数、节点数、估算的内存占用、词首字的分布、词长分布、双数组的填充率
+ * 各实现在一次遍历中收集，不创建词的字符串，可以定时采集作为监控指标
+ * 不适用或无法统计的项为-1
+ */
+public final class DictionaryStats {
+    private final long wordCount;
+    private final long nodeCount;
+    private final long footprint;
+    private final int maxLength;
+    private final int rootSlots;
+    private final int rootCount;
+    private final long[] rootLoadHistogram;
+    private final long[] lengthHistogram;
+    private final double fillRatio;
+
+    private DictionaryStats(Builder builder) {
+        this.wordCount = builder.wordCount >= 0 ? builder.wordCount : builder.countedWords;
+        this.nodeCount = builder.nodeCount;
+        this.footprint = builder.footprint;
+        this.maxLength = builder.maxLength;
+        this.rootSlots = builder.rootSlots;
+        this.rootCount = builder.rootCount;
+        this.rootLoadHistogram = Arrays.copyOf(builder.rootLoadHistogram, builder.rootLoadSize);
+        this.lengthHistogram = Arrays.copyOf(builder.lengthHistogram, builder.lengthSize);
+        this.fillRatio = builder.fillRatio;
+    }
+
+    /**
+     * 词数
+     */
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * 节点（状态、双数组中用到的单元）数，不包含反向索引
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * 估算的内存占用，包含反向索引，单位字节
+     */
+    public long getFootprint() {
+        return footprint;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * 词首字索引的槽位数，没有词首字索引时为-1
+     */
+    public int getRootSlots() {
+        return rootSlots;
+    }
+
+    /**
+     * 词首字的个数，即用到的根节点槽位数
+     */
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    /**
+     * 每个词首字下的词数的分布，第k项为词数在[2^(k-1), 2^k)之间的词首字个数，第0项为没有词的词首字个数
+     * 用来发现词特别集中的词首字
+     * @return 直方图，没有统计时为空数组
+     */
+    public long[] getRootLoadHistogram() {
+        return rootLoadHistogram.clone();
+    }
+
+    /**
+     * 词长（即词在前缀树中的深度）的分布，第k项为长度为k的词数
+     * @return 直方图，没有统计时为空数组
+     */
+    public long[] getLengthHistogram() {
+        return lengthHistogram.clone();
+    }
+
+    /**
+     * 双数组中用到的单元占数组长度的比例，不是双数组时为-1
+     */
+    public double getFillRatio() {
+        return fillRatio;
+    }
+
+    /**
+     * 平均每个词占用的字节数
+     */
+    public long getBytesPerWord() {
+        return footprint < 0 || wordCount <= 0 ? -1 : footprint / wordCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DictionaryStats[words=" + wordCount + ", nodes=" + nodeCount + ", footprint=" + footprint + ", maxLength=" + maxLength + ", rootSlots=" + rootSlots
+                + ", roots=" + rootCount + ", rootLoad=" + Arrays.toString(rootLoadHistogram) + ", lengths=" + Arrays.toString(lengthHistogram) + ", fillRatio="
+                + fillRatio + "]";
+    }
+
+    /**
+     * 收集统计信息，遍历时每遇到一个词调用word，每遍历完一个词首字调用root
+     */
+    public static final class Builder {
+        private long wordCount = -1;
+        private long countedWords;
+        private long nodeCount = -1;
+        private long footprint = -1;
+        private int maxLength;
+        private int rootSlots = -1;
+        private int rootCount;
+        private long[] rootLoadHistogram = new long[8];
+        private int rootLoadSize;
+        private long[] lengthHistogram = new long[16];
+        private int lengthSize;
+        private double fillRatio = -1;
+
+        /**
+         * 遇到一个词
+         * @param length 词长
+         * @return this
+         */
+        public Builder word(int length) {
+            if (length >= lengthHistogram.length) {
+                lengthHistogram = Arrays.copyOf(lengthHistogram, Math.max(length + 1, lengthHistogram.length * 2));
+            }
+            lengthHistogram[length]++;
+            if (length >= lengthSize) {
+                lengthSize = length + 1;
+            }
+            if (length > maxLength) {
+                maxLength = length;
+            }
+            countedWords++;
+            return this;
+        }
+
+        /**
+         * 遍历完一个词首字
+         * @param words 这个词首字下的词数
+         * @return this
+         */
+        public Builder root(long words) {
+            int bucket = 64 - Long.numberOfLeadingZeros(words);
+            if (bucket >= rootLoadHistogram.length) {
+                rootLoadHistogram = Arrays.copyOf(rootLoadHistogram, 65);
+            }
+            rootLoadHistogram[bucket]++;
+            if (bucket >= rootLoadSize) {
+                rootLoadSize = bucket + 1;
+            }
+            rootCount++;
+            return this;
+        }
+
+        /**
+         * 已经记录的词数，遍历词首字时用来计算每个词首字下的词数
+         */
+        public long getCountedWords() {
+            return countedWords;
+        }
+
+        /**
+         * 不遍历词时直接设置词数
+         */
+        public Builder wordCount(long wordCount) {
+            this.wordCount = wordCount;
+            return this;
+        }
+
+        public Builder nodeCount(long nodeCount) {
+            this.nodeCount = nodeCount;
+            return this;
+        }
+
+        public Builder footprint(long footprint) {
+            this.footprint = footprint;
+            return this;
+        }
+
+        public Builder maxLength(int maxLength) {
+            this.maxLength = Math.max(this.maxLength, maxLength);
+            return this;
+        }
+
+        public Builder rootSlots(int rootSlots) {
+            this.rootSlots = rootSlots;
+            return this;
+        }
+
+        /**
+         * 不遍历词首字时直接设置词首字的个数
+         */
+        public Builder rootCount(int rootCount) {
+            this.rootCount = rootCount;
+            return this;
+        }
+
+        public Builder fillRatio(double fillRatio) {
+            this.fillRatio = fillRatio;
+            return this;
+        }
+
+        public DictionaryStats build() {
+            return new DictionaryStats(this);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.xiechanglei.code.wordx.dictionary;
+
+/**
+ * 全文多模式匹配回调
+ * 每匹配到一个词回调一次，不需要为每个匹配结果创建对象
+ */
+@FunctionalInterface
+public interface HitHandler {
+    /**
+     * 匹配到一个词
+     * @param start 词在文本中的开始索引
+     * @param length 词的长度
+     * @param wordId 词的编号
+     */
+    public void hit(int start, int length, int wordId);
+}
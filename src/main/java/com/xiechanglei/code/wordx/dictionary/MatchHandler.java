@@ -0,0 +1,15 @@
+package com.xiechanglei.code.wordx.dictionary;
+
+/**
+ * 词典匹配回调
+ * 每匹配到一个词回调一次，不需要为每个匹配结果创建对象
+ */
+@FunctionalInterface
+public interface MatchHandler {
+    /**
+     * 匹配到一个词
+     * @param start 词在文本中的开始索引
+     * @param length 词的长度
+     */
+    public void match(int start, int length);
+}
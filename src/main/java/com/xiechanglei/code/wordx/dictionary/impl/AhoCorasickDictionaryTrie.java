@@ -0,0 +1,597 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.HitHandler;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+
+/**
+ * AC自动机（Aho-Corasick）
+ * 状态转移用双数组存储，和DoubleArrayDictionaryTrie一样只需读取base、check两个数组，另外为每个状态记录失败指针
+ * 用于在长文本中一次线性扫描找出所有词典中的词的所有出现位置（包括相互重叠的词）
+ * 词的编号为词按字典序排序后的序号，附加值按词的编号存储
+ */
+public class AhoCorasickDictionaryTrie implements Dictionary {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AhoCorasickDictionaryTrie.class);
+	private static final int ROOT = 0;
+	//空闲槽位的check值
+	private static final int FREE = -1;
+	//根节点的check值，不和任何状态相等
+	private static final int NONE = -2;
+	//为一组兄弟节点在前部最多尝试的空闲槽位数，超过则到数组尾部附近查找
+	private static final int MAX_TRIALS = 256;
+
+	/**
+	 * base为子状态的偏移量，子状态下标为base+字符值+1，check为父状态下标
+	 * base可以为负数，这样汉字等编码较大的字符也能利用数组前部的空间
+	 */
+	private int[] base;
+	private int[] check;
+	//失败指针
+	private int[] fail;
+	//状态对应的词的编号，不是词尾则为-1
+	private int[] output;
+	//沿失败指针找到的最近的词尾状态，没有则为根节点
+	private int[] outputLink;
+	//词的长度，下标为词的编号
+	private int[] lengths;
+	//词的附加值，下标为词的编号，没有附加值时为null
+	private int[] payloads;
+	private int maxLength;
+	private int wordCount;
+	//构建过程中使用，指向不小于自身下标的空闲槽位，查找时压缩路径
+	private int[] nextFree;
+	//构建过程中使用，用过的最大下标加一
+	private int tail;
+
+	/**
+	 * 构建过程中使用的临时节点
+	 */
+	private static class Node {
+		private char[] labels = new char[0];
+		private Node[] children = new Node[0];
+		private int wordId = -1;
+		private int index;
+
+		private Node getChild(char character) {
+			int i = labels.length - 1;
+			//词按字典序插入，新的子节点总是在最后
+			if (i >= 0 && labels[i] == character) {
+				return children[i];
+			}
+			Node child = new Node();
+			labels = Arrays.copyOf(labels, i + 2);
+			children = Arrays.copyOf(children, i + 2);
+			labels[i + 1] = character;
+			children[i + 1] = child;
+			return child;
+		}
+	}
+
+	public AhoCorasickDictionaryTrie() {
+		LOGGER.info("初始化AC自动机词典");
+	}
+
+	/**
+	 * 副本和原词典共用构建好的数组
+	 */
+	private AhoCorasickDictionaryTrie(AhoCorasickDictionaryTrie source) {
+		base = source.base;
+		check = source.check;
+		fail = source.fail;
+		output = source.output;
+		outputLink = source.outputLink;
+		lengths = source.lengths;
+		payloads = source.payloads;
+		maxLength = source.maxLength;
+		wordCount = source.wordCount;
+	}
+
+	/**
+	 * 构建后不会再修改，副本和原词典共用
+	 */
+	@Override
+	public AhoCorasickDictionaryTrie copy() {
+		return new AhoCorasickDictionaryTrie(this);
+	}
+
+	/**
+	 * 用指定词典中的所有词和附加值构建自动机
+	 * @param dictionary 支持遍历的词典
+	 */
+	public void build(Dictionary dictionary) {
+		List<String> words = new ArrayList<>();
+		dictionary.forEach(words::add);
+		int[] payloads = new int[words.size()];
+		for (int i = 0; i < payloads.length; i++) {
+			payloads[i] = dictionary.getPayload(words.get(i));
+		}
+		addAll(words, payloads);
+	}
+
+	@Override
+	public void addAll(List<String> items) {
+		addAll(items, null);
+	}
+
+	@Override
+	public void addAll(List<String> items, int[] payloads) {
+		if (base != null) {
+			throw new RuntimeException("addAll method can just be used once after clear method!");
+		}
+		long start = System.currentTimeMillis();
+		SortedWords sorted = new SortedWords(items, payloads);
+		List<String> words = sorted.words;
+		this.payloads = sorted.payloads;
+		//先构建普通的前缀树
+		Node root = new Node();
+		lengths = new int[words.size()];
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			Node node = root;
+			for (int j = 0; j < word.length(); j++) {
+				node = node.getChild(word.charAt(j));
+			}
+			node.wordId = i;
+			lengths[i] = word.length();
+			maxLength = Math.max(maxLength, word.length());
+		}
+		wordCount = words.size();
+		words.clear();
+		List<Node> nodes = place(root);
+		link(nodes);
+		LOGGER.info("构建AC自动机，词数：" + wordCount + "，状态数：" + nodes.size() + "，数组长度：" + base.length + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
+	/**
+	 * 按广度优先的顺序把前缀树放入双数组
+	 * @return 按广度优先排列的节点
+	 */
+	private List<Node> place(Node root) {
+		int size = 1024;
+		allocate(size);
+		check[ROOT] = NONE;
+		nextFree[ROOT] = ROOT + 1;
+		tail = ROOT + 1;
+		root.index = ROOT;
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		for (int n = 0; n < nodes.size(); n++) {
+			Node node = nodes.get(n);
+			int count = node.labels.length;
+			if (count == 0) {
+				continue;
+			}
+			//第一个子节点依次尝试每一个空闲槽位，跳过已占用的槽位
+			int first = node.labels[0] + 1;
+			int position = nextFree(ROOT + 1);
+			int trials = 0;
+			int begin;
+			outer: while (true) {
+				begin = position - first;
+				ensureCapacity(begin + node.labels[count - 1] + 2);
+				for (int i = 1; i < count; i++) {
+					if (check[begin + node.labels[i] + 1] != FREE) {
+						if (++trials == MAX_TRIALS) {
+							//前部的空洞太密，改为从尾部附近查找，尾部之后的槽位都是空闲的，一定能放下
+							position = Math.max(position, tail - (node.labels[count - 1] - node.labels[0]));
+						}
+						position = nextFree(position + 1);
+						continue outer;
+					}
+				}
+				break;
+			}
+			base[node.index] = begin;
+			for (int i = 0; i < count; i++) {
+				Node child = node.children[i];
+				child.index = begin + node.labels[i] + 1;
+				check[child.index] = node.index;
+				nextFree[child.index] = child.index + 1;
+				tail = Math.max(tail, child.index + 1);
+				output[child.index] = child.wordId;
+				nodes.add(child);
+			}
+		}
+		nextFree = null;
+		//去掉尾部多余的空间
+		base = Arrays.copyOf(base, tail);
+		check = Arrays.copyOf(check, tail);
+		output = Arrays.copyOf(output, tail);
+		//失败指针在放置完成后计算
+		fail = new int[tail];
+		outputLink = new int[tail];
+		return nodes;
+	}
+
+	/**
+	 * 按广度优先的顺序计算失败指针，父状态的失败指针总是先于子状态计算
+	 */
+	private void link(List<Node> nodes) {
+		for (Node node : nodes) {
+			for (int i = 0; i < node.labels.length; i++) {
+				Node child = node.children[i];
+				int code = node.labels[i] + 1;
+				int state = ROOT;
+				if (node.index != ROOT) {
+					int f = fail[node.index];
+					int next;
+					while ((next = transition(f, code)) < 0 && f != ROOT) {
+						f = fail[f];
+					}
+					state = next < 0 ? ROOT : next;
+				}
+				fail[child.index] = state;
+				outputLink[child.index] = output[state] >= 0 ? state : outputLink[state];
+			}
+		}
+	}
+
+	private void allocate(int size) {
+		base = new int[size];
+		check = new int[size];
+		output = new int[size];
+		nextFree = new int[size];
+		Arrays.fill(check, FREE);
+		Arrays.fill(output, -1);
+		for (int i = 0; i < size; i++) {
+			nextFree[i] = i;
+		}
+	}
+
+	private void ensureCapacity(int required) {
+		int size = base.length;
+		if (required <= size) {
+			return;
+		}
+		while (size < required) {
+			size += size >> 1;
+		}
+		int old = base.length;
+		base = Arrays.copyOf(base, size);
+		check = Arrays.copyOf(check, size);
+		output = Arrays.copyOf(output, size);
+		nextFree = Arrays.copyOf(nextFree, size);
+		Arrays.fill(check, old, size, FREE);
+		Arrays.fill(output, old, size, -1);
+		for (int i = old; i < size; i++) {
+			nextFree[i] = i;
+		}
+	}
+
+	/**
+	 * 查找不小于指定下标的第一个空闲槽位，超出数组的槽位视为空闲
+	 */
+	private int nextFree(int index) {
+		int[] nextFree = this.nextFree;
+		int free = index;
+		while (free < nextFree.length && nextFree[free] != free) {
+			free = nextFree[free];
+		}
+		while (index < nextFree.length && nextFree[index] != index) {
+			int next = nextFree[index];
+			nextFree[index] = free;
+			index = next;
+		}
+		return free;
+	}
+
+	/**
+	 * 状态转移
+	 * @param state 当前状态
+	 * @param code 字符值加一
+	 * @return 下一个状态，不存在则返回-1
+	 */
+	private int transition(int state, int code) {
+		int index = base[state] + code;
+		if (index >= 0 && index < check.length && check[index] == state) {
+			return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * 扫描文本，找出所有词典中的词的所有出现位置
+	 * 同一结束位置的词按从长到短的顺序回调
+	 * @param text 文本
+	 * @param handler 匹配回调
+	 */
+	public void scan(String text, HitHandler handler) {
+		scan(text, 0, text.length(), handler);
+	}
+
+	/**
+	 * 扫描文本的指定部分，找出所有词典中的词的所有出现位置
+	 * @param text 文本
+	 * @param start 开始索引
+	 * @param end 结束索引（不包含）
+	 * @param handler 匹配回调
+	 */
+	public void scan(String text, int start, int end, HitHandler handler) {
+		int[] base = this.base;
+		int[] check = this.check;
+		if (base == null) {
+			return;
+		}
+		int[] fail = this.fail;
+		int[] output = this.output;
+		int[] outputLink = this.outputLink;
+		int[] lengths = this.lengths;
+		int size = check.length;
+		int state = ROOT;
+		for (int i = start; i < end; i++) {
+			int code = text.charAt(i) + 1;
+			while (true) {
+				int index = base[state] + code;
+				if (index >= 0 && index < size && check[index] == state) {
+					state = index;
+					break;
+				}
+				if (state == ROOT) {
+					break;
+				}
+				state = fail[state];
+			}
+			int hit = output[state] >= 0 ? state : outputLink[state];
+			while (hit != ROOT) {
+				int wordId = output[hit];
+				handler.hit(i + 1 - lengths[wordId], lengths[wordId], wordId);
+				hit = outputLink[hit];
+			}
+		}
+	}
+
+	/**
+	 * 查找词的编号
+	 * @param item 词
+	 * @return 编号，不存在则返回-1
+	 */
+	public int indexOf(String item) {
+		int state = find(item, 0, item.length());
+		return state < 0 ? -1 : output[state];
+	}
+
+	/**
+	 * 沿goto函数查找状态
+	 * @return 状态下标，不存在则返回-1
+	 */
+	private int find(String item, int start, int length) {
+		if (base == null) {
+			return -1;
+		}
+		int state = ROOT;
+		for (int i = start; i < start + length && state >= 0; i++) {
+			state = transition(state, item.charAt(i) + 1);
+		}
+		return state;
+	}
+
+	/**
+	 * 词的个数
+	 * @return 个数
+	 */
+	public int size() {
+		return wordCount;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	@Override
+	public boolean contains(String item, int start, int length) {
+		if (start < 0 || length < 1) {
+			return false;
+		}
+		if (item == null || item.length() < start + length) {
+			return false;
+		}
+		int state = find(item, start, length);
+		return state > ROOT && output[state] >= 0;
+	}
+
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
+
+	/**
+	 * 词的附加值
+	 * @param wordId 词的编号，如扫描时回调的编号
+	 * @return 附加值，没有设置附加值时返回0
+	 */
+	public int getPayload(int wordId) {
+		int[] payloads = this.payloads;
+		return payloads == null ? 0 : payloads[wordId];
+	}
+
+	@Override
+	public int getPayload(String item, int start, int length) {
+		if (!contains(item, start, length)) {
+			return 0;
+		}
+		return getPayload(output[find(item, start, length)]);
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		return Dictionary.matchLength(longestMatchWithPayload(text, start, limit));
+	}
+
+	@Override
+	public long longestMatchWithPayload(String text, int start, int limit) {
+		if (base == null || start < 0 || text == null) {
+			return 0;
+		}
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int found = ROOT;
+		int state = ROOT;
+		for (int i = start; i < end; i++) {
+			state = transition(state, text.charAt(i) + 1);
+			if (state < 0) {
+				break;
+			}
+			if (output[state] >= 0) {
+				longest = i - start + 1;
+				found = state;
+			}
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, getPayload(output[found]));
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (base == null || start < 0 || text == null) {
+			return;
+		}
+		int end = Math.min(start + limit, text.length());
+		int state = ROOT;
+		for (int i = start; i < end; i++) {
+			state = transition(state, text.charAt(i) + 1);
+			if (state < 0) {
+				break;
+			}
+			if (output[state] >= 0) {
+				handler.match(start, i - start + 1);
+			}
+		}
+	}
+
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	/**
+	 * 按字典序（即按词的编号）遍历所有的词
+	 * 先扫描一次check数组，把状态按父状态分组，再深度遍历
+	 */
+	@Override
+	public void forEach(Consumer<String> action) {
+		forEachWithPayload((word, payload) -> action.accept(word));
+	}
+
+	@Override
+	public void forEachWithPayload(ObjIntConsumer<String> action) {
+		int[] base = this.base;
+		int[] check = this.check;
+		if (base == null) {
+			return;
+		}
+		int size = check.length;
+		//children中[first[s], first[s+1])为状态s的子状态，按字符排序
+		int[] first = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			if (check[i] >= 0) {
+				first[check[i]]++;
+			}
+		}
+		for (int s = 1; s <= size; s++) {
+			first[s] += first[s - 1];
+		}
+		int[] children = new int[first[size]];
+		for (int i = size - 1; i >= 0; i--) {
+			if (check[i] >= 0) {
+				children[--first[check[i]]] = i;
+			}
+		}
+		collect(ROOT, first, children, new StringBuilder(), action);
+	}
+
+	private void collect(int state, int[] first, int[] children, StringBuilder prefix, ObjIntConsumer<String> action) {
+		if (output[state] >= 0) {
+			action.accept(prefix.toString(), getPayload(output[state]));
+		}
+		for (int k = first[state]; k < first[state + 1]; k++) {
+			int child = children[k];
+			prefix.append((char) (child - base[state] - 1));
+			collect(child, first, children, prefix, action);
+			prefix.setLength(prefix.length() - 1);
+		}
+	}
+
+	@Override
+	public boolean isBuildOnce() {
+		return true;
+	}
+
+	@Override
+	public void add(String item) {
+		throw new RuntimeException("not yet support, please use addAll method!");
+	}
+
+	@Override
+	public void removeAll(List<String> items) {
+		throw new RuntimeException("not yet support menthod!");
+	}
+
+	@Override
+	public void remove(String item) {
+		throw new RuntimeException("not yet support menthod!");
+	}
+
+	/**
+	 * 扫描一次状态数组收集统计信息，每个词尾状态沿check回到词首字，得到每个词首字下的词数
+	 * 节点数为状态数（含根状态），填充率为状态数占数组长度的比例
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().maxLength(maxLength).wordCount(wordCount);
+		int[] check = this.check;
+		if (check == null) {
+			return builder.nodeCount(0).footprint(0).build();
+		}
+		for (int length : lengths) {
+			builder.word(length);
+		}
+		int[] roots = new int[65536];
+		long states = 0;
+		for (int i = 0; i < check.length; i++) {
+			if (check[i] == FREE) {
+				continue;
+			}
+			states++;
+			if (output[i] >= 0) {
+				int state = i;
+				while (check[state] != ROOT) {
+					state = check[state];
+				}
+				roots[state - base[ROOT] - 1]++;
+			}
+		}
+		for (int count : roots) {
+			if (count > 0) {
+				builder.root(count);
+			}
+		}
+		long footprint = 16 * 6 + 4L * (base.length + check.length + fail.length + output.length + outputLink.length + lengths.length);
+		if (payloads != null) {
+			footprint += 16 + 4L * payloads.length;
+		}
+		return builder.nodeCount(states).fillRatio((double) states / check.length).footprint(footprint).build();
+	}
+
+	@Override
+	public void clear() {
+		base = null;
+		check = null;
+		fail = null;
+		output = null;
+		outputLink = null;
+		lengths = null;
+		payloads = null;
+		maxLength = 0;
+		wordCount = 0;
+	}
+}
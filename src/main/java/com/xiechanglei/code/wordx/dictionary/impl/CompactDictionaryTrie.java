@@ -0,0 +1,726 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+
+/**
+ * 紧凑存储的可变前缀树
+ * 不为每个字符创建节点对象，节点和子节点都存储在几个平坦的数组中：
+ *      每个节点记录子节点块的开始位置和子节点数，词尾标记存储在位图中
+ *      同一个节点的子节点连续存放在子节点块中（字符和子节点编号两个数组），按字符排序，二分查找
+ *      词的附加值（词频或权重）按节点编号存储在数组中，第一次设置非0的附加值时才分配
+ * 子节点块的容量为2的幂，放满后整块搬到数组尾部并且容量翻倍，插入的均摊代价为常数
+ * 根节点的子节点（词首字）直接按字符索引，查找只需读取一次数组
+ * 删除词时摘掉不再通向任何词的节点，摘掉的节点超过一半时自动重新紧凑存储
+ */
+public class CompactDictionaryTrie implements Dictionary {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompactDictionaryTrie.class);
+	private static final int INDEX_LENGTH = 65536;
+	private static final int DEFAULT_SIZE = 1024;
+
+	//词首字对应的节点编号，0表示不存在，首次加词时才分配
+	private int[] rootIndex;
+	//节点的子节点块在blockLabels、blockNodes中的开始位置
+	private int[] childStart;
+	//节点的子节点数，子节点块的容量为不小于子节点数的2的幂
+	private int[] childCount;
+	//词尾节点位图
+	private long[] terminal;
+	//词尾节点的附加值，没有设置过附加值时为null
+	private int[] payloads;
+	//子节点块，字符和对应的子节点编号
+	private char[] blockLabels;
+	private int[] blockNodes;
+	//节点数，编号0保留给根节点
+	private int nodeCount;
+	//子节点块用过的长度
+	private int blockTail;
+	//搬走的子节点块留下的空间
+	private int garbage;
+	//删除词时摘掉的节点数，这些节点的编号在重新紧凑存储之前不会再使用
+	private int detached;
+	private int maxLength;
+	private int wordCount;
+	//反向索引，按从后往前的顺序存储词
+	private volatile CompactDictionaryTrie reverse;
+
+	public CompactDictionaryTrie() {
+		LOGGER.info("初始化紧凑存储前缀树词典");
+		allocate();
+	}
+
+	private CompactDictionaryTrie(CompactDictionaryTrie source) {
+		rootIndex = source.rootIndex == null ? null : source.rootIndex.clone();
+		childStart = source.childStart.clone();
+		childCount = source.childCount.clone();
+		terminal = source.terminal.clone();
+		payloads = source.payloads == null ? null : source.payloads.clone();
+		blockLabels = source.blockLabels.clone();
+		blockNodes = source.blockNodes.clone();
+		nodeCount = source.nodeCount;
+		blockTail = source.blockTail;
+		garbage = source.garbage;
+		detached = source.detached;
+		maxLength = source.maxLength;
+		wordCount = source.wordCount;
+		if (source.reverse != null) {
+			reverse = new CompactDictionaryTrie(source.reverse);
+		}
+	}
+
+	/**
+	 * 复制所有数组，只需几次数组拷贝
+	 */
+	@Override
+	public CompactDictionaryTrie copy() {
+		return new CompactDictionaryTrie(this);
+	}
+
+	private void allocate() {
+		rootIndex = null;
+		childStart = new int[DEFAULT_SIZE];
+		childCount = new int[DEFAULT_SIZE];
+		terminal = new long[DEFAULT_SIZE >>> 6];
+		payloads = null;
+		blockLabels = new char[DEFAULT_SIZE];
+		blockNodes = new int[DEFAULT_SIZE];
+		nodeCount = 1;
+		blockTail = 0;
+		garbage = 0;
+		detached = 0;
+	}
+
+	/**
+	 * 新增一个没有子节点的节点
+	 * @return 节点编号
+	 */
+	private int newNode() {
+		if (nodeCount == childStart.length) {
+			int size = Math.max(nodeCount + (nodeCount >> 1), DEFAULT_SIZE);
+			childStart = Arrays.copyOf(childStart, size);
+			childCount = Arrays.copyOf(childCount, size);
+			terminal = Arrays.copyOf(terminal, (size + 63) >>> 6);
+			if (payloads != null) {
+				payloads = Arrays.copyOf(payloads, size);
+			}
+		}
+		return nodeCount++;
+	}
+
+	/**
+	 * 在子节点块的尾部分配空间
+	 * @param capacity 容量
+	 * @return 开始位置
+	 */
+	private int newBlock(int capacity) {
+		int required = blockTail + capacity;
+		if (required > blockLabels.length) {
+			int size = Math.max(required, blockLabels.length + (blockLabels.length >> 1));
+			blockLabels = Arrays.copyOf(blockLabels, size);
+			blockNodes = Arrays.copyOf(blockNodes, size);
+		}
+		int start = blockTail;
+		blockTail = required;
+		return start;
+	}
+
+	/**
+	 * 二分查找子节点
+	 * @param node 节点
+	 * @param character 字符
+	 * @return 子节点块中的位置，不存在则返回 -(插入位置 + 1)
+	 */
+	private int search(int node, char character) {
+		int low = childStart[node];
+		int high = low + childCount[node] - 1;
+		char[] labels = blockLabels;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char label = labels[mid];
+			if (label < character) {
+				low = mid + 1;
+			} else if (label > character) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private int getChild(int node, char character) {
+		int position = search(node, character);
+		return position < 0 ? -1 : blockNodes[position];
+	}
+
+	private int getRootNode(char character) {
+		int[] index = rootIndex;
+		if (index == null) {
+			return -1;
+		}
+		int node = index[character];
+		return node == 0 ? -1 : node;
+	}
+
+	private int getChildIfNotExistThenCreate(int node, char character) {
+		int position = search(node, character);
+		if (position >= 0) {
+			return blockNodes[position];
+		}
+		position = -position - 1;
+		int count = childCount[node];
+		int start = childStart[node];
+		//子节点块已满，搬到尾部并且容量翻倍
+		if (count == capacity(count)) {
+			int newStart = newBlock(count == 0 ? 1 : count << 1);
+			System.arraycopy(blockLabels, start, blockLabels, newStart, count);
+			System.arraycopy(blockNodes, start, blockNodes, newStart, count);
+			garbage += count;
+			position += newStart - start;
+			start = newStart;
+			childStart[node] = start;
+		}
+		//有序插入，后面的子节点后移一位
+		int end = start + count;
+		System.arraycopy(blockLabels, position, blockLabels, position + 1, end - position);
+		System.arraycopy(blockNodes, position, blockNodes, position + 1, end - position);
+		int child = newNode();
+		blockLabels[position] = character;
+		blockNodes[position] = child;
+		childCount[node] = count + 1;
+		return child;
+	}
+
+	/**
+	 * 子节点块的容量
+	 */
+	private static int capacity(int count) {
+		return count <= 1 ? count : Integer.highestOneBit(count - 1) << 1;
+	}
+
+	private boolean isTerminal(int node) {
+		return (terminal[node >>> 6] & (1L << node)) != 0;
+	}
+
+	private int payload(int node) {
+		int[] payloads = this.payloads;
+		return payloads == null ? 0 : payloads[node];
+	}
+
+	private void setPayload(int node, int payload) {
+		if (payloads == null) {
+			if (payload == 0) {
+				return;
+			}
+			payloads = new int[childStart.length];
+		}
+		payloads[node] = payload;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * 查找词尾节点
+	 * @return 节点编号，不存在则返回-1
+	 */
+	private int find(String item, int start, int length) {
+		int node = getRootNode(item.charAt(start));
+		for (int i = start + 1; i < start + length && node > 0; i++) {
+			node = getChild(node, item.charAt(i));
+		}
+		return node;
+	}
+
+	@Override
+	public boolean contains(String item, int start, int length) {
+		if (start < 0 || length < 1) {
+			return false;
+		}
+		if (item == null || item.length() < start + length) {
+			return false;
+		}
+		int node = find(item, start, length);
+		return node > 0 && isTerminal(node);
+	}
+
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
+
+	@Override
+	public int getPayload(String item, int start, int length) {
+		if (start < 0 || length < 1 || item == null || item.length() < start + length) {
+			return 0;
+		}
+		int node = find(item, start, length);
+		return node > 0 && isTerminal(node) ? payload(node) : 0;
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		return Dictionary.matchLength(longestMatchWithPayload(text, start, limit));
+	}
+
+	@Override
+	public long longestMatchWithPayload(String text, int start, int limit) {
+		if (start < 0 || text == null || start >= text.length()) {
+			return 0;
+		}
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int node = getRootNode(text.charAt(start));
+		int found = 0;
+		for (int i = start + 1; node > 0; i++) {
+			if (isTerminal(node)) {
+				longest = i - start;
+				found = node;
+			}
+			if (i >= end) {
+				break;
+			}
+			node = getChild(node, text.charAt(i));
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payload(found));
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (start < 0 || text == null || start >= text.length()) {
+			return;
+		}
+		int end = Math.min(start + limit, text.length());
+		int node = getRootNode(text.charAt(start));
+		for (int i = start + 1; node > 0; i++) {
+			if (isTerminal(node)) {
+				handler.match(start, i - start);
+			}
+			if (i >= end) {
+				break;
+			}
+			node = getChild(node, text.charAt(i));
+		}
+	}
+
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		CompactDictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatch(text, end, limit);
+		}
+		return Dictionary.matchLength(reverse.longestBackwardMatch(text, end, limit));
+	}
+
+	@Override
+	public long longestSuffixMatchWithPayload(String text, int end, int limit) {
+		CompactDictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatchWithPayload(text, end, limit);
+		}
+		return reverse.longestBackwardMatch(text, end, limit);
+	}
+
+	/**
+	 * 在反向索引中从end-1开始向前遍历文本，反向索引中的词尾节点保存着同样的附加值
+	 */
+	private long longestBackwardMatch(String text, int end, int limit) {
+		if (text == null || end <= 0 || end > text.length()) {
+			return 0;
+		}
+		int begin = Math.max(end - limit, 0);
+		int longest = 0;
+		int node = getRootNode(text.charAt(end - 1));
+		int found = 0;
+		for (int i = end - 1; node > 0; i--) {
+			if (isTerminal(node)) {
+				longest = end - i;
+				found = node;
+			}
+			if (i <= begin) {
+				break;
+			}
+			node = getChild(node, text.charAt(i - 1));
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payload(found));
+	}
+
+	@Override
+	public void setReverseIndex(boolean enabled) {
+		if (!enabled) {
+			reverse = null;
+			return;
+		}
+		if (reverse != null) {
+			return;
+		}
+		CompactDictionaryTrie trie = new CompactDictionaryTrie();
+		forEachWithPayload((word, payload) -> trie.add(ReversedKeys.reverse(word), payload));
+		reverse = trie;
+		LOGGER.info("建立反向索引，词数：" + trie.size());
+	}
+
+	@Override
+	public boolean isReverseIndex() {
+		return reverse != null;
+	}
+
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		forEachWithPayload((word, payload) -> action.accept(word));
+	}
+
+	@Override
+	public void forEachWithPayload(ObjIntConsumer<String> action) {
+		int[] index = rootIndex;
+		if (index == null) {
+			return;
+		}
+		StringBuilder prefix = new StringBuilder();
+		for (int c = 0; c < INDEX_LENGTH; c++) {
+			if (index[c] != 0) {
+				prefix.append((char) c);
+				collect(index[c], prefix, action);
+				prefix.setLength(0);
+			}
+		}
+	}
+
+	/**
+	 * 遍历节点下的所有词
+	 */
+	private void collect(int node, StringBuilder prefix, ObjIntConsumer<String> action) {
+		if (isTerminal(node)) {
+			action.accept(prefix.toString(), payload(node));
+		}
+		int start = childStart[node];
+		int end = start + childCount[node];
+		for (int i = start; i < end; i++) {
+			prefix.append(blockLabels[i]);
+			collect(blockNodes[i], prefix, action);
+			prefix.setLength(prefix.length() - 1);
+		}
+	}
+
+	@Override
+	public void addAll(List<String> items) {
+		for (String item : items) {
+			add(item);
+		}
+	}
+
+	/**
+	 * 词已经存在时保留原来的附加值
+	 */
+	@Override
+	public void add(String item) {
+		add(item, 0, false);
+	}
+
+	/**
+	 * 词已经存在时覆盖原来的附加值
+	 */
+	@Override
+	public void add(String item, int payload) {
+		add(item, payload, true);
+	}
+
+	/**
+	 * @param overwrite 词已经存在时是否覆盖原来的附加值
+	 */
+	private void add(String item, int payload, boolean overwrite) {
+		//去掉首尾空白字符
+		item = item.trim();
+		int len = item.length();
+		if (len < 1) {
+			//长度小于1则忽略
+			return;
+		}
+		if (len > maxLength) {
+			maxLength = len;
+		}
+		if (rootIndex == null) {
+			rootIndex = new int[INDEX_LENGTH];
+		}
+		char first = item.charAt(0);
+		int node = rootIndex[first];
+		if (node == 0) {
+			node = newNode();
+			rootIndex[first] = node;
+		}
+		for (int i = 1; i < len; i++) {
+			node = getChildIfNotExistThenCreate(node, item.charAt(i));
+		}
+		//先写附加值再设置词尾标记
+		if (overwrite || !isTerminal(node)) {
+			setPayload(node, payload);
+		}
+		if (!isTerminal(node)) {
+			//设置词尾标记，表示从根节点遍历到此是一个合法的词
+			terminal[node >>> 6] |= 1L << node;
+			wordCount++;
+		}
+		if (reverse != null) {
+			reverse.add(ReversedKeys.reverse(item), payload, overwrite);
+		}
+	}
+
+	@Override
+	public void removeAll(List<String> items) {
+		for (String item : items) {
+			remove(item);
+		}
+	}
+
+	/**
+	 * 清除词尾标记，再从下往上摘掉不再通向任何词的节点
+	 */
+	@Override
+	public void remove(String item) {
+		if (item == null || (item = item.trim()).isEmpty()) {
+			return;
+		}
+		int length = item.length();
+		//路径上的节点
+		int[] path = new int[length];
+		int node = getRootNode(item.charAt(0));
+		path[0] = node;
+		for (int i = 1; i < length && node > 0; i++) {
+			node = getChild(node, item.charAt(i));
+			path[i] = node;
+		}
+		if (node > 0 && isTerminal(node)) {
+			terminal[node >>> 6] &= ~(1L << node);
+			setPayload(node, 0);
+			wordCount--;
+			prune(item, path);
+			//摘掉的节点超过一半时重新紧凑存储，反复增删词时数组不会无限增长
+			if (detached > DEFAULT_SIZE && detached * 2 > nodeCount) {
+				compact();
+			}
+			if (reverse != null) {
+				reverse.remove(ReversedKeys.reverse(item));
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("成功从词典中移除词：{}", item);
+			}
+		} else {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("词不存在：{}", item);
+			}
+		}
+	}
+
+	/**
+	 * 从词尾向上摘掉既不是词尾也没有子节点的节点
+	 * @param item 删除的词
+	 * @param path 词的路径上的节点
+	 */
+	private void prune(String item, int[] path) {
+		for (int i = path.length - 1; i >= 0; i--) {
+			int node = path[i];
+			if (isTerminal(node) || childCount[node] > 0) {
+				return;
+			}
+			if (i == 0) {
+				rootIndex[item.charAt(0)] = 0;
+			} else {
+				int parent = path[i - 1];
+				int position = search(parent, item.charAt(i));
+				int end = childStart[parent] + childCount[parent];
+				System.arraycopy(blockLabels, position + 1, blockLabels, position, end - position - 1);
+				System.arraycopy(blockNodes, position + 1, blockNodes, position, end - position - 1);
+				childCount[parent]--;
+			}
+			detached++;
+		}
+	}
+
+	@Override
+	public void clear() {
+		allocate();
+		maxLength = 0;
+		wordCount = 0;
+		if (reverse != null) {
+			reverse.clear();
+		}
+	}
+
+	/**
+	 * 词的个数
+	 * @return 个数
+	 */
+	public int size() {
+		return wordCount;
+	}
+
+	/**
+	 * 节点数
+	 * @return 个数
+	 */
+	public int getNodeCount() {
+		return nodeCount - 1;
+	}
+
+	/**
+	 * 占用的堆内存，即所有数组的字节数之和（数组对象头按16字节计算），不包含反向索引
+	 * @return 字节数
+	 */
+	public long getFootprint() {
+		long footprint = 16 + 4L * childStart.length + 16 + 4L * childCount.length + 16 + 8L * terminal.length;
+		footprint += 16 + 2L * blockLabels.length + 16 + 4L * blockNodes.length;
+		if (rootIndex != null) {
+			footprint += 16 + 4L * rootIndex.length;
+		}
+		if (payloads != null) {
+			footprint += 16 + 4L * payloads.length;
+		}
+		return footprint;
+	}
+
+	/**
+	 * 遍历一次前缀树收集统计信息，内存占用包含反向索引
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().rootSlots(INDEX_LENGTH).maxLength(maxLength);
+		int[] index = rootIndex;
+		if (index != null) {
+			for (int c = 0; c < INDEX_LENGTH; c++) {
+				if (index[c] != 0) {
+					long before = builder.getCountedWords();
+					collect(index[c], 1, builder);
+					builder.root(builder.getCountedWords() - before);
+				}
+			}
+		}
+		CompactDictionaryTrie reverse = this.reverse;
+		return builder.wordCount(wordCount).nodeCount(getNodeCount()).footprint(getFootprint() + (reverse == null ? 0 : reverse.getFootprint())).build();
+	}
+
+	private void collect(int node, int depth, DictionaryStats.Builder builder) {
+		if (isTerminal(node)) {
+			builder.word(depth);
+		}
+		int start = childStart[node];
+		int end = start + childCount[node];
+		for (int i = start; i < end; i++) {
+			collect(blockNodes[i], depth + 1, builder);
+		}
+	}
+
+	/**
+	 * 重新紧凑存储
+	 * 按广度优先的顺序重新给节点编号，同一个节点的子节点编号连续，去掉搬走的子节点块留下的空间和数组尾部多余的空间
+	 * 不再通向任何词的子树（包括删除词时摘掉的节点）不会保留
+	 */
+	public void compact() {
+		long start = System.currentTimeMillis();
+		long oldFootprint = getFootprint();
+		int[] oldRootIndex = rootIndex;
+		if (oldRootIndex == null) {
+			return;
+		}
+		//子节点的编号总是大于父节点，从后往前一次就能算出每个节点下是否还有词
+		long[] live = new long[(nodeCount + 63) >>> 6];
+		int[] liveCount = new int[nodeCount];
+		for (int node = nodeCount - 1; node > 0; node--) {
+			int from = childStart[node];
+			for (int i = from, end = from + childCount[node]; i < end; i++) {
+				int child = blockNodes[i];
+				if ((live[child >>> 6] & (1L << child)) != 0) {
+					liveCount[node]++;
+				}
+			}
+			if (liveCount[node] > 0 || isTerminal(node)) {
+				live[node >>> 6] |= 1L << node;
+			}
+		}
+		int blockSize = 0;
+		for (int node = 1; node < nodeCount; node++) {
+			blockSize += capacity(liveCount[node]);
+		}
+		int[] newRootIndex = new int[INDEX_LENGTH];
+		int[] newChildStart = new int[nodeCount];
+		int[] newChildCount = new int[nodeCount];
+		long[] newTerminal = new long[(nodeCount + 63) >>> 6];
+		int[] newPayloads = payloads == null ? null : new int[nodeCount];
+		char[] newBlockLabels = new char[blockSize];
+		int[] newBlockNodes = new int[blockSize];
+		//新编号对应的旧编号
+		int[] order = new int[nodeCount];
+		int next = 1;
+		for (int c = 0; c < INDEX_LENGTH; c++) {
+			int old = oldRootIndex[c];
+			if (old != 0 && (live[old >>> 6] & (1L << old)) != 0) {
+				order[next] = old;
+				newRootIndex[c] = next++;
+			}
+		}
+		int tail = 0;
+		for (int node = 1; node < next; node++) {
+			int old = order[node];
+			if (isTerminal(old)) {
+				newTerminal[node >>> 6] |= 1L << node;
+				if (newPayloads != null) {
+					newPayloads[node] = payloads[old];
+				}
+			}
+			int from = childStart[old];
+			int count = 0;
+			newChildStart[node] = tail;
+			for (int i = from, end = from + childCount[old]; i < end; i++) {
+				int child = blockNodes[i];
+				if ((live[child >>> 6] & (1L << child)) != 0) {
+					newBlockLabels[tail + count] = blockLabels[i];
+					order[next] = child;
+					newBlockNodes[tail + count++] = next++;
+				}
+			}
+			newChildCount[node] = count;
+			tail += capacity(count);
+		}
+		//去掉不再使用的节点编号
+		int size = Math.max(next, DEFAULT_SIZE);
+		rootIndex = newRootIndex;
+		childStart = Arrays.copyOf(newChildStart, size);
+		childCount = Arrays.copyOf(newChildCount, size);
+		terminal = Arrays.copyOf(newTerminal, (size + 63) >>> 6);
+		payloads = newPayloads == null ? null : Arrays.copyOf(newPayloads, size);
+		blockLabels = newBlockLabels;
+		blockNodes = newBlockNodes;
+		blockTail = tail;
+		garbage = 0;
+		nodeCount = next;
+		detached = 0;
+		if (reverse != null) {
+			reverse.compact();
+		}
+		LOGGER.info("紧凑存储前缀树重新紧凑存储：" + oldFootprint + " -> " + getFootprint() + " 字节，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
+	/**
+	 * 子节点块中被搬走的块留下的空间，占子节点块已用长度的比例
+	 * 块的容量每次翻倍，这部分空间不会超过有效子节点所占的空间
+	 * @return 比例
+	 */
+	public float getGarbageRatio() {
+		return blockTail == 0 ? 0 : (float) garbage / blockTail;
+	}
+}
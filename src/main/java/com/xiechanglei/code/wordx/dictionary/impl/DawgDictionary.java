@@ -0,0 +1,820 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+import com.xiechanglei.code.wordx.util.DoubleArrayImage;
+
+/**
+ * 最小无环确定有限状态自动机（DAWG）词典
+ * 前缀树只共用前缀，自动机把右语言相同的状态合并，前缀和后缀都共用，适合千万级的大词典
+ * 使用增量算法（Daciuk等）构建：词按字典序逐个加入，每加入一个词就把上一个词不再变化的后缀状态最小化，
+ * 构建时内存中只保留已经最小化的状态和上一个词的路径
+ * 存储：
+ *      每个状态的边连续存放，按字符排序，二分查找；状态记录第一条边的位置
+ *      边记录字符和目标状态，目标状态编号的最高位表示走过这条边后是否构成一个词
+ *      字符两个一组打包存放在int中，所有数据都是int数组，可以保存为镜像文件后通过内存映射加载
+ * 附加值：
+ *      状态被多个词共用，附加值不能存在状态上，按词的字典序序号存储
+ *      每条边记录同一状态上排在它前面的边下的词数，沿路径累加得到词的序号，只在有附加值时存储
+ * 构建后不能修改，add、remove不支持
+ */
+public class DawgDictionary implements Dictionary {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DawgDictionary.class);
+	private static final int FINAL = 0x80000000;
+	private static final int STATE_MASK = 0x7FFFFFFF;
+	private static final int INDEX_LENGTH = 65536;
+	//镜像文件元数据段的标识
+	private static final int IMAGE_MAGIC = 0x44415747;
+
+	//每个状态第一条边的位置，长度为状态数加一
+	private IntBuffer firstArc;
+	//边的目标状态，最高位为词尾标记
+	private IntBuffer targets;
+	//边的字符，两个字符打包为一个int
+	private IntBuffer labels;
+	//同一状态上排在这条边前面的边下的词数，没有附加值时为null
+	private IntBuffer arcOffsets;
+	//词的附加值，下标为词的序号，没有附加值时为null
+	private IntBuffer payloads;
+	private int root;
+	//根状态的边按字符直接索引，值为边的位置加一，0表示不存在
+	private int[] rootIndex;
+	private int maxLength;
+	private int wordCount;
+	private boolean reverseIndex;
+	//反向索引，按从后往前的顺序存储词
+	private volatile DawgDictionary reverse;
+
+	public DawgDictionary() {
+		LOGGER.info("初始化DAWG词典");
+	}
+
+	private DawgDictionary(DawgDictionary source) {
+		firstArc = source.firstArc;
+		targets = source.targets;
+		labels = source.labels;
+		arcOffsets = source.arcOffsets;
+		payloads = source.payloads;
+		root = source.root;
+		rootIndex = source.rootIndex;
+		maxLength = source.maxLength;
+		wordCount = source.wordCount;
+		reverseIndex = source.reverseIndex;
+		reverse = source.reverse;
+	}
+
+	private void init(IntBuffer firstArc, IntBuffer targets, IntBuffer labels, IntBuffer arcOffsets, IntBuffer payloads, int root, int maxLength, int wordCount) {
+		this.firstArc = firstArc;
+		this.targets = targets;
+		this.labels = labels;
+		this.arcOffsets = arcOffsets;
+		this.payloads = payloads;
+		this.root = root;
+		this.maxLength = maxLength;
+		this.wordCount = wordCount;
+		int[] index = new int[INDEX_LENGTH];
+		for (int arc = firstArc.get(root), end = firstArc.get(root + 1); arc < end; arc++) {
+			index[label(arc)] = arc + 1;
+		}
+		this.rootIndex = index;
+	}
+
+	/**
+	 * 构建后的自动机不会再修改，副本和原词典共用
+	 */
+	@Override
+	public DawgDictionary copy() {
+		return new DawgDictionary(this);
+	}
+
+	/**
+	 * 从按字典序排好的词构建，词只需要遍历一次
+	 * @param sortedWords 按String.compareTo排好序的词，重复的词会被忽略
+	 * @return 词典
+	 */
+	public static DawgDictionary build(Iterable<String> sortedWords) {
+		Builder builder = new Builder();
+		for (String word : sortedWords) {
+			builder.add(word);
+		}
+		return builder.build();
+	}
+
+	public int size() {
+		return wordCount;
+	}
+
+	public int getStateCount() {
+		return firstArc == null ? 0 : firstArc.limit() - 1;
+	}
+
+	public int getArcCount() {
+		return targets == null ? 0 : targets.limit();
+	}
+
+	/**
+	 * 内存占用：自动机数组加根状态索引，加载镜像时自动机数组在映射的文件中，不占用堆内存
+	 * @return 字节数，包含反向索引
+	 */
+	public long getFootprint() {
+		if (firstArc == null) {
+			return 0;
+		}
+		long footprint = 4L * (firstArc.limit() + targets.limit() + labels.limit() + rootIndex.length);
+		if (payloads != null) {
+			footprint += 4L * (arcOffsets.limit() + payloads.limit());
+		}
+		DawgDictionary reverse = this.reverse;
+		if (reverse != null) {
+			footprint += reverse.getFootprint();
+		}
+		return footprint;
+	}
+
+	/**
+	 * 沿自动机的路径遍历一次收集统计信息，路径数与前缀树的节点数相同，不创建词的字符串
+	 * 节点数为状态数，内存占用包含反向索引
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().rootSlots(INDEX_LENGTH).maxLength(maxLength);
+		if (firstArc == null) {
+			return builder.wordCount(0).nodeCount(0).footprint(0).build();
+		}
+		int[] arcs = new int[Math.max(maxLength, 1) + 1];
+		int[] ends = new int[Math.max(maxLength, 1) + 1];
+		int rootEnd = firstArc.get(root + 1);
+		for (int rootArc = firstArc.get(root); rootArc < rootEnd; rootArc++) {
+			long before = builder.getCountedWords();
+			int target = targets.get(rootArc);
+			if ((target & FINAL) != 0) {
+				builder.word(1);
+			}
+			int state = target & STATE_MASK;
+			int depth = 0;
+			arcs[0] = firstArc.get(state);
+			ends[0] = firstArc.get(state + 1);
+			while (depth >= 0) {
+				if (arcs[depth] == ends[depth]) {
+					depth--;
+					if (depth >= 0) {
+						arcs[depth]++;
+					}
+					continue;
+				}
+				target = targets.get(arcs[depth]);
+				if ((target & FINAL) != 0) {
+					//根边的长度为1，第depth层的边是词的第depth + 2个字
+					builder.word(depth + 2);
+				}
+				state = target & STATE_MASK;
+				depth++;
+				arcs[depth] = firstArc.get(state);
+				ends[depth] = firstArc.get(state + 1);
+			}
+			builder.root(builder.getCountedWords() - before);
+		}
+		return builder.wordCount(wordCount).nodeCount(getStateCount()).footprint(getFootprint()).build();
+	}
+
+	private char label(int arc) {
+		return (char) (labels.get(arc >>> 1) >>> ((arc & 1) << 4));
+	}
+
+	/**
+	 * 查找状态上字符对应的边
+	 * @return 边的位置，不存在时返回-1
+	 */
+	private int findArc(int state, char character) {
+		if (state == root) {
+			return rootIndex[character] - 1;
+		}
+		int low = firstArc.get(state);
+		int high = firstArc.get(state + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char label = label(mid);
+			if (label < character) {
+				low = mid + 1;
+			} else if (label > character) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	@Override
+	public boolean contains(String item, int start, int length) {
+		if (firstArc == null || length < 1 || start < 0 || item == null || start + length > item.length()) {
+			return false;
+		}
+		int state = root;
+		int target = 0;
+		for (int i = start, end = start + length; i < end; i++) {
+			int arc = findArc(state, item.charAt(i));
+			if (arc < 0) {
+				return false;
+			}
+			target = targets.get(arc);
+			state = target & STATE_MASK;
+		}
+		return (target & FINAL) != 0;
+	}
+
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
+
+	/**
+	 * 沿路径累加词的序号：加上每条边前面的边下的词数，经过的词尾边本身是一个排在前面的词
+	 */
+	@Override
+	public int getPayload(String item, int start, int length) {
+		IntBuffer payloads = this.payloads;
+		if (payloads == null || firstArc == null || length < 1 || start < 0 || item == null || start + length > item.length()) {
+			return 0;
+		}
+		IntBuffer arcOffsets = this.arcOffsets;
+		int state = root;
+		int target = 0;
+		int rank = 0;
+		for (int i = start, end = start + length; i < end; i++) {
+			if ((target & FINAL) != 0) {
+				rank++;
+			}
+			int arc = findArc(state, item.charAt(i));
+			if (arc < 0) {
+				return 0;
+			}
+			rank += arcOffsets.get(arc);
+			target = targets.get(arc);
+			state = target & STATE_MASK;
+		}
+		return (target & FINAL) != 0 ? payloads.get(rank) : 0;
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		return Dictionary.matchLength(longestMatchWithPayload(text, start, limit));
+	}
+
+	@Override
+	public long longestMatchWithPayload(String text, int start, int limit) {
+		if (firstArc == null || start < 0 || text == null) {
+			return 0;
+		}
+		IntBuffer payloads = this.payloads;
+		IntBuffer arcOffsets = this.arcOffsets;
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int found = 0;
+		int rank = 0;
+		int state = root;
+		for (int i = start; i < end; i++) {
+			int arc = findArc(state, text.charAt(i));
+			if (arc < 0) {
+				break;
+			}
+			if (payloads != null) {
+				rank += arcOffsets.get(arc);
+			}
+			int target = targets.get(arc);
+			if ((target & FINAL) != 0) {
+				longest = i - start + 1;
+				found = rank++;
+			}
+			state = target & STATE_MASK;
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payloads == null ? 0 : payloads.get(found));
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (firstArc == null || start < 0 || text == null) {
+			return;
+		}
+		int end = Math.min(start + limit, text.length());
+		int state = root;
+		for (int i = start; i < end; i++) {
+			int arc = findArc(state, text.charAt(i));
+			if (arc < 0) {
+				return;
+			}
+			int target = targets.get(arc);
+			if ((target & FINAL) != 0) {
+				handler.match(start, i - start + 1);
+			}
+			state = target & STATE_MASK;
+		}
+	}
+
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		DawgDictionary reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatch(text, end, limit);
+		}
+		return reverse.longestBackwardMatch(text, end, limit);
+	}
+
+	/**
+	 * 在反向索引上从end向前匹配
+	 */
+	private int longestBackwardMatch(String text, int end, int limit) {
+		if (firstArc == null || text == null || end > text.length()) {
+			return 0;
+		}
+		int start = Math.max(end - limit, 0);
+		int longest = 0;
+		int state = root;
+		for (int i = end - 1; i >= start; i--) {
+			int arc = findArc(state, text.charAt(i));
+			if (arc < 0) {
+				break;
+			}
+			int target = targets.get(arc);
+			if ((target & FINAL) != 0) {
+				longest = end - i;
+			}
+			state = target & STATE_MASK;
+		}
+		return longest;
+	}
+
+	/**
+	 * 启用反向索引，已经构建好时用词典中的词构建反向自动机
+	 */
+	@Override
+	public void setReverseIndex(boolean enabled) {
+		reverseIndex = enabled;
+		if (!enabled) {
+			reverse = null;
+		} else if (reverse == null && firstArc != null) {
+			List<String> words = new ArrayList<>(wordCount);
+			forEach(word -> words.add(ReversedKeys.reverse(word)));
+			words.sort(null);
+			reverse = build(words);
+		}
+	}
+
+	@Override
+	public boolean isReverseIndex() {
+		return reverse != null;
+	}
+
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		forEachWithPayload((word, payload) -> action.accept(word));
+	}
+
+	/**
+	 * 深度优先遍历自动机，按字典序输出所有的词，第几个输出的词就是序号为几的词
+	 */
+	@Override
+	public void forEachWithPayload(ObjIntConsumer<String> action) {
+		if (firstArc == null) {
+			return;
+		}
+		IntBuffer payloads = this.payloads;
+		int rank = 0;
+		char[] word = new char[Math.max(maxLength, 1)];
+		int[] arcs = new int[Math.max(maxLength, 1) + 1];
+		int[] ends = new int[Math.max(maxLength, 1) + 1];
+		int depth = 0;
+		arcs[0] = firstArc.get(root);
+		ends[0] = firstArc.get(root + 1);
+		while (depth >= 0) {
+			if (arcs[depth] == ends[depth]) {
+				depth--;
+				if (depth >= 0) {
+					arcs[depth]++;
+				}
+				continue;
+			}
+			int arc = arcs[depth];
+			word[depth] = label(arc);
+			int target = targets.get(arc);
+			if ((target & FINAL) != 0) {
+				action.accept(new String(word, 0, depth + 1), payloads == null ? 0 : payloads.get(rank));
+				rank++;
+			}
+			int state = target & STATE_MASK;
+			depth++;
+			arcs[depth] = firstArc.get(state);
+			ends[depth] = firstArc.get(state + 1);
+		}
+	}
+
+	/**
+	 * 和双数组一样，只能在clear方法之后调用一次，词不需要排好序
+	 */
+	@Override
+	public void addAll(List<String> items) {
+		addAll(items, null);
+	}
+
+	/**
+	 * 反向索引只用于查找词的长度，附加值从正向的自动机中取
+	 */
+	@Override
+	public void addAll(List<String> items, int[] payloads) {
+		if (firstArc != null) {
+			throw new RuntimeException("addAll method can just be used once after clear method!");
+		}
+		long start = System.currentTimeMillis();
+		SortedWords words = new SortedWords(items, payloads);
+		Builder builder = new Builder();
+		for (int i = 0; i < words.size(); i++) {
+			builder.add(words.words.get(i), words.payload(i));
+		}
+		DawgDictionary dawg = builder.build();
+		init(dawg.firstArc, dawg.targets, dawg.labels, dawg.arcOffsets, dawg.payloads, dawg.root, dawg.maxLength, dawg.wordCount);
+		if (reverseIndex) {
+			reverse = build(ReversedKeys.reverse(words.words).stream().sorted().collect(Collectors.toList()));
+		}
+		LOGGER.info("构建DAWG词典，词数：" + wordCount + "，状态数：" + getStateCount() + "，边数：" + getArcCount() + "，占用内存：" + getFootprint() + " 字节，耗时："
+				+ (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
+	@Override
+	public boolean isBuildOnce() {
+		return true;
+	}
+
+	@Override
+	public void add(String item) {
+		throw new RuntimeException("not yet support, please use addAll method or DawgDictionary.Builder!");
+	}
+
+	@Override
+	public void removeAll(List<String> items) {
+		throw new RuntimeException("not yet support menthod!");
+	}
+
+	@Override
+	public void remove(String item) {
+		throw new RuntimeException("not yet support menthod!");
+	}
+
+	@Override
+	public void clear() {
+		firstArc = null;
+		targets = null;
+		labels = null;
+		arcOffsets = null;
+		payloads = null;
+		rootIndex = null;
+		root = 0;
+		maxLength = 0;
+		wordCount = 0;
+		reverse = null;
+	}
+
+	/**
+	 * 将自动机保存为镜像文件，不包含反向索引，有附加值时最后两段为每条边前面的词数和附加值
+	 * @param path 文件路径
+	 * @throws IOException 写文件失败
+	 */
+	public void save(Path path) throws IOException {
+		if (firstArc == null) {
+			throw new RuntimeException("dictionary is empty, please use addAll method first!");
+		}
+		IntBuffer meta = IntBuffer.wrap(new int[] { IMAGE_MAGIC, root, wordCount });
+		if (payloads != null) {
+			DoubleArrayImage.write(path, DoubleArrayImage.DAWG, maxLength, firstArc, targets, labels, meta, arcOffsets, payloads);
+		} else {
+			DoubleArrayImage.write(path, DoubleArrayImage.DAWG, maxLength, firstArc, targets, labels, meta);
+		}
+		LOGGER.info("保存DAWG词典镜像：" + path);
+	}
+
+	/**
+	 * 以内存映射的方式加载镜像文件，查询直接读取映射的文件
+	 * 和addAll方法一样，只能在clear方法之后调用一次
+	 * @param path 文件路径
+	 * @throws IOException 读文件失败或文件格式不正确
+	 */
+	public void load(Path path) throws IOException {
+		if (firstArc != null) {
+			throw new RuntimeException("load method can just be used once after clear method!");
+		}
+		long start = System.currentTimeMillis();
+		DoubleArrayImage image = DoubleArrayImage.map(path, DoubleArrayImage.DAWG);
+		int count = image.getSectionCount();
+		if ((count != 4 && count != 6) || image.getSection(3).limit() < 3 || image.getSection(3).get(0) != IMAGE_MAGIC) {
+			throw new IOException("not a dawg dictionary image: " + path);
+		}
+		IntBuffer meta = image.getSection(3);
+		IntBuffer arcOffsets = null;
+		IntBuffer payloads = null;
+		if (count == 6) {
+			arcOffsets = image.getSection(4);
+			payloads = image.getSection(5);
+			if (arcOffsets.limit() != image.getSection(1).limit() || payloads.limit() != meta.get(2)) {
+				throw new IOException("payload sections of wrong length in dawg dictionary image: " + path);
+			}
+		}
+		init(image.getSection(0), image.getSection(1), image.getSection(2), arcOffsets, payloads, meta.get(1), image.getMaxLength(), meta.get(2));
+		if (reverseIndex) {
+			reverse = null;
+			setReverseIndex(true);
+		}
+		LOGGER.info("加载DAWG词典镜像：" + path + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
+	/**
+	 * 增量构建器，词必须按String.compareTo的顺序加入
+	 * 上一个词的路径上的状态还可能变化，暂存在按深度排列的数组中；
+	 * 新词与上一个词的公共前缀之后的状态不会再变化，从深到浅逐个在注册表中查找等价的状态，找到则复用，否则登记为新状态
+	 * 登记的状态直接写入平坦的数组，注册表是以状态编号为元素的开放寻址哈希表
+	 */
+	public static final class Builder {
+		private static final int INITIAL_SIZE = 1024;
+
+		//已登记的状态
+		private int[] firstArc = new int[INITIAL_SIZE];
+		private int stateCount;
+		private char[] arcLabels = new char[INITIAL_SIZE];
+		private int[] arcTargets = new int[INITIAL_SIZE];
+		private int arcCount;
+		//注册表，值为状态编号加一
+		private int[] table = new int[INITIAL_SIZE];
+		//上一个词的路径上还没有登记的状态，下标为深度
+		private char[][] pendingLabels = new char[0][];
+		private int[][] pendingTargets = new int[0][];
+		private int[] pendingCount = new int[0];
+		private boolean[] pendingFinal = new boolean[0];
+		//词的附加值，下标为词的序号，所有的词都没有附加值时为null
+		private int[] payloads;
+		private String previous = "";
+		private int maxLength;
+		private int wordCount;
+		private boolean built;
+
+		public Builder() {
+			ensureDepth(1);
+		}
+
+		public int size() {
+			return wordCount;
+		}
+
+		/**
+		 * 加入一个词
+		 * @param word 词，必须不小于上一个词，和上一个词相同时忽略
+		 * @return 构建器
+		 */
+		public Builder add(String word) {
+			return add(word, 0);
+		}
+
+		/**
+		 * 加入一个词和它的附加值
+		 * @param word 词，必须不小于上一个词，和上一个词相同时只在附加值不为0时覆盖附加值
+		 * @param payload 附加值
+		 * @return 构建器
+		 */
+		public Builder add(String word, int payload) {
+			if (built) {
+				throw new RuntimeException("builder has already been built!");
+			}
+			int length = word.length();
+			if (length == 0) {
+				return this;
+			}
+			int compare = word.compareTo(previous);
+			if (compare == 0) {
+				if (payload != 0) {
+					setPayload(wordCount - 1, payload);
+				}
+				return this;
+			}
+			if (compare < 0) {
+				throw new IllegalArgumentException("words must be added in sorted order: " + previous + " > " + word);
+			}
+			int prefix = 0;
+			int limit = Math.min(length, previous.length());
+			while (prefix < limit && word.charAt(prefix) == previous.charAt(prefix)) {
+				prefix++;
+			}
+			for (int depth = previous.length(); depth > prefix; depth--) {
+				registerChild(depth);
+			}
+			ensureDepth(length + 1);
+			for (int i = prefix; i < length; i++) {
+				addArc(i, word.charAt(i));
+				pendingCount[i + 1] = 0;
+				pendingFinal[i + 1] = false;
+			}
+			pendingFinal[length] = true;
+			previous = word;
+			if (length > maxLength) {
+				maxLength = length;
+			}
+			wordCount++;
+			if (payload != 0) {
+				setPayload(wordCount - 1, payload);
+			}
+			return this;
+		}
+
+		private void setPayload(int rank, int payload) {
+			if (payloads == null) {
+				payloads = new int[Math.max(INITIAL_SIZE, wordCount)];
+			} else if (rank >= payloads.length) {
+				payloads = Arrays.copyOf(payloads, Math.max(payloads.length * 2, rank + 1));
+			}
+			payloads[rank] = payload;
+		}
+
+		/**
+		 * 完成构建，构建器不能再使用
+		 * @return 词典
+		 */
+		public DawgDictionary build() {
+			if (built) {
+				throw new RuntimeException("builder has already been built!");
+			}
+			for (int depth = previous.length(); depth > 0; depth--) {
+				registerChild(depth);
+			}
+			int root = register(0);
+			built = true;
+			int[] packed = new int[(arcCount + 1) / 2];
+			for (int i = 0; i < arcCount; i++) {
+				packed[i >>> 1] |= arcLabels[i] << ((i & 1) << 4);
+			}
+			IntBuffer arcOffsets = null;
+			IntBuffer payloads = null;
+			if (this.payloads != null) {
+				arcOffsets = IntBuffer.wrap(arcOffsets());
+				payloads = IntBuffer.wrap(Arrays.copyOf(this.payloads, wordCount));
+			}
+			DawgDictionary dawg = new DawgDictionary();
+			dawg.init(IntBuffer.wrap(Arrays.copyOf(firstArc, stateCount + 1)), IntBuffer.wrap(Arrays.copyOf(arcTargets, arcCount)), IntBuffer.wrap(packed), arcOffsets,
+					payloads, root, maxLength, wordCount);
+			//释放构建用的数组
+			arcLabels = null;
+			arcTargets = null;
+			firstArc = null;
+			table = null;
+			pendingLabels = null;
+			pendingTargets = null;
+			this.payloads = null;
+			return dawg;
+		}
+
+		/**
+		 * 每条边前面的边下的词数
+		 * 状态总是在它的边指向的状态之后登记，按编号从小到大计算每个状态下的词数时目标状态已经算好
+		 */
+		private int[] arcOffsets() {
+			int[] words = new int[stateCount];
+			int[] offsets = new int[arcCount];
+			for (int state = 0; state < stateCount; state++) {
+				int count = 0;
+				for (int arc = firstArc[state]; arc < firstArc[state + 1]; arc++) {
+					offsets[arc] = count;
+					int target = arcTargets[arc];
+					count += words[target & STATE_MASK] + ((target & FINAL) != 0 ? 1 : 0);
+				}
+				words[state] = count;
+			}
+			return offsets;
+		}
+
+		private void ensureDepth(int depth) {
+			if (pendingCount.length >= depth) {
+				return;
+			}
+			int size = Math.max(depth, pendingCount.length * 2);
+			int old = pendingCount.length;
+			pendingLabels = Arrays.copyOf(pendingLabels, size);
+			pendingTargets = Arrays.copyOf(pendingTargets, size);
+			pendingCount = Arrays.copyOf(pendingCount, size);
+			pendingFinal = Arrays.copyOf(pendingFinal, size);
+			for (int i = old; i < size; i++) {
+				pendingLabels[i] = new char[4];
+				pendingTargets[i] = new int[4];
+			}
+		}
+
+		private void addArc(int depth, char label) {
+			int count = pendingCount[depth];
+			if (count == pendingLabels[depth].length) {
+				pendingLabels[depth] = Arrays.copyOf(pendingLabels[depth], count * 2);
+				pendingTargets[depth] = Arrays.copyOf(pendingTargets[depth], count * 2);
+			}
+			pendingLabels[depth][count] = label;
+			pendingTargets[depth][count] = -1;
+			pendingCount[depth] = count + 1;
+		}
+
+		/**
+		 * 登记深度为depth的状态，并把父状态最后一条边指向它
+		 */
+		private void registerChild(int depth) {
+			int state = register(depth);
+			int parent = depth - 1;
+			pendingTargets[parent][pendingCount[parent] - 1] = pendingFinal[depth] ? state | FINAL : state;
+		}
+
+		private int register(int depth) {
+			char[] labels = pendingLabels[depth];
+			int[] targets = pendingTargets[depth];
+			int count = pendingCount[depth];
+			int mask = table.length - 1;
+			int slot = hash(labels, targets, 0, count) & mask;
+			while (table[slot] != 0) {
+				int state = table[slot] - 1;
+				if (equals(state, labels, targets, count)) {
+					return state;
+				}
+				slot = (slot + 1) & mask;
+			}
+			int state = stateCount++;
+			if (stateCount + 1 > firstArc.length) {
+				firstArc = Arrays.copyOf(firstArc, firstArc.length * 2);
+			}
+			if (arcCount + count > arcLabels.length) {
+				int size = Math.max(arcLabels.length * 2, arcCount + count);
+				arcLabels = Arrays.copyOf(arcLabels, size);
+				arcTargets = Arrays.copyOf(arcTargets, size);
+			}
+			firstArc[state] = arcCount;
+			System.arraycopy(labels, 0, arcLabels, arcCount, count);
+			System.arraycopy(targets, 0, arcTargets, arcCount, count);
+			arcCount += count;
+			firstArc[stateCount] = arcCount;
+			table[slot] = state + 1;
+			if (stateCount * 2 > table.length) {
+				rehash();
+			}
+			return state;
+		}
+
+		private boolean equals(int state, char[] labels, int[] targets, int count) {
+			int start = firstArc[state];
+			if (firstArc[state + 1] - start != count) {
+				return false;
+			}
+			for (int i = 0; i < count; i++) {
+				if (arcLabels[start + i] != labels[i] || arcTargets[start + i] != targets[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void rehash() {
+			int[] table = new int[this.table.length * 2];
+			int mask = table.length - 1;
+			for (int state = 0; state < stateCount; state++) {
+				int start = firstArc[state];
+				int slot = hash(arcLabels, arcTargets, start, firstArc[state + 1] - start) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = state + 1;
+			}
+			this.table = table;
+		}
+
+		private static int hash(char[] labels, int[] targets, int start, int count) {
+			int hash = count;
+			for (int i = start, end = start + count; i < end; i++) {
+				hash = hash * 31 + labels[i];
+				hash = hash * 31 + targets[i];
+			}
+			hash *= 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+	}
+}
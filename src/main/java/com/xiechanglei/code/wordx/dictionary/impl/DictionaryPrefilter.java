@@ -0,0 +1,192 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.Arrays;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+
+/**
+ * 词典的前置过滤器，在遍历前缀树之前排除不可能匹配的位置，并缩小每个位置的查找窗口
+ *      词首字位图、词尾字位图：没有词以这个字开始（结束）时不需要查词典
+ *      按词首字（词尾字）记录的最大词长
+ *      词内相邻两个字组成的字对的位图（按哈希取位），文本中出现词典里没有的字对时，词不可能跨过这个位置
+ * 过滤器只会多放行，不会漏掉词典中的词；删除词时不更新过滤器，只是放行的位置多一些
+ * 字对位图的填充率过高时（isSaturated）应该用词典重新构建
+ */
+public final class DictionaryPrefilter {
+	private static final int INDEX_LENGTH = 65536;
+	//最大词长用一个字节记录，超过时记为MAX_LENGTH，表示不限制
+	private static final int MAX_LENGTH = 255;
+	//每个字对至少分配的位数，填充率约为1/8时误判率约为12%
+	private static final int BITS_PER_BIGRAM = 8;
+	private static final int MIN_BITS = 12;
+	private static final int MAX_BITS = 26;
+
+	private final long[] first;
+	private final long[] last;
+	private final byte[] maxLengthByFirst;
+	private final byte[] maxLengthByLast;
+	private final long[] bigrams;
+	private final int shift;
+	//字对位图中置位的个数
+	private int bigramCount;
+
+	public DictionaryPrefilter() {
+		this(MIN_BITS);
+	}
+
+	private DictionaryPrefilter(int bits) {
+		first = new long[INDEX_LENGTH / 64];
+		last = new long[INDEX_LENGTH / 64];
+		maxLengthByFirst = new byte[INDEX_LENGTH];
+		maxLengthByLast = new byte[INDEX_LENGTH];
+		bigrams = new long[Math.max(1, (1 << bits) / 64)];
+		shift = 32 - bits;
+	}
+
+	private DictionaryPrefilter(DictionaryPrefilter source) {
+		first = source.first.clone();
+		last = source.last.clone();
+		maxLengthByFirst = source.maxLengthByFirst.clone();
+		maxLengthByLast = source.maxLengthByLast.clone();
+		bigrams = source.bigrams.clone();
+		shift = source.shift;
+		bigramCount = source.bigramCount;
+	}
+
+	/**
+	 * 根据词典中的词构建过滤器，位图大小按词典中的字对数确定
+	 * @param dictionary 词典
+	 * @return 过滤器，词典不支持遍历（isIterable返回false）时返回null，表示不过滤
+	 */
+	public static DictionaryPrefilter of(Dictionary dictionary) {
+		if (!dictionary.isIterable()) {
+			return null;
+		}
+		long[] count = new long[1];
+		dictionary.forEach(word -> count[0] += Math.max(0, word.length() - 1));
+		int bits = MIN_BITS;
+		while (bits < MAX_BITS && (1L << bits) < count[0] * BITS_PER_BIGRAM) {
+			bits++;
+		}
+		DictionaryPrefilter prefilter = new DictionaryPrefilter(bits);
+		dictionary.forEach(prefilter::add);
+		return prefilter;
+	}
+
+	public DictionaryPrefilter copy() {
+		return new DictionaryPrefilter(this);
+	}
+
+	/**
+	 * 字对位图的填充率是否已经过高，过高时过滤效果变差
+	 * @return 是否需要重新构建
+	 */
+	public boolean isSaturated() {
+		return 32 - shift < MAX_BITS && (long) bigramCount * BITS_PER_BIGRAM > (long) bigrams.length * 64;
+	}
+
+	public void add(String word) {
+		int len = word.length();
+		if (len == 0) {
+			return;
+		}
+		int length = Math.min(len, MAX_LENGTH);
+		char head = word.charAt(0);
+		char tail = word.charAt(len - 1);
+		first[head >>> 6] |= 1L << head;
+		last[tail >>> 6] |= 1L << tail;
+		if ((maxLengthByFirst[head] & 0xFF) < length) {
+			maxLengthByFirst[head] = (byte) length;
+		}
+		if ((maxLengthByLast[tail] & 0xFF) < length) {
+			maxLengthByLast[tail] = (byte) length;
+		}
+		for (int i = 1; i < len; i++) {
+			int h = hash(word.charAt(i - 1), word.charAt(i));
+			long bit = 1L << h;
+			if ((bigrams[h >>> 6] & bit) == 0) {
+				bigrams[h >>> 6] |= bit;
+				bigramCount++;
+			}
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(first, 0);
+		Arrays.fill(last, 0);
+		Arrays.fill(maxLengthByFirst, (byte) 0);
+		Arrays.fill(maxLengthByLast, (byte) 0);
+		Arrays.fill(bigrams, 0);
+		bigramCount = 0;
+	}
+
+	private int hash(char a, char b) {
+		return ((a << 16 | b) * 0x9E3779B1) >>> shift;
+	}
+
+	public boolean mayStart(char c) {
+		return (first[c >>> 6] & (1L << c)) != 0;
+	}
+
+	public boolean mayEnd(char c) {
+		return (last[c >>> 6] & (1L << c)) != 0;
+	}
+
+	/**
+	 * 两个字是否可能在某个词中相邻
+	 */
+	public boolean mayFollow(char a, char b) {
+		int h = hash(a, b);
+		return (bigrams[h >>> 6] & (1L << h)) != 0;
+	}
+
+	/**
+	 * 以start开始的词可能的最大长度
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param limit 最大长度
+	 * @return 窗口长度，0表示没有词以这个位置开始
+	 */
+	public int window(String text, int start, int limit) {
+		limit = Math.min(limit, text.length() - start);
+		if (start < 0 || limit <= 0) {
+			return 0;
+		}
+		char c = text.charAt(start);
+		if (!mayStart(c)) {
+			return 0;
+		}
+		int max = maxLengthByFirst[c] & 0xFF;
+		int cap = max == MAX_LENGTH ? limit : Math.min(limit, max);
+		int len = 1;
+		while (len < cap && mayFollow(text.charAt(start + len - 1), text.charAt(start + len))) {
+			len++;
+		}
+		return Math.min(len, cap);
+	}
+
+	/**
+	 * 以end结尾的词可能的最大长度
+	 * @param text 文本
+	 * @param end 结束位置（不包含）
+	 * @param limit 最大长度
+	 * @return 窗口长度，0表示没有词以这个位置结尾
+	 */
+	public int suffixWindow(String text, int end, int limit) {
+		limit = Math.min(limit, end);
+		if (end > text.length() || limit <= 0) {
+			return 0;
+		}
+		char c = text.charAt(end - 1);
+		if (!mayEnd(c)) {
+			return 0;
+		}
+		int max = maxLengthByLast[c] & 0xFF;
+		int cap = max == MAX_LENGTH ? limit : Math.min(limit, max);
+		int len = 1;
+		while (len < cap && mayFollow(text.charAt(end - len - 1), text.charAt(end - len))) {
+			len++;
+		}
+		return Math.min(len, cap);
+	}
+}
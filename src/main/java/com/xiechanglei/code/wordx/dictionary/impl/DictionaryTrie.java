@@ -3,83 +3,224 @@ package com.xiechanglei.code.wordx.dictionary.impl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+import com.xiechanglei.code.wordx.util.LookupCounter;
 
 /**
  * 词首字索引式前缀树
  * 前缀树的Java实现
- * 为前缀树的一级节点（词首字）建立索引（比二分查找要快）
+ * 为前缀树的一级节点（词首字）建立索引，词首字多时每个字符一个槽位，查找根节点只需读取一次数组
+ * 词首字少时根节点存放在按字排序的数组中，不为很小的词典分配整个索引
  * 用于查找一个指定的字符串是否在词典中
+ * 词尾节点上可以保存一个int类型的附加值（词频或权重），查找词的同时得到附加值
  */
 public class DictionaryTrie implements Dictionary {
-	private static final int DEFAULT_NODE_SIZE = 24000;
 	private static final Logger LOGGER = LoggerFactory.getLogger(DictionaryTrie.class);
-
+	//char只有65536个取值，根节点多时每个字符直接对应一个槽位，不会冲突
+	private static final int INDEX_LENGTH = 65536;
+	//根节点不超过这个数时存放在按字排序的数组中二分查找，超过后才换成直接索引
+	//直接索引每个实例占256KB（开启压缩指针）或512KB，场景词典、屏蔽词、反向索引和它们的副本大多只有很少的词首字
+	private static final int INDEX_THRESHOLD = 1024;
+	private static final TrieNode[] EMPTY = new TrieNode[0];
+
+	//首次加词时才分配，根节点不超过INDEX_THRESHOLD个时按字排序，超过后长度为INDEX_LENGTH、下标即字符
 	private TrieNode[] ROOT_NODES_INDEX;
 	private int maxLength;
-	private int nodesize;
+	//反向索引，按从后往前的顺序存储词
+	private volatile DictionaryTrie reverse;
+	//根节点的查找次数和命中次数，启用统计后才记录
+	private volatile LookupCounter counter;
 
+	/**
+	 * 根节点索引不再按取模分配槽位，参数不再起作用
+	 * @param nodeSize 槽位数
+	 * @deprecated 使用 {@link #DictionaryTrie()}
+	 */
+	@Deprecated
 	public DictionaryTrie(int nodeSize) {
-		LOGGER.info("初始化 词首字索引式前缀树词典");
-		this.nodesize = nodeSize;
-		ROOT_NODES_INDEX = new TrieNode[nodeSize];
+		this();
 	}
 
 	public DictionaryTrie() {
-		this(DEFAULT_NODE_SIZE);
+		LOGGER.info("初始化 词首字索引式前缀树词典");
+	}
+
+	/**
+	 * 复制节点，不复制查找统计
+	 */
+	private DictionaryTrie(DictionaryTrie source) {
+		TrieNode[] index = source.ROOT_NODES_INDEX;
+		if (index != null) {
+			TrieNode[] copy = new TrieNode[index.length];
+			for (int i = 0; i < index.length; i++) {
+				if (index[i] != null) {
+					copy[i] = index[i].copy();
+				}
+			}
+			ROOT_NODES_INDEX = copy;
+		}
+		maxLength = source.maxLength;
+		if (source.reverse != null) {
+			reverse = new DictionaryTrie(source.reverse);
+		}
+	}
+
+	@Override
+	public DictionaryTrie copy() {
+		return new DictionaryTrie(this);
 	}
 
 	@Override
 	public void clear() {
-		for (int i = 0; i < nodesize; i++) {
-			ROOT_NODES_INDEX[i] = null;
+		ROOT_NODES_INDEX = null;
+		if (reverse != null) {
+			reverse.clear();
 		}
 	}
 
 	/**
-	 * 统计根节点冲突情况及预分配的数组空间利用情况
+	 * 启用或停用根节点的查找统计，统计使用LongAdder，多线程查找时竞争很小
+	 * @param enabled 是否启用
 	 */
-	public void showConflict() {
-		int emptySlot = 0;
-		//key:冲突长度 value:冲突个数
-		Map<Integer, Integer> map = new HashMap<>();
-		for (TrieNode node : ROOT_NODES_INDEX) {
-			if (node == null) {
-				emptySlot++;
-			} else {
-				int i = 0;
-				while ((node = node.getSibling()) != null) {
-					i++;
+	public void setStatistics(boolean enabled) {
+		if (enabled) {
+			if (counter == null) {
+				counter = new LookupCounter();
+			}
+		} else {
+			counter = null;
+		}
+	}
+
+	/**
+	 * 根节点的查找次数
+	 * @return 次数，未启用统计则返回0
+	 */
+	public long getLookupCount() {
+		LookupCounter counter = this.counter;
+		return counter == null ? 0 : counter.getLookupCount();
+	}
+
+	/**
+	 * 根节点的命中次数，即查找的字符是词首字的次数
+	 * @return 次数，未启用统计则返回0
+	 */
+	public long getHitCount() {
+		LookupCounter counter = this.counter;
+		return counter == null ? 0 : counter.getHitCount();
+	}
+
+	/**
+	 * 根节点（词首字）的个数
+	 * @return 个数
+	 */
+	public int getRootCount() {
+		TrieNode[] index = ROOT_NODES_INDEX;
+		int count = 0;
+		if (index != null) {
+			for (TrieNode node : index) {
+				if (node != null) {
+					count++;
 				}
-				if (i > 0) {
-					Integer count = map.get(i);
-					if (count == null) {
-						count = 1;
-					} else {
-						count++;
-					}
-					map.put(i, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 估算占用的堆内存，按开启压缩指针的64位JVM计算：对象头12字节，引用4字节，按8字节对齐
+	 * 包含根节点索引、所有节点及其子节点数组，不包含反向索引
+	 * @return 字节数
+	 */
+	public long getFootprint() {
+		TrieNode[] index = ROOT_NODES_INDEX;
+		if (index == null) {
+			return 0;
+		}
+		long footprint = align(16 + 4L * index.length);
+		for (TrieNode node : index) {
+			if (node != null) {
+				footprint += footprint(node);
+			}
+		}
+		return footprint;
+	}
+
+	private static long footprint(TrieNode node) {
+		//对象头12 + char 2 + boolean 1 + int 4 + 引用4
+		long footprint = 24;
+		if (node.children != EMPTY) {
+			footprint += align(16 + 4L * node.children.length);
+		}
+		for (TrieNode child : node.children) {
+			footprint += footprint(child);
+		}
+		return footprint;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * 遍历一次前缀树收集统计信息，不创建词的字符串
+	 * 内存占用包含反向索引
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		TrieNode[] index = ROOT_NODES_INDEX;
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().rootSlots(index == null ? 0 : index.length).maxLength(getMaxLength());
+		long nodes = 0;
+		if (index != null) {
+			for (TrieNode node : index) {
+				if (node != null) {
+					long before = builder.getCountedWords();
+					nodes += collect(node, 1, builder);
+					builder.root(builder.getCountedWords() - before);
 				}
 			}
 		}
-		int count = 0;
-		for (int key : map.keySet()) {
-			int value = map.get(key);
-			count += key * value;
-			LOGGER.info("冲突次数为：" + key + " 的元素个数：" + value);
+		DictionaryTrie reverse = this.reverse;
+		return builder.nodeCount(nodes).footprint(getFootprint() + (reverse == null ? 0 : reverse.getFootprint())).build();
+	}
+
+	/**
+	 * @return 以node为根的子树的节点数
+	 */
+	private static long collect(TrieNode node, int depth, DictionaryStats.Builder builder) {
+		if (node.isTerminal()) {
+			builder.word(depth);
+		}
+		long nodes = 1;
+		for (TrieNode child : node.children) {
+			nodes += collect(child, depth + 1, builder);
 		}
-		LOGGER.info("冲突次数：" + count);
-		LOGGER.info("总槽数：" + nodesize);
-		LOGGER.info("用槽数：" + (nodesize - emptySlot));
-		LOGGER.info("使用率：" + (float) (nodesize - emptySlot) / nodesize * 100 + "%");
-		LOGGER.info("剩槽数：" + emptySlot);
+		return nodes;
+	}
+
+	/**
+	 * 输出根节点索引的使用情况、内存占用和查找统计
+	 * @deprecated 使用getStats取得统计信息，自行输出或导出为监控指标
+	 */
+	@Deprecated
+	public void showConflict() {
+		DictionaryStats stats = getStats();
+		long lookups = getLookupCount();
+		long hits = getHitCount();
+		LOGGER.info(stats.toString());
+		if (stats.getRootSlots() > 0) {
+			LOGGER.info("使用率：" + (float) stats.getRootCount() / stats.getRootSlots() * 100 + "%");
+		}
+		LOGGER.info("根节点查找次数：" + lookups + "，命中次数：" + hits + (lookups > 0 ? "，命中率：" + (float) hits / lookups * 100 + "%" : ""));
 	}
 
 	/**
@@ -90,29 +231,58 @@ public class DictionaryTrie implements Dictionary {
 	 * @return 字符对应的根节点
 	 */
 	private TrieNode getRootNodeIfNotExistThenCreate(char character) {
-		TrieNode trieNode = getRootNode(character);
+		TrieNode[] index = ROOT_NODES_INDEX;
+		TrieNode trieNode = rootOf(index, character);
 		if (trieNode == null) {
 			trieNode = new TrieNode(character);
-			addRootNode(trieNode);
+			ROOT_NODES_INDEX = addRoot(index, trieNode);
 		}
 		return trieNode;
 	}
 
 	/**
-	 * 新增一个根节点
-	 * @param rootNode 根节点
+	 * 在根节点数组中查找字符对应的根节点
 	 */
-	private void addRootNode(TrieNode rootNode) {
-		//计算节点的存储索引
-		int index = rootNode.getCharacter() % nodesize;
-		//检查索引是否和其他节点冲突
-		TrieNode existTrieNode = ROOT_NODES_INDEX[index];
-		if (existTrieNode != null) {
-			//有冲突，将冲突节点附加到当前节点之后
-			rootNode.setSibling(existTrieNode);
+	private static TrieNode rootOf(TrieNode[] index, char character) {
+		if (index == null) {
+			return null;
 		}
-		//新增的节点总是在最前
-		ROOT_NODES_INDEX[index] = rootNode;
+		if (index.length == INDEX_LENGTH) {
+			return index[character];
+		}
+		int i = TrieNode.indexOf(index, character);
+		return i >= 0 ? index[i] : null;
+	}
+
+	/**
+	 * 加入一个不存在的根节点，根节点少时插入有序数组，超过INDEX_THRESHOLD个时换成直接索引
+	 * 有序数组每次复制一份再替换，查找时看到的总是完整的数组
+	 * @return 新的根节点数组
+	 */
+	private static TrieNode[] addRoot(TrieNode[] index, TrieNode node) {
+		if (index == null) {
+			TrieNode[] array = new TrieNode[1];
+			array[0] = node;
+			return array;
+		}
+		if (index.length == INDEX_LENGTH) {
+			index[node.character] = node;
+			return index;
+		}
+		if (index.length < INDEX_THRESHOLD) {
+			int i = -TrieNode.indexOf(index, node.character) - 1;
+			TrieNode[] array = new TrieNode[index.length + 1];
+			System.arraycopy(index, 0, array, 0, i);
+			array[i] = node;
+			System.arraycopy(index, i, array, i + 1, index.length - i);
+			return array;
+		}
+		TrieNode[] direct = new TrieNode[INDEX_LENGTH];
+		for (TrieNode root : index) {
+			direct[root.character] = root;
+		}
+		direct[node.character] = node;
+		return direct;
 	}
 
 	/**
@@ -122,12 +292,10 @@ public class DictionaryTrie implements Dictionary {
 	 * @return 字符对应的根节点
 	 */
 	private TrieNode getRootNode(char character) {
-		//计算节点的存储索引
-		int index = character % nodesize;
-		TrieNode trieNode = ROOT_NODES_INDEX[index];
-		while (trieNode != null && character != trieNode.getCharacter()) {
-			//如果节点和其他节点冲突，则需要链式查找
-			trieNode = trieNode.getSibling();
+		TrieNode trieNode = rootOf(ROOT_NODES_INDEX, character);
+		LookupCounter counter = this.counter;
+		if (counter != null) {
+			counter.record(trieNode != null);
 		}
 		return trieNode;
 	}
@@ -209,6 +377,167 @@ public class DictionaryTrie implements Dictionary {
 		return false;
 	}
 
+	@Override
+	public int getPayload(String item, int start, int length) {
+		if (start < 0 || length < 1 || item == null || item.length() < start + length) {
+			return 0;
+		}
+		TrieNode node = getRootNode(item.charAt(start));
+		for (int i = start + 1; i < start + length && node != null; i++) {
+			node = node.getChild(item.charAt(i));
+		}
+		return node != null && node.isTerminal() ? node.payload : 0;
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		return Dictionary.matchLength(longestMatchWithPayload(text, start, limit));
+	}
+
+	@Override
+	public long longestMatchWithPayload(String text, int start, int limit) {
+		if (start < 0 || text == null || start >= text.length()) {
+			return 0;
+		}
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int payload = 0;
+		TrieNode node = getRootNode(text.charAt(start));
+		for (int i = start + 1; node != null; i++) {
+			if (node.isTerminal()) {
+				longest = i - start;
+				payload = node.payload;
+			}
+			if (i >= end) {
+				break;
+			}
+			node = node.getChild(text.charAt(i));
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payload);
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (start < 0 || text == null || start >= text.length()) {
+			return;
+		}
+		int end = Math.min(start + limit, text.length());
+		TrieNode node = getRootNode(text.charAt(start));
+		for (int i = start + 1; node != null; i++) {
+			if (node.isTerminal()) {
+				handler.match(start, i - start);
+			}
+			if (i >= end) {
+				break;
+			}
+			node = node.getChild(text.charAt(i));
+		}
+	}
+
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		DictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatch(text, end, limit);
+		}
+		return Dictionary.matchLength(reverse.longestBackwardMatch(text, end, limit));
+	}
+
+	@Override
+	public long longestSuffixMatchWithPayload(String text, int end, int limit) {
+		DictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatchWithPayload(text, end, limit);
+		}
+		return reverse.longestBackwardMatch(text, end, limit);
+	}
+
+	/**
+	 * 在反向索引中从end-1开始向前遍历文本，反向索引中的词尾节点保存着同样的附加值
+	 */
+	private long longestBackwardMatch(String text, int end, int limit) {
+		if (text == null || end <= 0 || end > text.length()) {
+			return 0;
+		}
+		int begin = Math.max(end - limit, 0);
+		int longest = 0;
+		int payload = 0;
+		TrieNode node = getRootNode(text.charAt(end - 1));
+		for (int i = end - 1; node != null; i--) {
+			if (node.isTerminal()) {
+				longest = end - i;
+				payload = node.payload;
+			}
+			if (i <= begin) {
+				break;
+			}
+			node = node.getChild(text.charAt(i - 1));
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payload);
+	}
+
+	@Override
+	public void setReverseIndex(boolean enabled) {
+		if (!enabled) {
+			reverse = null;
+			return;
+		}
+		if (reverse != null) {
+			return;
+		}
+		//先在新的前缀树中建好，再通过volatile字段发布，查找时看不到只建了一半的反向索引
+		DictionaryTrie trie = new DictionaryTrie();
+		int[] count = new int[1];
+		forEachWithPayload((word, payload) -> {
+			trie.add(ReversedKeys.reverse(word), payload);
+			count[0]++;
+		});
+		reverse = trie;
+		LOGGER.info("建立反向索引，词数：" + count[0]);
+	}
+
+	@Override
+	public boolean isReverseIndex() {
+		return reverse != null;
+	}
+
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		forEachWithPayload((word, payload) -> action.accept(word));
+	}
+
+	@Override
+	public void forEachWithPayload(ObjIntConsumer<String> action) {
+		TrieNode[] index = ROOT_NODES_INDEX;
+		if (index == null) {
+			return;
+		}
+		for (TrieNode node : index) {
+			if (node != null) {
+				collect(node, new StringBuilder(), action);
+			}
+		}
+	}
+
+	/**
+	 * 遍历节点下的所有词
+	 */
+	private void collect(TrieNode node, StringBuilder prefix, ObjIntConsumer<String> action) {
+		prefix.append(node.getCharacter());
+		if (node.isTerminal()) {
+			action.accept(prefix.toString(), node.payload);
+		}
+		for (TrieNode child : node.children) {
+			collect(child, prefix, action);
+		}
+		prefix.setLength(prefix.length() - 1);
+	}
+
 	@Override
 	public void removeAll(List<String> items) {
 		for (String item : items) {
@@ -253,6 +582,10 @@ public class DictionaryTrie implements Dictionary {
 		if (node.isTerminal()) {
 			//设置为非叶子节点，效果相当于从词典中移除词
 			node.setTerminal(false);
+			node.payload = 0;
+			if (reverse != null) {
+				reverse.remove(ReversedKeys.reverse(item));
+			}
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug("成功从词典中移除词：{}", item);
 			}
@@ -270,8 +603,26 @@ public class DictionaryTrie implements Dictionary {
 		}
 	}
 
+	/**
+	 * 词已经存在时保留原来的附加值
+	 */
 	@Override
 	public void add(String item) {
+		add(item, 0, false);
+	}
+
+	/**
+	 * 附加值保存在词尾节点上，词已经存在时覆盖原来的附加值
+	 */
+	@Override
+	public void add(String item, int payload) {
+		add(item, payload, true);
+	}
+
+	/**
+	 * @param overwrite 词已经存在时是否覆盖原来的附加值
+	 */
+	private void add(String item, int payload, boolean overwrite) {
 		//去掉首尾空白字符
 		item = item.trim();
 		int len = item.length();
@@ -291,8 +642,14 @@ public class DictionaryTrie implements Dictionary {
 			//改变顶级节点
 			node = child;
 		}
-		//设置终结字符，表示从根节点遍历到此是一个合法的词
+		//先写附加值再设置终结字符，表示从根节点遍历到此是一个合法的词
+		if (overwrite || !node.isTerminal()) {
+			node.payload = payload;
+		}
 		node.setTerminal(true);
+		if (reverse != null) {
+			reverse.add(ReversedKeys.reverse(item), payload, overwrite);
+		}
 	}
 
 	@Override
@@ -303,13 +660,28 @@ public class DictionaryTrie implements Dictionary {
 	private static class TrieNode implements Comparable<Object> {
 		private char character;
 		private boolean terminal;
-		private TrieNode sibling;
-		private TrieNode[] children = new TrieNode[0];
+		//词的附加值，只在词尾节点上有意义
+		private int payload;
+		//叶子节点共用同一个空数组
+		private TrieNode[] children = EMPTY;
 
 		public TrieNode(char character) {
 			this.character = character;
 		}
 
+		public TrieNode copy() {
+			TrieNode node = new TrieNode(character);
+			node.terminal = terminal;
+			node.payload = payload;
+			if (children != EMPTY) {
+				node.children = new TrieNode[children.length];
+				for (int i = 0; i < children.length; i++) {
+					node.children[i] = children[i].copy();
+				}
+			}
+			return node;
+		}
+
 		public boolean isTerminal() {
 			return terminal;
 		}
@@ -322,25 +694,38 @@ public class DictionaryTrie implements Dictionary {
 			return character;
 		}
 
-		public TrieNode getSibling() {
-			return sibling;
-		}
-
-		public void setSibling(TrieNode sibling) {
-			this.sibling = sibling;
-		}
-
 		public Collection<TrieNode> getChildren() {
 			return Arrays.asList(children);
 		}
 
+		/**
+		 * 二分查找子节点，直接比较字，分词时查词典不产生垃圾
+		 * @return 与Arrays.binarySearch相同，找不到时为-(插入位置)-1
+		 */
+		private static int indexOf(TrieNode[] children, char character) {
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				char c = children[mid].character;
+				if (c < character) {
+					low = mid + 1;
+				} else if (c > character) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
 		/**
 		 * 利用二分搜索算法从有序数组中找到特定的节点
 		 * @param character 待查找节点
 		 * @return NULL OR 节点数据
 		 */
 		public TrieNode getChild(char character) {
-			int index = Arrays.binarySearch(children, character);
+			int index = indexOf(children, character);
 			if (index >= 0) {
 				return children[index];
 			}
@@ -410,6 +795,9 @@ public class DictionaryTrie implements Dictionary {
 	}
 
 	public void show() {
+		if (ROOT_NODES_INDEX == null) {
+			return;
+		}
 		for (TrieNode node : ROOT_NODES_INDEX) {
 			if (node != null) {
 				show(node, "");
@@ -1,253 +1,509 @@
 package com.xiechanglei.code.wordx.dictionary.impl;
 
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+import com.xiechanglei.code.wordx.util.DoubleArrayBuilder;
+import com.xiechanglei.code.wordx.util.DoubleArrayImage;
 
 /**
  * 双数组前缀树的Java实现
  * 用于查找一个指定的字符串是否在词典中
  * An Implementation of Double-Array Trie: http://linux.thai.net/~thep/datrie/datrie.html
+ * 构建好的双数组可以通过save方法保存为镜像文件，再通过load方法以内存映射的方式加载
+ * 附加值存储在与base、check等长的第三个数组中，下标为词尾节点，所有的词都没有附加值时不分配
+ * 构建的双数组直接用int数组查询，只有加载的镜像通过IntBuffer读取映射的文件
  */
 public class DoubleArrayDictionaryTrie implements Dictionary {
-	private static final int DEFAULT_SIZE = 2600000;
 	private static final Logger LOGGER = LoggerFactory.getLogger(DoubleArrayDictionaryTrie.class);
 	private AtomicInteger maxLength = new AtomicInteger();
 	private int SIZE;
 
-	private static class Node {
-		private int code;
-		private int depth;
-		private int left;
-		private int right;
-
-		@Override
-		public String toString() {
-			return "Node{" + "code=" + code + "[" + (char) code + "]" + ", depth=" + depth + ", left=" + left + ", right=" + right + '}';
-		}
-	};
-
+	//构建的双数组，查询直接访问数组
 	private int[] check;
 	private int[] base;
-	private boolean[] used;
-	private int nextCheckPos;
-
+	//词尾节点的附加值，没有附加值时为null
+	private int[] payloads;
+	//加载镜像时指向映射的文件，和上面的数组只有一组不为null
+	private IntBuffer checkData;
+	private IntBuffer baseData;
+	private IntBuffer payloadData;
+	//是否在构建时同时建立反向索引
+	private boolean reverseIndex;
+	//反向索引，按从后往前的顺序存储词
+	private volatile DoubleArrayDictionaryTrie reverse;
+
+	/**
+	 * @param size 构建时的初始容量，小于按词估算的容量时按估算值分配，不够时自动扩容
+	 */
 	public DoubleArrayDictionaryTrie(int size) {
 		this.SIZE = size;
 		LOGGER.info("初始化双数组前缀树词典");
 	}
 
 	public DoubleArrayDictionaryTrie() {
-		this(DEFAULT_SIZE);
+		this(0);
 	}
 
-	private List<Node> toTree(Node parent, List<String> words) {
-		List<Node> siblings = new ArrayList<>();
-		int prev = 0;
-
-		for (int i = parent.left; i < parent.right; i++) {
-			if (words.get(i).length() < parent.depth)
-				continue;
+	/**
+	 * 副本和原词典共用构建好的双数组
+	 */
+	private DoubleArrayDictionaryTrie(DoubleArrayDictionaryTrie source) {
+		SIZE = source.SIZE;
+		maxLength.set(source.maxLength.get());
+		check = source.check;
+		base = source.base;
+		payloads = source.payloads;
+		checkData = source.checkData;
+		baseData = source.baseData;
+		payloadData = source.payloadData;
+		reverseIndex = source.reverseIndex;
+		if (source.reverse != null) {
+			reverse = new DoubleArrayDictionaryTrie(source.reverse);
+		}
+	}
 
-			String word = words.get(i);
+	/**
+	 * 构建后的双数组不会再修改，副本和原词典共用
+	 */
+	@Override
+	public DoubleArrayDictionaryTrie copy() {
+		return new DoubleArrayDictionaryTrie(this);
+	}
 
-			int cur = 0;
-			if (word.length() != parent.depth) {
-				cur = (int) word.charAt(parent.depth);
+	private void init(SortedWords words) {
+		if (words.size() == 0) {
+			return;
+		}
+		DoubleArrayBuilder builder = new DoubleArrayBuilder(words.words, null, SIZE).build();
+		LOGGER.info("构建双数组前缀树，" + builder);
+		int[] base = builder.getBase();
+		int[] check = builder.getCheck();
+		if (words.payloads != null) {
+			int[] payloads = new int[check.length];
+			for (int i = 0; i < words.size(); i++) {
+				String word = words.words.get(i);
+				payloads[leaf(base, check, word, 0, word.length())] = words.payloads[i];
 			}
+			this.payloads = payloads;
+		}
+		this.check = check;
+		this.base = base;
+	}
 
-			if (cur != prev || siblings.isEmpty()) {
-				Node node = new Node();
-				node.depth = parent.depth + 1;
-				node.code = cur;
-				node.left = i;
-				if (!siblings.isEmpty()) {
-					siblings.get(siblings.size() - 1).right = i;
-				}
-				siblings.add(node);
-			}
+	private boolean isEmpty() {
+		return base == null && baseData == null;
+	}
 
-			prev = cur;
-		}
+	/**
+	 * 查找词的词尾节点
+	 * @return 词尾节点的下标，不是词则返回-1
+	 */
+	private static int leaf(int[] base, int[] check, String item, int start, int length) {
+		int size = check.length;
+		//base[0]=1
+		int lastChar = base[0];
+		int index;
 
-		if (!siblings.isEmpty()) {
-			siblings.get(siblings.size() - 1).right = parent.right;
-			if (LOGGER.isDebugEnabled()) {
-				if (words.size() < 10) {
-					LOGGER.debug("************************************************");
-					LOGGER.debug("树信息：");
-					siblings.forEach(s -> LOGGER.debug(s.toString()));
-					LOGGER.debug("************************************************");
-				}
+		for (int i = start; i < start + length; i++) {
+			index = lastChar + (int) item.charAt(i);
+			if (index >= size || index < 0) {
+				return -1;
+			}
+			if (lastChar == check[index]) {
+				lastChar = base[index];
+			} else {
+				return -1;
 			}
 		}
-		return siblings;
+		index = lastChar;
+		if (index >= size || index < 0) {
+			return -1;
+		}
+		return base[index] < 0 && index == check[index] ? index : -1;
 	}
 
-	private int toDoubleArray(List<Node> siblings, List<String> words) {
-		int begin = 0;
-		int index = (siblings.get(0).code > nextCheckPos) ? siblings.get(0).code : nextCheckPos;
-		boolean isFirst = true;
-
-		outer: while (true) {
-			index++;
-
-			if (check[index] != 0) {
-				continue;
-			} else if (isFirst) {
-				nextCheckPos = index;
-				isFirst = false;
+	/**
+	 * 在映射的镜像文件中查找词的词尾节点
+	 * 映射的文件的查询都放在单独的方法中，构建的双数组查询时不经过IntBuffer
+	 */
+	private static int leaf(IntBuffer base, IntBuffer check, String item, int start, int length) {
+		int size = check.limit();
+		int lastChar = base.get(0);
+		int index;
+		for (int i = start; i < start + length; i++) {
+			index = lastChar + (int) item.charAt(i);
+			if (index >= size || index < 0 || lastChar != check.get(index)) {
+				return -1;
 			}
+			lastChar = base.get(index);
+		}
+		index = lastChar;
+		if (index >= size || index < 0) {
+			return -1;
+		}
+		return base.get(index) < 0 && index == check.get(index) ? index : -1;
+	}
 
-			begin = index - siblings.get(0).code;
+	@Override
+	public int getMaxLength() {
+		return maxLength.get();
+	}
 
-			if (used[begin]) {
-				continue;
+	@Override
+	public boolean contains(String item, int start, int length) {
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("开始查词典：{}", item.substring(start, start + length));
+		}
+		int[] base = this.base;
+		int leaf;
+		if (base != null) {
+			leaf = leaf(base, check, item, start, length);
+		} else if (baseData != null) {
+			leaf = leaf(baseData, checkData, item, start, length);
+		} else {
+			return false;
+		}
+		if (leaf >= 0) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("在词典中查到词：{}", item.substring(start, start + length));
 			}
+			return true;
+		}
+		return false;
+	}
 
-			for (int i = 1; i < siblings.size(); i++) {
-				if (check[begin + siblings.get(i).code] != 0) {
-					continue outer;
-				}
-			}
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
 
-			break;
+	@Override
+	public int getPayload(String item, int start, int length) {
+		int[] payloads = this.payloads;
+		if (payloads != null) {
+			int leaf = leaf(base, check, item, start, length);
+			return leaf < 0 ? 0 : payloads[leaf];
 		}
+		IntBuffer payloadData = this.payloadData;
+		if (payloadData != null) {
+			int leaf = leaf(baseData, checkData, item, start, length);
+			return leaf < 0 ? 0 : payloadData.get(leaf);
+		}
+		return 0;
+	}
 
-		used[begin] = true;
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		return Dictionary.matchLength(longestMatchWithPayload(text, start, limit));
+	}
 
-		for (int i = 0; i < siblings.size(); i++) {
-			check[begin + siblings.get(i).code] = begin;
+	@Override
+	public long longestMatchWithPayload(String text, int start, int limit) {
+		int[] base = this.base;
+		int[] check = this.check;
+		if (start < 0 || text == null) {
+			return 0;
 		}
+		if (base == null) {
+			return baseData == null ? 0 : longestMappedMatch(text, start, limit);
+		}
+		int size = check.length;
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int found = -1;
+		int lastChar = base[0];
+		for (int i = start; i < end; i++) {
+			int index = lastChar + (int) text.charAt(i);
+			if (index >= size || index < 0 || lastChar != check[index]) {
+				break;
+			}
+			lastChar = base[index];
+			//词尾节点
+			if (lastChar < size && lastChar >= 0 && base[lastChar] < 0 && lastChar == check[lastChar]) {
+				longest = i - start + 1;
+				found = lastChar;
+			}
+		}
+		int[] payloads = this.payloads;
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payloads == null ? 0 : payloads[found]);
+	}
 
-		for (int i = 0; i < siblings.size(); i++) {
-			List<Node> newSiblings = toTree(siblings.get(i), words);
-
-			if (newSiblings.isEmpty()) {
-				base[begin + siblings.get(i).code] = -1;
-			} else {
-				int h = toDoubleArray(newSiblings, words);
-				base[begin + siblings.get(i).code] = h;
+	private long longestMappedMatch(String text, int start, int limit) {
+		IntBuffer base = baseData;
+		IntBuffer check = checkData;
+		int size = check.limit();
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int found = -1;
+		int lastChar = base.get(0);
+		for (int i = start; i < end; i++) {
+			int index = lastChar + (int) text.charAt(i);
+			if (index >= size || index < 0 || lastChar != check.get(index)) {
+				break;
+			}
+			lastChar = base.get(index);
+			if (lastChar < size && lastChar >= 0 && base.get(lastChar) < 0 && lastChar == check.get(lastChar)) {
+				longest = i - start + 1;
+				found = lastChar;
 			}
 		}
-		return begin;
+		IntBuffer payloads = payloadData;
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payloads == null ? 0 : payloads.get(found));
 	}
 
-	private void allocate(int size) {
-		check = null;
-		base = null;
-		used = null;
-		nextCheckPos = 0;
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		int[] base = this.base;
+		int[] check = this.check;
+		if (start < 0 || text == null) {
+			return;
+		}
+		if (base == null) {
+			if (baseData != null) {
+				mappedPrefixSearch(text, start, limit, handler);
+			}
+			return;
+		}
+		int size = check.length;
+		int end = Math.min(start + limit, text.length());
+		int lastChar = base[0];
+		for (int i = start; i < end; i++) {
+			int index = lastChar + (int) text.charAt(i);
+			if (index >= size || index < 0 || lastChar != check[index]) {
+				break;
+			}
+			lastChar = base[index];
+			//词尾节点
+			if (lastChar < size && lastChar >= 0 && base[lastChar] < 0 && lastChar == check[lastChar]) {
+				handler.match(start, i - start + 1);
+			}
+		}
+	}
 
-		base = new int[size];
-		check = new int[size];
-		used = new boolean[size];
-		base[0] = 1;
+	private void mappedPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		IntBuffer base = baseData;
+		IntBuffer check = checkData;
+		int size = check.limit();
+		int end = Math.min(start + limit, text.length());
+		int lastChar = base.get(0);
+		for (int i = start; i < end; i++) {
+			int index = lastChar + (int) text.charAt(i);
+			if (index >= size || index < 0 || lastChar != check.get(index)) {
+				break;
+			}
+			lastChar = base.get(index);
+			if (lastChar < size && lastChar >= 0 && base.get(lastChar) < 0 && lastChar == check.get(lastChar)) {
+				handler.match(start, i - start + 1);
+			}
+		}
 	}
 
-	private void init(List<String> words) {
-		if (words == null || words.isEmpty()) {
-			return;
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		DoubleArrayDictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatch(text, end, limit);
 		}
+		return reverse.longestBackwardMatch(text, end, limit);
+	}
 
-		//前缀树的虚拟根节点
-		Node rootNode = new Node();
-		rootNode.left = 0;
-		rootNode.right = words.size();
-		rootNode.depth = 0;
+	/**
+	 * 在反向索引中从end-1开始向前遍历文本
+	 */
+	private int longestBackwardMatch(String text, int end, int limit) {
+		int[] base = this.base;
+		int[] check = this.check;
+		if (text == null || end <= 0 || end > text.length()) {
+			return 0;
+		}
+		if (base == null) {
+			return baseData == null ? 0 : longestMappedBackwardMatch(text, end, limit);
+		}
+		int size = check.length;
+		int begin = Math.max(end - limit, 0);
+		int longest = 0;
+		int lastChar = base[0];
+		for (int i = end - 1; i >= begin; i--) {
+			int index = lastChar + (int) text.charAt(i);
+			if (index >= size || index < 0 || lastChar != check[index]) {
+				break;
+			}
+			lastChar = base[index];
+			//词尾节点
+			if (lastChar < size && lastChar >= 0 && base[lastChar] < 0 && lastChar == check[lastChar]) {
+				longest = end - i;
+			}
+		}
+		return longest;
+	}
 
-		int size = SIZE;
-		while (true) {
-			try {
-				allocate(size);
-				List<Node> siblings = toTree(rootNode, words);
-				toDoubleArray(siblings, words);
+	private int longestMappedBackwardMatch(String text, int end, int limit) {
+		IntBuffer base = baseData;
+		IntBuffer check = checkData;
+		int size = check.limit();
+		int begin = Math.max(end - limit, 0);
+		int longest = 0;
+		int lastChar = base.get(0);
+		for (int i = end - 1; i >= begin; i--) {
+			int index = lastChar + (int) text.charAt(i);
+			if (index >= size || index < 0 || lastChar != check.get(index)) {
 				break;
-			} catch (Exception e) {
-				size += size / 10;
-				LOGGER.error("分配空间不够，增加至： " + size);
+			}
+			lastChar = base.get(index);
+			if (lastChar < size && lastChar >= 0 && base.get(lastChar) < 0 && lastChar == check.get(lastChar)) {
+				longest = end - i;
 			}
 		}
+		return longest;
+	}
 
-		words.clear();
-		words = null;
-		used = null;
+	/**
+	 * 遍历、统计、保存不在查询的路径上，构建的双数组也包装成IntBuffer处理
+	 */
+	private IntBuffer baseView() {
+		return base != null ? IntBuffer.wrap(base) : baseData;
 	}
 
-	@Override
-	public int getMaxLength() {
-		return maxLength.get();
+	private IntBuffer checkView() {
+		return check != null ? IntBuffer.wrap(check) : checkData;
+	}
+
+	private IntBuffer payloadView() {
+		return payloads != null ? IntBuffer.wrap(payloads) : payloadData;
 	}
 
+	/**
+	 * 双数组构建后不能再增加词，反向索引需要在addAll方法之前启用
+	 * 保存镜像时反向索引一起保存，加载带反向索引的镜像时自动启用
+	 */
 	@Override
-	public boolean contains(String item, int start, int length) {
-		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("开始查词典：{}", item.substring(start, start + length));
+	public void setReverseIndex(boolean enabled) {
+		if (enabled && reverse == null && !isEmpty()) {
+			LOGGER.warn("双数组前缀树已经构建，反向索引需要在addAll方法之前启用");
+			return;
 		}
-		if (base == null) {
-			return false;
+		reverseIndex = enabled;
+		if (!enabled) {
+			reverse = null;
 		}
+	}
 
-		//base[0]=1
-		int lastChar = base[0];
-		int index;
+	@Override
+	public boolean isReverseIndex() {
+		return reverse != null;
+	}
 
-		for (int i = start; i < start + length; i++) {
-			index = lastChar + (int) item.charAt(i);
-			if (index >= check.length || index < 0) {
-				return false;
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		forEachWithPayload((word, payload) -> action.accept(word));
+	}
+
+	/**
+	 * 按字典序遍历所有的词
+	 * 双数组中找一个节点的子节点要试遍所有字符，先扫描一次check数组，把槽位按父节点的偏移量分组，再深度遍历
+	 */
+	@Override
+	public void forEachWithPayload(ObjIntConsumer<String> action) {
+		if (isEmpty()) {
+			return;
+		}
+		IntBuffer base = baseView();
+		IntBuffer check = checkView();
+		int size = check.limit();
+		//children中[first[b], first[b+1])为偏移量是b的节点的子节点，按编码排序
+		int[] first = new int[size + 1];
+		for (int i = 1; i < size; i++) {
+			int parent = check.get(i);
+			if (parent > 0 && parent < size) {
+				first[parent]++;
 			}
-			if (lastChar == check[index]) {
-				lastChar = base[index];
-			} else {
-				return false;
+		}
+		for (int b = 1; b <= size; b++) {
+			first[b] += first[b - 1];
+		}
+		int[] children = new int[first[size]];
+		for (int i = size - 1; i > 0; i--) {
+			int parent = check.get(i);
+			if (parent > 0 && parent < size) {
+				children[--first[parent]] = i;
 			}
 		}
-		index = lastChar;
-		if (index >= check.length || index < 0) {
-			return false;
+		collect(base, payloadView(), base.get(0), first, children, new StringBuilder(), action);
+	}
+
+	/**
+	 * 遍历偏移量为begin的节点下的所有词，词尾节点在begin+0，总是第一个子节点
+	 */
+	private static void collect(IntBuffer base, IntBuffer payloads, int begin, int[] first, int[] children, StringBuilder prefix, ObjIntConsumer<String> action) {
+		if (begin <= 0 || begin >= first.length - 1) {
+			return;
 		}
-		if (base[index] < 0 && index == check[index]) {
-			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("在词典中查到词：{}", item.substring(start, start + length));
+		for (int k = first[begin]; k < first[begin + 1]; k++) {
+			int index = children[k];
+			if (index == begin) {
+				if (base.get(index) < 0) {
+					action.accept(prefix.toString(), payloads == null ? 0 : payloads.get(index));
+				}
+			} else {
+				prefix.append((char) (index - begin));
+				collect(base, payloads, base.get(index), first, children, prefix, action);
+				prefix.setLength(prefix.length() - 1);
 			}
-			return true;
 		}
-		return false;
 	}
 
 	@Override
-	public boolean contains(String item) {
-		return contains(item, 0, item.length());
+	public void addAll(List<String> items) {
+		addAll(items, null);
 	}
 
+	/**
+	 * 反向索引只用于查找词的长度，附加值从正向的双数组中取
+	 */
 	@Override
-	public void addAll(List<String> items) {
-		if (check != null) {
+	public void addAll(List<String> items, int[] payloads) {
+		if (!isEmpty()) {
 			throw new RuntimeException("addAll method can just be used once after clear method!");
 		}
 
-		items = items.stream().map(item -> item.trim()).filter(item -> {
-			//统计最大词长
-			int len = item.length();
-			if (len > maxLength.get()) {
-				maxLength.set(len);
-			}
-			return len > 0;
-		}).sorted().collect(Collectors.toList());
+		SortedWords words = new SortedWords(items, payloads);
+		//统计最大词长
+		maxLength.set(words.maxLength);
 		if (LOGGER.isDebugEnabled()) {
 			//for debug
-			if (items.size() < 10) {
-				items.forEach(item -> LOGGER.debug(item));
+			if (words.size() < 10) {
+				words.words.forEach(item -> LOGGER.debug(item));
 			}
 		}
-		init(items);
+		if (reverseIndex) {
+			DoubleArrayDictionaryTrie trie = new DoubleArrayDictionaryTrie(SIZE);
+			trie.addAll(ReversedKeys.reverse(words.words));
+			reverse = trie;
+		}
+		init(words);
+	}
+
+	@Override
+	public boolean isBuildOnce() {
+		return true;
 	}
 
 	@Override
@@ -265,12 +521,126 @@ public class DoubleArrayDictionaryTrie implements Dictionary {
 		throw new RuntimeException("not yet support menthod!");
 	}
 
+	/**
+	 * 扫描一次双数组收集统计信息
+	 * 双数组中找一个节点的子节点要试遍所有字符，不做深度遍历，没有词长和词首字的分布，只统计词首字的个数
+	 * 节点数为用到的单元数，内存占用为所有数组的字节数（加载镜像时在映射的文件中），包含反向索引
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().maxLength(maxLength.get());
+		if (isEmpty()) {
+			return builder.wordCount(0).nodeCount(0).footprint(0).build();
+		}
+		IntBuffer base = baseView();
+		IntBuffer check = checkView();
+		int size = check.limit();
+		int rootBegin = base.get(0);
+		//根节点不设置check
+		long used = 1;
+		long words = 0;
+		int roots = 0;
+		for (int i = 1; i < size; i++) {
+			int parent = check.get(i);
+			if (parent == 0) {
+				continue;
+			}
+			used++;
+			if (parent == i && base.get(i) < 0) {
+				words++;
+			} else if (parent == rootBegin) {
+				roots++;
+			}
+		}
+		long footprint = 4L * (base.limit() + size);
+		IntBuffer payloads = payloadView();
+		if (payloads != null) {
+			footprint += 4L * payloads.limit();
+		}
+		DoubleArrayDictionaryTrie reverse = this.reverse;
+		if (reverse != null) {
+			footprint += reverse.getStats().getFootprint();
+		}
+		return builder.wordCount(words).nodeCount(used).rootCount(roots).fillRatio((double) used / size).footprint(footprint).build();
+	}
+
+	/**
+	 * 将构建好的双数组保存为镜像文件
+	 * 各段依次为正向的base、check，带反向索引时为反向的base、check，有附加值时最后一段为附加值
+	 * @param path 文件路径
+	 * @throws IOException 写文件失败
+	 */
+	public void save(Path path) throws IOException {
+		if (isEmpty()) {
+			throw new RuntimeException("dictionary is empty, please use addAll method first!");
+		}
+		List<IntBuffer> sections = new ArrayList<>();
+		sections.add(baseView());
+		sections.add(checkView());
+		if (reverse != null) {
+			sections.add(reverse.baseView());
+			sections.add(reverse.checkView());
+		}
+		if (payloadView() != null) {
+			sections.add(payloadView());
+		}
+		DoubleArrayImage.write(path, DoubleArrayImage.DICTIONARY, maxLength.get(), sections.toArray(new IntBuffer[0]));
+		LOGGER.info("保存双数组前缀树镜像：" + path);
+	}
+
+	/**
+	 * 以内存映射的方式加载镜像文件，查询直接读取映射的文件
+	 * 和addAll方法一样，只能在clear方法之后调用一次
+	 * @param path 文件路径
+	 * @throws IOException 读文件失败或文件格式不正确
+	 */
+	public void load(Path path) throws IOException {
+		if (!isEmpty()) {
+			throw new RuntimeException("load method can just be used once after clear method!");
+		}
+		long start = System.currentTimeMillis();
+		DoubleArrayImage image = DoubleArrayImage.map(path, DoubleArrayImage.DICTIONARY);
+		//正向的base、check，带反向索引时再加上反向的base、check，每一对的长度必须相同，否则查找会越界
+		//段数为奇数时最后一段为附加值，和正向的check等长
+		int count = image.getSectionCount();
+		if (count < 2 || count > 5) {
+			throw new IOException("not a dictionary image: " + path);
+		}
+		boolean withPayloads = (count & 1) == 1;
+		int pairs = withPayloads ? count - 1 : count;
+		for (int i = 0; i < pairs; i += 2) {
+			if (image.getSection(i).limit() != image.getSection(i + 1).limit()) {
+				throw new IOException("base and check of different length in dictionary image: " + path);
+			}
+		}
+		if (withPayloads && image.getSection(count - 1).limit() != image.getSection(1).limit()) {
+			throw new IOException("payloads and check of different length in dictionary image: " + path);
+		}
+		maxLength.set(image.getMaxLength());
+		payloadData = withPayloads ? image.getSection(count - 1) : null;
+		checkData = image.getSection(1);
+		baseData = image.getSection(0);
+		if (pairs == 4) {
+			//带反向索引的镜像
+			DoubleArrayDictionaryTrie trie = new DoubleArrayDictionaryTrie(SIZE);
+			trie.maxLength.set(image.getMaxLength());
+			trie.checkData = image.getSection(3);
+			trie.baseData = image.getSection(2);
+			reverse = trie;
+			reverseIndex = true;
+		}
+		LOGGER.info("加载双数组前缀树镜像：" + path + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
 	@Override
 	public void clear() {
 		check = null;
 		base = null;
-		used = null;
-		nextCheckPos = 0;
+		payloads = null;
+		checkData = null;
+		baseData = null;
+		payloadData = null;
+		reverse = null;
 		maxLength.set(0);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,426 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+
+/**
+ * 分层词典：场景词典覆盖在共享的基础词典之上
+ * 一次查找同时得到是否是词、词来自哪一层以及词的附加值（词频或权重），词性只在词所在的那一层查找
+ * 场景可以屏蔽基础词典中的词，被屏蔽的词在这个视图中不存在
+ * 场景为空时直接跳过场景这一层，只查基础词典
+ * 每一层可以带一个前置过滤器，查词典之前先用过滤器缩小这一层的查找窗口，窗口为0时不查这一层
+ * 本身不保存数据，只读，多个线程可以同时使用
+ */
+public class LayeredDictionary implements Dictionary {
+	public static final int NONE = 0;
+	public static final int SCENE = 1;
+	public static final int BASE = 2;
+	//匹配结果的低16位为长度，接下来16位为来源层，高32位为附加值
+	private static final int LENGTH_BITS = 16;
+	private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+	private static final int LAYER_MASK = 0xFFFF;
+
+	private final Dictionary scene;
+	private final IntGenericTrie sceneTag;
+	private final Dictionary base;
+	private final IntGenericTrie baseTag;
+	//被场景屏蔽的基础词典中的词，没有屏蔽时为null
+	private final Dictionary mask;
+	//前置过滤器，为null时不过滤
+	private final DictionaryPrefilter scenePrefilter;
+	private final DictionaryPrefilter basePrefilter;
+	private final boolean sceneEmpty;
+	private final int maxLength;
+
+	/**
+	 * @param scene 场景词典
+	 * @param sceneTag 场景词性编号
+	 * @param base 基础词典
+	 * @param baseTag 基础词性编号
+	 * @param mask 被屏蔽的基础词典中的词，可以为null
+	 */
+	public LayeredDictionary(Dictionary scene, IntGenericTrie sceneTag, Dictionary base, IntGenericTrie baseTag, Dictionary mask) {
+		this(scene, sceneTag, null, base, baseTag, null, mask);
+	}
+
+	/**
+	 * @param scene 场景词典
+	 * @param sceneTag 场景词性编号
+	 * @param scenePrefilter 场景词典的前置过滤器，可以为null
+	 * @param base 基础词典
+	 * @param baseTag 基础词性编号
+	 * @param basePrefilter 基础词典的前置过滤器，可以为null
+	 * @param mask 被屏蔽的基础词典中的词，可以为null
+	 */
+	public LayeredDictionary(Dictionary scene, IntGenericTrie sceneTag, DictionaryPrefilter scenePrefilter, Dictionary base, IntGenericTrie baseTag,
+			DictionaryPrefilter basePrefilter, Dictionary mask) {
+		this.scene = scene;
+		this.sceneTag = sceneTag;
+		this.scenePrefilter = scenePrefilter;
+		this.base = base;
+		this.baseTag = baseTag;
+		this.basePrefilter = basePrefilter;
+		this.mask = mask != null && mask.getMaxLength() > 0 ? mask : null;
+		this.sceneEmpty = scene.getMaxLength() == 0;
+		this.maxLength = Math.max(scene.getMaxLength(), base.getMaxLength());
+	}
+
+	/**
+	 * 从匹配结果中取出长度
+	 * @param match match或matchSuffix的返回值
+	 * @return 长度
+	 */
+	public static int length(long match) {
+		return (int) match & LENGTH_MASK;
+	}
+
+	/**
+	 * 从匹配结果中取出来源层
+	 * @param match match或matchSuffix的返回值
+	 * @return SCENE、BASE或NONE
+	 */
+	public static int layer(long match) {
+		return ((int) match >>> LENGTH_BITS) & LAYER_MASK;
+	}
+
+	/**
+	 * 从匹配结果中取出词的附加值
+	 * @param match match或matchSuffix的返回值
+	 * @return 附加值，没有匹配或没有设置附加值时为0
+	 */
+	public static int payload(long match) {
+		return (int) (match >>> 32);
+	}
+
+	/**
+	 * @param match 单层词典的匹配结果，见Dictionary.packMatch
+	 * @param layer 来源层
+	 */
+	private static long pack(long match, int layer) {
+		int length = Dictionary.matchLength(match);
+		return length == 0 ? 0 : ((long) Dictionary.matchPayload(match) << 32) | (layer << LENGTH_BITS) | length;
+	}
+
+	/**
+	 * 场景优先的正向最长匹配：场景词典中有长度大于一的词时直接使用，不再查基础词典
+	 * 否则返回基础词典中没有被屏蔽的最长的词
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param limit 最大长度
+	 * @return 匹配结果，用length、layer、payload方法取出长度、来源层和附加值，没有匹配时为0
+	 */
+	public long match(String text, int start, int limit) {
+		int sceneWindow = sceneWindow(text, start, limit);
+		if (sceneWindow > 1) {
+			long match = scene.longestMatchWithPayload(text, start, sceneWindow);
+			if (Dictionary.matchLength(match) > 1) {
+				return pack(match, SCENE);
+			}
+		}
+		return pack(longestBaseMatch(text, start, baseWindow(text, start, limit)), BASE);
+	}
+
+	/**
+	 * 逆向最长匹配：以end结尾的最长的词，两层一样长时算作场景的词
+	 * 场景词典已经匹配到最大长度时不再查基础词典
+	 * @param text 文本
+	 * @param end 结束位置（不包含）
+	 * @param limit 最大长度
+	 * @return 匹配结果，用length、layer、payload方法取出长度、来源层和附加值，没有匹配时为0
+	 */
+	public long matchSuffix(String text, int end, int limit) {
+		int sceneWindow = sceneSuffixWindow(text, end, limit);
+		long sceneMatch = sceneWindow == 0 ? 0 : scene.longestSuffixMatchWithPayload(text, end, sceneWindow);
+		int sceneLen = Dictionary.matchLength(sceneMatch);
+		if (sceneLen >= limit) {
+			return pack(sceneMatch, SCENE);
+		}
+		int baseWindow = baseSuffixWindow(text, end, limit);
+		if (baseWindow <= sceneLen) {
+			//基础词典中不可能有更长的词
+			return pack(sceneMatch, SCENE);
+		}
+		long baseMatch = longestBaseSuffixMatch(text, end, baseWindow);
+		return sceneLen >= Dictionary.matchLength(baseMatch) ? pack(sceneMatch, SCENE) : pack(baseMatch, BASE);
+	}
+
+	/**
+	 * 以start开始的词可能的最大长度，两层中取大的
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param limit 最大长度
+	 * @return 窗口长度，0表示两层中都没有词以这个位置开始
+	 */
+	public int window(String text, int start, int limit) {
+		return Math.max(sceneWindow(text, start, limit), baseWindow(text, start, limit));
+	}
+
+	/**
+	 * 以end结尾的词可能的最大长度，两层中取大的
+	 * @param text 文本
+	 * @param end 结束位置（不包含）
+	 * @param limit 最大长度
+	 * @return 窗口长度，0表示两层中都没有词以这个位置结尾
+	 */
+	public int suffixWindow(String text, int end, int limit) {
+		return Math.max(sceneSuffixWindow(text, end, limit), baseSuffixWindow(text, end, limit));
+	}
+
+	private int sceneWindow(String text, int start, int limit) {
+		if (sceneEmpty) {
+			return 0;
+		}
+		return scenePrefilter == null ? limit : scenePrefilter.window(text, start, limit);
+	}
+
+	private int baseWindow(String text, int start, int limit) {
+		return basePrefilter == null ? limit : basePrefilter.window(text, start, limit);
+	}
+
+	private int sceneSuffixWindow(String text, int end, int limit) {
+		if (sceneEmpty) {
+			return 0;
+		}
+		return scenePrefilter == null ? limit : scenePrefilter.suffixWindow(text, end, limit);
+	}
+
+	private int baseSuffixWindow(String text, int end, int limit) {
+		return basePrefilter == null ? limit : basePrefilter.suffixWindow(text, end, limit);
+	}
+
+	/**
+	 * 词在哪一层
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param length 长度
+	 * @return SCENE、BASE或NONE
+	 */
+	public int layerOf(String text, int start, int length) {
+		if (!sceneEmpty && scene.contains(text, start, length)) {
+			return SCENE;
+		}
+		if (base.contains(text, start, length) && !isMasked(text, start, length)) {
+			return BASE;
+		}
+		return NONE;
+	}
+
+	/**
+	 * 词性编号，场景中的词性优先，被屏蔽的词不使用基础词典中的词性
+	 * @param word 词
+	 * @return 词性编号，没有时为TagRegistry.NONE
+	 */
+	public int getTagCode(String word) {
+		return getTagCode(word, 0, word.length());
+	}
+
+	/**
+	 * 文本中一段的词性编号，不需要截取出词
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param length 长度
+	 * @return 词性编号，没有时为TagRegistry.NONE
+	 */
+	public int getTagCode(String text, int start, int length) {
+		int tag = sceneTag.get(text, start, length);
+		if (tag == TagRegistry.NONE && !isMasked(text, start, length)) {
+			tag = baseTag.get(text, start, length);
+		}
+		return tag;
+	}
+
+	/**
+	 * 只在指定的层查找词性编号
+	 * @param word 词
+	 * @param layer match、matchSuffix或layerOf得到的来源层
+	 * @return 词性编号，没有时为TagRegistry.NONE
+	 */
+	public int getTagCode(String word, int layer) {
+		switch (layer) {
+		case SCENE:
+			return sceneTag.get(word);
+		case BASE:
+			return baseTag.get(word);
+		default:
+			return getTagCode(word);
+		}
+	}
+
+	/**
+	 * 词性，场景中的词性优先，被屏蔽的词不使用基础词典中的词性
+	 * @param word 词
+	 * @return 词性，没有时为null
+	 */
+	public String getTag(String word) {
+		return TagRegistry.name(getTagCode(word));
+	}
+
+	/**
+	 * 只在指定的层查找词性
+	 * @param word 词
+	 * @param layer match、matchSuffix或layerOf得到的来源层
+	 * @return 词性，没有时为null
+	 */
+	public String getTag(String word, int layer) {
+		return TagRegistry.name(getTagCode(word, layer));
+	}
+
+	/**
+	 * 词的附加值，场景中的词优先，被屏蔽的词没有附加值
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param length 长度
+	 * @return 附加值，不是词或没有设置附加值时为0
+	 */
+	@Override
+	public int getPayload(String text, int start, int length) {
+		switch (layerOf(text, start, length)) {
+		case SCENE:
+			return scene.getPayload(text, start, length);
+		case BASE:
+			return base.getPayload(text, start, length);
+		default:
+			return 0;
+		}
+	}
+
+	public Dictionary getScene() {
+		return scene;
+	}
+
+	public Dictionary getBase() {
+		return base;
+	}
+
+	private boolean isMasked(String text, int start, int length) {
+		return mask != null && mask.contains(text, start, length);
+	}
+
+	/**
+	 * 基础词典中没有被屏蔽的最长的词，最长的词被屏蔽时缩短长度限制后再查
+	 * @return 匹配结果，见Dictionary.packMatch
+	 */
+	private long longestBaseMatch(String text, int start, int limit) {
+		if (limit == 0) {
+			return 0;
+		}
+		long match = base.longestMatchWithPayload(text, start, limit);
+		int len;
+		while ((len = Dictionary.matchLength(match)) > 0 && isMasked(text, start, len)) {
+			match = len > 1 ? base.longestMatchWithPayload(text, start, len - 1) : 0;
+		}
+		return match;
+	}
+
+	private long longestBaseSuffixMatch(String text, int end, int limit) {
+		if (limit == 0) {
+			return 0;
+		}
+		long match = base.longestSuffixMatchWithPayload(text, end, limit);
+		int len;
+		while ((len = Dictionary.matchLength(match)) > 0 && isMasked(text, end - len, len)) {
+			match = len > 1 ? base.longestSuffixMatchWithPayload(text, end, len - 1) : 0;
+		}
+		return match;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	@Override
+	public boolean contains(String item, int start, int length) {
+		return layerOf(item, start, length) != NONE;
+	}
+
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		int sceneWindow = sceneWindow(text, start, limit);
+		int sceneLen = sceneWindow == 0 ? 0 : scene.longestMatch(text, start, sceneWindow);
+		if (sceneLen >= limit) {
+			return sceneLen;
+		}
+		int baseWindow = baseWindow(text, start, limit);
+		return baseWindow <= sceneLen ? sceneLen : Math.max(sceneLen, Dictionary.matchLength(longestBaseMatch(text, start, baseWindow)));
+	}
+
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		return length(matchSuffix(text, end, limit));
+	}
+
+	@Override
+	public long longestSuffixMatchWithPayload(String text, int end, int limit) {
+		long match = matchSuffix(text, end, limit);
+		return Dictionary.packMatch(length(match), payload(match));
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (!sceneEmpty) {
+			scene.commonPrefixSearch(text, start, limit, handler);
+		}
+		base.commonPrefixSearch(text, start, limit, (s, length) -> {
+			//两层都有的词只回调一次
+			if ((sceneEmpty || !scene.contains(text, s, length)) && !isMasked(text, s, length)) {
+				handler.match(s, length);
+			}
+		});
+	}
+
+	@Override
+	public boolean isReverseIndex() {
+		return base.isReverseIndex() && (sceneEmpty || scene.isReverseIndex());
+	}
+
+	@Override
+	public boolean isIterable() {
+		return scene.isIterable() && base.isIterable();
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		scene.forEach(action);
+		base.forEach(word -> {
+			if ((sceneEmpty || !scene.contains(word)) && !isMasked(word, 0, word.length())) {
+				action.accept(word);
+			}
+		});
+	}
+
+	@Override
+	public void addAll(List<String> items) {
+		throw new RuntimeException("layered dictionary is read only, modify the scene or the base dictionary instead!");
+	}
+
+	@Override
+	public void add(String item) {
+		throw new RuntimeException("layered dictionary is read only, modify the scene or the base dictionary instead!");
+	}
+
+	@Override
+	public void removeAll(List<String> items) {
+		throw new RuntimeException("layered dictionary is read only, modify the scene or the base dictionary instead!");
+	}
+
+	@Override
+	public void remove(String item) {
+		throw new RuntimeException("layered dictionary is read only, modify the scene or the base dictionary instead!");
+	}
+
+	@Override
+	public void clear() {
+		throw new RuntimeException("layered dictionary is read only, modify the scene or the base dictionary instead!");
+	}
+}
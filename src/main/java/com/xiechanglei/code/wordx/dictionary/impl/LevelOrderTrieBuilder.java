@@ -0,0 +1,80 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按层次顺序（广度优先）给前缀树的节点编号，同一个节点的子节点编号连续且按字符排序
+ * 节点i的子节点为[first[i], first[i+1])，节点i的字符为labels[i]，根节点为0
+ * 构建过程只使用几个平坦的数组，不创建节点对象
+ */
+final class LevelOrderTrieBuilder {
+	char[] labels;
+	//长度为节点数加一
+	int[] first;
+	//词尾节点位图
+	long[] terminal;
+	//词尾节点的附加值，所有的词都没有附加值时为null
+	int[] payloads;
+	int nodeCount;
+	int wordCount;
+	int maxLength;
+
+	LevelOrderTrieBuilder(SortedWords sorted) {
+		List<String> words = sorted.words;
+		int capacity = 1024;
+		labels = new char[capacity];
+		first = new int[capacity + 1];
+		//队列中每个节点对应的词的范围[left, right)和深度
+		int[] left = new int[capacity];
+		int[] right = new int[capacity];
+		int[] depth = new int[capacity];
+		terminal = new long[(capacity + 63) >>> 6];
+		if (sorted.payloads != null) {
+			payloads = new int[capacity];
+		}
+		right[0] = words.size();
+		nodeCount = 1;
+		for (int node = 0; node < nodeCount; node++) {
+			first[node] = nodeCount;
+			int i = left[node];
+			int d = depth[node];
+			if (i < right[node] && words.get(i).length() == d) {
+				//排序后正好是这个词的排在最前面
+				terminal[node >>> 6] |= 1L << node;
+				if (payloads != null) {
+					payloads[node] = sorted.payloads[i];
+				}
+				wordCount++;
+				maxLength = Math.max(maxLength, d);
+				i++;
+			}
+			while (i < right[node]) {
+				char character = words.get(i).charAt(d);
+				int j = i + 1;
+				while (j < right[node] && words.get(j).charAt(d) == character) {
+					j++;
+				}
+				if (nodeCount == labels.length) {
+					capacity = labels.length + (labels.length >> 1);
+					labels = Arrays.copyOf(labels, capacity);
+					first = Arrays.copyOf(first, capacity + 1);
+					left = Arrays.copyOf(left, capacity);
+					right = Arrays.copyOf(right, capacity);
+					depth = Arrays.copyOf(depth, capacity);
+					terminal = Arrays.copyOf(terminal, (capacity + 63) >>> 6);
+					if (payloads != null) {
+						payloads = Arrays.copyOf(payloads, capacity);
+					}
+				}
+				labels[nodeCount] = character;
+				left[nodeCount] = i;
+				right[nodeCount] = j;
+				depth[nodeCount] = d + 1;
+				nodeCount++;
+				i = j;
+			}
+		}
+		first[nodeCount] = nodeCount;
+	}
+}
@@ -0,0 +1,753 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+
+/**
+ * 可动态增删词的双数组前缀树
+ * 查询方式和DoubleArrayDictionaryTrie一样，只需读取base、check两个数组
+ * 插入词时如果和其他节点冲突，则把子节点较少的一方的兄弟节点整体迁移到新的位置
+ * 空闲槽位记录在占用位图中，删除词时回收槽位，可以调用compact方法重新紧凑存储
+ */
+public class MutableDoubleArrayDictionaryTrie implements Dictionary {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MutableDoubleArrayDictionaryTrie.class);
+	private static final int DEFAULT_SIZE = 65536 * 2;
+	//根节点
+	private static final int ROOT = 0;
+	//空闲槽位的check值
+	private static final int FREE = -1;
+	//词尾的编码，字符的编码为字符值加一
+	private static final int END = 0;
+	//在低处的空洞中最多比较的位图块数，每块64个候选偏移量，超过则到数组尾部附近查找
+	private static final int MAX_SCAN_BLOCKS = 1024;
+	//构造时指定的初始容量，clear方法按此容量重新分配
+	private final int initialSize;
+
+	/**
+	 * base为子节点的偏移量（词尾节点为附加数据），check为父节点下标
+	 */
+	private int[] base;
+	private int[] check;
+	//第一个子节点的编码加一，0表示没有子节点
+	private int[] firstChild;
+	//下一个兄弟节点的编码加一，0表示没有兄弟节点
+	private int[] nextSibling;
+	//槽位占用位图，1表示已用，超出数组的槽位视为空闲
+	private long[] occupied;
+	//汇总位图，1表示对应的占用位图块已满
+	private long[] full;
+	private int size;
+	//用过的最大下标加一
+	private int tail;
+	//在此之前的槽位都已被占用
+	private int lowestFree;
+	private int maxLength;
+	private int wordCount;
+	//反向索引，按从后往前的顺序存储词
+	private volatile MutableDoubleArrayDictionaryTrie reverse;
+
+	public MutableDoubleArrayDictionaryTrie(int size) {
+		LOGGER.info("初始化可变双数组前缀树词典");
+		initialSize = Math.max(size, ROOT + 1);
+		allocate(initialSize);
+	}
+
+	public MutableDoubleArrayDictionaryTrie() {
+		this(DEFAULT_SIZE);
+	}
+
+	private MutableDoubleArrayDictionaryTrie(MutableDoubleArrayDictionaryTrie source) {
+		initialSize = source.initialSize;
+		base = source.base.clone();
+		check = source.check.clone();
+		firstChild = source.firstChild.clone();
+		nextSibling = source.nextSibling.clone();
+		occupied = source.occupied.clone();
+		full = source.full.clone();
+		size = source.size;
+		tail = source.tail;
+		lowestFree = source.lowestFree;
+		maxLength = source.maxLength;
+		wordCount = source.wordCount;
+		if (source.reverse != null) {
+			reverse = new MutableDoubleArrayDictionaryTrie(source.reverse);
+		}
+	}
+
+	/**
+	 * 复制所有数组，只需几次数组拷贝
+	 */
+	@Override
+	public MutableDoubleArrayDictionaryTrie copy() {
+		return new MutableDoubleArrayDictionaryTrie(this);
+	}
+
+	private void allocate(int size) {
+		base = new int[size];
+		check = new int[size];
+		firstChild = new int[size];
+		nextSibling = new int[size];
+		occupied = new long[(size + 63) >>> 6];
+		full = new long[(occupied.length + 63) >>> 6];
+		this.size = size;
+		Arrays.fill(check, FREE);
+		check[ROOT] = ROOT;
+		occupied[ROOT >>> 6] |= 1L << ROOT;
+		tail = ROOT + 1;
+		lowestFree = ROOT + 1;
+	}
+
+	/**
+	 * 扩容
+	 * @param required 至少需要的容量
+	 */
+	private void ensureCapacity(int required) {
+		if (required <= size) {
+			return;
+		}
+		int newSize = Math.max(required, size + (size >> 1));
+		base = Arrays.copyOf(base, newSize);
+		check = Arrays.copyOf(check, newSize);
+		firstChild = Arrays.copyOf(firstChild, newSize);
+		nextSibling = Arrays.copyOf(nextSibling, newSize);
+		occupied = Arrays.copyOf(occupied, (newSize + 63) >>> 6);
+		full = Arrays.copyOf(full, (occupied.length + 63) >>> 6);
+		Arrays.fill(check, size, newSize, FREE);
+		size = newSize;
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("可变双数组扩容至：" + newSize);
+		}
+	}
+
+	/**
+	 * 将空闲槽位分配给父节点
+	 */
+	private void occupy(int index, int parent) {
+		ensureCapacity(index + 1);
+		check[index] = parent;
+		base[index] = 0;
+		firstChild[index] = 0;
+		nextSibling[index] = 0;
+		int word = index >>> 6;
+		occupied[word] |= 1L << index;
+		if (occupied[word] == -1L) {
+			full[word >>> 6] |= 1L << word;
+		}
+		if (index >= tail) {
+			tail = index + 1;
+		}
+	}
+
+	/**
+	 * 回收槽位
+	 */
+	private void release(int index) {
+		check[index] = FREE;
+		base[index] = 0;
+		firstChild[index] = 0;
+		nextSibling[index] = 0;
+		int word = index >>> 6;
+		occupied[word] &= ~(1L << index);
+		full[word >>> 6] &= ~(1L << word);
+		if (index < lowestFree) {
+			lowestFree = index;
+		}
+	}
+
+	/**
+	 * 为一组兄弟节点查找可用的偏移量
+	 * 借助占用位图一次比较64个候选偏移量，先从低处的空洞找起，找不到再到数组尾部附近找
+	 * @param codes 兄弟节点的编码
+	 * @param count 编码个数
+	 * @return 偏移量
+	 */
+	private int findBase(int[] codes, int count) {
+		int min = codes[0];
+		int max = codes[0];
+		for (int i = 1; i < count; i++) {
+			if (codes[i] < min) {
+				min = codes[i];
+			}
+			if (codes[i] > max) {
+				max = codes[i];
+			}
+		}
+		while (lowestFree < size && occupied[lowestFree >>> 6] == -1L) {
+			lowestFree = (lowestFree | 63) + 1;
+		}
+		int begin = scan(Math.max(0, lowestFree - min), MAX_SCAN_BLOCKS, codes, count);
+		if (begin < 0) {
+			//低处的空洞太零散，到数组尾部附近找，尾部附近的槽位较稀疏
+			//最迟在所有编码都落在tail之后时找到
+			begin = scan(Math.max(0, tail - max - (max - min)), Integer.MAX_VALUE, codes, count);
+		}
+		return begin;
+	}
+
+	/**
+	 * 从指定的偏移量开始，每次比较64个候选偏移量
+	 * 以第一个编码所在的位图块对齐，位图块已满时借助汇总位图直接跳过
+	 * @return 偏移量，在限定的范围内找不到则返回-1
+	 */
+	private int scan(int from, int blocks, int[] codes, int count) {
+		long[] occupied = this.occupied;
+		int anchor = codes[0];
+		int word = (from + anchor) >>> 6;
+		for (int n = 0; n < blocks;) {
+			if (word < occupied.length && occupied[word] == -1L) {
+				word = nextVacantWord(word);
+				continue;
+			}
+			n++;
+			int begin = (word << 6) - anchor;
+			long candidates = word < occupied.length ? ~occupied[word] : -1L;
+			if (begin < 0) {
+				candidates = -begin >= 64 ? 0L : candidates & (-1L << -begin);
+			}
+			for (int i = 1; i < count && candidates != 0; i++) {
+				candidates &= ~window(begin + codes[i]);
+			}
+			if (candidates != 0) {
+				return begin + Long.numberOfTrailingZeros(candidates);
+			}
+			word++;
+		}
+		return -1;
+	}
+
+	/**
+	 * 从指定的位图块开始，查找第一个未满的位图块
+	 */
+	private int nextVacantWord(int word) {
+		int index = word >>> 6;
+		if (index >= full.length) {
+			return word;
+		}
+		long bits = ~full[index] & (-1L << word);
+		while (bits == 0) {
+			if (++index >= full.length) {
+				return index << 6;
+			}
+			bits = ~full[index];
+		}
+		return (index << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * 从指定位置开始的64个槽位的占用情况
+	 * 偏移量以第一个编码对齐，可能为负，编码较小的兄弟节点会落到0之前，0之前的槽位视为已占用
+	 */
+	private long window(int position) {
+		if (position < 0) {
+			if (position <= -64) {
+				return -1L;
+			}
+			return occupied[0] << -position | (1L << -position) - 1;
+		}
+		int word = position >>> 6;
+		int shift = position & 63;
+		long[] occupied = this.occupied;
+		long bits = word < occupied.length ? occupied[word] >>> shift : 0L;
+		if (shift != 0 && word + 1 < occupied.length) {
+			bits |= occupied[word + 1] << (64 - shift);
+		}
+		return bits;
+	}
+
+	private boolean isFree(int index) {
+		return index >= size || check[index] == FREE;
+	}
+
+	private int childCount(int node) {
+		int count = 0;
+		int offset = base[node];
+		for (int code = firstChild[node] - 1; code >= 0; code = nextSibling[offset + code] - 1) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 收集节点的所有子节点编码
+	 * @param node 节点
+	 * @param extra 额外加入的编码，小于0表示没有
+	 * @return 编码数组
+	 */
+	private int[] childCodes(int node, int extra) {
+		int[] codes = new int[childCount(node) + (extra >= 0 ? 1 : 0)];
+		int count = 0;
+		int offset = base[node];
+		for (int code = firstChild[node] - 1; code >= 0; code = nextSibling[offset + code] - 1) {
+			codes[count++] = code;
+		}
+		if (extra >= 0) {
+			codes[count] = extra;
+		}
+		return codes;
+	}
+
+	/**
+	 * 将节点的所有子节点迁移到新的偏移量
+	 * @param node 节点
+	 * @param newBase 新的偏移量
+	 * @param watch 需要跟踪的下标
+	 * @return 被跟踪的下标迁移之后的位置
+	 */
+	private int relocate(int node, int newBase, int watch) {
+		int oldBase = base[node];
+		int code = firstChild[node] - 1;
+		while (code >= 0) {
+			int from = oldBase + code;
+			int to = newBase + code;
+			int next = nextSibling[from] - 1;
+			occupy(to, node);
+			base[to] = base[from];
+			firstChild[to] = firstChild[from];
+			nextSibling[to] = nextSibling[from];
+			if (code != END) {
+				//孙节点的父节点发生了变化
+				int childBase = base[from];
+				for (int c = firstChild[from] - 1; c >= 0; c = nextSibling[childBase + c] - 1) {
+					check[childBase + c] = to;
+				}
+			}
+			if (from == watch) {
+				watch = to;
+			}
+			release(from);
+			code = next;
+		}
+		base[node] = newBase;
+		return watch;
+	}
+
+	/**
+	 * 将编码为code的子节点挂到父节点的子节点链表上
+	 */
+	private void linkChild(int parent, int code) {
+		nextSibling[base[parent] + code] = firstChild[parent];
+		firstChild[parent] = code + 1;
+	}
+
+	private void unlinkChild(int parent, int code) {
+		int offset = base[parent];
+		if (firstChild[parent] - 1 == code) {
+			firstChild[parent] = nextSibling[offset + code];
+			return;
+		}
+		for (int c = firstChild[parent] - 1; c >= 0; c = nextSibling[offset + c] - 1) {
+			if (nextSibling[offset + c] - 1 == code) {
+				nextSibling[offset + c] = nextSibling[offset + code];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 获取子节点，如果不存在则创建
+	 * @param node 父节点
+	 * @param code 子节点编码
+	 * @return 子节点下标
+	 */
+	private int getChildIfNotExistThenCreate(int node, int code) {
+		if (firstChild[node] == 0) {
+			int begin = findBase(new int[] { code }, 1);
+			base[node] = begin;
+			occupy(begin + code, node);
+			linkChild(node, code);
+			return begin + code;
+		}
+		int index = base[node] + code;
+		if (index < size && check[index] == node) {
+			return index;
+		}
+		if (!isFree(index)) {
+			//冲突，迁移子节点较少的一方，根节点所在的槽位不能迁移
+			int owner = check[index];
+			if (index == ROOT || childCount(node) + 1 <= childCount(owner)) {
+				int[] codes = childCodes(node, code);
+				relocate(node, findBase(codes, codes.length), -1);
+			} else {
+				int[] codes = childCodes(owner, -1);
+				node = relocate(owner, findBase(codes, codes.length), node);
+			}
+			index = base[node] + code;
+		}
+		occupy(index, node);
+		linkChild(node, code);
+		return index;
+	}
+
+	/**
+	 * 查找词尾节点
+	 * @return 词尾节点下标，不存在则返回-1
+	 */
+	private int find(String item, int start, int length) {
+		int[] base = this.base;
+		int[] check = this.check;
+		int size = check.length;
+		int node = ROOT;
+		for (int i = start; i < start + length; i++) {
+			int index = base[node] + item.charAt(i) + 1;
+			if (index >= size || check[index] != node) {
+				return -1;
+			}
+			node = index;
+		}
+		int index = base[node] + END;
+		if (index < size && check[index] == node) {
+			return index;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	@Override
+	public boolean contains(String item, int start, int length) {
+		if (start < 0 || length < 1) {
+			return false;
+		}
+		if (item == null || item.length() < start + length) {
+			return false;
+		}
+		return find(item, start, length) >= 0;
+	}
+
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		if (start < 0 || text == null) {
+			return 0;
+		}
+		int[] base = this.base;
+		int[] check = this.check;
+		int size = check.length;
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int node = ROOT;
+		for (int i = start; i < end; i++) {
+			int index = base[node] + text.charAt(i) + 1;
+			if (index >= size || check[index] != node) {
+				break;
+			}
+			node = index;
+			index = base[node] + END;
+			if (index < size && check[index] == node) {
+				longest = i - start + 1;
+			}
+		}
+		return longest;
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (start < 0 || text == null) {
+			return;
+		}
+		int[] base = this.base;
+		int[] check = this.check;
+		int size = check.length;
+		int end = Math.min(start + limit, text.length());
+		int node = ROOT;
+		for (int i = start; i < end; i++) {
+			int index = base[node] + text.charAt(i) + 1;
+			if (index >= size || check[index] != node) {
+				break;
+			}
+			node = index;
+			index = base[node] + END;
+			if (index < size && check[index] == node) {
+				handler.match(start, i - start + 1);
+			}
+		}
+	}
+
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		MutableDoubleArrayDictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatch(text, end, limit);
+		}
+		return reverse.longestBackwardMatch(text, end, limit);
+	}
+
+	/**
+	 * 在反向索引中从end-1开始向前遍历文本
+	 */
+	private int longestBackwardMatch(String text, int end, int limit) {
+		if (text == null || end <= 0 || end > text.length()) {
+			return 0;
+		}
+		int[] base = this.base;
+		int[] check = this.check;
+		int size = check.length;
+		int begin = Math.max(end - limit, 0);
+		int longest = 0;
+		int node = ROOT;
+		for (int i = end - 1; i >= begin; i--) {
+			int index = base[node] + text.charAt(i) + 1;
+			if (index >= size || check[index] != node) {
+				break;
+			}
+			node = index;
+			index = base[node] + END;
+			if (index < size && check[index] == node) {
+				longest = end - i;
+			}
+		}
+		return longest;
+	}
+
+	@Override
+	public void setReverseIndex(boolean enabled) {
+		if (!enabled) {
+			reverse = null;
+			return;
+		}
+		if (reverse != null) {
+			return;
+		}
+		List<String> words = new ArrayList<>(wordCount);
+		forEach(words::add);
+		MutableDoubleArrayDictionaryTrie trie = new MutableDoubleArrayDictionaryTrie();
+		trie.addAll(ReversedKeys.reverse(words));
+		reverse = trie;
+		LOGGER.info("建立反向索引，词数：" + words.size());
+	}
+
+	@Override
+	public boolean isReverseIndex() {
+		return reverse != null;
+	}
+
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		collect(ROOT, new StringBuilder(), action);
+	}
+
+	/**
+	 * 遍历节点下的所有词
+	 */
+	private void collect(int node, StringBuilder prefix, Consumer<String> action) {
+		int offset = base[node];
+		for (int c = firstChild[node] - 1; c >= 0; c = nextSibling[offset + c] - 1) {
+			if (c == END) {
+				action.accept(prefix.toString());
+			} else {
+				prefix.append((char) (c - 1));
+				collect(offset + c, prefix, action);
+				prefix.setLength(prefix.length() - 1);
+			}
+		}
+	}
+
+	@Override
+	public void addAll(List<String> items) {
+		for (String item : items) {
+			add(item);
+		}
+	}
+
+	@Override
+	public void add(String item) {
+		//去掉首尾空白字符
+		item = item.trim();
+		int len = item.length();
+		if (len < 1) {
+			//长度小于1则忽略
+			return;
+		}
+		if (len > maxLength) {
+			maxLength = len;
+		}
+		int node = ROOT;
+		for (int i = 0; i < len; i++) {
+			node = getChildIfNotExistThenCreate(node, item.charAt(i) + 1);
+		}
+		int index = base[node] + END;
+		if (firstChild[node] != 0 && index < size && check[index] == node) {
+			//词已经存在
+			return;
+		}
+		getChildIfNotExistThenCreate(node, END);
+		wordCount++;
+		if (reverse != null) {
+			reverse.add(ReversedKeys.reverse(item));
+		}
+	}
+
+	@Override
+	public void removeAll(List<String> items) {
+		for (String item : items) {
+			remove(item);
+		}
+	}
+
+	@Override
+	public void remove(String item) {
+		if (item == null || (item = item.trim()).isEmpty()) {
+			return;
+		}
+		int index = find(item, 0, item.length());
+		if (index < 0) {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("词不存在：{}", item);
+			}
+			return;
+		}
+		//删除词尾节点，然后向上删除没有子节点的节点
+		int node = index;
+		while (node != ROOT && firstChild[node] == 0) {
+			int parent = check[node];
+			unlinkChild(parent, node - base[parent]);
+			release(node);
+			node = parent;
+		}
+		wordCount--;
+		if (reverse != null) {
+			reverse.remove(ReversedKeys.reverse(item));
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("成功从词典中移除词：{}", item);
+		}
+	}
+
+	@Override
+	public void clear() {
+		allocate(initialSize);
+		maxLength = 0;
+		wordCount = 0;
+		if (reverse != null) {
+			reverse.clear();
+		}
+	}
+
+	/**
+	 * 词的个数
+	 * @return 个数
+	 */
+	public int size() {
+		return wordCount;
+	}
+
+	/**
+	 * 占用的堆内存，即所有数组的字节数之和，不包含反向索引
+	 * @return 字节数
+	 */
+	public long getFootprint() {
+		return 16L * size + 8L * (occupied.length + full.length);
+	}
+
+	/**
+	 * 遍历一次前缀树收集统计信息，节点数为用到的单元数（含根节点和词尾单元），填充率为用到的单元占数组长度的比例
+	 * 内存占用包含反向索引
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().maxLength(maxLength);
+		int offset = base[ROOT];
+		for (int c = firstChild[ROOT] - 1; c >= 0; c = nextSibling[offset + c] - 1) {
+			if (c != END) {
+				long before = builder.getCountedWords();
+				collect(offset + c, 1, builder);
+				builder.root(builder.getCountedWords() - before);
+			}
+		}
+		long used = 0;
+		for (long bits : occupied) {
+			used += Long.bitCount(bits);
+		}
+		MutableDoubleArrayDictionaryTrie reverse = this.reverse;
+		return builder.wordCount(wordCount).nodeCount(used).fillRatio((double) used / size)
+				.footprint(getFootprint() + (reverse == null ? 0 : reverse.getFootprint())).build();
+	}
+
+	private void collect(int node, int depth, DictionaryStats.Builder builder) {
+		int offset = base[node];
+		for (int c = firstChild[node] - 1; c >= 0; c = nextSibling[offset + c] - 1) {
+			if (c == END) {
+				builder.word(depth);
+			} else {
+				collect(offset + c, depth + 1, builder);
+			}
+		}
+	}
+
+	/**
+	 * 重新紧凑存储
+	 * 频繁的增删之后数组中会有很多空洞，逐个节点重新分配位置，每组兄弟节点一次定位，不会再发生迁移
+	 */
+	public void compact() {
+		long start = System.currentTimeMillis();
+		int[] oldBase = base;
+		int[] oldFirstChild = firstChild;
+		int[] oldNextSibling = nextSibling;
+		int oldSize = size;
+		allocate(Math.max(tail, ROOT + 1));
+		copy(oldBase, oldFirstChild, oldNextSibling, ROOT, ROOT);
+		//去掉尾部多余的空间
+		base = Arrays.copyOf(base, tail);
+		check = Arrays.copyOf(check, tail);
+		firstChild = Arrays.copyOf(firstChild, tail);
+		nextSibling = Arrays.copyOf(nextSibling, tail);
+		occupied = Arrays.copyOf(occupied, (tail + 63) >>> 6);
+		full = Arrays.copyOf(full, (occupied.length + 63) >>> 6);
+		size = tail;
+		lowestFree = ROOT + 1;
+		LOGGER.info("可变双数组紧凑存储：" + oldSize + " -> " + size + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+		if (reverse != null) {
+			reverse.compact();
+		}
+	}
+
+	private void copy(int[] oldBase, int[] oldFirstChild, int[] oldNextSibling, int from, int to) {
+		if (oldFirstChild[from] == 0) {
+			return;
+		}
+		int offset = oldBase[from];
+		int count = 0;
+		for (int c = oldFirstChild[from] - 1; c >= 0; c = oldNextSibling[offset + c] - 1) {
+			count++;
+		}
+		int[] codes = new int[count];
+		count = 0;
+		for (int c = oldFirstChild[from] - 1; c >= 0; c = oldNextSibling[offset + c] - 1) {
+			codes[count++] = c;
+		}
+		int begin = findBase(codes, count);
+		base[to] = begin;
+		for (int i = count - 1; i >= 0; i--) {
+			occupy(begin + codes[i], to);
+			linkChild(to, codes[i]);
+		}
+		for (int i = 0; i < count; i++) {
+			if (codes[i] == END) {
+				base[begin + END] = oldBase[offset + END];
+			} else {
+				copy(oldBase, oldFirstChild, oldNextSibling, offset + codes[i], begin + codes[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,400 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.dictionary.MatchHandler;
+
+/**
+ * 堆外内存前缀树
+ * 节点按层次顺序编号，字符、子节点范围、词尾标记分别存储在三块直接内存（direct ByteBuffer）中，有附加值时再用一块存储每个节点的附加值
+ * 同一个节点的子节点编号连续且按字符排序，查找子节点时二分查找
+ * 构建完成后堆内只剩几个缓冲区对象，老年代大小和GC停顿时间不再随词典大小增长
+ */
+public class OffHeapDictionaryTrie implements Dictionary {
+	private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapDictionaryTrie.class);
+	private static final int ROOT = 0;
+
+	//节点的字符
+	private CharBuffer labels;
+	//节点i的子节点为[first[i], first[i+1])
+	private IntBuffer first;
+	//词尾节点位图
+	private LongBuffer terminal;
+	//节点的附加值，没有附加值时为null
+	private IntBuffer payloads;
+	private int nodeCount;
+	private int wordCount;
+	private int maxLength;
+	//是否在构建时同时建立反向索引
+	private boolean reverseIndex;
+	//反向索引，按从后往前的顺序存储词
+	private volatile OffHeapDictionaryTrie reverse;
+
+	public OffHeapDictionaryTrie() {
+		LOGGER.info("初始化堆外内存前缀树词典");
+	}
+
+	/**
+	 * 副本和原词典共用直接内存
+	 */
+	private OffHeapDictionaryTrie(OffHeapDictionaryTrie source) {
+		labels = source.labels;
+		first = source.first;
+		terminal = source.terminal;
+		payloads = source.payloads;
+		nodeCount = source.nodeCount;
+		wordCount = source.wordCount;
+		maxLength = source.maxLength;
+		reverseIndex = source.reverseIndex;
+		if (source.reverse != null) {
+			reverse = new OffHeapDictionaryTrie(source.reverse);
+		}
+	}
+
+	/**
+	 * 构建后不会再修改，副本和原词典共用直接内存
+	 */
+	@Override
+	public OffHeapDictionaryTrie copy() {
+		return new OffHeapDictionaryTrie(this);
+	}
+
+	@Override
+	public void addAll(List<String> items) {
+		addAll(items, null);
+	}
+
+	/**
+	 * 反向索引只用于查找词的长度，附加值从正向的前缀树中取
+	 */
+	@Override
+	public void addAll(List<String> items, int[] payloads) {
+		if (labels != null) {
+			throw new RuntimeException("addAll method can just be used once after clear method!");
+		}
+		long start = System.currentTimeMillis();
+		SortedWords words = new SortedWords(items, payloads);
+		if (reverseIndex) {
+			OffHeapDictionaryTrie trie = new OffHeapDictionaryTrie();
+			trie.addAll(ReversedKeys.reverse(words.words));
+			reverse = trie;
+		}
+		LevelOrderTrieBuilder builder = new LevelOrderTrieBuilder(words);
+		nodeCount = builder.nodeCount;
+		wordCount = builder.wordCount;
+		maxLength = builder.maxLength;
+		labels = allocate(2 * nodeCount).asCharBuffer().put(builder.labels, 0, nodeCount);
+		first = allocate(4 * (nodeCount + 1)).asIntBuffer().put(builder.first, 0, nodeCount + 1);
+		int blocks = (nodeCount + 63) >>> 6;
+		terminal = allocate(8 * blocks).asLongBuffer().put(builder.terminal, 0, blocks);
+		if (builder.payloads != null) {
+			this.payloads = allocate(4 * nodeCount).asIntBuffer().put(builder.payloads, 0, nodeCount);
+		}
+		LOGGER.info("构建堆外内存前缀树，词数：" + wordCount + "，节点数：" + nodeCount + "，占用内存：" + getFootprint() + " 字节，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
+	private static ByteBuffer allocate(int bytes) {
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * 精确的内存占用，即所有直接内存缓冲区的字节数之和，包含反向索引
+	 * @return 字节数
+	 */
+	public long getFootprint() {
+		if (labels == null) {
+			return 0;
+		}
+		long footprint = 2L * labels.capacity() + 4L * first.capacity() + 8L * terminal.capacity();
+		if (payloads != null) {
+			footprint += 4L * payloads.capacity();
+		}
+		OffHeapDictionaryTrie reverse = this.reverse;
+		if (reverse != null) {
+			footprint += reverse.getFootprint();
+		}
+		return footprint;
+	}
+
+	/**
+	 * 二分查找子节点
+	 * @param node 节点
+	 * @param character 字符
+	 * @return 子节点，不存在则返回-1
+	 */
+	private int getChild(int node, char character) {
+		int low = first.get(node);
+		int high = first.get(node + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char label = labels.get(mid);
+			if (label < character) {
+				low = mid + 1;
+			} else if (label > character) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isTerminal(int node) {
+		return (terminal.get(node >>> 6) & (1L << node)) != 0;
+	}
+
+	@Override
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	@Override
+	public boolean contains(String item, int start, int length) {
+		if (labels == null || start < 0 || length < 1) {
+			return false;
+		}
+		if (item == null || item.length() < start + length) {
+			return false;
+		}
+		int node = ROOT;
+		for (int i = start; i < start + length; i++) {
+			node = getChild(node, item.charAt(i));
+			if (node < 0) {
+				return false;
+			}
+		}
+		return isTerminal(node);
+	}
+
+	@Override
+	public boolean contains(String item) {
+		return contains(item, 0, item.length());
+	}
+
+	private int payload(int node) {
+		IntBuffer payloads = this.payloads;
+		return payloads == null ? 0 : payloads.get(node);
+	}
+
+	@Override
+	public int getPayload(String item, int start, int length) {
+		if (payloads == null || !contains(item, start, length)) {
+			return 0;
+		}
+		int node = ROOT;
+		for (int i = start; i < start + length; i++) {
+			node = getChild(node, item.charAt(i));
+		}
+		return payload(node);
+	}
+
+	@Override
+	public int longestMatch(String text, int start, int limit) {
+		return Dictionary.matchLength(longestMatchWithPayload(text, start, limit));
+	}
+
+	@Override
+	public long longestMatchWithPayload(String text, int start, int limit) {
+		if (labels == null || start < 0 || text == null) {
+			return 0;
+		}
+		int end = Math.min(start + limit, text.length());
+		int longest = 0;
+		int found = ROOT;
+		int node = ROOT;
+		for (int i = start; i < end; i++) {
+			node = getChild(node, text.charAt(i));
+			if (node < 0) {
+				break;
+			}
+			if (isTerminal(node)) {
+				longest = i - start + 1;
+				found = node;
+			}
+		}
+		return longest == 0 ? 0 : Dictionary.packMatch(longest, payload(found));
+	}
+
+	@Override
+	public void commonPrefixSearch(String text, int start, int limit, MatchHandler handler) {
+		if (labels == null || start < 0 || text == null) {
+			return;
+		}
+		int end = Math.min(start + limit, text.length());
+		int node = ROOT;
+		for (int i = start; i < end; i++) {
+			node = getChild(node, text.charAt(i));
+			if (node < 0) {
+				break;
+			}
+			if (isTerminal(node)) {
+				handler.match(start, i - start + 1);
+			}
+		}
+	}
+
+	@Override
+	public int longestSuffixMatch(String text, int end, int limit) {
+		OffHeapDictionaryTrie reverse = this.reverse;
+		if (reverse == null) {
+			return Dictionary.super.longestSuffixMatch(text, end, limit);
+		}
+		return reverse.longestBackwardMatch(text, end, limit);
+	}
+
+	/**
+	 * 在反向索引中从end-1开始向前遍历文本
+	 */
+	private int longestBackwardMatch(String text, int end, int limit) {
+		if (labels == null || text == null || end <= 0 || end > text.length()) {
+			return 0;
+		}
+		int begin = Math.max(end - limit, 0);
+		int longest = 0;
+		int node = ROOT;
+		for (int i = end - 1; i >= begin; i--) {
+			node = getChild(node, text.charAt(i));
+			if (node < 0) {
+				break;
+			}
+			if (isTerminal(node)) {
+				longest = end - i;
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * 构建后不能再增加词，反向索引需要在addAll方法之前启用
+	 */
+	@Override
+	public void setReverseIndex(boolean enabled) {
+		if (enabled && reverse == null && labels != null) {
+			LOGGER.warn("堆外内存前缀树已经构建，反向索引需要在addAll方法之前启用");
+			return;
+		}
+		reverseIndex = enabled;
+		if (!enabled) {
+			reverse = null;
+		}
+	}
+
+	@Override
+	public boolean isReverseIndex() {
+		return reverse != null;
+	}
+
+	@Override
+	public boolean isIterable() {
+		return true;
+	}
+
+	@Override
+	public void forEach(Consumer<String> action) {
+		forEachWithPayload((word, payload) -> action.accept(word));
+	}
+
+	@Override
+	public void forEachWithPayload(ObjIntConsumer<String> action) {
+		if (labels != null) {
+			collect(ROOT, new StringBuilder(), action);
+		}
+	}
+
+	/**
+	 * 遍历节点下的所有词
+	 */
+	private void collect(int node, StringBuilder prefix, ObjIntConsumer<String> action) {
+		if (isTerminal(node)) {
+			action.accept(prefix.toString(), payload(node));
+		}
+		int end = first.get(node + 1);
+		for (int child = first.get(node); child < end; child++) {
+			prefix.append(labels.get(child));
+			collect(child, prefix, action);
+			prefix.setLength(prefix.length() - 1);
+		}
+	}
+
+	/**
+	 * 遍历一次前缀树收集统计信息，根节点的子节点按二分查找，没有词首字索引
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().maxLength(maxLength);
+		if (labels != null) {
+			int end = first.get(ROOT + 1);
+			for (int child = first.get(ROOT); child < end; child++) {
+				long before = builder.getCountedWords();
+				collect(child, 1, builder);
+				builder.root(builder.getCountedWords() - before);
+			}
+		}
+		return builder.wordCount(wordCount).nodeCount(nodeCount).footprint(getFootprint()).build();
+	}
+
+	private void collect(int node, int depth, DictionaryStats.Builder builder) {
+		if (isTerminal(node)) {
+			builder.word(depth);
+		}
+		int end = first.get(node + 1);
+		for (int child = first.get(node); child < end; child++) {
+			collect(child, depth + 1, builder);
+		}
+	}
+
+	/**
+	 * 词的个数
+	 * @return 个数
+	 */
+	public int size() {
+		return wordCount;
+	}
+
+	@Override
+	public boolean isBuildOnce() {
+		return true;
+	}
+
+	@Override
+	public void add(String item) {
+		throw new RuntimeException("not yet support, please use addAll method!");
+	}
+
+	@Override
+	public void removeAll(List<String> items) {
+		throw new RuntimeException("not yet support menthod!");
+	}
+
+	@Override
+	public void remove(String item) {
+		throw new RuntimeException("not yet support menthod!");
+	}
+
+	/**
+	 * 直接内存在缓冲区对象被回收时释放
+	 */
+	@Override
+	public void clear() {
+		labels = null;
+		first = null;
+		terminal = null;
+		payloads = null;
+		reverse = null;
+		nodeCount = 0;
+		wordCount = 0;
+		maxLength = 0;
+	}
+}
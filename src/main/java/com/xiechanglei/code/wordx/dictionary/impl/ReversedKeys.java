@@ -0,0 +1,30 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 反向索引使用的键
+ * 按char逐个倒序，不像StringBuilder.reverse那样保留代理对的顺序，和逆向遍历文本时的顺序一致
+ */
+final class ReversedKeys {
+	private ReversedKeys() {
+	}
+
+	static String reverse(String item) {
+		int len = item.length();
+		char[] chars = new char[len];
+		for (int i = 0; i < len; i++) {
+			chars[len - 1 - i] = item.charAt(i);
+		}
+		return new String(chars);
+	}
+
+	static List<String> reverse(List<String> items) {
+		List<String> result = new ArrayList<>(items.size());
+		for (String item : items) {
+			result.add(reverse(item));
+		}
+		return result;
+	}
+}
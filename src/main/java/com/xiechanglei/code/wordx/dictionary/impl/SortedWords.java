@@ -0,0 +1,80 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 构建静态词典使用的词：去掉首尾空白字符和空词，按字典序排序并去重，附加值与词一一对应
+ * 同一个词出现多次时，后出现的非0附加值覆盖前面的，和逐个调用add方法的结果一致
+ */
+final class SortedWords {
+	final List<String> words;
+	//与words一一对应，全部为0时为null
+	final int[] payloads;
+	final int maxLength;
+
+	/**
+	 * @param items 词，不需要排好序
+	 * @param payloads 与items一一对应的附加值，为null时都为0
+	 */
+	SortedWords(List<String> items, int[] payloads) {
+		if (payloads != null && payloads.length < items.size()) {
+			throw new IllegalArgumentException("payloads length " + payloads.length + " is less than items size " + items.size());
+		}
+		List<String> trimmed = new ArrayList<>(items.size());
+		List<Integer> order = new ArrayList<>(items.size());
+		boolean withPayloads = false;
+		for (int i = 0; i < items.size(); i++) {
+			String item = items.get(i).trim();
+			if (!item.isEmpty()) {
+				order.add(trimmed.size());
+				trimmed.add(item);
+				withPayloads |= payloads != null && payloads[i] != 0;
+			}
+		}
+		if (!withPayloads) {
+			this.words = trimmed.stream().sorted().distinct().collect(Collectors.toList());
+			this.payloads = null;
+		} else {
+			int[] values = new int[trimmed.size()];
+			for (int i = 0, j = 0; i < items.size(); i++) {
+				if (!items.get(i).trim().isEmpty()) {
+					values[j++] = payloads[i];
+				}
+			}
+			//稳定排序，相同的词保持加入的顺序
+			order.sort((a, b) -> trimmed.get(a).compareTo(trimmed.get(b)));
+			List<String> words = new ArrayList<>(trimmed.size());
+			int[] sorted = new int[trimmed.size()];
+			for (int i : order) {
+				String word = trimmed.get(i);
+				int last = words.size() - 1;
+				if (last >= 0 && words.get(last).equals(word)) {
+					if (values[i] != 0) {
+						sorted[last] = values[i];
+					}
+				} else {
+					sorted[words.size()] = values[i];
+					words.add(word);
+				}
+			}
+			this.words = words;
+			this.payloads = Arrays.copyOf(sorted, words.size());
+		}
+		int max = 0;
+		for (String word : words) {
+			max = Math.max(max, word.length());
+		}
+		this.maxLength = max;
+	}
+
+	int size() {
+		return words.size();
+	}
+
+	int payload(int i) {
+		return payloads == null ? 0 : payloads[i];
+	}
+}
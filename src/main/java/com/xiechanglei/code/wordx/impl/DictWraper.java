@@ -1,29 +1,86 @@
 package com.xiechanglei.code.wordx.impl;
 
 import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.impl.DictionaryPrefilter;
+import com.xiechanglei.code.wordx.dictionary.impl.LayeredDictionary;
 import com.xiechanglei.code.wordx.util.GenericTrie;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
 
+/**
+ * 一次分词使用的词典
+ * 创建时取出场景的当前快照和基础词典，整个分词过程看到的都是同一个版本
+ */
 public class DictWraper {
-	private WordSegSceneImpl scene;
+	private final SceneSnapshot snapshot;
+	private final Dictionary baseDictionary;
+	private final IntGenericTrie baseTag;
+	private final DictionaryPrefilter basePrefilter;
+	//创建分层词典之前基础词典的最大词长，分层词典记住了当时的最大词长
+	private final int baseMaxLength;
+	private final LayeredDictionary layeredDictionary;
 
 	public DictWraper(WordSegSceneImpl scene) {
-		this.scene = scene;
+		this.snapshot = scene.getSnapshot();
+		WordSegmenterImpl segmenter = (WordSegmenterImpl) WordSegmenterHolder.getWordSegmenter();
+		DictionaryPrefilter basePrefilter = segmenter.basePrefilter;
+		this.baseDictionary = segmenter.baseDictionary;
+		if (segmenter.basePrefilter != basePrefilter) {
+			//正在替换基础词典，这次分词不过滤
+			basePrefilter = null;
+		}
+		this.basePrefilter = basePrefilter;
+		this.baseTag = segmenter.baseTag;
+		this.baseMaxLength = baseDictionary.getMaxLength();
+		this.layeredDictionary = new LayeredDictionary(snapshot.getDictionary(), snapshot.getTag(), snapshot.getPrefilter(), baseDictionary, baseTag, basePrefilter,
+				snapshot.getMask());
+	}
+
+	/**
+	 * 是否还能代表场景的当前快照和当前的基础词典，是时可以用于下一次分词
+	 * 基础词典中增删的词直接在分层词典中可见，只有替换了基础词典或最大词长变了时才需要重新创建
+	 * @param snapshot 场景的当前快照
+	 * @return 是否
+	 */
+	boolean isCurrent(SceneSnapshot snapshot) {
+		WordSegmenterImpl segmenter = (WordSegmenterImpl) WordSegmenterHolder.getWordSegmenter();
+		return this.snapshot == snapshot && baseDictionary == segmenter.baseDictionary && basePrefilter == segmenter.basePrefilter && baseTag == segmenter.baseTag
+				&& baseMaxLength == baseDictionary.getMaxLength();
+	}
+
+	/**
+	 * 场景词典和基础词典合并后的视图，分词和词性标注都通过它查找
+	 * @return 分层词典
+	 */
+	public LayeredDictionary getLayeredDictionary() {
+		return layeredDictionary;
 	}
 
 	public Dictionary getDictionary() {
-		return scene.dictionary;
+		return snapshot.getDictionary();
 	}
 
-	public GenericTrie<String> getTag() {
-		return scene.tag;
+	public IntGenericTrie getTag() {
+		return snapshot.getTag();
+	}
+
+	public GenericTrie<String> getRefine() {
+		return snapshot.getRefine();
 	}
 
 	public Dictionary getBaseDictionary() {
-		return ((WordSegmenterImpl) WordSegmenterHolder.getWordSegmenter()).baseDictionary;
+		return baseDictionary;
+	}
+
+	public IntGenericTrie getBaseTag() {
+		return baseTag;
 	}
 
-	public GenericTrie<String> getBaseTag() {
-		return ((WordSegmenterImpl) WordSegmenterHolder.getWordSegmenter()).baseTag;
+	/**
+	 * 场景词典的版本号
+	 * @return 版本号
+	 */
+	public long getVersion() {
+		return snapshot.getVersion();
 	}
 
 }
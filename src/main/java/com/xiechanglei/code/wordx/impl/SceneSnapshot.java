@@ -0,0 +1,151 @@
+package com.xiechanglei.code.wordx.impl;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.impl.CompactDictionaryTrie;
+import com.xiechanglei.code.wordx.dictionary.impl.DictionaryPrefilter;
+import com.xiechanglei.code.wordx.util.GenericTrie;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+
+/**
+ * 场景词典的不可变快照
+ * 一次分词从头到尾使用同一个快照；修改场景词典时在副本上修改，完成后整体替换，读写之间不需要加锁
+ */
+public final class SceneSnapshot {
+	private final Dictionary dictionary;
+	//场景词典的前置过滤器
+	private final DictionaryPrefilter prefilter;
+	//词性编号，见TagRegistry
+	private final IntGenericTrie tag;
+	private final GenericTrie<String> refine;
+	//场景屏蔽的基础词典中的词，没有屏蔽过时为null
+	private final Dictionary mask;
+	private final long version;
+
+	SceneSnapshot(Dictionary dictionary, DictionaryPrefilter prefilter, IntGenericTrie tag, GenericTrie<String> refine, Dictionary mask, long version) {
+		this.dictionary = dictionary;
+		this.prefilter = prefilter;
+		this.tag = tag;
+		this.refine = refine;
+		this.mask = mask;
+		this.version = version;
+	}
+
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	public DictionaryPrefilter getPrefilter() {
+		return prefilter;
+	}
+
+	public IntGenericTrie getTag() {
+		return tag;
+	}
+
+	public GenericTrie<String> getRefine() {
+		return refine;
+	}
+
+	public Dictionary getMask() {
+		return mask;
+	}
+
+	/**
+	 * 版本号，每发布一个新的快照加一，一次批量修改只加一
+	 * @return 版本号
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * 基于一个快照修改出新的快照
+	 * 首次修改某一部分时才复制这一部分，没有修改的部分和原快照共用
+	 */
+	static final class Builder {
+		private final SceneSnapshot source;
+		private Dictionary dictionary;
+		private DictionaryPrefilter prefilter;
+		private IntGenericTrie tag;
+		private GenericTrie<String> refine;
+		private Dictionary mask;
+		private boolean maskModified;
+
+		Builder(SceneSnapshot source) {
+			this.source = source;
+		}
+
+		SceneSnapshot getSource() {
+			return source;
+		}
+
+		Dictionary dictionary() {
+			if (dictionary == null) {
+				dictionary = source.dictionary.copy();
+			}
+			return dictionary;
+		}
+
+		DictionaryPrefilter prefilter() {
+			if (prefilter == null) {
+				prefilter = source.prefilter.copy();
+			}
+			return prefilter;
+		}
+
+		IntGenericTrie tag() {
+			if (tag == null) {
+				tag = source.tag.copy();
+			}
+			return tag;
+		}
+
+		GenericTrie<String> refine() {
+			if (refine == null) {
+				refine = source.refine.copy();
+			}
+			return refine;
+		}
+
+		Dictionary mask() {
+			if (!maskModified) {
+				mask = source.mask != null ? source.mask.copy() : new CompactDictionaryTrie();
+				maskModified = true;
+			}
+			return mask;
+		}
+
+		void setDictionary(Dictionary dictionary) {
+			this.dictionary = dictionary;
+		}
+
+		void setPrefilter(DictionaryPrefilter prefilter) {
+			this.prefilter = prefilter;
+		}
+
+		void setTag(IntGenericTrie tag) {
+			this.tag = tag;
+		}
+
+		void setRefine(GenericTrie<String> refine) {
+			this.refine = refine;
+		}
+
+		/**
+		 * @param mask 屏蔽的词，null表示不屏蔽
+		 */
+		void setMask(Dictionary mask) {
+			this.mask = mask;
+			this.maskModified = true;
+		}
+
+		boolean isModified() {
+			return dictionary != null || prefilter != null || tag != null || refine != null || maskModified;
+		}
+
+		SceneSnapshot build() {
+			return new SceneSnapshot(dictionary != null ? dictionary : source.dictionary, prefilter != null ? prefilter : source.prefilter, tag != null ? tag : source.tag,
+					refine != null ? refine : source.refine, maskModified ? mask : source.mask, source.version + 1);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.xiechanglei.code.wordx.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+import com.xiechanglei.code.wordx.dictionary.impl.LayeredDictionary;
+import com.xiechanglei.code.wordx.recognition.Punctuation;
+import com.xiechanglei.code.wordx.recognition.RecognitionTool;
+import com.xiechanglei.code.wordx.segmentation.Segmentation;
+import com.xiechanglei.code.wordx.segmentation.Word;
+import com.xiechanglei.code.wordx.segmentation.impl.ReverseMaximumMatching;
+
+/**
+ * 流式分词：从Reader中读入固定大小的缓冲区，缓冲区满了时在后半部分的最后一个标点符号之后切开，前面的部分分词后立即输出
+ * 切开后剩下的不完整的句子移到缓冲区的开头，和后面读入的文本拼在一起，占用的内存与输入的大小无关
+ * 后半部分没有标点符号时，从后往前找一个没有词跨过的位置切开，找的方向与场景的分词算法一致
+ * 只在缓冲区满了和读完时切开，切开的位置与Reader每次返回多少个字无关；输出要等缓冲区读满，需要更快输出时用小一些的缓冲区
+ * 在标点符号处切开与整段分词的结果相同，只是切开处两边的词不会被细分规则合并
+ * 整个流使用开始时场景的分词算法和词典快照，之后对场景的修改不影响正在进行的流式分词
+ * 输出的词的位置是在整个输入中的位置，超过int的范围后为-1
+ */
+class StreamSegmenter {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 1024;
+    //找切开的位置时每次复制到字符串中查词典的字数，找不到时再往前扩大
+    private static final int SEARCH_WINDOW = 256;
+
+    private final WordSegSceneImpl scene;
+    private final char[] buffer;
+    private Segmentation segmentation;
+    private DictWraper dict;
+    //缓冲区中已经读入的字符数
+    private int size;
+    //缓冲区开头的字在整个输入中的位置
+    private long position;
+
+    StreamSegmenter(WordSegSceneImpl scene, int bufferSize) {
+        this.scene = scene;
+        this.buffer = new char[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+    }
+
+    /**
+     * 读完整个Reader，不关闭Reader
+     */
+    void seg(Reader reader, Consumer<Word> consumer) throws IOException {
+        segmentation = scene.getSegmentation();
+        dict = scene.getDict();
+        int read;
+        while ((read = reader.read(buffer, size, buffer.length - size)) >= 0) {
+            size += read;
+            if (size == buffer.length) {
+                int cut = lastPunctuation();
+                emit(cut > 0 ? cut : safePoint(), consumer);
+            }
+        }
+        if (size > 0) {
+            emit(size, consumer);
+        }
+    }
+
+    /**
+     * 只在后半部分找，每次切开后至少输出半个缓冲区
+     * @return 最后一个标点符号之后的位置，后半部分没有标点符号时返回0
+     */
+    private int lastPunctuation() {
+        for (int i = size - 1; i >= size / 2; i--) {
+            if (Punctuation.is(buffer[i])) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 从缓冲区的末尾往前找一个切开后不会拆开词的位置：
+     * 正向匹配时前面的字开始的最长的词都不会越过这个位置，逆向匹配时后面的字结尾的最长的词都不会越过这个位置
+     * 两边也不是连续的英文、数字
+     * 从距末尾一个最大词长的位置开始找，这样查到的词都完整地在缓冲区中
+     * 词典只能查字符串，每次只把末尾的一小段复制出来查，找不到时再往前扩大
+     * 最多往前找半个缓冲区，找不到时只能在末尾切开
+     */
+    private int safePoint() {
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
+        boolean reverse = segmentation instanceof ReverseMaximumMatching;
+        int maxLength = Math.max(dictionary.getMaxLength(), 1);
+        int lowest = size / 2;
+        //在(low, high]中找
+        int high = size - maxLength;
+        int span = SEARCH_WINDOW;
+        while (high > lowest) {
+            int low = Math.max(lowest, high - span);
+            int from = Math.max(0, low + 1 - maxLength);
+            int to = Math.min(size, high + maxLength);
+            String text = null;
+            for (int p = high; p > low; p--) {
+                if (isRecogPart(buffer[p - 1]) && isRecogPart(buffer[p])) {
+                    continue;
+                }
+                if (text == null) {
+                    text = new String(buffer, from, to - from);
+                }
+                if (reverse ? !crossedFromRight(dictionary, text, from, to, p, maxLength) : !crossedFromLeft(dictionary, text, from, to, p, maxLength)) {
+                    return p;
+                }
+            }
+            high = low;
+            span *= 2;
+        }
+        return size;
+    }
+
+    /**
+     * 正向匹配：p前面的字开始的最长的词是否越过p
+     * @param text 缓冲区中from到to的字
+     */
+    private static boolean crossedFromLeft(LayeredDictionary dictionary, String text, int from, int to, int p, int maxLength) {
+        for (int s = Math.max(from, p - maxLength + 1); s < p; s++) {
+            if (dictionary.longestMatch(text, s - from, Math.min(maxLength, to - s)) > p - s) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 逆向匹配：p后面的字结尾的最长的词是否越过p
+     * @param text 缓冲区中from到to的字
+     */
+    private static boolean crossedFromRight(LayeredDictionary dictionary, String text, int from, int to, int p, int maxLength) {
+        for (int e = Math.min(to, p + maxLength - 1); e > p; e--) {
+            if (dictionary.longestSuffixMatch(text, e - from, Math.min(maxLength, e - from)) > e - p) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRecogPart(char c) {
+        return RecognitionTool.isEnglish(c) || RecognitionTool.isNumber(c) || RecognitionTool.isChineseNumber(c);
+    }
+
+    /**
+     * 对前length个字分词，剩下的移到缓冲区的开头
+     */
+    private void emit(int length, Consumer<Word> consumer) {
+        String text = new String(buffer, 0, length);
+        System.arraycopy(buffer, length, buffer, 0, size - length);
+        size -= length;
+        long offset = position;
+        position += length;
+        boolean located = position <= Integer.MAX_VALUE;
+        for (Word word : scene.segSantance(text, segmentation, dict)) {
+            if (!located) {
+                word.setPosition(-1, -1);
+            } else if (offset > 0 && word.getStart() >= 0) {
+                word.setPosition(word.getStart() + (int) offset, word.getEnd() + (int) offset);
+            }
+            consumer.accept(word);
+        }
+    }
+}
@@ -1,94 +1,433 @@
 package com.xiechanglei.code.wordx.impl;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import com.xiechanglei.code.wordx.SegmentationAlgorithm;
 import com.xiechanglei.code.wordx.WordSegScene;
 import com.xiechanglei.code.wordx.dictionary.Dictionary;
-import com.xiechanglei.code.wordx.dictionary.impl.DictionaryTrie;
+import com.xiechanglei.code.wordx.dictionary.impl.CompactDictionaryTrie;
+import com.xiechanglei.code.wordx.dictionary.impl.DictionaryPrefilter;
 import com.xiechanglei.code.wordx.segmentation.Segmentation;
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 import com.xiechanglei.code.wordx.segmentation.WordRefiner;
+import com.xiechanglei.code.wordx.segmentation.impl.AbstractSegmentation;
 import com.xiechanglei.code.wordx.segmentation.impl.MaximumMatching;
 import com.xiechanglei.code.wordx.tagging.PartOfSpeechTagging;
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
 import com.xiechanglei.code.wordx.util.GenericTrie;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+import com.xiechanglei.code.wordx.util.Whitespace;
 
+/**
+ * 分词场景
+ * 场景词典、词性、细分规则保存在不可变的快照中，分词时读取当前快照，不需要加锁
+ * 修改时在快照的副本上修改（只复制被修改的部分），写操作之间串行执行，每次修改完成后立即发布为新的快照
+ * 连续修改很多词时使用addWords、removeWords等批量方法，一批只复制、发布一次
+ */
 public class WordSegSceneImpl implements WordSegScene {
-    private Segmentation segmentation = new MaximumMatching();//default
-    protected Dictionary dictionary = new DictionaryTrie();
-    protected GenericTrie<String> tag = new GenericTrie<>();
-    protected GenericTrie<String> refine = new GenericTrie<>();
+    //批量分词时一组文本的总字数和文本数的上限，短文本合成一组后再交给线程池，一组共用一个词典快照
+    private static final int UNIT_CHARS = 16 * 1024;
+    private static final int UNIT_TEXTS = 512;
+
+    private volatile Segmentation segmentation = new MaximumMatching();//default
+    private volatile ForkJoinPool batchPool;
+    //上一次分词使用的词典，场景和基础词典都没有变时继续使用
+    private volatile DictWraper dict;
+    private volatile SceneSnapshot snapshot = new SceneSnapshot(new CompactDictionaryTrie(), new DictionaryPrefilter(), new IntGenericTrie(), new GenericTrie<>(), null, 0);
+    //只在写操作之间互斥，读取快照不加锁
+    private final Object lock = new Object();
+
+    /**
+     * 当前快照，只读取volatile字段，不会等待正在进行的修改
+     * @return 快照
+     */
+    public SceneSnapshot getSnapshot() {
+        return snapshot;
+    }
 
     @Override
-    public void addWord(String word, String t) {
-        if (word == null || (word = word.replaceAll("\\s+", "")).equals("")) {
+    public long getVersion() {
+        return getSnapshot().getVersion();
+    }
+
+    /**
+     * 在当前快照的副本上修改，完成后立即发布为新的快照，没有修改任何部分时不发布
+     * 修改过程中读取的仍是原来的快照，修改抛出异常时副本丢弃，快照不变
+     * @param mutation 修改操作
+     */
+    private void update(Consumer<SceneSnapshot.Builder> mutation) {
+        synchronized (lock) {
+            SceneSnapshot.Builder builder = new SceneSnapshot.Builder(snapshot);
+            mutation.accept(builder);
+            if (builder.isModified()) {
+                snapshot = builder.build();
+            }
+        }
+    }
+
+    /**
+     * 新建一个空的场景词典，保留原词典的反向索引设置
+     */
+    private static Dictionary newDictionary(Dictionary source) {
+        Dictionary dictionary = new CompactDictionaryTrie();
+        if (source.isReverseIndex()) {
+            dictionary.setReverseIndex(true);
+        }
+        return dictionary;
+    }
+
+    /**
+     * @param withFrequency 是否设置词频，不设置时词已经存在则保留原来的词频
+     */
+    private static void addWord(SceneSnapshot.Builder builder, String word, String t, int frequency, boolean withFrequency) {
+        if (word == null || (word = Whitespace.removeAll(word)).equals("")) {
             return;
         }
         if (t != null && !(t = t.trim()).equals("")) {
-            tag.put(word, t);
+            builder.tag().put(word, TagRegistry.code(t));
+        }
+        if (withFrequency) {
+            builder.dictionary().add(word, frequency);
+        } else {
+            builder.dictionary().add(word);
+        }
+        DictionaryPrefilter prefilter = builder.prefilter();
+        prefilter.add(word);
+        if (prefilter.isSaturated()) {
+            //字对位图太满，按词典的大小重新构建
+            builder.setPrefilter(DictionaryPrefilter.of(builder.dictionary()));
+        }
+    }
+
+    private static void removeWord(SceneSnapshot.Builder builder, String word) {
+        if (word != null) {
+            word = Whitespace.removeAll(word);
+            builder.dictionary().remove(word);
+            builder.tag().remove(word);
+        }
+    }
+
+    private static void addRefine(GenericTrie<String> refine, String line) {
+        try {
+            String[] attr = line.split("=");
+            refine.put(attr[0].trim(), Whitespace.collapse(attr[1].trim()));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void addWord(String word, String t) {
+        update(builder -> addWord(builder, word, t, 0, false));
+    }
+
+    @Override
+    public void addWord(String word, String t, int frequency) {
+        update(builder -> addWord(builder, word, t, frequency, true));
+    }
+
+    @Override
+    public void addWords(Map<String, String> words) {
+        update(builder -> words.forEach((word, t) -> addWord(builder, word, t, 0, false)));
+    }
+
+    /**
+     * 一次分词使用的词典，当前快照和基础词典都没有变时重复使用上一次的，不再创建
+     */
+    DictWraper getDict() {
+        SceneSnapshot snapshot = getSnapshot();
+        DictWraper dict = this.dict;
+        if (dict == null || !dict.isCurrent(snapshot)) {
+            dict = new DictWraper(this);
+            this.dict = dict;
         }
-        dictionary.add(word);
+        return dict;
     }
 
     @Override
     public List<Word> segSantance(String word) {
-        DictWraper dict = new DictWraper(this);
-        List<Word> words = segmentation.seg(word, dict);
-        words = WordRefiner.refine(words, refine);
+        return segSantance(word, segmentation, getDict());
+    }
+
+    /**
+     * 用指定的分词算法和词典分词，流式分词整个流使用同一个算法和词典
+     */
+    List<Word> segSantance(String text, Segmentation segmentation, DictWraper dict) {
+        return process(segmentation.seg(text, dict), dict);
+    }
+
+    Segmentation getSegmentation() {
+        return segmentation;
+    }
+
+    /**
+     * 分词、细分和词性标注都在缓冲区上完成，没有细分规则时缓冲区足够大后不产生垃圾
+     * 有细分规则时按词列表细分后再写回缓冲区
+     */
+    @Override
+    public void segSantance(String text, TokenBuffer buffer) {
+        DictWraper dict = getDict();
+        segmentation.seg(text, dict, buffer);
+        GenericTrie<String> refine = dict.getRefine();
+        if (!refine.isEmpty() && !buffer.isEmpty()) {
+            buffer.replace(0, WordRefiner.refine(buffer.toWords(), refine), TokenBuffer.REFINED);
+        }
+        PartOfSpeechTagging.process(buffer, 0, dict);
+    }
+
+    /**
+     * 细分和词性标注
+     */
+    private static List<Word> process(List<Word> words, DictWraper dict) {
+        words = WordRefiner.refine(words, dict.getRefine());
         PartOfSpeechTagging.process(words, dict);
         return words;
     }
 
     @Override
-    public void addRefine(String line) {
+    public List<List<Word>> segBatch(List<String> texts) {
+        List<List<Word>> result = new ArrayList<>(texts.size());
+        segBatch(texts.iterator(), result::add);
+        return result;
+    }
+
+    /**
+     * 批量分词：把连续的短文本合成一组，每组取一次词典快照，在线程池中按组并行分词
+     * 正在处理的组数不超过线程数的两倍，读取文本、保存结果占用的内存与文本总数无关
+     * 每个文本在一个线程中顺序分词，不再拆分成子任务，结果按输入的顺序交给consumer
+     */
+    @Override
+    public void segBatch(Iterator<String> texts, Consumer<List<Word>> consumer) {
+        Segmentation segmentation = this.segmentation;
+        ForkJoinPool pool = getBatchPool(segmentation);
+        if (pool.getParallelism() < 2) {
+            //只有一个线程，在调用线程中逐组处理
+            while (texts.hasNext()) {
+                for (List<Word> words : segUnit(nextUnit(texts), segmentation)) {
+                    consumer.accept(words);
+                }
+            }
+            return;
+        }
+        int window = pool.getParallelism() * 2;
+        ArrayDeque<Future<List<List<Word>>>> running = new ArrayDeque<>(window);
         try {
-            String[] attr = line.split("=");
-            refine.put(attr[0].trim(), attr[1].trim().replaceAll("\\s+", " "));
-        } catch (Exception e) {
-            e.printStackTrace();
+            while (texts.hasNext()) {
+                List<String> unit = nextUnit(texts);
+                running.add(pool.submit(() -> segUnit(unit, segmentation)));
+                if (running.size() >= window) {
+                    accept(running.poll(), consumer);
+                }
+            }
+            while (!running.isEmpty()) {
+                accept(running.poll(), consumer);
+            }
+        } finally {
+            //出错时取消还没有开始的组
+            for (Future<List<List<Word>>> future : running) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private ForkJoinPool getBatchPool(Segmentation segmentation) {
+        ForkJoinPool pool = batchPool;
+        if (pool != null) {
+            return pool;
         }
+        return segmentation instanceof AbstractSegmentation ? ((AbstractSegmentation) segmentation).getPool() : ForkJoinPool.commonPool();
     }
 
     @Override
-    public void clearAll() {
-        dictionary.clear();
-        tag.clear();
-        refine.clear();
+    public void setBatchPool(ForkJoinPool pool) {
+        batchPool = pool;
+    }
+
+    @Override
+    public void segStream(Reader reader, Consumer<Word> consumer) throws IOException {
+        new StreamSegmenter(this, StreamSegmenter.DEFAULT_BUFFER_SIZE).seg(reader, consumer);
+    }
+
+    @Override
+    public void segStream(ReadableByteChannel channel, Charset charset, Consumer<Word> consumer) throws IOException {
+        //不关闭这个Reader，关闭它会关闭调用方的通道
+        Reader reader = Channels.newReader(channel, charset.newDecoder(), -1);
+        segStream(reader, consumer);
+    }
+
+    /**
+     * 取出下一组文本，null视为空文本
+     */
+    private static List<String> nextUnit(Iterator<String> texts) {
+        List<String> unit = new ArrayList<>();
+        int chars = 0;
+        while (texts.hasNext() && chars < UNIT_CHARS && unit.size() < UNIT_TEXTS) {
+            String text = texts.next();
+            text = text == null ? "" : text;
+            unit.add(text);
+            chars += text.length();
+        }
+        return unit;
+    }
+
+    private List<List<Word>> segUnit(List<String> unit, Segmentation segmentation) {
+        DictWraper dict = getDict();
+        List<List<Word>> result = new ArrayList<>(unit.size());
+        for (String text : unit) {
+            result.add(process(segmentation.segSequential(text, dict), dict));
+        }
+        return result;
+    }
+
+    private static void accept(Future<List<List<Word>>> future, Consumer<List<Word>> consumer) {
+        List<List<Word>> result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("batch segmentation interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        for (List<Word> words : result) {
+            consumer.accept(words);
+        }
+    }
+
+    @Override
+    public void addRefine(String line) {
+        update(builder -> addRefine(builder.refine(), line));
+    }
+
+    @Override
+    public void maskWord(String word) {
+        if (word == null || (word = Whitespace.removeAll(word)).equals("")) {
+            return;
+        }
+        String item = word;
+        update(builder -> builder.mask().add(item));
+    }
+
+    @Override
+    public void unmaskWord(String word) {
+        if (word == null) {
+            return;
+        }
+        String item = Whitespace.removeAll(word);
+        update(builder -> {
+            //没有屏蔽过这个词时不需要复制，也不发布新的快照
+            Dictionary mask = builder.getSource().getMask();
+            if (mask != null && mask.contains(item)) {
+                builder.mask().remove(item);
+            }
+        });
+    }
 
+    @Override
+    public void addRefines(Collection<String> lines) {
+        update(builder -> lines.forEach(line -> addRefine(builder.refine(), line)));
+    }
+
+    @Override
+    public void clearAll() {
+        update(builder -> {
+            builder.setDictionary(newDictionary(builder.getSource().getDictionary()));
+            builder.setPrefilter(new DictionaryPrefilter());
+            builder.setTag(new IntGenericTrie());
+            builder.setRefine(new GenericTrie<>());
+            builder.setMask(null);
+        });
     }
 
     @Override
     public void removeWord(String word) {
-        if (word != null) {
-            word = word.replaceAll("\\s+", "");
-            dictionary.remove(word);
-            tag.remove(word);
+        update(builder -> removeWord(builder, word));
+    }
+
+    @Override
+    public void removeWords(Collection<String> words) {
+        update(builder -> words.forEach(word -> removeWord(builder, word)));
+    }
+
+    @Override
+    public void reload(Map<String, String> words, Collection<String> refines) {
+        //在锁外构建新的快照，不需要复制当前快照，也不会阻塞读取
+        SceneSnapshot source = getSnapshot();
+        SceneSnapshot.Builder builder = new SceneSnapshot.Builder(source);
+        builder.setDictionary(newDictionary(source.getDictionary()));
+        builder.setPrefilter(new DictionaryPrefilter());
+        builder.setTag(new IntGenericTrie());
+        builder.setRefine(new GenericTrie<>());
+        words.forEach((word, t) -> addWord(builder, word, t, 0, false));
+        if (refines != null) {
+            refines.forEach(line -> addRefine(builder.refine(), line));
+        }
+        synchronized (lock) {
+            //整体替换，构建期间其它写操作发布的快照也被替换掉
+            snapshot = new SceneSnapshot(builder.dictionary(), builder.prefilter(), builder.tag(), builder.refine(), null, snapshot.getVersion() + 1);
         }
     }
 
     @Override
     public void clearWord(String line) {
-        dictionary.clear();
-        tag.clear();
+        update(builder -> {
+            builder.setDictionary(newDictionary(builder.getSource().getDictionary()));
+            builder.setPrefilter(new DictionaryPrefilter());
+            builder.setTag(new IntGenericTrie());
+            builder.setMask(null);
+        });
     }
 
     @Override
     public void removeRefine(String line) {
-        try {
-            String[] attr = line.split("=");
-            refine.remove(attr[0].trim());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        update(builder -> {
+            try {
+                String[] attr = line.split("=");
+                builder.refine().remove(attr[0].trim());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
     }
 
     @Override
     public void clearRefine(String line) {
-        refine.clear();
+        update(builder -> builder.setRefine(new GenericTrie<>()));
     }
 
     @Override
     public void setSegmentation(SegmentationAlgorithm se) {
+        if (se == SegmentationAlgorithm.ReverseMaximumMatching) {
+            //逆向最大匹配需要反向索引，才能一次遍历查到以某个位置结尾的最长的词
+            //这里只为场景词典建立，基础词典是所有场景共用的，由WordSegmenter.setReverseIndex控制
+            update(builder -> {
+                if (!builder.getSource().getDictionary().isReverseIndex()) {
+                    builder.dictionary().setReverseIndex(true);
+                }
+            });
+        }
         segmentation = se.algorithm;
     }
 }
@@ -1,40 +1,118 @@
 package com.xiechanglei.code.wordx.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.xiechanglei.code.wordx.WordSegScene;
 import com.xiechanglei.code.wordx.WordSegmenter;
 import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.impl.DictionaryPrefilter;
 import com.xiechanglei.code.wordx.dictionary.impl.DictionaryTrie;
 import com.xiechanglei.code.wordx.recognition.PersonName;
 import com.xiechanglei.code.wordx.recognition.Quantifier;
 import com.xiechanglei.code.wordx.recognition.StopWord;
-import com.xiechanglei.code.wordx.util.GenericTrie;
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+import com.xiechanglei.code.wordx.util.Whitespace;
 
 public class WordSegmenterImpl implements WordSegmenter {
 
-    protected Dictionary baseDictionary = new DictionaryTrie();
-    protected GenericTrie<String> baseTag = new GenericTrie<>();
-
+    protected volatile Dictionary baseDictionary = new DictionaryTrie();
+    //词性编号，见TagRegistry
+    protected IntGenericTrie baseTag = new IntGenericTrie();
+    //基础词典的前置过滤器，为null时不过滤（词典不支持遍历）
+    protected volatile DictionaryPrefilter basePrefilter = new DictionaryPrefilter();
+    //基础词典是否启用反向索引，替换基础词典时在新词典上建好后才发布
+    private volatile boolean reverseIndex;
+
+    /**
+     * 词已经在基础词典中时保留原来的词频
+     */
     @Override
     public void addBaseWord(String word, String t) {
-        if (word == null || (word = word.replaceAll("\\s+", "")).equals("")) {
+        addBaseWord(word, t, 0, false);
+    }
+
+    @Override
+    public void addBaseWord(String word, String t, int frequency) {
+        addBaseWord(word, t, frequency, true);
+    }
+
+    private void addBaseWord(String word, String t, int frequency, boolean withFrequency) {
+        if (word == null || (word = Whitespace.removeAll(word)).equals("")) {
             return;
         }
         if (t != null && !(t = t.trim()).equals("")) {
-            baseTag.put(word, t);
+            baseTag.put(word, TagRegistry.code(t));
         }
 
         if (word.length() > 1) {
+            addToBaseDictionary(word, frequency, withFrequency);
+        }
+    }
+
+    /**
+     * 加入基础词典，同时更新前置过滤器，过滤器必须在词典之前更新，否则并发分词时可能漏掉这个词
+     * 词频作为附加值和词一起存储在词典中，不指定词频时保留词原来的词频
+     * 修改基础词典的方法都在同一个锁下执行，建立反向索引时不会漏掉同时加入的词
+     */
+    private synchronized void addToBaseDictionary(String word, int frequency, boolean withFrequency) {
+        DictionaryPrefilter prefilter = basePrefilter;
+        if (prefilter != null) {
+            prefilter.add(word);
+        }
+        if (withFrequency) {
+            baseDictionary.add(word, frequency);
+        } else {
             baseDictionary.add(word);
         }
+        if (prefilter != null && prefilter.isSaturated()) {
+            basePrefilter = DictionaryPrefilter.of(baseDictionary);
+        }
+    }
+
+    @Override
+    public void addBaseWords(Map<String, String> words) {
+        //词性逐个写入，词一次性写入词典
+        List<String> items = new ArrayList<>(words.size());
+        words.forEach((word, t) -> {
+            if (word == null || (word = Whitespace.removeAll(word)).equals("")) {
+                return;
+            }
+            if (t != null && !(t = t.trim()).equals("")) {
+                baseTag.put(word, TagRegistry.code(t));
+            }
+            if (word.length() > 1) {
+                items.add(word);
+            }
+        });
+        addAllToBaseDictionary(items);
+    }
+
+    /**
+     * 只能构建一次的词典（如双数组）一次性写入，调用方需要一次传入所有的词；其他词典逐个加入，可以分批调用
+     */
+    private synchronized void addAllToBaseDictionary(List<String> items) {
+        DictionaryPrefilter prefilter = basePrefilter;
+        if (prefilter != null) {
+            items.forEach(prefilter::add);
+        }
+        Dictionary dictionary = baseDictionary;
+        if (dictionary.isBuildOnce()) {
+            dictionary.addAll(items);
+        } else {
+            items.forEach(dictionary::add);
+        }
+        if (prefilter != null && prefilter.isSaturated()) {
+            basePrefilter = DictionaryPrefilter.of(baseDictionary);
+        }
     }
 
     @Override
-    public void removeBaseWord(String word) {
+    public synchronized void removeBaseWord(String word) {
         if (word != null) {
-            word = word.replaceAll("\\s+", "");
+            word = Whitespace.removeAll(word);
             baseDictionary.remove(word);
             baseTag.remove(word);
         }
@@ -42,9 +120,57 @@ public class WordSegmenterImpl implements WordSegmenter {
     }
 
     @Override
-    public void clearBaseWord() {
+    public synchronized void clearBaseWord() {
         baseDictionary.clear();
         baseTag.clear();
+        basePrefilter = new DictionaryPrefilter();
+    }
+
+    @Override
+    public synchronized void setBaseDictionary(Dictionary dictionary) {
+        if (dictionary == null) {
+            throw new IllegalArgumentException("base dictionary can not be null");
+        }
+        //反向索引在替换之前建好，分词时看到的新词典已经带有完整的反向索引
+        if (reverseIndex) {
+            enableReverseIndex(dictionary);
+        }
+        //词典可能已经构建好（如从镜像文件加载的双数组），按其中的词重新构建过滤器
+        //替换期间先停用过滤器，分词时不会用旧的过滤器过滤新的词典
+        DictionaryPrefilter prefilter = DictionaryPrefilter.of(dictionary);
+        basePrefilter = null;
+        baseDictionary = dictionary;
+        basePrefilter = prefilter;
+    }
+
+    @Override
+    public Dictionary getBaseDictionary() {
+        return baseDictionary;
+    }
+
+    @Override
+    public synchronized void setReverseIndex(boolean enabled) {
+        if (enabled) {
+            enableReverseIndex(baseDictionary);
+        } else {
+            baseDictionary.setReverseIndex(false);
+        }
+        reverseIndex = enabled;
+    }
+
+    @Override
+    public boolean isReverseIndex() {
+        return reverseIndex;
+    }
+
+    /**
+     * 在词典上建立反向索引，词典不支持时（如已经构建好的双数组）抛出异常，不会静默退回逐个长度查找
+     */
+    private static void enableReverseIndex(Dictionary dictionary) {
+        dictionary.setReverseIndex(true);
+        if (!dictionary.isReverseIndex()) {
+            throw new IllegalArgumentException("base dictionary does not support reverse index: " + dictionary.getClass().getName());
+        }
     }
 
     @Override
@@ -81,8 +207,8 @@ public class WordSegmenterImpl implements WordSegmenter {
     public void addSurname(String word) {
         PersonName.add(word);
         if (word.length() == 2) {
-            //将复姓加入字典
-            baseDictionary.add(word);
+            //将复姓加入字典，复姓已经是词时保留原来的词频
+            addToBaseDictionary(word, 0, false);
         }
     }
 
@@ -108,9 +234,10 @@ public class WordSegmenterImpl implements WordSegmenter {
         return new WordSegSceneImpl();
     }
 
-    public void clearAll() {
+    public synchronized void clearAll() {
         baseDictionary.clear();
         baseTag.clear();
+        basePrefilter = new DictionaryPrefilter();
         StopWord.clear();
         PersonName.clear();
     }
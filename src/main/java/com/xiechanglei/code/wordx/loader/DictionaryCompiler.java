@@ -0,0 +1,468 @@
+package com.xiechanglei.code.wordx.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.util.DoubleArrayBuilder;
+import com.xiechanglei.code.wordx.util.DoubleArrayImage;
+import com.xiechanglei.code.wordx.util.Whitespace;
+
+/**
+ * 词典编译器，把没有排序的词表文件离线编译为双数组镜像文件
+ * 词表按块读入内存，每块排序去重后写入临时文件，再多路归并，按顺序逐个加入双数组，不需要把整个词表放在内存中
+ * 内存中只有一块词和双数组本身，双数组的大小与词典的节点数成正比，上千万个词的词典也能在较小的机器上编译
+ * 词表只有一块时不写临时文件
+ * 镜像与DoubleArrayDictionaryTrie.save、DoubleArrayGenericTrie.save的格式相同，用对应的load方法加载
+ * 文件格式：
+ *      词表：每行一个词，词之后用空白字符分隔的内容（如词性）忽略
+ *      键值表：每行一个键和一个整数值，用空白字符分隔，重复的键保留第一次出现的值
+ *      空行和格式不正确的行忽略，文件开头的BOM忽略
+ */
+public class DictionaryCompiler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DictionaryCompiler.class);
+	//一次归并的最多文件数，超过时先把前面的文件归并成一个
+	private static final int MERGE_WIDTH = 64;
+
+	private int runSize = 1000000;
+	private Charset charset = StandardCharsets.UTF_8;
+	private Path tempDirectory;
+	private boolean reverseIndex;
+
+	public int getRunSize() {
+		return runSize;
+	}
+
+	/**
+	 * 每块在内存中排序的条目数，决定编译时词表占用的内存
+	 * @param runSize 条目数
+	 */
+	public void setRunSize(int runSize) {
+		if (runSize < 1) {
+			throw new IllegalArgumentException("run size must be positive: " + runSize);
+		}
+		this.runSize = runSize;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	public void setCharset(Charset charset) {
+		if (charset == null) {
+			throw new IllegalArgumentException("charset can not be null");
+		}
+		this.charset = charset;
+	}
+
+	public Path getTempDirectory() {
+		return tempDirectory;
+	}
+
+	/**
+	 * 临时文件所在的目录，为null时使用系统的临时目录
+	 * @param tempDirectory 目录
+	 */
+	public void setTempDirectory(Path tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	public boolean isReverseIndex() {
+		return reverseIndex;
+	}
+
+	/**
+	 * 编译词表时是否同时编译反向索引，反向索引再读一遍词表，单独排序
+	 * @param reverseIndex 是否编译反向索引
+	 */
+	public void setReverseIndex(boolean reverseIndex) {
+		this.reverseIndex = reverseIndex;
+	}
+
+	/**
+	 * 编译词表，用DoubleArrayDictionaryTrie.load加载
+	 * @param words 词表文件
+	 * @param image 镜像文件
+	 * @return 编译统计，条目数为去重后的词数，分块数为排序的块数
+	 * @throws IOException 读写文件失败
+	 */
+	public LoadReport compileWords(Path words, Path image) throws IOException {
+		long begin = System.nanoTime();
+		Path directory = createTempDirectory();
+		try {
+			Pass forward = sort(words, directory, false, false);
+			DoubleArrayBuilder builder = build(forward, directory);
+			if (reverseIndex) {
+				DoubleArrayBuilder reverse = build(sort(words, directory, false, true), directory);
+				DoubleArrayImage.write(image, DoubleArrayImage.DICTIONARY, forward.maxLength, IntBuffer.wrap(builder.getBase()), IntBuffer.wrap(builder.getCheck()),
+						IntBuffer.wrap(reverse.getBase()), IntBuffer.wrap(reverse.getCheck()));
+			} else {
+				DoubleArrayImage.write(image, DoubleArrayImage.DICTIONARY, forward.maxLength, IntBuffer.wrap(builder.getBase()), IntBuffer.wrap(builder.getCheck()));
+			}
+			return report(words, image, forward, builder, begin);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	/**
+	 * 编译键值表，用DoubleArrayGenericTrie.load加载
+	 * @param entries 键值表文件
+	 * @param image 镜像文件
+	 * @return 编译统计，条目数为去重后的键数，分块数为排序的块数
+	 * @throws IOException 读写文件失败
+	 */
+	public LoadReport compileValues(Path entries, Path image) throws IOException {
+		long begin = System.nanoTime();
+		Path directory = createTempDirectory();
+		try {
+			Pass pass = sort(entries, directory, true, false);
+			DoubleArrayBuilder builder = build(pass, directory);
+			DoubleArrayImage.write(image, DoubleArrayImage.GENERIC_TRIE, 0, IntBuffer.wrap(builder.getBase()), IntBuffer.wrap(builder.getCheck()));
+			return report(entries, image, pass, builder, begin);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private LoadReport report(Path input, Path image, Pass pass, DoubleArrayBuilder builder, long begin) {
+		LoadReport report = new LoadReport(input.toString(), pass.lines, builder.getKeyCount(), pass.bytes, pass.runCount, System.nanoTime() - begin, -1);
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("编译词典{}完成：{}行，{}个条目，{}个排序块，{}，镜像文件{}，总耗时{}毫秒", input, report.getLines(), report.getEntries(), report.getChunks(), builder, image,
+					report.getElapsedMillis());
+		}
+		return report;
+	}
+
+	private Path createTempDirectory() throws IOException {
+		return tempDirectory == null ? Files.createTempDirectory("wordx-compile") : Files.createTempDirectory(tempDirectory, "wordx-compile");
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.deleteIfExists(file);
+			}
+		}
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * 读取文件，按块排序后写入临时文件，只有一块时留在内存中
+	 */
+	private Pass sort(Path input, Path directory, boolean withValues, boolean reversed) throws IOException {
+		Pass pass = new Pass(directory, withValues, Math.min(runSize, 1 << 16));
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+			pass.bytes = LineReader.read(channel, charset, (chars, start, end) -> {
+				pass.lines++;
+				int i = start;
+				while (i < end && Whitespace.is(chars[i])) {
+					i++;
+				}
+				int keyStart = i;
+				while (i < end && !Whitespace.is(chars[i])) {
+					i++;
+				}
+				if (i == keyStart) {
+					return;
+				}
+				int keyEnd = i;
+				int value = 0;
+				if (withValues) {
+					while (i < end && Whitespace.is(chars[i])) {
+						i++;
+					}
+					int valueStart = i;
+					while (i < end && !Whitespace.is(chars[i])) {
+						i++;
+					}
+					try {
+						value = Integer.parseInt(new String(chars, valueStart, i - valueStart));
+					} catch (NumberFormatException e) {
+						return;
+					}
+				}
+				String key;
+				if (reversed) {
+					//与反向索引一样按char逐个倒序
+					char[] reverse = new char[keyEnd - keyStart];
+					for (int j = 0; j < reverse.length; j++) {
+						reverse[j] = chars[keyEnd - 1 - j];
+					}
+					key = new String(reverse);
+				} else {
+					key = new String(chars, keyStart, keyEnd - keyStart);
+				}
+				pass.maxLength = Math.max(pass.maxLength, key.length());
+				pass.add(key, value);
+				if (pass.size == runSize) {
+					pass.spill();
+				}
+			});
+		} catch (UncheckedSpillException e) {
+			throw e.getCause();
+		}
+		if (pass.runs.isEmpty()) {
+			pass.sortBuffer();
+			pass.runCount = 1;
+		} else {
+			if (pass.size > 0) {
+				pass.spill();
+			}
+			pass.release();
+			pass.runCount = pass.runs.size();
+		}
+		return pass;
+	}
+
+	/**
+	 * 归并所有的块，按顺序加入双数组
+	 */
+	private DoubleArrayBuilder build(Pass pass, Path directory) throws IOException {
+		DoubleArrayBuilder builder = new DoubleArrayBuilder(pass.estimate(), pass.withValues);
+		if (pass.runs.isEmpty()) {
+			for (int i = 0; i < pass.size; i++) {
+				builder.add(pass.keys[i], pass.values[i]);
+			}
+			return builder.build();
+		}
+		List<Run> runs = pass.runs;
+		int merges = 0;
+		while (runs.size() > MERGE_WIDTH) {
+			//先归并前面的文件，归并结果放在最前面，重复的键仍然保留先出现的值
+			Run merged = new Run(directory.resolve("merged-" + merges++));
+			try (DataOutputStream out = open(merged.path)) {
+				merge(runs.subList(0, MERGE_WIDTH), pass.withValues, (key, value) -> {
+					out.writeUTF(key);
+					if (pass.withValues) {
+						out.writeInt(value);
+					}
+					merged.count++;
+				});
+			}
+			for (Run run : runs.subList(0, MERGE_WIDTH)) {
+				Files.delete(run.path);
+			}
+			runs.subList(0, MERGE_WIDTH).clear();
+			runs.add(0, merged);
+		}
+		merge(runs, pass.withValues, builder::add);
+		return builder.build();
+	}
+
+	/**
+	 * 多路归并，相同的键只输出一次，取排在前面的文件中的值
+	 */
+	private static void merge(List<Run> runs, boolean withValues, EntryConsumer consumer) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<>(runs.size(), (a, b) -> {
+			int result = a.key.compareTo(b.key);
+			return result != 0 ? result : Integer.compare(a.order, b.order);
+		});
+		List<RunReader> readers = new ArrayList<>(runs.size());
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				RunReader reader = new RunReader(runs.get(i), i, withValues);
+				readers.add(reader);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			String previous = null;
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				if (!reader.key.equals(previous)) {
+					consumer.accept(reader.key, reader.value);
+					previous = reader.key;
+				}
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.in.close();
+			}
+		}
+	}
+
+	private static DataOutputStream open(Path path) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+	}
+
+	private interface EntryConsumer {
+		void accept(String key, int value) throws IOException;
+	}
+
+	/**
+	 * 行处理器中不能抛出IOException，写临时文件失败时包装后抛出
+	 */
+	private static final class UncheckedSpillException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UncheckedSpillException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+
+	/**
+	 * 一遍排序的结果：写入临时文件的块和留在内存中的最后一块
+	 */
+	private static final class Pass {
+		final Path directory;
+		final boolean withValues;
+		final List<Run> runs = new ArrayList<>();
+		String[] keys;
+		int[] values;
+		int size;
+		long lines;
+		long bytes;
+		int maxLength;
+		int runCount;
+		//各块估算的数组长度中最大的一个
+		int estimate;
+
+		Pass(Path directory, boolean withValues, int capacity) {
+			this.directory = directory;
+			this.withValues = withValues;
+			keys = new String[capacity];
+			values = new int[capacity];
+		}
+
+		void add(String key, int value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			keys[size] = key;
+			values[size++] = value;
+		}
+
+		/**
+		 * 排序内存中的块，有值时按键排序，键相同时保持原来的顺序
+		 */
+		void sortBuffer() {
+			if (!withValues) {
+				Arrays.sort(keys, 0, size);
+			} else {
+				Integer[] order = new Integer[size];
+				for (int i = 0; i < size; i++) {
+					order[i] = i;
+				}
+				String[] unsorted = keys;
+				Arrays.sort(order, (a, b) -> unsorted[a].compareTo(unsorted[b]));
+				String[] sortedKeys = new String[keys.length];
+				int[] sortedValues = new int[values.length];
+				for (int i = 0; i < size; i++) {
+					sortedKeys[i] = keys[order[i]];
+					sortedValues[i] = values[order[i]];
+				}
+				keys = sortedKeys;
+				values = sortedValues;
+			}
+			estimate = Math.max(estimate, DoubleArrayBuilder.estimate(Arrays.asList(keys).subList(0, size)));
+		}
+
+		/**
+		 * 双数组的初始容量，只有一块时就是这一块的估算值
+		 * 各块的估算值直接相加时块之间的公共前缀被重复计算，块多时会大出好几倍，堆小时一开始就分配失败
+		 * 所以从最大的一块的估算值开始，不够时原地扩容，扩容只复制数组，不重新放置节点
+		 */
+		int estimate() {
+			return estimate;
+		}
+
+		/**
+		 * 排序内存中的块并写入临时文件，相同的键只写第一个
+		 */
+		void spill() {
+			sortBuffer();
+			Run run = new Run(directory.resolve("run-" + runs.size()));
+			try (DataOutputStream out = open(run.path)) {
+				String previous = null;
+				for (int i = 0; i < size; i++) {
+					if (!keys[i].equals(previous)) {
+						out.writeUTF(keys[i]);
+						if (withValues) {
+							out.writeInt(values[i]);
+						}
+						previous = keys[i];
+						run.count++;
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedSpillException(e);
+			}
+			runs.add(run);
+			Arrays.fill(keys, 0, size, null);
+			size = 0;
+		}
+
+		void release() {
+			keys = null;
+			values = null;
+		}
+	}
+
+	/**
+	 * 一个排好序、已经去重的临时文件
+	 */
+	private static final class Run {
+		final Path path;
+		long count;
+
+		Run(Path path) {
+			this.path = path;
+		}
+	}
+
+	/**
+	 * 顺序读取一个临时文件
+	 */
+	private static final class RunReader {
+		final DataInputStream in;
+		final int order;
+		final boolean withValues;
+		long remaining;
+		String key;
+		int value;
+
+		RunReader(Run run, int order, boolean withValues) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), 64 * 1024));
+			this.order = order;
+			this.withValues = withValues;
+			this.remaining = run.count;
+		}
+
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			key = in.readUTF();
+			value = withValues ? in.readInt() : 0;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,516 @@
+package com.xiechanglei.code.wordx.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.util.Whitespace;
+
+/**
+ * 词典加载器，从文件系统或类路径（classpath:前缀）流式加载词典
+ * 通过NIO通道按块读取，复用读取缓冲区，不使用正则表达式解析，解析出的条目攒够一批后批量写入
+ * 设置了并行度且文件足够大时，把文件映射到内存并按行边界分块，多个线程并行解析，解析完的块按文件顺序尽快写入
+ * 同时解析和等待写入的块不超过线程数的两倍，保留的条目与文件大小无关
+ * 基础词典只能构建一次时（如双数组），收集所有的词后一次写入，见loadBaseWords
+ * 词典文件格式：
+ *      基础词典、场景词典：每行一个词，词与词性之间用空白字符分隔，词性可以省略
+ *      停用词、姓氏、数量词、细分规则：每行一条，去掉首尾空白字符
+ *      空行忽略，文件开头的BOM忽略
+ */
+public class DictionaryLoader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DictionaryLoader.class);
+	public static final String CLASSPATH_PREFIX = "classpath:";
+	//小于该大小的文件不值得并行解析
+	private static final long PARALLEL_THRESHOLD = 1024 * 1024;
+	//并行解析时每块最多的大致字节数，块数至少是线程数的四倍
+	private static final int CHUNK_BYTES = 4 * 1024 * 1024;
+	//解析时缓存的词性个数，词性种类很少，缓存后同一词性只创建一个字符串
+	private static final int TAG_CACHE_SIZE = 64;
+
+	private int batchSize = 8192;
+	private int parallelism = 1;
+	private Charset charset = StandardCharsets.UTF_8;
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * 每次批量写入的条目数
+	 * @param batchSize 条目数
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * 解析文件的线程数，大于1时对大文件分块并行解析，类路径资源总是顺序读取
+	 * @param parallelism 线程数
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	public void setCharset(Charset charset) {
+		if (charset == null) {
+			throw new IllegalArgumentException("charset can not be null");
+		}
+		this.charset = charset;
+	}
+
+	/**
+	 * 加载基础词典
+	 * 可以逐个加词的词典每批写入一次，只保留一批条目
+	 * 只能构建一次的词典（isBuildOnce）需要先把整个文件的词收集到一个HashMap中，再一次写入：
+	 * 加载期间除了词典本身，每个词还要占用字符串（约40 + 2 × 字数字节）和HashMap的条目（约32字节），
+	 * 构建时再排序复制一份；词典很大时可以构建一次后保存为镜像文件，之后以内存映射的方式加载，不再经过这里
+	 * @param segmenter 分词器
+	 * @param location 文件路径或classpath:资源名
+	 * @return 加载统计
+	 * @throws IOException 读取失败
+	 */
+	public LoadReport loadBaseWords(WordSegmenter segmenter, String location) throws IOException {
+		Map<String, String> words = new HashMap<>();
+		Dictionary dictionary = segmenter.getBaseDictionary();
+		if (dictionary.isBuildOnce()) {
+			//构建后不能再加词，分批写入时第二批会失败
+			LoadReport report = load(location, WordParser::new, (keys, values, from, to) -> {
+				for (int i = from; i < to; i++) {
+					words.put(keys[i], values[i]);
+				}
+			});
+			segmenter.addBaseWords(words);
+			return report;
+		}
+		return load(location, WordParser::new, (keys, values, from, to) -> {
+			words.clear();
+			for (int i = from; i < to; i++) {
+				words.put(keys[i], values[i]);
+			}
+			segmenter.addBaseWords(words);
+		});
+	}
+
+	public LoadReport loadStopWords(WordSegmenter segmenter, String location) throws IOException {
+		return load(location, LineParser::new, (keys, values, from, to) -> {
+			for (int i = from; i < to; i++) {
+				segmenter.addStopWord(keys[i]);
+			}
+		});
+	}
+
+	public LoadReport loadSurnames(WordSegmenter segmenter, String location) throws IOException {
+		return load(location, LineParser::new, (keys, values, from, to) -> {
+			for (int i = from; i < to; i++) {
+				segmenter.addSurname(keys[i]);
+			}
+		});
+	}
+
+	public LoadReport loadQuantifiers(WordSegmenter segmenter, String location) throws IOException {
+		return load(location, LineParser::new, (keys, values, from, to) -> {
+			for (int i = from; i < to; i++) {
+				segmenter.addQuantifier(keys[i]);
+			}
+		});
+	}
+
+	/**
+	 * 向场景追加词，每批写入一次，在下一次分词时作为一个新版本发布
+	 * @param scene 场景
+	 * @param location 文件路径或classpath:资源名
+	 * @return 加载统计
+	 * @throws IOException 读取失败
+	 */
+	public LoadReport loadSceneWords(WordSegScene scene, String location) throws IOException {
+		Map<String, String> words = new HashMap<>();
+		return load(location, WordParser::new, (keys, values, from, to) -> {
+			words.clear();
+			for (int i = from; i < to; i++) {
+				words.put(keys[i], values[i]);
+			}
+			scene.addWords(words);
+		});
+	}
+
+	public LoadReport loadSceneRefines(WordSegScene scene, String location) throws IOException {
+		return load(location, LineParser::new, (keys, values, from, to) -> scene.addRefines(Arrays.asList(keys).subList(from, to)));
+	}
+
+	/**
+	 * 重新加载场景，新的词典在旁边构建好后整体替换，分词不会读到加载了一半的词典
+	 * @param scene 场景
+	 * @param wordsLocation 场景词典
+	 * @param refinesLocation 细分规则，可以为null
+	 * @return 加载统计
+	 * @throws IOException 读取失败，此时场景保持不变
+	 */
+	public LoadReport reloadScene(WordSegScene scene, String wordsLocation, String refinesLocation) throws IOException {
+		Map<String, String> words = new HashMap<>();
+		LoadReport report = load(wordsLocation, WordParser::new, (keys, values, from, to) -> {
+			for (int i = from; i < to; i++) {
+				words.put(keys[i], values[i]);
+			}
+		});
+		List<String> refines = new ArrayList<>();
+		if (refinesLocation != null) {
+			report = report.merge(load(refinesLocation, LineParser::new, (keys, values, from, to) -> {
+				refines.addAll(Arrays.asList(keys).subList(from, to));
+			}));
+		}
+		scene.reload(words, refines);
+		return report;
+	}
+
+	private LoadReport load(String location, Supplier<Parser> parsers, Sink sink) throws IOException {
+		long begin = System.nanoTime();
+		long collections = collectionCount();
+		long used = usedHeap();
+		LoadReport report;
+		Path path = location.startsWith(CLASSPATH_PREFIX) ? null : Paths.get(location);
+		if (path != null && parallelism > 1 && isLineSplittable(charset)) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				long size = channel.size();
+				if (size >= PARALLEL_THRESHOLD && size <= Integer.MAX_VALUE) {
+					report = loadParallel(location, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), parsers, sink, begin);
+				} else {
+					report = loadSequential(location, channel, parsers.get(), sink, begin);
+				}
+			}
+		} else {
+			try (ReadableByteChannel channel = open(location, path)) {
+				report = loadSequential(location, channel, parsers.get(), sink, begin);
+			}
+		}
+		//期间发生过垃圾回收时堆内存的增长量没有意义
+		long growth = collections < 0 || collectionCount() != collections ? -1 : usedHeap() - used;
+		report = new LoadReport(location, report.getLines(), report.getEntries(), report.getBytes(), report.getChunks(), report.getElapsedNanos(), growth);
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("加载词典{}完成：{}行，{}个条目，{}个分块，耗时{}毫秒，前后堆内存增长{}", location, report.getLines(), report.getEntries(), report.getChunks(),
+					report.getElapsedMillis(), growth < 0 ? "未知（期间发生过垃圾回收）" : growth + "字节");
+		}
+		return report;
+	}
+
+	private LoadReport loadSequential(String location, ReadableByteChannel channel, Parser parser, Sink sink, long begin) throws IOException {
+		Batch batch = new Batch(batchSize);
+		long[] lines = new long[2];
+		long bytes = LineReader.read(channel, charset, (chars, start, end) -> {
+			lines[0]++;
+			if (parser.parse(chars, start, end, batch)) {
+				lines[1]++;
+				if (batch.size == batchSize) {
+					sink.accept(batch.keys, batch.values, 0, batch.size);
+					batch.clear();
+				}
+			}
+		});
+		if (batch.size > 0) {
+			sink.accept(batch.keys, batch.values, 0, batch.size);
+		}
+		return new LoadReport(location, lines[0], lines[1], bytes, 1, System.nanoTime() - begin, 0);
+	}
+
+	/**
+	 * 块数多于线程数，正在解析和解析完等待写入的块不超过window个
+	 * 最前面的块解析完就写入并释放，再提交下一块，后面先解析完的块最多等待window个
+	 */
+	private LoadReport loadParallel(String location, MappedByteBuffer mapped, Supplier<Parser> parsers, Sink sink, long begin) throws IOException {
+		int[] bounds = split(mapped, Math.max(parallelism * 4, mapped.capacity() / CHUNK_BYTES));
+		int chunks = bounds.length - 1;
+		int window = parallelism * 2;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks));
+		ArrayDeque<Future<Chunk>> running = new ArrayDeque<>(window);
+		try {
+			long lines = 0;
+			long entries = 0;
+			int next = 0;
+			while (next < chunks || !running.isEmpty()) {
+				while (next < chunks && running.size() < window) {
+					ByteBuffer slice = mapped.duplicate();
+					slice.position(bounds[next]);
+					slice.limit(bounds[next + 1]);
+					ByteBuffer bytes = slice.slice();
+					Parser parser = parsers.get();
+					running.add(executor.submit((Callable<Chunk>) () -> parseChunk(bytes, parser)));
+					next++;
+				}
+				//按文件顺序写入，与顺序读取的结果一致
+				Chunk chunk = running.poll().get();
+				for (int from = 0; from < chunk.batch.size; from += batchSize) {
+					sink.accept(chunk.batch.keys, chunk.batch.values, from, Math.min(from + batchSize, chunk.batch.size));
+				}
+				lines += chunk.lines;
+				entries += chunk.batch.size;
+			}
+			return new LoadReport(location, lines, entries, mapped.capacity(), chunks, System.nanoTime() - begin, 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while loading " + location, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException("failed to load " + location, e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Chunk parseChunk(ByteBuffer bytes, Parser parser) throws IOException {
+		Chunk chunk = new Chunk(Math.max(16, bytes.remaining() / 16));
+		LineReader.read(bytes, charset, (chars, start, end) -> {
+			chunk.lines++;
+			parser.parse(chars, start, end, chunk.batch);
+		});
+		return chunk;
+	}
+
+	/**
+	 * 按行边界把文件分成若干块
+	 * @return 各块的起始位置，最后一个元素为文件长度
+	 */
+	private static int[] split(ByteBuffer bytes, int count) {
+		int size = bytes.capacity();
+		int[] bounds = new int[count + 1];
+		int chunks = 0;
+		for (int i = 1; i < count; i++) {
+			int position = Math.max((int) ((long) size * i / count), bounds[chunks]);
+			while (position < size && bytes.get(position) != '\n') {
+				position++;
+			}
+			if (position >= size - 1) {
+				break;
+			}
+			bounds[++chunks] = position + 1;
+		}
+		bounds[++chunks] = size;
+		return Arrays.copyOf(bounds, chunks + 1);
+	}
+
+	/**
+	 * 换行符编码为单个字节'\n'，且该字节不会出现在其它字符的编码中时，才能按字节切分，如UTF-8、GBK
+	 */
+	private static boolean isLineSplittable(Charset charset) {
+		byte[] newline = "\n".getBytes(charset);
+		return newline.length == 1 && newline[0] == '\n';
+	}
+
+	private static ReadableByteChannel open(String location, Path path) throws IOException {
+		if (path != null) {
+			return FileChannel.open(path, StandardOpenOption.READ);
+		}
+		String name = location.substring(CLASSPATH_PREFIX.length());
+		if (name.startsWith("/")) {
+			name = name.substring(1);
+		}
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = DictionaryLoader.class.getClassLoader();
+		}
+		InputStream in = loader.getResourceAsStream(name);
+		if (in == null) {
+			throw new IOException("dictionary not found: " + location);
+		}
+		return Channels.newChannel(in);
+	}
+
+	/**
+	 * 已使用的堆内存
+	 * 标准的管理接口没有按线程统计分配量的方法，只能报告加载前后堆内存的增长量（包括所有线程）
+	 */
+	private static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * 所有垃圾回收器累计的回收次数，JVM不支持时返回-1
+	 */
+	private static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			long collections = collector.getCollectionCount();
+			if (collections < 0) {
+				return -1;
+			}
+			count += collections;
+		}
+		return count;
+	}
+
+	/**
+	 * 批量写入目标结构
+	 */
+	private interface Sink {
+		void accept(String[] keys, String[] values, int from, int to);
+	}
+
+	/**
+	 * 把一行解析为条目放入批次
+	 */
+	private interface Parser {
+		boolean parse(char[] chars, int start, int end, Batch batch);
+	}
+
+	/**
+	 * 解析出的条目，键和值分别存放在两个数组中
+	 */
+	private static final class Batch {
+		String[] keys;
+		String[] values;
+		int size;
+
+		Batch(int capacity) {
+			keys = new String[capacity];
+			values = new String[capacity];
+		}
+
+		void add(String key, String value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			keys[size] = key;
+			values[size++] = value;
+		}
+
+		void clear() {
+			Arrays.fill(keys, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+		}
+	}
+
+	private static final class Chunk {
+		final Batch batch;
+		long lines;
+
+		Chunk(int capacity) {
+			batch = new Batch(capacity);
+		}
+	}
+
+	/**
+	 * 解析“词 词性”格式的行
+	 */
+	private static final class WordParser implements Parser {
+		private final String[] tags = new String[TAG_CACHE_SIZE];
+		private int tagCount;
+
+		@Override
+		public boolean parse(char[] chars, int start, int end, Batch batch) {
+			int i = start;
+			while (i < end && Whitespace.is(chars[i])) {
+				i++;
+			}
+			if (i == end) {
+				return false;
+			}
+			int wordStart = i;
+			while (i < end && !Whitespace.is(chars[i])) {
+				i++;
+			}
+			String word = new String(chars, wordStart, i - wordStart);
+			while (i < end && Whitespace.is(chars[i])) {
+				i++;
+			}
+			String tag = null;
+			if (i < end) {
+				int tagStart = i;
+				while (i < end && !Whitespace.is(chars[i])) {
+					i++;
+				}
+				tag = tag(chars, tagStart, i);
+			}
+			batch.add(word, tag);
+			return true;
+		}
+
+		private String tag(char[] chars, int start, int end) {
+			int length = end - start;
+			for (int i = 0; i < tagCount; i++) {
+				String tag = tags[i];
+				if (tag.length() == length && matches(tag, chars, start, length)) {
+					return tag;
+				}
+			}
+			String tag = new String(chars, start, length);
+			if (tagCount < TAG_CACHE_SIZE) {
+				tags[tagCount++] = tag;
+			}
+			return tag;
+		}
+
+		private static boolean matches(String tag, char[] chars, int start, int length) {
+			for (int i = 0; i < length; i++) {
+				if (tag.charAt(i) != chars[start + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 解析每行一条的词典，去掉首尾空白字符
+	 */
+	private static final class LineParser implements Parser {
+		@Override
+		public boolean parse(char[] chars, int start, int end, Batch batch) {
+			while (start < end && chars[start] <= ' ') {
+				start++;
+			}
+			while (end > start && chars[end - 1] <= ' ') {
+				end--;
+			}
+			if (start == end) {
+				return false;
+			}
+			batch.add(new String(chars, start, end - start), null);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package com.xiechanglei.code.wordx.loader;
+
+/**
+ * 行处理器，行内容直接引用读取缓冲区，只在回调期间有效
+ */
+public interface LineHandler {
+	/**
+	 * @param chars 缓冲区
+	 * @param start 行的开始位置
+	 * @param end 行的结束位置（不包含换行符）
+	 */
+	void line(char[] chars, int start, int end);
+}
@@ -0,0 +1,134 @@
+package com.xiechanglei.code.wordx.loader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 按行读取通道中的文本
+ * 字节缓冲区和字符缓冲区在整个读取过程中复用，行内容不创建字符串，直接把缓冲区的区间交给行处理器
+ * 只有一行超过字符缓冲区时才扩容
+ */
+final class LineReader {
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private LineReader() {
+	}
+
+	/**
+	 * 读取通道直到结束
+	 * @return 读取的字节数
+	 */
+	static long read(ReadableByteChannel channel, Charset charset, LineHandler handler) throws IOException {
+		CharsetDecoder decoder = newDecoder(charset);
+		ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		long total = 0;
+		boolean first = true;
+		boolean eof = false;
+		while (true) {
+			if (!eof) {
+				int count = channel.read(bytes);
+				if (count < 0) {
+					eof = true;
+				} else {
+					total += count;
+				}
+			}
+			bytes.flip();
+			CoderResult result = decoder.decode(bytes, chars, eof);
+			bytes.compact();
+			boolean done = eof && result.isUnderflow();
+			if (done) {
+				decoder.flush(chars);
+			}
+			chars.flip();
+			if (first && chars.hasRemaining()) {
+				skipBom(chars);
+				first = false;
+			}
+			drain(chars, handler, done);
+			if (done) {
+				return total;
+			}
+			if (!chars.hasRemaining()) {
+				chars = grow(chars);
+			}
+		}
+	}
+
+	/**
+	 * 对内存中的一段字节按行处理，用于并行读取文件分块
+	 */
+	static void read(ByteBuffer bytes, Charset charset, LineHandler handler) throws IOException {
+		CharsetDecoder decoder = newDecoder(charset);
+		CharBuffer chars = CharBuffer.allocate(Math.min(BUFFER_SIZE, Math.max(16, bytes.remaining())));
+		boolean first = true;
+		while (true) {
+			CoderResult result = decoder.decode(bytes, chars, true);
+			boolean done = result.isUnderflow();
+			if (done) {
+				decoder.flush(chars);
+			}
+			chars.flip();
+			if (first && chars.hasRemaining()) {
+				skipBom(chars);
+				first = false;
+			}
+			drain(chars, handler, done);
+			if (done) {
+				return;
+			}
+			if (!chars.hasRemaining()) {
+				chars = grow(chars);
+			}
+		}
+	}
+
+	/**
+	 * 缓冲区已被半行填满时扩容
+	 */
+	private static CharBuffer grow(CharBuffer chars) {
+		CharBuffer larger = CharBuffer.allocate(chars.capacity() * 2);
+		chars.flip();
+		larger.put(chars);
+		return larger;
+	}
+
+	private static CharsetDecoder newDecoder(Charset charset) {
+		return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	private static void skipBom(CharBuffer chars) {
+		if (chars.get(chars.position()) == '\uFEFF') {
+			chars.position(chars.position() + 1);
+		}
+	}
+
+	/**
+	 * 处理缓冲区中的完整行，剩余的半行移到缓冲区开头，调用后缓冲区处于写入状态
+	 * @param last 是否已经读完，读完时剩余内容作为最后一行
+	 */
+	private static void drain(CharBuffer chars, LineHandler handler, boolean last) {
+		char[] array = chars.array();
+		int start = chars.position();
+		int limit = chars.limit();
+		for (int i = start; i < limit; i++) {
+			if (array[i] == '\n') {
+				handler.line(array, start, i > start && array[i - 1] == '\r' ? i - 1 : i);
+				start = i + 1;
+			}
+		}
+		if (last && start < limit) {
+			handler.line(array, start, array[limit - 1] == '\r' ? limit - 1 : limit);
+			start = limit;
+		}
+		chars.position(start);
+		chars.compact();
+	}
+}
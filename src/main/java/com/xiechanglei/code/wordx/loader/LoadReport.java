@@ -0,0 +1,98 @@
+package com.xiechanglei.code.wordx.loader;
+
+/**
+ * 一次词典加载的统计信息：行数、有效条目数、字节数、耗时和加载期间堆内存的增长量
+ */
+public final class LoadReport {
+	private final String location;
+	private final long lines;
+	private final long entries;
+	private final long bytes;
+	private final int chunks;
+	private final long elapsedNanos;
+	//加载前后已使用的堆内存之差（包括所有线程），期间发生过垃圾回收或JVM不支持统计时为-1
+	private final long heapGrowth;
+
+	LoadReport(String location, long lines, long entries, long bytes, int chunks, long elapsedNanos, long heapGrowth) {
+		this.location = location;
+		this.lines = lines;
+		this.entries = entries;
+		this.bytes = bytes;
+		this.chunks = chunks;
+		this.elapsedNanos = elapsedNanos;
+		this.heapGrowth = heapGrowth;
+	}
+
+	/**
+	 * 合并两次加载的统计，如同时加载场景词和细分规则
+	 * @param other 另一次加载
+	 * @return 合并后的统计
+	 */
+	public LoadReport merge(LoadReport other) {
+		long growth = heapGrowth < 0 || other.heapGrowth < 0 ? -1 : heapGrowth + other.heapGrowth;
+		return new LoadReport(location + "," + other.location, lines + other.lines, entries + other.entries, bytes + other.bytes, chunks + other.chunks,
+				elapsedNanos + other.elapsedNanos, growth);
+	}
+
+	public String getLocation() {
+		return location;
+	}
+
+	public long getLines() {
+		return lines;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * 空行和格式不正确的行数
+	 */
+	public long getSkipped() {
+		return lines - entries;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * 并行解析时的文件分块数，顺序读取时为1
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedNanos / 1000000;
+	}
+
+	/**
+	 * 加载前后已使用的堆内存之差，包括同时运行的其它线程，不是加载分配的字节数：已经成为垃圾但还没回收的部分也算在内
+	 * 期间发生过垃圾回收或JVM不支持统计时无法计算，为-1
+	 */
+	public long getHeapGrowth() {
+		return heapGrowth;
+	}
+
+	/**
+	 * 平均每个条目的堆内存增长，无法统计时为-1
+	 */
+	public long getHeapGrowthPerEntry() {
+		if (heapGrowth < 0) {
+			return -1;
+		}
+		return entries == 0 ? 0 : heapGrowth / entries;
+	}
+
+	@Override
+	public String toString() {
+		return "LoadReport[location=" + location + ", lines=" + lines + ", entries=" + entries + ", bytes=" + bytes + ", chunks=" + chunks
+				+ ", elapsedMillis=" + getElapsedMillis() + ", heapGrowth=" + heapGrowth + "]";
+	}
+}
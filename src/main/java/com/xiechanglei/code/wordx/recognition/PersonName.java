@@ -1,6 +1,7 @@
 package com.xiechanglei.code.wordx.recognition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,8 +15,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xiechanglei.code.wordx.impl.DictWraper;
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 import com.xiechanglei.code.wordx.tagging.PartOfSpeechTagging;
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
 
 /**
  * 人名识别
@@ -24,22 +27,77 @@ public class PersonName {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PersonName.class);
 	private static final Set<String> SURNAME_1 = new HashSet<>();
 	private static final Set<String> SURNAME_2 = new HashSet<>();
+	//单字的姓按字的编码保存在位图中，复姓的两个字合成一个int后排序保存，判断姓时不需要截取字符串
+	private static final long[] SURNAME_1_BITS = new long[(Character.MAX_VALUE + 1) / 64];
+	private static volatile int[] SURNAME_2_CODES = new int[0];
 	private static final Map<String, Integer> POS_SEQ = new HashMap<>();
+	//词性序列评分规则按词性首字母的编号保存，评分时直接比较int数组
+	private static volatile int[][] SEQ_PATTERNS = new int[0][];
+	private static volatile int[] SEQ_SCORES = new int[0];
+	private static final int NR = TagRegistry.code("nr");
 
 	public static void clear() {
 		SURNAME_1.clear();
 		SURNAME_2.clear();
+		Arrays.fill(SURNAME_1_BITS, 0);
+		compileSurnames();
 		POS_SEQ.clear();
+		compileSequences();
+	}
+
+	/**
+	 * 把复姓转换为排序的int数组
+	 */
+	private static synchronized void compileSurnames() {
+		int[] codes = new int[SURNAME_2.size()];
+		int i = 0;
+		for (String surname : SURNAME_2) {
+			codes[i++] = pair(surname.charAt(0), surname.charAt(1));
+		}
+		Arrays.sort(codes);
+		SURNAME_2_CODES = codes;
+	}
+
+	private static int pair(char first, char second) {
+		return first << 16 | second;
+	}
+
+	/**
+	 * 把词性序列规则转换为词性首字母编号的数组
+	 * 规则是以空格分隔的词性首字母，比如“n v”，含有多个字母的项不可能匹配，整条规则忽略
+	 */
+	private static synchronized void compileSequences() {
+		List<int[]> patterns = new ArrayList<>(POS_SEQ.size());
+		List<Integer> scores = new ArrayList<>(POS_SEQ.size());
+		POS_SEQ.forEach((seq, score) -> {
+			//空规则和任何序列都匹配
+			String[] items = seq.isEmpty() ? new String[0] : seq.split(" ", -1);
+			int[] pattern = new int[items.length];
+			for (int i = 0; i < items.length; i++) {
+				if (items[i].length() != 1) {
+					return;
+				}
+				pattern[i] = TagRegistry.code(items[i]);
+			}
+			patterns.add(pattern);
+			scores.add(score);
+		});
+		SEQ_SCORES = scores.stream().mapToInt(Integer::intValue).toArray();
+		SEQ_PATTERNS = patterns.toArray(new int[0][]);
 	}
 
 	public static void add(String line) {
 		if (line.length() == 1) {
 			SURNAME_1.add(line);
+			SURNAME_1_BITS[line.charAt(0) >>> 6] |= 1L << line.charAt(0);
 		} else if (line.length() == 2) {
-			SURNAME_2.add(line);
+			if (SURNAME_2.add(line)) {
+				compileSurnames();
+			}
 		} else if (line.startsWith("pos_seq=")) {
 			String[] attr = line.split("=");
 			POS_SEQ.put(attr[1].trim().replaceAll("\\s", " "), Integer.parseInt(attr[2]));
+			compileSequences();
 		} else {
 			LOGGER.error("错误的姓：" + line);
 		}
@@ -48,11 +106,15 @@ public class PersonName {
 	public static void remove(String line) {
 		if (line.length() == 1) {
 			SURNAME_1.remove(line);
+			SURNAME_1_BITS[line.charAt(0) >>> 6] &= ~(1L << line.charAt(0));
 		} else if (line.length() == 2) {
-			SURNAME_2.remove(line);
+			if (SURNAME_2.remove(line)) {
+				compileSurnames();
+			}
 		} else if (line.startsWith("pos_seq=")) {
 			String[] attr = line.split("=");
 			POS_SEQ.remove(attr[1].trim().replaceAll("\\s", " "));
+			compileSequences();
 		} else {
 			LOGGER.error("错误的姓：" + line);
 		}
@@ -96,6 +158,41 @@ public class PersonName {
 		return SURNAME_1.contains(text) || SURNAME_2.contains(text);
 	}
 
+	/**
+	 * 判断文本中的一段是不是百家姓，不截取字符串
+	 * @param text 文本
+	 * @param start 开始位置
+	 * @param length 长度
+	 * @return 是否
+	 */
+	public static boolean isSurname(String text, int start, int length) {
+		if (length == 1) {
+			char c = text.charAt(start);
+			return (SURNAME_1_BITS[c >>> 6] & 1L << c) != 0;
+		}
+		if (length == 2) {
+			return Arrays.binarySearch(SURNAME_2_CODES, pair(text.charAt(start), text.charAt(start + 1))) >= 0;
+		}
+		return false;
+	}
+
+	/**
+	 * 编号在[from, to)的词中是否可能识别出人名
+	 * 只有姓后面紧跟着一个单字的词时recognize才会合成人名，否则返回的词和输入相同
+	 * @param tokens 分词结果
+	 * @param from 开始编号
+	 * @param to 结束编号（不包含）
+	 * @return 是否可能
+	 */
+	public static boolean hasCandidate(TokenBuffer tokens, int from, int to) {
+		for (int i = from; i < to - 1; i++) {
+			if (tokens.getLength(i + 1) == 1 && tokens.getLength(i) <= 2 && isSurname(tokens.getSource(i), tokens.getSourceStart(i), tokens.getLength(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * 人名判定
 	 * @param text 文本
@@ -143,13 +240,14 @@ public class PersonName {
 		List<List<Word>> select = new ArrayList<>();
 		List<Word> result = new ArrayList<>();
 		for (int i = 0; i < len - 1; i++) {
-			String word = words.get(i).getText();
-			if (isSurname(word)) {
+			//姓只有一个字或两个字，更长的词不需要创建字符串
+			Word word = words.get(i);
+			if (word.length() <= 2 && isSurname(word.getSource(), word.getSourceStart(), word.length())) {
 				result.addAll(recognizePersonName(words.subList(i, words.size())));
 				select.add(result);
 				result = new ArrayList<>(words.subList(0, i + 1));
 			} else {
-				result.add(new Word(word));
+				result.add(words.get(i));
 			}
 		}
 		if (select.isEmpty()) {
@@ -178,29 +276,32 @@ public class PersonName {
 			}
 			//词性标注
 			PartOfSpeechTagging.process(candidateWord, dict);
-			//根据词性标注的结果进行评分
-			StringBuilder seq = new StringBuilder();
-			candidateWord.forEach(word -> seq.append(word.getPos().charAt(0)).append(" "));
-			String seqStr = seq.toString();
-			AtomicInteger score = new AtomicInteger();
+			//根据词性标注的结果进行评分，按词性首字母比较
+			int size = candidateWord.size();
+			int[] seq = new int[size];
+			for (int k = 0; k < size; k++) {
+				seq[k] = TagRegistry.initial(candidateWord.get(k).getPosCode());
+			}
 			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("词序列：{} 的词性序列：{}", candidateWord, seqStr);
+				LOGGER.debug("词序列：{} 的词性序列：{}", candidateWord, candidateWord.stream().map(word -> word.getPos().substring(0, 1)).collect(Collectors.joining(" ")));
 			}
-			POS_SEQ.keySet().stream().forEach(pos_seq -> {
-				if (seqStr.contains(pos_seq)) {
-					int sc = POS_SEQ.get(pos_seq);
+			int[][] patterns = SEQ_PATTERNS;
+			int[] scores = SEQ_SCORES;
+			int score = 0;
+			for (int k = 0; k < patterns.length; k++) {
+				if (contains(seq, patterns[k])) {
 					if (LOGGER.isDebugEnabled()) {
-						LOGGER.debug(pos_seq + "词序增加分值：" + sc);
+						LOGGER.debug(Arrays.toString(patterns[k]) + "词序增加分值：" + scores[k]);
 					}
-					score.addAndGet(sc);
+					score += scores[k];
 				}
-			});
-			score.addAndGet(-candidateWord.size());
+			}
+			score -= size;
 			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("长度的负值也作为分值：" + (-candidateWord.size()));
-				LOGGER.debug("评分结果：" + score.get());
+				LOGGER.debug("长度的负值也作为分值：" + (-size));
+				LOGGER.debug("评分结果：" + score);
 			}
-			map.put(candidateWord, score.get());
+			map.put(candidateWord, score);
 		});
 		//选择分值最高的
 		List<Word> result = map.entrySet().parallelStream().sorted((a, b) -> b.getValue().compareTo(a.getValue())).map(e -> e.getKey()).collect(Collectors.toList()).get(0);
@@ -210,20 +311,37 @@ public class PersonName {
 		return result;
 	}
 
+	/**
+	 * 序列中是否有连续的一段和规则相同
+	 */
+	private static boolean contains(int[] seq, int[] pattern) {
+		int last = seq.length - pattern.length;
+		outer: for (int i = 0; i <= last; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (seq[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
 	private static List<Word> recognizePersonName(List<Word> words) {
 		int len = words.size();
 		if (len < 2) {
 			return words;
 		}
+		//没有合成人名的词直接使用分词得到的词，不复制
 		List<Word> result = new ArrayList<>();
 		for (int i = 0; i < len - 1; i++) {
 			String second = words.get(i + 1).getText();
 			if (second.length() > 1) {
-				result.add(new Word(words.get(i).getText()));
-				result.add(new Word(words.get(i + 1).getText()));
+				result.add(words.get(i));
+				result.add(words.get(i + 1));
 				i++;
 				if (i == len - 2) {
-					result.add(new Word(words.get(i + 1).getText()));
+					result.add(words.get(i + 1));
 				}
 				continue;
 			}
@@ -238,23 +356,24 @@ public class PersonName {
 					if (LOGGER.isDebugEnabled()) {
 						LOGGER.debug("识别到人名：" + text);
 					}
-					Word word = new Word(text);
-					word.setPos("nr");
+					//姓和名在原文中紧挨着时仍然是原文的片段
+					Word word = Word.join(words.subList(i, "".equals(third) ? i + 2 : i + 3));
+					word.setPosCode(NR);
 					result.add(word);
 					i++;
 					if (!"".equals(third)) {
 						i++;
 					}
 				} else {
-					result.add(new Word(first));
+					result.add(words.get(i));
 				}
 			} else {
-				result.add(new Word(first));
+				result.add(words.get(i));
 			}
 			if (i == len - 2) {
-				result.add(new Word(words.get(i + 1).getText()));
+				result.add(words.get(i + 1));
 			}
 		}
 		return result;
 	}
-}
\ No newline at end of file
+}
@@ -68,6 +68,39 @@ public class Punctuation {
         return list;
     }
 
+    /**
+     * 与seg相同的切分，不创建句子的字符串，只返回每个句子的开始、结束位置
+     *
+     * @param text            文本
+     * @param withPunctuation 是否保留标点符号，保留时每个标点符号单独作为一个句子
+     * @return 依次为每个句子的开始位置、结束位置（不包含），长度是句子数的两倍
+     */
+    public static int[] split(String text, boolean withPunctuation) {
+        int[] bounds = new int[16];
+        int size = 0;
+        int start = 0;
+        int len = text.length();
+        for (int i = 0; i <= len; i++) {
+            boolean punctuation = i < len && is(text.charAt(i));
+            if (i < len && !punctuation) {
+                continue;
+            }
+            if (size + 4 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            if (i > start) {
+                bounds[size++] = start;
+                bounds[size++] = i;
+            }
+            if (punctuation && withPunctuation) {
+                bounds[size++] = i;
+                bounds[size++] = i + 1;
+            }
+            start = i + 1;
+        }
+        return Arrays.copyOf(bounds, size);
+    }
+
     /**
      * 判断一个字符是否是标点符号
      *
@@ -78,7 +111,7 @@ public class Punctuation {
         return punctuations.indexOf(_char) >= 0;
     }
 
-    public static boolean is(String word) {
+    public static boolean is(CharSequence word) {
         return word.length() == 1 && is(word.charAt(0));
     }
 }
\ No newline at end of file
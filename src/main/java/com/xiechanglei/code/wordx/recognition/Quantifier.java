@@ -1,7 +1,6 @@
 package com.xiechanglei.code.wordx.recognition;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,16 +10,17 @@ import org.slf4j.LoggerFactory;
  */
 public class Quantifier {
 	private static final Logger LOGGER = LoggerFactory.getLogger(Quantifier.class);
-	private static final Set<Character> quantifiers = new HashSet<>();
+	//按字的编码保存在位图中，判断时不需要把字装箱
+	private static final long[] quantifiers = new long[(Character.MAX_VALUE + 1) / 64];
 
 	public static void clear() {
-		quantifiers.clear();
+		Arrays.fill(quantifiers, 0);
 	}
 
 	public static void add(String line) {
 		if (line.length() == 1) {
 			char _char = line.charAt(0);
-			quantifiers.add(_char);
+			quantifiers[_char >>> 6] |= 1L << _char;
 		} else {
 			LOGGER.info("忽略不合法数量词：" + line);
 		}
@@ -29,13 +29,13 @@ public class Quantifier {
 	public static void remove(String line) {
 		if (line.length() == 1) {
 			char _char = line.charAt(0);
-			quantifiers.remove(_char);
+			quantifiers[_char >>> 6] &= ~(1L << _char);
 		} else {
 			LOGGER.info("忽略不合法数量词：" + line);
 		}
 	}
 
 	public static boolean is(char _char) {
-		return quantifiers.contains(_char);
+		return (quantifiers[_char >>> 6] & 1L << _char) != 0;
 	}
 }
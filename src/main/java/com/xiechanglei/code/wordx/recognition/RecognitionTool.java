@@ -18,7 +18,7 @@ public class RecognitionTool {
 	 * @param text 识别文本
 	 * @return 是否识别
 	 */
-	public static boolean recog(final String text) {
+	public static boolean recog(final CharSequence text) {
 		return recog(text, 0, text.length());
 	}
 
@@ -29,19 +29,66 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean recog(final String text, final int start, final int len) {
+	public static boolean recog(final CharSequence text, final int start, final int len) {
 		if (!RECOGNITION_TOOL_ENABLED) {
 			return false;
 		}
 		return isEnglishAndNumberMix(text, start, len) || isFraction(text, start, len) || isQuantifier(text, start, len) || isChineseNumber(text, start, len);
 	}
 
+	/**
+	 * 以start开始的文本可能被识别的最大长度，超过这个长度的文本不需要再调用recog
+	 * 能识别的文本只能以英文字母、数字或中文数字开始，除最后一个字（可能是数量词）外，
+	 * 其余的字只能是英文字母、数字、中文数字或小数点、分数线
+	 * @param text 文本
+	 * @param start 开始索引
+	 * @param limit 最大长度
+	 * @return 最大长度，为1时表示不可能识别出长度大于一的文本
+	 */
+	public static int recogLimit(final String text, final int start, final int limit) {
+		if (!RECOGNITION_TOOL_ENABLED || limit < 2) {
+			return Math.min(limit, 1);
+		}
+		char c = text.charAt(start);
+		if (!(isEnglish(c) || isNumber(c) || isChineseNumber(c))) {
+			return 1;
+		}
+		int len = 1;
+		while (len < limit - 1 && isRecogPart(text.charAt(start + len))) {
+			len++;
+		}
+		//最后一个字可以是数量词
+		return len + 1;
+	}
+
+	/**
+	 * 以end结尾的文本可能被识别的最大长度，规则同recogLimit
+	 * @param text 文本
+	 * @param end 结束索引（不包含）
+	 * @param limit 最大长度
+	 * @return 最大长度，为1时表示不可能识别出长度大于一的文本
+	 */
+	public static int recogSuffixLimit(final String text, final int end, final int limit) {
+		if (!RECOGNITION_TOOL_ENABLED || limit < 2) {
+			return Math.min(limit, 1);
+		}
+		int len = 1;
+		while (len < limit && isRecogPart(text.charAt(end - len - 1))) {
+			len++;
+		}
+		return len;
+	}
+
+	private static boolean isRecogPart(char c) {
+		return isEnglish(c) || isNumber(c) || isChineseNumber(c) || c == '.' || c == '/' || c == '／' || c == '．' || c == '·';
+	}
+
 	/**
 	 * 小数和分数识别
 	 * @param text 识别文本
 	 * @return 是否识别
 	 */
-	public static boolean isFraction(final String text) {
+	public static boolean isFraction(final CharSequence text) {
 		return isFraction(text, 0, text.length());
 	}
 
@@ -52,7 +99,7 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean isFraction(final String text, final int start, final int len) {
+	public static boolean isFraction(final CharSequence text, final int start, final int len) {
 		if (len < 3) {
 			return false;
 		}
@@ -78,7 +125,7 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean isEnglishAndNumberMix(final String text, final int start, final int len) {
+	public static boolean isEnglishAndNumberMix(final CharSequence text, final int start, final int len) {
 		for (int i = start; i < start + len; i++) {
 			char c = text.charAt(i);
 			if (!(isEnglish(c) || isNumber(c))) {
@@ -102,7 +149,7 @@ public class RecognitionTool {
 			}
 		}
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("识别出英文字母和数字混合串：" + text.substring(start, start + len));
+			LOGGER.debug("识别出英文字母和数字混合串：" + text.subSequence(start, start + len));
 		}
 		return true;
 	}
@@ -112,7 +159,7 @@ public class RecognitionTool {
 	 * @param text 识别文本
 	 * @return 是否识别
 	 */
-	public static boolean isEnglish(final String text) {
+	public static boolean isEnglish(final CharSequence text) {
 		return isEnglish(text, 0, text.length());
 	}
 
@@ -123,7 +170,7 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean isEnglish(final String text, final int start, final int len) {
+	public static boolean isEnglish(final CharSequence text, final int start, final int len) {
 		for (int i = start; i < start + len; i++) {
 			char c = text.charAt(i);
 			if (!isEnglish(c)) {
@@ -147,7 +194,7 @@ public class RecognitionTool {
 			}
 		}
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("识别出英文单词：" + text.substring(start, start + len));
+			LOGGER.debug("识别出英文单词：" + text.subSequence(start, start + len));
 		}
 		return true;
 	}
@@ -182,7 +229,7 @@ public class RecognitionTool {
 	 * @param text 识别文本
 	 * @return 是否识别
 	 */
-	public static boolean isQuantifier(final String text) {
+	public static boolean isQuantifier(final CharSequence text) {
 		return isQuantifier(text, 0, text.length());
 	}
 
@@ -193,7 +240,7 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean isQuantifier(final String text, final int start, final int len) {
+	public static boolean isQuantifier(final CharSequence text, final int start, final int len) {
 		if (len < 2) {
 			return false;
 		}
@@ -207,7 +254,7 @@ public class RecognitionTool {
 		char lastChar = text.charAt(start + len - 1);
 		if (Quantifier.is(lastChar) && (isNumber(text, start, len - 1) || isChineseNumber(text, start, len - 1) || isFraction(text, start, len - 1))) {
 			if (LOGGER.isDebugEnabled()) {
-				LOGGER.debug("识别数量词：" + text.substring(start, start + len));
+				LOGGER.debug("识别数量词：" + text.subSequence(start, start + len));
 			}
 			return true;
 		}
@@ -219,7 +266,7 @@ public class RecognitionTool {
 	 * @param text 识别文本
 	 * @return 是否识别
 	 */
-	public static boolean isNumber(final String text) {
+	public static boolean isNumber(final CharSequence text) {
 		return isNumber(text, 0, text.length());
 	}
 
@@ -230,7 +277,7 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean isNumber(final String text, final int start, final int len) {
+	public static boolean isNumber(final CharSequence text, final int start, final int len) {
 		for (int i = start; i < start + len; i++) {
 			char c = text.charAt(i);
 			if (!isNumber(c)) {
@@ -254,7 +301,7 @@ public class RecognitionTool {
 			}
 		}
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("识别出数字：" + text.substring(start, start + len));
+			LOGGER.debug("识别出数字：" + text.subSequence(start, start + len));
 		}
 		return true;
 	}
@@ -283,7 +330,7 @@ public class RecognitionTool {
 	 * @param text 识别文本
 	 * @return 是否识别
 	 */
-	public static boolean isChineseNumber(final String text) {
+	public static boolean isChineseNumber(final CharSequence text) {
 		return isChineseNumber(text, 0, text.length());
 	}
 
@@ -294,7 +341,7 @@ public class RecognitionTool {
 	 * @param len 识别长度
 	 * @return 是否识别
 	 */
-	public static boolean isChineseNumber(final String text, final int start, final int len) {
+	public static boolean isChineseNumber(final CharSequence text, final int start, final int len) {
 		for (int i = start; i < start + len; i++) {
 			char c = text.charAt(i);
 			boolean isChineseNumber = false;
@@ -329,8 +376,22 @@ public class RecognitionTool {
 			}
 		}
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("识别出中文数字：" + text.substring(start, start + len));
+			LOGGER.debug("识别出中文数字：" + text.subSequence(start, start + len));
 		}
 		return true;
 	}
+
+	/**
+	 * 中文数字字符识别，包括大小写
+	 * @param c 字符
+	 * @return 是否是中文数字
+	 */
+	public static boolean isChineseNumber(char c) {
+		for (char chineseNumber : chineseNumbers) {
+			if (c == chineseNumber) {
+				return true;
+			}
+		}
+		return false;
+	}
 }
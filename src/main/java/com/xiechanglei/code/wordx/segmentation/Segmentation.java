@@ -18,4 +18,30 @@ public interface Segmentation {
 	 */
 	public List<Word> seg(String text, DictWraper dict);
 
+	/**
+	 * 在当前线程中将文本切分为词，不再拆分成并行的子任务
+	 * 批量分词时每个线程各自处理一组文本，文本之间已经是并行的
+	 * @param text 文本
+	 * @param dict 词典
+	 * @return 词
+	 */
+	public default List<Word> segSequential(String text, DictWraper dict) {
+		return seg(text, dict);
+	}
+
+	/**
+	 * 将文本切分为词，结果写入可以重复使用的缓冲区，不创建Word
+	 * 缓冲区先被清空，词的位置是在text中的位置
+	 * 默认由seg(String, DictWraper)的结果转换，分词算法可以直接写入缓冲区
+	 * @param text 文本
+	 * @param dict 词典
+	 * @param buffer 缓冲区
+	 */
+	public default void seg(String text, DictWraper dict, TokenBuffer buffer) {
+		buffer.reset(text);
+		for (Word word : seg(text, dict)) {
+			buffer.add(word, 0);
+		}
+	}
+
 }
@@ -0,0 +1,402 @@
+package com.xiechanglei.code.wordx.segmentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
+
+/**
+ * 可以重复使用的分词结果：每个词只用几个int表示，保存在按词编号的并列数组中
+ * 词是原文的片段，用开始位置和长度表示，不创建Word和字符串
+ * 每次分词前清空，数组只在词数超过以前的最大值时才扩大，同一个缓冲区反复分词时不产生垃圾
+ * 不能在多个线程中同时使用，每个线程各用一个
+ */
+public final class TokenBuffer {
+    //词的来源，可以同时有多个
+    //场景词典中的词
+    public static final int SCENE = 1;
+    //基础词典中的词
+    public static final int BASE = 1 << 1;
+    //特殊情况识别出的词，如英文单词、数字、数量词
+    public static final int RECOGNIZED = 1 << 2;
+    //人名识别合成的词
+    public static final int PERSON_NAME = 1 << 3;
+    //细分规则改写的词
+    public static final int REFINED = 1 << 4;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    //分词的文本
+    private String text;
+    private int size;
+    private int[] starts;
+    private int[] lengths;
+    private int[] tags;
+    private int[] frequencies;
+    private int[] flags;
+    //不是原文片段的词（如细分规则改写的词）的字符串和结束位置，开始位置仍记在starts中，不能对应到原文时为-1，没有这样的词时为null
+    private String[] texts;
+    private int[] ends;
+    //重复使用的词的字符视图
+    private final View view = new View();
+
+    public TokenBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 初始能保存的词数
+     */
+    public TokenBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        tags = new int[capacity];
+        frequencies = new int[capacity];
+        flags = new int[capacity];
+    }
+
+    /**
+     * 清空所有的词，开始对新的文本分词
+     * @param text 分词的文本
+     */
+    public void reset(String text) {
+        this.text = text;
+        truncate(0);
+    }
+
+    /**
+     * 分词的文本，词的位置都是在这个文本中的位置
+     */
+    public String getText() {
+        return text;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 添加原文中的一个片段
+     * @param start 开始位置
+     * @param length 长度
+     * @param frequency 词频
+     * @param flag 词的来源
+     * @return 词的编号
+     */
+    public int add(int start, int length, int frequency, int flag) {
+        if (size == starts.length) {
+            grow();
+        }
+        int index = size++;
+        starts[index] = start;
+        lengths[index] = length;
+        tags[index] = TagRegistry.NONE;
+        frequencies[index] = frequency;
+        flags[index] = flag;
+        return index;
+    }
+
+    /**
+     * 添加一个词，是原文片段的词只记录位置，否则保存词的字符串和位置
+     * 位置对应原文中的一段、但字符不同的词（如合并时去掉了中间的空白字符、转换了大小写）不是原文的片段
+     * @param word 词
+     * @param flag 词的来源
+     * @return 词的编号
+     */
+    public int add(Word word, int flag) {
+        int index = add(word.getStart(), word.length(), word.getFrequency(), flag);
+        if (!isSlice(word)) {
+            if (texts == null) {
+                texts = new String[starts.length];
+                ends = new int[starts.length];
+            }
+            texts[index] = word.getText();
+            ends[index] = word.getEnd();
+        }
+        tags[index] = word.getPosCode();
+        return index;
+    }
+
+    private boolean isSlice(Word word) {
+        int start = word.getStart();
+        int length = word.length();
+        if (start < 0 || text == null || word.getEnd() - start != length || word.getEnd() > text.length()) {
+            return false;
+        }
+        String source = word.getSource();
+        return (source == text && word.getSourceStart() == start) || text.regionMatches(start, source, word.getSourceStart(), length);
+    }
+
+    /**
+     * 删除编号不小于size的词
+     * @param size 保留的词数
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("size " + size + " out of [0, " + this.size + "]");
+        }
+        if (texts != null) {
+            Arrays.fill(texts, size, this.size, null);
+        }
+        this.size = size;
+    }
+
+    /**
+     * 把编号在[from, to)的词倒过来，逆向匹配从后往前添加词，添加完后再调整为原文的顺序
+     */
+    public void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            swap(starts, i, j);
+            swap(lengths, i, j);
+            swap(tags, i, j);
+            swap(frequencies, i, j);
+            swap(flags, i, j);
+            if (texts != null) {
+                String t = texts[i];
+                texts[i] = texts[j];
+                texts[j] = t;
+                swap(ends, i, j);
+            }
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int t = array[i];
+        array[i] = array[j];
+        array[j] = t;
+    }
+
+    /**
+     * 用另一种方式得到的词替换编号不小于from的词，比如人名识别、细分规则改写后的词
+     * 替换后位置、长度都相同的词保留原来的来源，其余的词的来源为flag
+     * @param from 开始替换的编号
+     * @param words 新的词，按在原文中的顺序排列
+     * @param flag 新出现的词的来源
+     */
+    public void replace(int from, List<Word> words, int flag) {
+        int[] oldStarts = Arrays.copyOfRange(starts, from, size);
+        int[] oldLengths = Arrays.copyOfRange(lengths, from, size);
+        int[] oldFlags = Arrays.copyOfRange(flags, from, size);
+        truncate(from);
+        int k = 0;
+        for (Word word : words) {
+            int index = add(word, flag);
+            if (!isSlice(index)) {
+                continue;
+            }
+            int start = starts[index];
+            while (k < oldStarts.length && oldStarts[k] < start) {
+                k++;
+            }
+            if (k < oldStarts.length && oldStarts[k] == start && oldLengths[k] == lengths[index]) {
+                flags[index] = oldFlags[k];
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = starts.length * 2;
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        if (texts != null) {
+            texts = Arrays.copyOf(texts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+    }
+
+    /**
+     * 词是否是原文的片段，不是时词的字符保存在单独的字符串中
+     */
+    public boolean isSlice(int index) {
+        checkIndex(index);
+        return texts == null || texts[index] == null;
+    }
+
+    /**
+     * 词在原文中的开始位置，不能对应到原文时为-1
+     */
+    public int getStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * 词在原文中的结束位置（不包含），不能对应到原文时为-1
+     */
+    public int getEnd(int index) {
+        if (!isSlice(index)) {
+            return ends[index];
+        }
+        return starts[index] < 0 ? -1 : starts[index] + lengths[index];
+    }
+
+    public int getLength(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * 词性编号，见TagRegistry，还没有标注时为TagRegistry.NONE
+     */
+    public int getTag(int index) {
+        checkIndex(index);
+        return tags[index];
+    }
+
+    public void setTag(int index, int tag) {
+        checkIndex(index);
+        tags[index] = tag;
+    }
+
+    /**
+     * 词性
+     */
+    public String getPos(int index) {
+        return TagRegistry.name(getTag(index));
+    }
+
+    public int getFrequency(int index) {
+        checkIndex(index);
+        return frequencies[index];
+    }
+
+    /**
+     * 词的来源，SCENE、BASE、RECOGNIZED等的组合
+     */
+    public int getFlags(int index) {
+        checkIndex(index);
+        return flags[index];
+    }
+
+    /**
+     * 词的字符所在的字符串：原文片段为原文，否则为词本身的字符串
+     */
+    public String getSource(int index) {
+        return isSlice(index) ? text : texts[index];
+    }
+
+    /**
+     * 词的第一个字在getSource中的位置
+     */
+    public int getSourceStart(int index) {
+        return isSlice(index) ? starts[index] : 0;
+    }
+
+    /**
+     * 词的字符，不创建字符串
+     * 返回的是同一个视图对象，下一次调用后指向另一个词，需要保留时调用toString
+     */
+    public CharSequence view(int index) {
+        view.set(getSource(index), getSourceStart(index), lengths[index]);
+        return view;
+    }
+
+    /**
+     * 词的字符串，每次调用都会创建
+     */
+    public String getWord(int index) {
+        String source = getSource(index);
+        int start = getSourceStart(index);
+        return source.substring(start, start + lengths[index]);
+    }
+
+    /**
+     * 转换为Word，原文片段的词仍然是原文的片段
+     */
+    public Word toWord(int index) {
+        Word word;
+        if (isSlice(index)) {
+            word = new Word(text, starts[index], lengths[index]);
+        } else {
+            word = new Word(texts[index]);
+            word.setPosition(starts[index], ends[index]);
+        }
+        word.setPosCode(tags[index]);
+        word.setFrequency(frequencies[index]);
+        return word;
+    }
+
+    /**
+     * 转换为Word列表
+     */
+    public List<Word> toWords() {
+        List<Word> words = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            words.add(toWord(i));
+        }
+        return words;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of [0, " + size + ")");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                str.append(", ");
+            }
+            str.append(view(i));
+            if (tags[i] != TagRegistry.NONE) {
+                str.append('/').append(getPos(i));
+            }
+        }
+        return str.append(']').toString();
+    }
+
+    /**
+     * 字符串中一段字符的视图，长度之外的字符不可见，识别时不会看到前后的字
+     */
+    private static final class View implements CharSequence {
+        private String source;
+        private int start;
+        private int length;
+
+        void set(String source, int start, int length) {
+            this.source = source;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + " out of [0, " + length + ")");
+            }
+            return source.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") out of [0, " + length + ")");
+            }
+            return source.substring(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return source.substring(start, start + length);
+        }
+    }
+}
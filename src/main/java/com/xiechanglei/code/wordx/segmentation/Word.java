@@ -1,41 +1,200 @@
 package com.xiechanglei.code.wordx.segmentation;
 
-import java.util.Objects;
+import java.util.List;
+
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
 
 /**
  * 词、拼音、词性、词频
+ * 词性只保存编号，字符串形式在需要时从TagRegistry中查回
+ * 分词得到的词是原文的一个片段：只记住原文、开始位置和长度，第一次调用getText时才创建字符串
+ * 词在分词文本中的位置用getStart、getEnd取得，细分规则改写的词等无法对应到原文时位置为-1
  * Word
  */
-public class Word implements Comparable<Object> {
+public class Word implements Comparable<Object>, CharSequence {
+    //词的字符是source中从sourceStart开始的length个字符
+    private String source;
+    private int sourceStart;
+    private int length;
+    //创建过的字符串
     private String text;
-    private String pos = null;
+    //在分词文本中的位置
+    private int start = -1;
+    private int end = -1;
+    //词性编号，见TagRegistry
+    private int posCode = TagRegistry.NONE;
     private int frequency;
+    //字符串的哈希值，0表示还没有计算
+    private int hash;
 
     public Word(String text) {
-        this.text = text;
+        setText(text);
     }
 
     public Word(String text, String pos, int frequency) {
-        this.text = text;
-        this.pos = pos;
+        setText(text);
+        this.posCode = TagRegistry.code(pos);
         this.frequency = frequency;
     }
 
+    /**
+     * 原文的一个片段，不复制字符
+     * @param source 原文
+     * @param start 开始位置，同时作为词在分词文本中的位置
+     * @param length 长度
+     */
+    public Word(String source, int start, int length) {
+        if (start < 0 || length < 0 || start + length > source.length()) {
+            throw new IndexOutOfBoundsException("slice [" + start + ", " + (start + length) + ") of length " + source.length());
+        }
+        this.source = source;
+        this.sourceStart = start;
+        this.length = length;
+        this.start = start;
+        this.end = start + length;
+    }
+
+    /**
+     * 词的字符串，片段第一次调用时才创建
+     */
     public String getText() {
+        String text = this.text;
+        if (text == null && source != null) {
+            text = sourceStart == 0 && length == source.length() ? source : source.substring(sourceStart, sourceStart + length);
+            this.text = text;
+        }
         return text;
     }
 
+    /**
+     * 替换词的字符串，位置不变
+     */
     public void setText(String text) {
+        this.source = text;
+        this.sourceStart = 0;
+        this.length = text == null ? 0 : text.length();
         this.text = text;
+        this.hash = 0;
+    }
+
+    /**
+     * 保存词的字符的字符串，与getSourceStart、length一起使用，不需要创建词的字符串就能查词典
+     * 片段是原文，其它的词是词本身
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 词的第一个字在getSource中的位置
+     */
+    public int getSourceStart() {
+        return sourceStart;
+    }
+
+    /**
+     * 词在分词文本中的开始位置，不能对应到原文时为-1
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * 词在分词文本中的结束位置（不包含），不能对应到原文时为-1
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * 设置词在分词文本中的位置
+     * @param start 开始位置，-1表示未知
+     * @param end 结束位置（不包含），-1表示未知
+     */
+    public void setPosition(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " of length " + length);
+        }
+        return source.charAt(sourceStart + index);
     }
 
+    /**
+     * 词的一部分，仍然是原文的片段，没有词性和词频
+     * 字符和原文一一对应时保留位置
+     */
+    @Override
+    public Word subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("sub sequence [" + from + ", " + to + ") of length " + length);
+        }
+        Word word = new Word(source, sourceStart + from, to - from);
+        if (start >= 0 && end - start == length) {
+            word.setPosition(start + from, start + to);
+        } else {
+            word.setPosition(-1, -1);
+        }
+        return word;
+    }
+
+    /**
+     * 把连续的几个词合成一个词，例如姓和名
+     * 几个词在原文中紧挨着时仍然是原文的片段，否则创建新的字符串
+     * @param words 按顺序排列的词，至少一个
+     * @return 合成的词，没有词性和词频
+     */
+    public static Word join(List<Word> words) {
+        Word first = words.get(0);
+        Word last = words.get(words.size() - 1);
+        boolean adjacent = first.source != null;
+        int total = 0;
+        for (Word word : words) {
+            adjacent = adjacent && word.source == first.source && word.sourceStart == first.sourceStart + total;
+            total += word.length;
+        }
+        Word joined;
+        if (adjacent) {
+            joined = new Word(first.source, first.sourceStart, total);
+        } else {
+            StringBuilder text = new StringBuilder(total);
+            for (Word word : words) {
+                text.append(word.getText());
+            }
+            joined = new Word(text.toString());
+        }
+        boolean located = first.start >= 0 && last.end >= 0;
+        joined.setPosition(located ? first.start : -1, located ? last.end : -1);
+        return joined;
+    }
 
     public String getPos() {
-        return pos;
+        return TagRegistry.name(posCode);
     }
 
     public void setPos(String pos) {
-        this.pos = pos;
+        this.posCode = TagRegistry.code(pos);
+    }
+
+    /**
+     * 词性编号
+     * @return 编号，没有词性时为TagRegistry.NONE
+     */
+    public int getPosCode() {
+        return posCode;
+    }
+
+    public void setPosCode(int posCode) {
+        this.posCode = posCode;
     }
 
     public int getFrequency() {
@@ -47,11 +206,24 @@ public class Word implements Comparable<Object> {
     }
 
 
+    /**
+     * 与getText().hashCode()相同，不创建字符串
+     */
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.text);
+        int h = hash;
+        if (h == 0 && length > 0) {
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + source.charAt(sourceStart + i);
+            }
+            hash = h;
+        }
+        return h;
     }
 
+    /**
+     * 字符相同的词相等，不比较位置、词性
+     */
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
@@ -61,7 +233,10 @@ public class Word implements Comparable<Object> {
             return false;
         }
         final Word other = (Word) obj;
-        return Objects.equals(this.text, other.text);
+        if (source == null || other.source == null) {
+            return source == other.source;
+        }
+        return length == other.length && source.regionMatches(sourceStart, other.source, other.sourceStart, length);
     }
 
     @Override
@@ -69,7 +244,7 @@ public class Word implements Comparable<Object> {
         if (this == o) {
             return 0;
         }
-        if (this.text == null) {
+        if (this.source == null) {
             return -1;
         }
         if (o == null) {
@@ -78,10 +253,23 @@ public class Word implements Comparable<Object> {
         if (!(o instanceof Word)) {
             return 1;
         }
-        String t = ((Word) o).getText();
-        if (t == null) {
+        Word other = (Word) o;
+        if (other.source == null) {
             return 1;
         }
-        return this.text.compareTo(t);
+        int limit = Math.min(length, other.length);
+        for (int i = 0; i < limit; i++) {
+            char a = source.charAt(sourceStart + i);
+            char b = other.source.charAt(other.sourceStart + i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - other.length;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
     }
 }
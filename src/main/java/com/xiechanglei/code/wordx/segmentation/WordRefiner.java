@@ -26,13 +26,22 @@ public class WordRefiner {
 	 * @return
 	 */
 	public static List<Word> split(Word word, GenericTrie<String> refine) {
-		String value = refine.get(word.getText());
+		//用词在原文中的位置查找，不创建词的字符串
+		String value = word.length() == 0 ? null : refine.get(word.getSource(), word.getSourceStart(), word.length());
 		if (value == null) {
 			return null;
 		}
 		List<Word> words = new ArrayList<>();
+		//拆出的词依次与原词的各部分相同时，仍然是原文的片段，保留位置
+		int offset = 0;
 		for (String val : value.split("\\s+")) {
-			words.add(new Word(val));
+			if (offset >= 0 && offset + val.length() <= word.length() && word.getSource().regionMatches(word.getSourceStart() + offset, val, 0, val.length())) {
+				words.add(word.subSequence(offset, offset + val.length()));
+				offset += val.length();
+			} else {
+				words.add(new Word(val));
+				offset = -1;
+			}
 		}
 		if (words.isEmpty()) {
 			return null;
@@ -50,17 +59,25 @@ public class WordRefiner {
 		if (words == null || words.size() < 2) {
 			return null;
 		}
-		String key = "";
+		StringBuilder key = new StringBuilder();
 		for (Word word : words) {
-			key += word.getText();
-			key += " ";
+			if (key.length() > 0) {
+				key.append(' ');
+			}
+			key.append(word);
 		}
-		key = key.trim();
-		String value = refine.get(key);
+		String value = refine.get(key.toString().trim());
 		if (value == null) {
 			return null;
 		}
-		return new Word(value);
+		//合成的词与几个词连在一起相同时仍然是原文的片段，否则只保留位置
+		Word joined = Word.join(words);
+		if (joined.length() == value.length() && value.contentEquals(joined)) {
+			return joined;
+		}
+		Word word = new Word(value);
+		word.setPosition(joined.getStart(), joined.getEnd());
+		return word;
 	}
 
 	/**
@@ -71,6 +88,10 @@ public class WordRefiner {
 	 * @return
 	 */
 	public static List<Word> refine(List<Word> words, GenericTrie<String> refine) {
+		if (refine.isEmpty()) {
+			//没有细分规则，不需要为每个词拼接查找的键
+			return words instanceof ArrayList ? words : new ArrayList<>(words);
+		}
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("对分词结果进行refine之前：{}", words);
 		}
@@ -1,20 +1,23 @@
 package com.xiechanglei.code.wordx.segmentation.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Stack;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.xiechanglei.code.wordx.dictionary.impl.LayeredDictionary;
 import com.xiechanglei.code.wordx.impl.DictWraper;
 import com.xiechanglei.code.wordx.recognition.PersonName;
 import com.xiechanglei.code.wordx.recognition.Punctuation;
 import com.xiechanglei.code.wordx.segmentation.Segmentation;
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 
 /**
@@ -28,6 +31,8 @@ public abstract class AbstractSegmentation implements Segmentation {
     private boolean KEEP_CASE = true;
     private boolean KEEP_PUNCTUATION = false;
     private boolean PARALLEL_SEG = true;
+    private volatile int parallelThreshold = 4096;
+    private volatile ForkJoinPool pool;
 
     public AbstractSegmentation(boolean pERSON_NAME_RECOGNIZE, boolean kEEP_WHITESPACE, boolean kEEP_CASE, boolean kEEP_PUNCTUATION, boolean pARALLEL_SEG) {
         PERSON_NAME_RECOGNIZE = pERSON_NAME_RECOGNIZE;
@@ -48,91 +53,278 @@ public abstract class AbstractSegmentation implements Segmentation {
      */
     public abstract List<Word> segImpl(String text, DictWraper dict);
 
+    /**
+     * 对文本中的一个句子分词，词是原文的片段，位置是在整个文本中的位置
+     * 默认截取句子后调用segImpl(String, DictWraper)，再把位置移到句子所在的位置，子类可以直接在原文上分词
+     *
+     * @param text  文本
+     * @param start 句子的开始位置
+     * @param end   句子的结束位置（不包含）
+     * @param dict  词典
+     * @return 分词结果
+     */
+    public List<Word> segImpl(String text, int start, int end, DictWraper dict) {
+        List<Word> words = segImpl(text.substring(start, end), dict);
+        if (words != null && start > 0) {
+            for (Word word : words) {
+                if (word.getStart() >= 0) {
+                    word.setPosition(word.getStart() + start, word.getEnd() + start);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 对文本中的一个句子分词，结果写入缓冲区
+     * 默认由segImpl(String, int, int, DictWraper)的结果转换，子类可以直接在原文上分词后写入缓冲区
+     *
+     * @param text   文本
+     * @param start  句子的开始位置
+     * @param end    句子的结束位置（不包含）
+     * @param dict   词典
+     * @param buffer 缓冲区
+     */
+    public void segImpl(String text, int start, int end, DictWraper dict, TokenBuffer buffer) {
+        List<Word> words = segImpl(text, start, end, dict);
+        if (words == null) {
+            LOGGER.error("文本 " + text.substring(start, end) + " 没有获得分词结果");
+            return;
+        }
+        for (Word word : words) {
+            buffer.add(word, 0);
+        }
+    }
+
     @Override
     public List<Word> seg(String text, DictWraper dict) {
         List<Word> words = segDefault(text, dict);
         return words;
     }
 
+    @Override
+    public List<Word> segSequential(String text, DictWraper dict) {
+        return segDefault(text, dict, false);
+    }
+
     /**
      * 默认分词算法实现：
      * 1、把要分词的文本根据标点符号进行分割
      * 2、对分割后的文本进行分词
      * 3、组合分词结果
+     * 句子多且总字数不小于并行阈值时，按字数把句子分成大致均衡的几段，在线程池中并行分词，结果按句子原来的顺序拼接
      *
-     * @param text           文本
-     * @param baseDictionary
-     * @param dictionary
+     * @param text 文本
+     * @param dict 词典
      * @return 分词结果
      */
-    @SuppressWarnings("unchecked")
     public List<Word> segDefault(String text, DictWraper dict) {
-        List<String> sentences = Punctuation.seg(text, KEEP_PUNCTUATION);
-        if (sentences.size() == 1) {
-            return segSentence(sentences.get(0), dict);
+        return segDefault(text, dict, PARALLEL_SEG);
+    }
+
+    private List<Word> segDefault(String text, DictWraper dict, boolean parallel) {
+        //只记录句子的位置，不截取句子
+        int[] bounds = Punctuation.split(text, KEEP_PUNCTUATION);
+        int len = bounds.length / 2;
+        if (len == 1) {
+            return segSentence(text, bounds[0], bounds[1], dict);
         }
-        if (!PARALLEL_SEG) {
-            //串行顺序处理，不能利用多核优势
-            return sentences.stream().flatMap(sentence -> segSentence(sentence, dict).stream()).collect(Collectors.toList());
+        ForkJoinPool pool = parallel && text.length() >= parallelThreshold ? getPool() : null;
+        if (pool == null || pool.getParallelism() < 2) {
+            //串行顺序处理，文本较短时线程间传递任务的开销比分词本身还大
+            List<Word> result = new ArrayList<>();
+            for (int i = 0; i < len; i++) {
+                result.addAll(segSentence(text, bounds[2 * i], bounds[2 * i + 1], dict));
+            }
+            return result;
         }
-        //如果是多个句子，可以利用多核提升分词速度
-        Map<Integer, String> sentenceMap = new HashMap<>();
-        int len = sentences.size();
+        //句子i之前的总字数，按字数而不是句子数切分，长短不一的句子也能均衡地分到各个线程
+        long[] offsets = new long[len + 1];
         for (int i = 0; i < len; i++) {
-            //记住句子的先后顺序，因为后面的parallelStream方法不保证顺序
-            sentenceMap.put(i, sentences.get(i));
-        }
-        //用数组收集句子分词结果
-
-        List<Word>[] results = new List[sentences.size()];
-        sentenceMap.entrySet().stream().forEach(entry -> {
-            int index = entry.getKey();
-            String sentence = entry.getValue();
-            results[index] = segSentence(sentence, dict);
-        });
-        sentences.clear();
-        sentences = null;
-        sentenceMap.clear();
-        sentenceMap = null;
-        List<Word> resultList = new ArrayList<>();
+            offsets[i + 1] = offsets[i] + bounds[2 * i + 1] - bounds[2 * i];
+        }
+        //每个线程分到几段，某段特别慢时空闲的线程可以窃取其它段
+        long grain = Math.max(parallelThreshold / 2, offsets[len] / (pool.getParallelism() * 4L));
+        @SuppressWarnings("unchecked")
+        List<Word>[] results = new List[len];
+        SegTask task = new SegTask(text, bounds, offsets, results, dict, 0, len, grain);
+        if (ForkJoinTask.getPool() == pool) {
+            //已经在这个线程池中，直接执行，避免等待自己所在的线程池
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        int size = 0;
+        for (List<Word> result : results) {
+            size += result.size();
+        }
+        List<Word> resultList = new ArrayList<>(size);
         for (List<Word> result : results) {
-            if (result == null || result.isEmpty()) {
-                continue;
-            }
             resultList.addAll(result);
         }
         return resultList;
     }
 
     /**
-     * 将句子切分为词
+     * 分词结果写入缓冲区，切分的结果与seg(String, DictWraper)相同，在调用线程中顺序分词
+     * 词都是原文的片段，不转换大小写，不保留大小写时由使用方转换
+     * 没有可能识别出人名的句子不创建任何对象，缓冲区足够大时整个分词过程不产生垃圾
+     * 姓后面紧跟着单字的句子先按词列表识别人名，再替换这个句子的词
      *
-     * @param sentence 句子
-     * @return 词集合
+     * @param text   文本
+     * @param dict   词典
+     * @param buffer 缓冲区
      */
-    private List<Word> segSentence(final String sentence, DictWraper dict) {
-        if (sentence.length() == 1) {
-            if (KEEP_WHITESPACE) {
-                List<Word> result = new ArrayList<>(1);
-                result.add(new Word(KEEP_CASE ? sentence : sentence.toLowerCase()));
-                return result;
-            } else {
-                if (!Character.isWhitespace(sentence.charAt(0))) {
-                    List<Word> result = new ArrayList<>(1);
-                    result.add(new Word(KEEP_CASE ? sentence : sentence.toLowerCase()));
-                    return result;
+    @Override
+    public void seg(String text, DictWraper dict, TokenBuffer buffer) {
+        buffer.reset(text);
+        //与Punctuation.split相同的切分，直接处理每个句子，不记录句子的位置
+        int start = 0;
+        int len = text.length();
+        for (int i = 0; i <= len; i++) {
+            boolean punctuation = i < len && Punctuation.is(text.charAt(i));
+            if (i < len && !punctuation) {
+                continue;
+            }
+            if (i > start) {
+                segSentence(text, start, i, dict, buffer);
+            }
+            if (punctuation && KEEP_PUNCTUATION) {
+                segSentence(text, i, i + 1, dict, buffer);
+            }
+            start = i + 1;
+        }
+    }
+
+    private void segSentence(String text, int start, int end, DictWraper dict, TokenBuffer buffer) {
+        if (end - start == 1) {
+            if (KEEP_WHITESPACE || !Character.isWhitespace(text.charAt(start))) {
+                buffer.add(start, 1, 0, 0);
+            }
+            return;
+        }
+        int from = buffer.size();
+        segImpl(text, start, end, dict, buffer);
+        if (PERSON_NAME_RECOGNIZE && PersonName.hasCandidate(buffer, from, buffer.size())) {
+            //和seg(String, DictWraper)中的词相同（不保留大小写时是小写的），人名识别选出的结果才会相同
+            List<Word> words = new ArrayList<>(buffer.size() - from);
+            for (int i = from; i < buffer.size(); i++) {
+                Word word = buffer.isSlice(i) ? getWord(text, buffer.getStart(i), buffer.getLength(i)) : null;
+                if (word == null) {
+                    word = buffer.toWord(i);
+                } else {
+                    word.setFrequency(buffer.getFrequency(i));
+                }
+                words.add(word);
+            }
+            buffer.replace(from, PersonName.recognize(words, dict), TokenBuffer.PERSON_NAME);
+        }
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * 并行分词的阈值，文本的字数小于该值时在调用线程中顺序分词
+     *
+     * @param parallelThreshold 字数
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("parallel threshold must be positive: " + parallelThreshold);
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * 并行分词使用的线程池，没有设置时使用所有分词算法共用的线程池
+     */
+    public ForkJoinPool getPool() {
+        ForkJoinPool pool = this.pool;
+        return pool != null ? pool : DefaultPool.POOL;
+    }
+
+    /**
+     * 设置并行分词使用的线程池，不使用公共线程池，避免与应用中其它并行流互相阻塞
+     * 线程池由调用方管理，这里不会关闭
+     *
+     * @param pool 线程池，为null时恢复使用共用的线程池
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 所有分词算法共用的线程池，第一次并行分词时才创建，线程数为CPU核数，线程是守护线程，不会阻止JVM退出
+     */
+    private static final class DefaultPool {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 对一段连续的句子分词，字数大于粒度时从字数的中点一分为二
+     */
+    private final class SegTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String text;
+        private final int[] bounds;
+        private final long[] offsets;
+        private final List<Word>[] results;
+        private final DictWraper dict;
+        private final int from;
+        private final int to;
+        private final long grain;
+
+        SegTask(String text, int[] bounds, long[] offsets, List<Word>[] results, DictWraper dict, int from, int to, long grain) {
+            this.text = text;
+            this.bounds = bounds;
+            this.offsets = offsets;
+            this.results = results;
+            this.dict = dict;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 || offsets[to] - offsets[from] <= grain) {
+                for (int i = from; i < to; i++) {
+                    results[i] = segSentence(text, bounds[2 * i], bounds[2 * i + 1], dict);
                 }
+                return;
             }
+            //找到字数的中点所在的句子，两边至少各有一个句子
+            int mid = Arrays.binarySearch(offsets, from, to, (offsets[from] + offsets[to]) / 2);
+            mid = mid >= 0 ? mid : -mid - 1;
+            mid = Math.min(Math.max(mid, from + 1), to - 1);
+            invokeAll(new SegTask(text, bounds, offsets, results, dict, from, mid, grain), new SegTask(text, bounds, offsets, results, dict, mid, to, grain));
         }
-        if (sentence.length() > 1) {
-            List<Word> list = segImpl(sentence, dict);
+    }
+
+    /**
+     * 将句子切分为词
+     *
+     * @param text  文本
+     * @param start 句子的开始位置
+     * @param end   句子的结束位置（不包含）
+     * @return 词集合
+     */
+    private List<Word> segSentence(final String text, int start, int end, DictWraper dict) {
+        if (end - start == 1) {
+            Word word = getWord(text, start, 1);
+            return word == null ? Collections.emptyList() : Collections.singletonList(word);
+        }
+        if (end - start > 1) {
+            List<Word> list = segImpl(text, start, end, dict);
             if (list != null) {
                 if (PERSON_NAME_RECOGNIZE) {
                     list = PersonName.recognize(list, dict);
                 }
                 return list;
             } else {
-                LOGGER.error("文本 " + sentence + " 没有获得分词结果");
+                LOGGER.error("文本 " + text.substring(start, end) + " 没有获得分词结果");
             }
         }
         return Collections.emptyList();
@@ -168,6 +360,61 @@ public abstract class AbstractSegmentation implements Segmentation {
         }
     }
 
+    /**
+     * 将识别出的词及其词频放入队列
+     *
+     * @param result    队列
+     * @param text      文本
+     * @param start     词开始索引
+     * @param len       词长度
+     * @param frequency 词频，即词典中词的附加值
+     */
+    protected void addWord(List<Word> result, String text, int start, int len, int frequency) {
+        Word word = getWord(text, start, len);
+        if (word != null) {
+            word.setFrequency(frequency);
+            result.add(word);
+        }
+    }
+
+    /**
+     * 将识别出的词及其词频入栈
+     *
+     * @param result    栈
+     * @param text      文本
+     * @param start     词开始索引
+     * @param len       词长度
+     * @param frequency 词频，即词典中词的附加值
+     */
+    protected void addWord(Stack<Word> result, String text, int start, int len, int frequency) {
+        Word word = getWord(text, start, len);
+        if (word != null) {
+            word.setFrequency(frequency);
+            result.push(word);
+        }
+    }
+
+    /**
+     * 将分词得到的词写入缓冲区
+     *
+     * @param buffer 缓冲区
+     * @param text   文本
+     * @param start  词开始索引
+     * @param len    词长度
+     * @param match  这个位置在词典中的匹配结果，长度与词相同时是词典中的词，否则是特殊情况识别出的词或单字
+     */
+    protected void addToken(TokenBuffer buffer, String text, int start, int len, long match) {
+        if (!KEEP_WHITESPACE && len == 1 && Character.isWhitespace(text.charAt(start))) {
+            return;
+        }
+        if (len == LayeredDictionary.length(match)) {
+            int flag = LayeredDictionary.layer(match) == LayeredDictionary.SCENE ? TokenBuffer.SCENE : TokenBuffer.BASE;
+            buffer.add(start, len, LayeredDictionary.payload(match), flag);
+        } else {
+            buffer.add(start, len, 0, len > 1 ? TokenBuffer.RECOGNIZED : 0);
+        }
+    }
+
     /**
      * 获取一个已经识别的词
      *
@@ -189,30 +436,16 @@ public abstract class AbstractSegmentation implements Segmentation {
         if (start + len > text.length()) {
             return null;
         }
-        String wordText = null;
-        if (KEEP_CASE) {
-            wordText = text.substring(start, start + len);
-        } else {
-            wordText = text.substring(start, start + len).toLowerCase();
+        if (!KEEP_WHITESPACE && len == 1 && Character.isWhitespace(text.charAt(start))) {
+            //忽略空白字符，长度大于1的词不会是空白字符
+            return null;
         }
-        Word word = new Word(wordText);
-        //方便编译器优化
-        if (KEEP_WHITESPACE) {
-            //保留空白字符
-            return word;
-        } else {
-            //忽略空白字符
-            if (len > 1) {
-                //长度大于1，不会是空白字符
-                return word;
-            } else {
-                //长度为1，只要非空白字符
-                if (!Character.isWhitespace(text.charAt(start))) {
-                    //不是空白字符，保留
-                    return word;
-                }
-            }
+        if (KEEP_CASE) {
+            //原文的片段，不创建字符串
+            return new Word(text, start, len);
         }
-        return null;
+        Word word = new Word(text.substring(start, start + len).toLowerCase());
+        word.setPosition(start, start + len);
+        return word;
     }
 }
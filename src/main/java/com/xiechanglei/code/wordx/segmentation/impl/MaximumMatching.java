@@ -3,8 +3,10 @@ package com.xiechanglei.code.wordx.segmentation.impl;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.xiechanglei.code.wordx.dictionary.impl.LayeredDictionary;
 import com.xiechanglei.code.wordx.impl.DictWraper;
 import com.xiechanglei.code.wordx.recognition.RecognitionTool;
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 
 /**
@@ -21,50 +23,74 @@ public class MaximumMatching extends AbstractSegmentation {
 
     @Override
     public List<Word> segImpl(String text, DictWraper dict) {
+        return segImpl(text, 0, text.length(), dict);
+    }
+
+    /**
+     * 直接在原文上分词，得到的词是原文的片段
+     */
+    @Override
+    public List<Word> segImpl(String text, int from, int to, DictWraper dict) {
         List<Word> result = new ArrayList<>();
-        //文本长度
-        final int textLen = text.length();
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
+        //句子的结束位置
+        final int textLen = to;
         //从未分词的文本中截取的长度
-        int maxlen = Math.max(Math.max(dict.getDictionary().getMaxLength(), dict.getBaseDictionary().getMaxLength()), 16);
-        int len = maxlen;
+        int maxlen = Math.max(dictionary.getMaxLength(), 16);
         //剩下未分词的文本的索引
-        int start = 0;
+        int start = from;
         //只要有词未切分完就一直继续
         while (start < textLen) {
-            if (len > textLen - start) {
-                //如果未分词的文本的长度小于截取的长度
-                //则缩短截取的长度
-                len = textLen - start;
-            }
-            int scenelen = len;
-            while (true) {
-                if (scenelen == 1) {
-                    while (!dict.getBaseDictionary().contains(text, start, len) && !RecognitionTool.recog(text, start, len)) {
-                        //如果长度为一且在词典中未找到匹配
-                        //则按长度为一切分
-                        if (len == 1) {
-                            break;
-                        }
-                        //如果查不到，则长度减一后继续
-                        len--;
-                    }
-                    addWord(result, text, start, len);
-                    break;
-                } else if (dict.getDictionary().contains(text, start, scenelen)) {
-                    len = scenelen;
-                    addWord(result, text, start, len);
-                    break;
-                } else {
-                    scenelen--;
-                }
-            }
-            //用长为len的字符串查词典，并做特殊情况识别
-
+            //如果未分词的文本的长度小于截取的长度，则缩短截取的长度
+            int limit = Math.min(maxlen, textLen - start);
+            //一次查找得到最长的词及其来源，场景词典中有长度大于一的词时优先使用
+            //查找前先用前置过滤器缩小这个位置的窗口，没有词能从这个字开始时不查词典
+            long match = dictionary.match(text, start, limit);
+            int len = wordLength(text, start, limit, match);
+            //词频只属于词典中的词，靠特殊情况识别出的词没有词频
+            int frequency = len == LayeredDictionary.length(match) ? LayeredDictionary.payload(match) : 0;
+            addWord(result, text, start, len, frequency);
             //从待分词文本中向后移动索引，滑过已经分词的文本
             start += len;
-            //每一次成功切词后都要重置截取长度
-            len = maxlen;
         }
         return result;
     }
+
+    /**
+     * 直接在原文上分词，结果写入缓冲区，不创建对象
+     */
+    @Override
+    public void segImpl(String text, int from, int to, DictWraper dict, TokenBuffer buffer) {
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
+        int maxlen = Math.max(dictionary.getMaxLength(), 16);
+        int start = from;
+        while (start < to) {
+            int limit = Math.min(maxlen, to - start);
+            long match = dictionary.match(text, start, limit);
+            int len = wordLength(text, start, limit, match);
+            addToken(buffer, text, start, len, match);
+            start += len;
+        }
+    }
+
+    /**
+     * 从start开始切出的词的长度
+     *
+     * @param match 这个位置在词典中的匹配结果
+     */
+    private static int wordLength(String text, int start, int limit, long match) {
+        int len = LayeredDictionary.length(match);
+        if (LayeredDictionary.layer(match) != LayeredDictionary.SCENE) {
+            //场景词典中没有长度大于一的词，得到的是基础词典中的词
+            int baseLen = len;
+            //比基础词典中最长的词更长的部分只能靠特殊情况识别，超过可能识别的长度的部分不需要尝试
+            len = Math.max(RecognitionTool.recogLimit(text, start, limit), Math.max(baseLen, 1));
+            while (len > baseLen && len > 1 && !RecognitionTool.recog(text, start, len)) {
+                //如果查不到，则长度减一后继续
+                //如果长度为一且在词典中未找到匹配，则按长度为一切分
+                len--;
+            }
+        }
+        return len;
+    }
 }
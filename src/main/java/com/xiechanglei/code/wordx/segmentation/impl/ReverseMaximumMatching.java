@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 
+import com.xiechanglei.code.wordx.dictionary.impl.LayeredDictionary;
 import com.xiechanglei.code.wordx.impl.DictWraper;
 import com.xiechanglei.code.wordx.recognition.RecognitionTool;
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 
 /**
@@ -23,55 +25,74 @@ public class ReverseMaximumMatching extends AbstractSegmentation {
 
     @Override
     public List<Word> segImpl(String text, DictWraper dict) {
+        return segImpl(text, 0, text.length(), dict);
+    }
+
+    /**
+     * 直接在原文上分词，得到的词是原文的片段
+     */
+    @Override
+    public List<Word> segImpl(String text, int from, int to, DictWraper dict) {
         Stack<Word> result = new Stack<>();
-        //文本长度
-        final int textLen = text.length();
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
         //从未分词的文本中截取的长度
-        int maxlen = Math.max(Math.max(dict.getDictionary().getMaxLength(), dict.getBaseDictionary().getMaxLength()), 16);
-        int len = maxlen;
-        //剩下未分词的文本的索引
-        int start = textLen - len;
-        //处理文本长度小于最大词长的情况
-        if (start < 0) {
-            start = 0;
-        }
-        if (len > textLen - start) {
-            //如果未分词的文本的长度小于截取的长度
-            //则缩短截取的长度
-            len = textLen - start;
-        }
+        int maxlen = Math.max(dictionary.getMaxLength(), 16);
+        //剩下未分词的文本的结束索引
+        int end = to;
         //只要有词未切分完就一直继续
-        while (start >= 0 && len > 0) {
-            //用长为len的字符串查词典，并做特殊情况识别
-            while (!dict.getDictionary().contains(text, start, len) && !dict.getBaseDictionary().contains(text, start, len) && !RecognitionTool.recog(text, start, len)) {
-                //如果长度为一且在词典中未找到匹配
-                //则按长度为一切分
-                if (len == 1) {
-                    break;
-                }
-                //如果查不到，则长度减一
-                //索引向后移动一个字，然后继续
-                len--;
-                start++;
-            }
-            addWord(result, text, start, len);
-            //每一次成功切词后都要重置截取长度
-            len = maxlen;
-            if (len > start) {
-                //如果未分词的文本的长度小于截取的长度
-                //则缩短截取的长度
-                len = start;
-            }
-            //每一次成功切词后都要重置开始索引位置
-            //从待分词文本中向前移动最大词长个索引
-            //将未分词的文本纳入下次分词的范围
-            start -= len;
+        while (end > from) {
+            //如果未分词的文本的长度小于截取的长度，则缩短截取的长度
+            int limit = Math.min(maxlen, end - from);
+            //先用前置过滤器缩小窗口，再从反向索引的根节点向前遍历，直接得到两层词典中以end结尾的最长的词
+            long match = dictionary.matchSuffix(text, end, limit);
+            int dictLen = LayeredDictionary.length(match);
+            int len = wordLength(text, end, limit, dictLen);
+            //词频只属于词典中的词，靠特殊情况识别出的词没有词频
+            addWord(result, text, end - len, len, len == dictLen ? LayeredDictionary.payload(match) : 0);
+            //从待分词文本中向前移动索引，滑过已经分词的文本
+            end -= len;
         }
-        len = result.size();
+        int len = result.size();
         List<Word> list = new ArrayList<>(len);
         for (int i = 0; i < len; i++) {
             list.add(result.pop());
         }
         return list;
     }
+
+    /**
+     * 直接在原文上分词，结果写入缓冲区，不创建对象
+     * 从后往前切出的词先依次添加，最后把这个句子的词倒过来
+     */
+    @Override
+    public void segImpl(String text, int from, int to, DictWraper dict, TokenBuffer buffer) {
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
+        int maxlen = Math.max(dictionary.getMaxLength(), 16);
+        int first = buffer.size();
+        int end = to;
+        while (end > from) {
+            int limit = Math.min(maxlen, end - from);
+            long match = dictionary.matchSuffix(text, end, limit);
+            int len = wordLength(text, end, limit, LayeredDictionary.length(match));
+            addToken(buffer, text, end - len, len, match);
+            end -= len;
+        }
+        buffer.reverse(first, buffer.size());
+    }
+
+    /**
+     * 以end结尾切出的词的长度
+     *
+     * @param dictLen 词典中以end结尾的最长的词的长度
+     */
+    private static int wordLength(String text, int end, int limit, int dictLen) {
+        //比词典中最长的词更长的部分只能靠特殊情况识别，超过可能识别的长度的部分不需要尝试
+        int len = Math.max(RecognitionTool.recogSuffixLimit(text, end, limit), Math.max(dictLen, 1));
+        while (len > dictLen && len > 1 && !RecognitionTool.recog(text, end - len, len)) {
+            //如果查不到，则长度减一，即开始索引向后移动一个字
+            //如果长度为一且在词典中未找到匹配，则按长度为一切分
+            len--;
+        }
+        return len;
+    }
 }
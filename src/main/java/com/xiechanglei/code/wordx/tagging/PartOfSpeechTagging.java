@@ -2,75 +2,128 @@ package com.xiechanglei.code.wordx.tagging;
 
 import java.util.List;
 
+import com.xiechanglei.code.wordx.dictionary.impl.LayeredDictionary;
 import com.xiechanglei.code.wordx.impl.DictWraper;
 import com.xiechanglei.code.wordx.recognition.Punctuation;
 import com.xiechanglei.code.wordx.recognition.RecognitionTool;
+import com.xiechanglei.code.wordx.segmentation.TokenBuffer;
 import com.xiechanglei.code.wordx.segmentation.Word;
 
 /**
  * 词性标注
+ * 词性以TagRegistry中的编号表示
  */
 public class PartOfSpeechTagging {
+    private static final int W = TagRegistry.code("w");
+    private static final int M = TagRegistry.code("m");
+    private static final int MH = TagRegistry.code("mh");
+    private static final int MX = TagRegistry.code("mx");
+    private static final int MF = TagRegistry.code("mf");
+    private static final int TQ = TagRegistry.code("tq");
+    private static final int TDQ = TagRegistry.code("tdq");
+    private static final int MQ = TagRegistry.code("mq");
+    private static final int PUNCT = TagRegistry.code("punct");
+    //未知词性
+    private static final int I = TagRegistry.code("i");
 
     public static void process(List<Word> words, DictWraper dict) {
-        words.stream().forEach(word -> {
-            String wordText = word.getText();
-            String pos = null;
-            pos = dict.getTag().get(wordText);
-            if (pos == null) {
-                pos = dict.getBaseTag().get(wordText);
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
+        for (Word word : words) {
+            //场景中的词性优先，被场景屏蔽的词不使用基础词典中的词性
+            //直接用词在原文中的位置查词典，不创建词的字符串
+            int pos = word.length() == 0 ? TagRegistry.NONE : dictionary.getTagCode(word.getSource(), word.getSourceStart(), word.length());
+            if (pos == TagRegistry.NONE) {
+                //词典中没有的词才需要识别，识别时会查看前后的字，要用词本身
+                pos = recognize(word);
             }
-            if (pos == null) {
-                //识别英文
-                if (RecognitionTool.isEnglish(wordText)) {
-                    pos = "w";
-                }
-                //识别数字
-                if (RecognitionTool.isNumber(wordText)) {
-                    pos = "m";
-                }
-                //中文数字
-                if (RecognitionTool.isChineseNumber(wordText)) {
-                    pos = "mh";
-                }
-                if (RecognitionTool.isChineseNumber(wordText)) {
-                    pos = "m";
-                }
-                //识别小数和分数
-                if (RecognitionTool.isFraction(wordText)) {
-                    if (wordText.contains(".") || wordText.contains("．") || wordText.contains("·")) {
-                        pos = "mx";
-                    }
-                    if (wordText.contains("/") || wordText.contains("／")) {
-                        pos = "mf";
-                    }
-                }
-                //识别数量词
-                if (RecognitionTool.isQuantifier(wordText)) {
-                    //分数
-                    if (wordText.contains("‰") || wordText.contains("%") || wordText.contains("％")) {
-                        pos = "mf";
-                    }
-                    //时间量词
-                    else if (wordText.contains("时") || wordText.contains("分") || wordText.contains("秒")) {
-                        pos = "tq";
-                    }
-                    //日期量词
-                    else if (wordText.contains("年") || wordText.contains("月") || wordText.contains("日") || wordText.contains("天") || wordText.contains("号")) {
-                        pos = "tdq";
-                    }
-                    //数量词
-                    else {
-                        pos = "mq";
-                    }
-                }
-                //识别标点符号
-                if (Punctuation.is(wordText)) {
-                    pos = "punct";
-                }
+            word.setPosCode(pos == TagRegistry.NONE ? I : pos);
+        }
+    }
+
+    /**
+     * 标注缓冲区中编号不小于from的词，与process(List, DictWraper)的结果相同，不创建对象
+     * @param tokens 分词结果
+     * @param from 开始编号
+     * @param dict 词典
+     */
+    public static void process(TokenBuffer tokens, int from, DictWraper dict) {
+        LayeredDictionary dictionary = dict.getLayeredDictionary();
+        int size = tokens.size();
+        for (int i = from; i < size; i++) {
+            int length = tokens.getLength(i);
+            int pos = length == 0 ? TagRegistry.NONE : dictionary.getTagCode(tokens.getSource(i), tokens.getSourceStart(i), length);
+            if (pos == TagRegistry.NONE) {
+                //视图只包含词本身的字，和用词的字符串识别相同
+                pos = recognize(tokens.view(i));
+            }
+            tokens.setTag(i, pos == TagRegistry.NONE ? I : pos);
+        }
+    }
+
+    /**
+     * 识别词典中没有的词的词性
+     * @param word 词，只包含词本身的字
+     * @return 词性编号，不能识别时为TagRegistry.NONE
+     */
+    private static int recognize(CharSequence word) {
+        int pos = TagRegistry.NONE;
+        //识别英文
+        if (RecognitionTool.isEnglish(word)) {
+            pos = W;
+        }
+        //识别数字
+        if (RecognitionTool.isNumber(word)) {
+            pos = M;
+        }
+        //中文数字
+        if (RecognitionTool.isChineseNumber(word)) {
+            pos = MH;
+        }
+        if (RecognitionTool.isChineseNumber(word)) {
+            pos = M;
+        }
+        //识别小数和分数
+        if (RecognitionTool.isFraction(word)) {
+            if (contains(word, '.') || contains(word, '．') || contains(word, '·')) {
+                pos = MX;
+            }
+            if (contains(word, '/') || contains(word, '／')) {
+                pos = MF;
+            }
+        }
+        //识别数量词
+        if (RecognitionTool.isQuantifier(word)) {
+            //分数
+            if (contains(word, '‰') || contains(word, '%') || contains(word, '％')) {
+                pos = MF;
+            }
+            //时间量词
+            else if (contains(word, '时') || contains(word, '分') || contains(word, '秒')) {
+                pos = TQ;
+            }
+            //日期量词
+            else if (contains(word, '年') || contains(word, '月') || contains(word, '日') || contains(word, '天') || contains(word, '号')) {
+                pos = TDQ;
+            }
+            //数量词
+            else {
+                pos = MQ;
+            }
+        }
+        //识别标点符号
+        if (Punctuation.is(word)) {
+            pos = PUNCT;
+        }
+        return pos;
+    }
+
+    private static boolean contains(CharSequence word, char c) {
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) == c) {
+                return true;
             }
-            word.setPos(pos == null ? "i" : pos);
-        });
+        }
+        return false;
     }
 
 }
@@ -0,0 +1,103 @@
+package com.xiechanglei.code.wordx.tagging;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 词性编号表
+ * 每个词性对应一个从1开始的小整数，词性前缀树、Word中只保存编号，需要字符串时再按编号查回
+ * 编号在进程内只增不减，同一个词性的编号不会改变，可以在多个线程中同时使用
+ */
+public final class TagRegistry {
+    //没有词性
+    public static final int NONE = 0;
+
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    //下标为编号，编号0保留
+    private static volatile String[] names = new String[64];
+    //词性首字母对应的词性编号，词性序列评分按首字母比较
+    private static volatile int[] initials = new int[64];
+    private static int size = 1;
+
+    private TagRegistry() {
+    }
+
+    /**
+     * 词性的编号，第一次出现的词性分配一个新的编号
+     * @param tag 词性
+     * @return 编号，词性为null或空时返回NONE
+     */
+    public static int code(String tag) {
+        if (tag == null || tag.isEmpty()) {
+            return NONE;
+        }
+        Integer code = CODES.get(tag);
+        return code != null ? code : register(tag);
+    }
+
+    /**
+     * 已经分配过的词性的编号，不分配新的编号
+     * @param tag 词性
+     * @return 编号，没有分配过时返回NONE
+     */
+    public static int find(String tag) {
+        if (tag == null) {
+            return NONE;
+        }
+        Integer code = CODES.get(tag);
+        return code != null ? code : NONE;
+    }
+
+    /**
+     * 编号对应的词性
+     * @param code 编号
+     * @return 词性，编号为NONE或没有分配过时返回null
+     */
+    public static String name(int code) {
+        String[] names = TagRegistry.names;
+        return code > NONE && code < names.length ? names[code] : null;
+    }
+
+    /**
+     * 词性首字母的编号，如nr、ns的首字母都是n
+     * @param code 词性编号
+     * @return 首字母作为词性时的编号，编号为NONE时返回NONE
+     */
+    public static int initial(int code) {
+        int[] initials = TagRegistry.initials;
+        return code > NONE && code < initials.length ? initials[code] : NONE;
+    }
+
+    /**
+     * 已经分配的编号个数
+     * @return 个数
+     */
+    public static synchronized int size() {
+        return size - 1;
+    }
+
+    private static synchronized int register(String tag) {
+        Integer code = CODES.get(tag);
+        if (code != null) {
+            return code;
+        }
+        //首字母先登记，登记时数组可能扩容
+        int initial = tag.length() == 1 ? NONE : code(tag.substring(0, 1));
+        int next = size;
+        String[] names = TagRegistry.names;
+        int[] initials = TagRegistry.initials;
+        if (next == names.length) {
+            names = Arrays.copyOf(names, next * 2);
+            initials = Arrays.copyOf(initials, next * 2);
+        }
+        names[next] = tag;
+        size = next + 1;
+        //先发布数组再发布编号，读到编号的线程一定能查到词性
+        TagRegistry.names = names;
+        initials[next] = initial == NONE ? next : initial;
+        TagRegistry.initials = initials;
+        CODES.put(tag, next);
+        return next;
+    }
+}
@@ -0,0 +1,492 @@
+package com.xiechanglei.code.wordx.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 构建静态双数组，DoubleArrayDictionaryTrie和DoubleArrayGenericTrie共用
+ * 数组布局与原来的构建方式相同：base[0]为根节点子节点的偏移量，字符c的子节点在base+c，词尾节点在base+0，
+ * 词尾节点的base为-1，check为父节点的偏移量或者键对应的值
+ * 键按顺序逐个加入，一个节点的所有子节点在后面的键离开这个节点时才确定，这时放入这组子节点（后序），
+ * 构建过程中只保存当前键的路径，不需要把所有的键放在内存中，可以直接读取外部排序的结果
+ * 初始容量按键估算，不够时原地扩容，不需要重新构建；空闲槽位用有序的双向链表串起来，
+ * 查找偏移量时只看空闲槽位，另用位图判断槽位是否空闲
+ */
+public final class DoubleArrayBuilder {
+	private static final int INDEX_LENGTH = 65536;
+	//为一组兄弟节点在前部最多尝试的空闲槽位数，超过则到数组尾部附近查找
+	private static final int MAX_TRIALS = 256;
+
+	private final boolean withValues;
+	private final int estimatedSize;
+
+	private int[] base;
+	private int[] check;
+	//空闲槽位链表，超出数组的槽位都是空闲的，链表的最后一个槽位指向数组长度
+	private int[] nextFree;
+	private int[] prevFree;
+	private int firstFree;
+	private int lastFree;
+	//槽位占用位图
+	private long[] occupied;
+	//汇总位图，1表示对应的占用位图块已满
+	private long[] full;
+	//用过的偏移量，不同节点的子节点不能用同一个偏移量，否则无法区分词尾节点
+	private long[] usedBegin;
+	private int capacity;
+	//用过的最大下标加一
+	private int tail;
+	private int usedCount;
+	private int growCount;
+
+	//上一个键，即当前路径，第d层的节点为路径的前d个字符
+	private char[] path = new char[16];
+	private int pathLength;
+	//路径上每个节点已经确定的子节点：编码（词尾为0）和子节点的子节点的偏移量（词尾为值）
+	private int[][] childCodes = new int[17][];
+	private int[][] childPayloads = new int[17][];
+	private int[] childCount = new int[17];
+	private long keyCount;
+	private boolean finished;
+	private long start;
+	private long buildTime;
+
+	/**
+	 * 逐个加入键的构建方式
+	 * @param initialSize 初始容量，容量不够时自动扩容
+	 * @param withValues 是否为每个键保存一个值，保存时值写入词尾节点的check，否则词尾节点的check为父节点的偏移量
+	 */
+	public DoubleArrayBuilder(int initialSize, boolean withValues) {
+		this.withValues = withValues;
+		this.estimatedSize = Math.max(initialSize, INDEX_LENGTH);
+	}
+
+	/**
+	 * 构建排好序的键，调用build完成构建
+	 * @param keys 排好序的键，可以有重复，空字符串忽略
+	 * @param values 键对应的值，与keys一一对应；为null时不保存值
+	 */
+	public DoubleArrayBuilder(List<String> keys, int[] values) {
+		this(keys, values, 0);
+	}
+
+	/**
+	 * @param initialSize 初始容量，小于估算值时按估算值分配
+	 */
+	public DoubleArrayBuilder(List<String> keys, int[] values, int initialSize) {
+		this(Math.max(initialSize, estimate(keys)), values != null);
+		if (values != null && values.length < keys.size()) {
+			throw new IllegalArgumentException("values length " + values.length + " is less than keys size " + keys.size());
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			if (!keys.get(i).isEmpty()) {
+				add(keys.get(i), values == null ? 0 : values[i]);
+			}
+		}
+	}
+
+	/**
+	 * 按排好序的键估算数组长度
+	 * 节点数等于每个键与前一个键的公共前缀之外的字符数加上词尾节点数
+	 * 汉字的编码分散，子节点之间留下的空洞较多，中文词典的填充率通常在一半左右，数组长度按节点数的两倍再加上最大字符值估算
+	 * @param keys 排好序的键
+	 * @return 数组长度
+	 */
+	public static int estimate(List<String> keys) {
+		long nodes = 1;
+		String previous = "";
+		for (String key : keys) {
+			int common = 0;
+			int limit = Math.min(previous.length(), key.length());
+			while (common < limit && previous.charAt(common) == key.charAt(common)) {
+				common++;
+			}
+			if (common < key.length() || common < previous.length()) {
+				//与前一个键不同才有新的词尾节点
+				nodes += key.length() - common + 1;
+			}
+			previous = key;
+		}
+		return (int) Math.min(Integer.MAX_VALUE - 8, 2 * nodes + INDEX_LENGTH);
+	}
+
+	/**
+	 * 加入一个键，键必须按字符串的自然顺序加入，与上一个键相同时忽略
+	 * @param key 键
+	 * @return 是否加入，重复的键返回false
+	 */
+	public boolean add(String key) {
+		return add(key, 0);
+	}
+
+	/**
+	 * 加入一个键和对应的值，键必须按字符串的自然顺序加入，与上一个键相同时忽略，保留第一次加入的值
+	 * @param key 键，不能为空字符串
+	 * @param value 值，不保存值时忽略
+	 * @return 是否加入，重复的键返回false
+	 */
+	public boolean add(String key, int value) {
+		if (finished) {
+			throw new RuntimeException("builder is already finished!");
+		}
+		int length = key.length();
+		if (length == 0) {
+			throw new IllegalArgumentException("key must not be empty");
+		}
+		if (base == null) {
+			start = System.currentTimeMillis();
+			allocate(estimatedSize);
+		}
+		int common = 0;
+		int limit = Math.min(length, pathLength);
+		while (common < limit && path[common] == key.charAt(common)) {
+			common++;
+		}
+		if (common == length && common == pathLength) {
+			return false;
+		}
+		if (common == length || (common < pathLength && key.charAt(common) < path[common])) {
+			throw new IllegalArgumentException("keys must be added in sorted order: " + key + " after " + new String(path, 0, pathLength));
+		}
+		//上一个键在公共前缀之后的节点不会再有子节点，放入双数组
+		close(common);
+		if (length >= path.length) {
+			int size = Math.max(length + 1, path.length * 2);
+			path = Arrays.copyOf(path, size);
+			childCodes = Arrays.copyOf(childCodes, size + 1);
+			childPayloads = Arrays.copyOf(childPayloads, size + 1);
+			childCount = Arrays.copyOf(childCount, size + 1);
+		}
+		key.getChars(common, length, path, common);
+		pathLength = length;
+		//词尾节点总是新节点的第一个子节点
+		append(length, 0, value);
+		keyCount++;
+		return true;
+	}
+
+	/**
+	 * 放入路径上深于depth的节点的子节点，并把这些节点记到父节点上
+	 */
+	private void close(int depth) {
+		for (int d = pathLength; d > depth; d--) {
+			int begin = place(d);
+			append(d - 1, path[d - 1], begin);
+		}
+	}
+
+	private void append(int depth, int code, int payload) {
+		int[] codes = childCodes[depth];
+		int count = childCount[depth];
+		if (codes == null) {
+			codes = new int[4];
+			childCodes[depth] = codes;
+			childPayloads[depth] = new int[4];
+		} else if (count == codes.length) {
+			codes = Arrays.copyOf(codes, count * 2);
+			childCodes[depth] = codes;
+			childPayloads[depth] = Arrays.copyOf(childPayloads[depth], count * 2);
+		}
+		codes[count] = code;
+		childPayloads[depth][count] = payload;
+		childCount[depth] = count + 1;
+	}
+
+	/**
+	 * 完成构建，之后不能再加入键
+	 * @return this
+	 */
+	public DoubleArrayBuilder build() {
+		if (finished) {
+			throw new RuntimeException("build method can just be used once!");
+		}
+		if (base == null) {
+			start = System.currentTimeMillis();
+			allocate(estimatedSize);
+		}
+		close(0);
+		int begin = childCount[0] == 0 ? 1 : place(0);
+		base[0] = begin;
+		finished = true;
+		//去掉尾部多余的空间
+		base = Arrays.copyOf(base, tail);
+		check = Arrays.copyOf(check, tail);
+		nextFree = null;
+		prevFree = null;
+		occupied = null;
+		full = null;
+		usedBegin = null;
+		path = null;
+		childCodes = null;
+		childPayloads = null;
+		buildTime = System.currentTimeMillis() - start;
+		return this;
+	}
+
+	private void allocate(int size) {
+		size = Math.max(size, 2);
+		base = new int[size];
+		check = new int[size];
+		nextFree = new int[size];
+		prevFree = new int[size];
+		occupied = new long[(size + 63) >>> 6];
+		full = new long[(occupied.length + 63) >>> 6];
+		usedBegin = new long[(size + 63) >>> 6];
+		capacity = size;
+		for (int i = 1; i < size; i++) {
+			nextFree[i] = i + 1;
+			prevFree[i] = i - 1;
+		}
+		//根节点
+		prevFree[1] = -1;
+		firstFree = 1;
+		lastFree = size - 1;
+		occupied[0] |= 1L;
+		tail = 1;
+		usedCount = 1;
+	}
+
+	/**
+	 * 原地扩容，新增的槽位接到空闲链表的尾部
+	 * @param required 至少需要的容量
+	 */
+	private void ensureCapacity(int required) {
+		if (required <= capacity) {
+			return;
+		}
+		int old = capacity;
+		int size = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) required, old + (old >> 1)));
+		if (size < required) {
+			throw new RuntimeException("double array is too large: " + required);
+		}
+		base = Arrays.copyOf(base, size);
+		check = Arrays.copyOf(check, size);
+		nextFree = Arrays.copyOf(nextFree, size);
+		prevFree = Arrays.copyOf(prevFree, size);
+		occupied = Arrays.copyOf(occupied, (size + 63) >>> 6);
+		full = Arrays.copyOf(full, (occupied.length + 63) >>> 6);
+		usedBegin = Arrays.copyOf(usedBegin, (size + 63) >>> 6);
+		for (int i = old; i < size; i++) {
+			nextFree[i] = i + 1;
+			prevFree[i] = i - 1;
+		}
+		prevFree[old] = lastFree;
+		if (lastFree < 0) {
+			firstFree = old;
+		}
+		lastFree = size - 1;
+		capacity = size;
+		growCount++;
+	}
+
+	private boolean isFree(int index) {
+		return index >= capacity || (occupied[index >>> 6] & (1L << index)) == 0;
+	}
+
+	/**
+	 * 不小于指定下标的第一个空闲槽位
+	 */
+	private int freeFrom(int index) {
+		if (index >= capacity) {
+			return index;
+		}
+		int word = index >>> 6;
+		long bits = ~occupied[word] & (-1L << index);
+		while (bits == 0) {
+			//跳过已满的位图块
+			word = nextVacantWord(word + 1);
+			if (word >= occupied.length) {
+				return capacity;
+			}
+			bits = ~occupied[word];
+		}
+		return Math.min((word << 6) + Long.numberOfTrailingZeros(bits), capacity);
+	}
+
+	/**
+	 * 不小于指定块号的第一个未满的占用位图块
+	 */
+	private int nextVacantWord(int word) {
+		int index = word >>> 6;
+		if (index >= full.length) {
+			return word;
+		}
+		long bits = ~full[index] & (-1L << word);
+		while (bits == 0) {
+			if (++index >= full.length) {
+				return index << 6;
+			}
+			bits = ~full[index];
+		}
+		return (index << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * 下一个空闲槽位
+	 */
+	private int nextFree(int index) {
+		return index >= capacity ? index + 1 : nextFree[index];
+	}
+
+	private void occupy(int index) {
+		ensureCapacity(index + 1);
+		int prev = prevFree[index];
+		int next = nextFree[index];
+		if (prev >= 0) {
+			nextFree[prev] = next;
+		} else {
+			firstFree = next;
+		}
+		if (next < capacity) {
+			prevFree[next] = prev;
+		} else {
+			lastFree = prev;
+		}
+		int word = index >>> 6;
+		occupied[word] |= 1L << index;
+		if (occupied[word] == -1L) {
+			full[word >>> 6] |= 1L << word;
+		}
+		tail = Math.max(tail, index + 1);
+		usedCount++;
+	}
+
+	/**
+	 * 为路径上第depth层的节点的一组子节点找到偏移量并放入双数组
+	 * @return 偏移量
+	 */
+	private int place(int depth) {
+		int[] codes = childCodes[depth];
+		int[] payloads = childPayloads[depth];
+		int count = childCount[depth];
+		childCount[depth] = 0;
+		int begin = findBegin(codes, count);
+		usedBegin[begin >>> 6] |= 1L << begin;
+		for (int i = 0; i < count; i++) {
+			int index = begin + codes[i];
+			occupy(index);
+			if (codes[i] == 0) {
+				//词尾节点
+				base[index] = -1;
+				check[index] = withValues ? payloads[i] : begin;
+			} else {
+				base[index] = payloads[i];
+				check[index] = begin;
+			}
+		}
+		return begin;
+	}
+
+	/**
+	 * 沿空闲链表查找第一个编码能放下所有兄弟节点的偏移量
+	 */
+	private int findBegin(int[] codes, int count) {
+		int first = codes[0];
+		int last = codes[count - 1];
+		int position = freeFrom(Math.max(first + 1, firstFree));
+		int trials = 0;
+		while (true) {
+			int begin = position - first;
+			ensureCapacity(begin + last + 1);
+			if ((usedBegin[begin >>> 6] & (1L << begin)) != 0) {
+				//偏移量已经用过，跳到下一个没用过的偏移量对应的空闲槽位
+				position = freeFrom(unusedFrom(begin + 1) + first);
+				continue;
+			}
+			boolean fits = true;
+			for (int i = 1; fits && i < count; i++) {
+				fits = isFree(begin + codes[i]);
+			}
+			if (fits) {
+				return begin;
+			}
+			if (++trials == MAX_TRIALS) {
+				//前部的空洞太密，改为从尾部附近查找，尾部之后的槽位都是空闲的，一定能放下
+				position = freeFrom(Math.max(position, tail - (last - first)));
+			} else {
+				position = nextFree(position);
+			}
+		}
+	}
+
+	/**
+	 * 不小于指定值的第一个没用过的偏移量
+	 */
+	private int unusedFrom(int begin) {
+		if (begin >= capacity) {
+			return begin;
+		}
+		int word = begin >>> 6;
+		long bits = ~usedBegin[word] & (-1L << begin);
+		while (bits == 0) {
+			if (++word == usedBegin.length) {
+				return capacity;
+			}
+			bits = ~usedBegin[word];
+		}
+		return Math.min((word << 6) + Long.numberOfTrailingZeros(bits), capacity);
+	}
+
+	public int[] getBase() {
+		return base;
+	}
+
+	public int[] getCheck() {
+		return check;
+	}
+
+	/**
+	 * 估算的初始容量
+	 */
+	public int getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	/**
+	 * 加入的键数，不包括重复的键
+	 */
+	public long getKeyCount() {
+		return keyCount;
+	}
+
+	/**
+	 * 构建完成后的数组长度
+	 */
+	public int getSize() {
+		return tail;
+	}
+
+	/**
+	 * 用到的槽位数，包括根节点
+	 */
+	public int getUsedCount() {
+		return usedCount;
+	}
+
+	/**
+	 * 用到的槽位占数组长度的比例
+	 */
+	public double getDensity() {
+		return tail == 0 ? 0 : (double) usedCount / tail;
+	}
+
+	/**
+	 * 构建过程中的扩容次数，估算准确时为0
+	 */
+	public int getGrowCount() {
+		return growCount;
+	}
+
+	/**
+	 * 构建耗时，单位毫秒
+	 */
+	public long getBuildTime() {
+		return buildTime;
+	}
+
+	@Override
+	public String toString() {
+		return "键数：" + keyCount + "，数组长度：" + tail + "，填充率：" + String.format("%.2f%%", getDensity() * 100) + "，扩容次数：" + growCount + "，耗时：" + buildTime
+				+ " 毫秒";
+	}
+}
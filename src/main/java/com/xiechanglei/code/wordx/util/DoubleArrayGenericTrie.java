@@ -1,6 +1,8 @@
 package com.xiechanglei.code.wordx.util;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -12,184 +14,59 @@ import org.slf4j.LoggerFactory;
  * 通用的双数组前缀树的Java实现
  * 用于快速检索 K V 对
  * An Implementation of Double-Array Trie: http://linux.thai.net/~thep/datrie/datrie.html
+ * 构建好的双数组可以通过save方法保存为镜像文件，再通过load方法以内存映射的方式加载
+ * 构建的双数组直接用int数组查询，只有加载的镜像通过IntBuffer读取映射的文件
  */
 public class DoubleArrayGenericTrie {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DoubleArrayGenericTrie.class);
-	private int size = 65000;
+	//构建时的初始容量，0表示按键估算
+	private int size;
 
+	/**
+	 * @param size 构建时的初始容量，小于按键估算的容量时按估算值分配，不够时自动扩容
+	 */
 	public DoubleArrayGenericTrie(int size) {
 		this.size = size;
 	}
 
-	private static class Node {
-		private int code;
-		private int depth;
-		private int left;
-		private int right;
-		private int value;
-
-		@Override
-		public String toString() {
-			return "Node{" + "code=" + code + "[" + (char) code + "]" + ", depth=" + depth + ", left=" + left + ", right=" + right + ", value=" + value + '}';
-		}
-	};
-
+	//构建的双数组，查询直接访问数组
 	private int[] check;
 	private int[] base;
-	private boolean[] used;
-	private int nextCheckPos;
+	//加载镜像时指向映射的文件，和上面的数组只有一组不为null
+	private IntBuffer checkData;
+	private IntBuffer baseData;
 
 	public DoubleArrayGenericTrie() {
 		LOGGER.info("初始化双数组前缀树：" + this.getClass().getName());
 	}
 
-	private List<Node> toTree(Node parent, List<String> items, Map<String, Integer> map) {
-		List<Node> siblings = new ArrayList<>();
-		int prev = 0;
-
-		for (int i = parent.left; i < parent.right; i++) {
-			if (items.get(i).length() < parent.depth)
-				continue;
-
-			String item = items.get(i);
-
-			int cur = 0;
-			if (item.length() != parent.depth) {
-				cur = (int) item.charAt(parent.depth);
-			}
-
-			if (cur != prev || siblings.isEmpty()) {
-				Node node = new Node();
-				node.depth = parent.depth + 1;
-				node.code = cur;
-				node.left = i;
-				if (cur == 0 || cur == item.charAt(item.length() - 1)) {
-					if (map.get(item) != null) {
-						node.value = map.get(item);
-					}
-				}
-				if (!siblings.isEmpty()) {
-					siblings.get(siblings.size() - 1).right = i;
-				}
-				siblings.add(node);
-			}
-
-			prev = cur;
-		}
-
-		if (!siblings.isEmpty()) {
-			siblings.get(siblings.size() - 1).right = parent.right;
-			if (LOGGER.isDebugEnabled()) {
-				if (items.size() < 10) {
-					LOGGER.debug("************************************************");
-					LOGGER.debug("树信息：");
-					siblings.forEach(s -> LOGGER.debug(s.toString()));
-					LOGGER.debug("************************************************");
-				}
-			}
-		}
-		return siblings;
-	}
-
-	private int toDoubleArray(List<Node> siblings, List<String> words, Map<String, Integer> map) {
-		int begin = 0;
-		int index = (siblings.get(0).code > nextCheckPos) ? siblings.get(0).code : nextCheckPos;
-		boolean isFirst = true;
-
-		outer: while (true) {
-			index++;
-
-			if (check[index] != 0) {
-				continue;
-			} else if (isFirst) {
-				nextCheckPos = index;
-				isFirst = false;
-			}
-
-			begin = index - siblings.get(0).code;
-
-			if (used[begin]) {
-				continue;
-			}
-
-			for (int i = 1; i < siblings.size(); i++) {
-				if (check[begin + siblings.get(i).code] != 0) {
-					continue outer;
-				}
-			}
-
-			break;
-		}
-
-		used[begin] = true;
-
-		for (int i = 0; i < siblings.size(); i++) {
-			check[begin + siblings.get(i).code] = begin;
-		}
-
-		for (int i = 0; i < siblings.size(); i++) {
-			List<Node> newSiblings = toTree(siblings.get(i), words, map);
-
-			if (newSiblings.isEmpty()) {
-				base[begin + siblings.get(i).code] = -1;
-				check[begin + siblings.get(i).code] = siblings.get(i).value;
-			} else {
-				int h = toDoubleArray(newSiblings, words, map);
-				base[begin + siblings.get(i).code] = h;
-			}
-		}
-		return begin;
-	}
-
-	private void allocate(int size) {
-		check = null;
-		base = null;
-		used = null;
-		nextCheckPos = 0;
-
-		base = new int[size];
-		check = new int[size];
-		used = new boolean[size];
-		base[0] = 1;
-	}
-
 	private void init(List<String> items, Map<String, Integer> map) {
 		if (items == null || items.isEmpty()) {
 			return;
 		}
-
-		//前缀树的虚拟根节点
-		Node rootNode = new Node();
-		rootNode.left = 0;
-		rootNode.right = items.size();
-		rootNode.depth = 0;
-
-		while (true) {
-			try {
-				allocate(size);
-				List<Node> siblings = toTree(rootNode, items, map);
-				toDoubleArray(siblings, items, map);
-				break;
-			} catch (Exception e) {
-				size += size / 10;
-				LOGGER.error("分配空间不够，增加至： " + size);
-			}
+		int[] values = new int[items.size()];
+		for (int i = 0; i < values.length; i++) {
+			Integer value = map.get(items.get(i));
+			values[i] = value == null ? 0 : value;
 		}
-
+		DoubleArrayBuilder builder = new DoubleArrayBuilder(items, values, size).build();
+		LOGGER.info("构建双数组前缀树，" + builder);
 		items.clear();
-		items = null;
 		map.clear();
-		map = null;
-		used = null;
+		check = builder.getCheck();
+		base = builder.getBase();
 	}
 
 	public int get(String item, int start, int length) {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("开始查询数据：{}", item.substring(start, start + length));
 		}
+		int[] base = this.base;
+		int[] check = this.check;
 		if (base == null) {
-			return Integer.MIN_VALUE;
+			return baseData == null ? Integer.MIN_VALUE : getMapped(item, start, length);
 		}
+		int size = check.length;
 
 		//base[0]=1
 		int lastChar = base[0];
@@ -197,7 +74,7 @@ public class DoubleArrayGenericTrie {
 
 		for (int i = start; i < start + length; i++) {
 			index = lastChar + (int) item.charAt(i);
-			if (index >= check.length || index < 0) {
+			if (index >= size || index < 0) {
 				return Integer.MIN_VALUE;
 			}
 			if (lastChar == check[index]) {
@@ -207,7 +84,7 @@ public class DoubleArrayGenericTrie {
 			}
 		}
 		index = lastChar;
-		if (index >= check.length || index < 0) {
+		if (index >= size || index < 0) {
 			return Integer.MIN_VALUE;
 		}
 		if (base[index] < 0) {
@@ -219,12 +96,36 @@ public class DoubleArrayGenericTrie {
 		return Integer.MIN_VALUE;
 	}
 
+	/**
+	 * 和get相同，在映射的镜像文件中查询
+	 * 单独一个方法，构建的双数组查询时不经过IntBuffer
+	 */
+	private int getMapped(String item, int start, int length) {
+		IntBuffer base = baseData;
+		IntBuffer check = checkData;
+		int size = check.limit();
+		int lastChar = base.get(0);
+		int index;
+		for (int i = start; i < start + length; i++) {
+			index = lastChar + (int) item.charAt(i);
+			if (index >= size || index < 0 || lastChar != check.get(index)) {
+				return Integer.MIN_VALUE;
+			}
+			lastChar = base.get(index);
+		}
+		index = lastChar;
+		if (index >= size || index < 0) {
+			return Integer.MIN_VALUE;
+		}
+		return base.get(index) < 0 ? check.get(index) : Integer.MIN_VALUE;
+	}
+
 	public int get(String item) {
 		return get(item, 0, item.length());
 	}
 
 	public void putAll(Map<String, Integer> map) {
-		if (check != null) {
+		if (base != null || baseData != null) {
 			throw new RuntimeException("addAll method can just be used once after clear method!");
 		}
 
@@ -238,10 +139,46 @@ public class DoubleArrayGenericTrie {
 		init(items, map);
 	}
 
+	/**
+	 * 将构建好的双数组保存为镜像文件
+	 * @param path 文件路径
+	 * @throws IOException 写文件失败
+	 */
+	public void save(Path path) throws IOException {
+		if (base != null) {
+			DoubleArrayImage.write(path, DoubleArrayImage.GENERIC_TRIE, 0, IntBuffer.wrap(base), IntBuffer.wrap(check));
+		} else if (baseData != null) {
+			DoubleArrayImage.write(path, DoubleArrayImage.GENERIC_TRIE, 0, baseData, checkData);
+		} else {
+			throw new RuntimeException("trie is empty, please use putAll method first!");
+		}
+		LOGGER.info("保存双数组前缀树镜像：" + path);
+	}
+
+	/**
+	 * 以内存映射的方式加载镜像文件，查询直接读取映射的文件
+	 * 和putAll方法一样，只能在clear方法之后调用一次
+	 * @param path 文件路径
+	 * @throws IOException 读文件失败或文件格式不正确
+	 */
+	public void load(Path path) throws IOException {
+		if (base != null || baseData != null) {
+			throw new RuntimeException("load method can just be used once after clear method!");
+		}
+		long start = System.currentTimeMillis();
+		DoubleArrayImage image = DoubleArrayImage.map(path, DoubleArrayImage.GENERIC_TRIE);
+		if (image.getSectionCount() != 2 || image.getSection(0).limit() != image.getSection(1).limit()) {
+			throw new IOException("not a trie image: " + path);
+		}
+		checkData = image.getSection(1);
+		baseData = image.getSection(0);
+		LOGGER.info("加载双数组前缀树镜像：" + path + "，耗时：" + (System.currentTimeMillis() - start) + " 毫秒");
+	}
+
 	public void clear() {
 		check = null;
 		base = null;
-		used = null;
-		nextCheckPos = 0;
+		checkData = null;
+		baseData = null;
 	}
 }
\ No newline at end of file
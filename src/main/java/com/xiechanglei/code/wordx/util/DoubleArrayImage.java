@@ -0,0 +1,156 @@
+package com.xiechanglei.code.wordx.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 双数组的二进制镜像文件
+ * 离线写入一次，启动时通过内存映射（MappedByteBuffer）加载，查询直接读取映射的文件，不占用堆内存
+ * 文件格式（小端字节序）：
+ *      魔数(int) 版本(int) 类型(int) 最大词长(int) 段数(int) 各段长度(int * 段数) 各段数据(int * 段长度)
+ */
+public final class DoubleArrayImage {
+	//镜像的类型，加载时检查，不同结构的镜像段数可能相同，不能互相加载
+	//DoubleArrayDictionaryTrie
+	public static final int DICTIONARY = 1;
+	//DoubleArrayGenericTrie
+	public static final int GENERIC_TRIE = 2;
+	//DawgDictionary
+	public static final int DAWG = 3;
+
+	private static final int MAGIC = 0x58574441;
+	private static final int VERSION = 2;
+	private static final int HEADER_LENGTH = 20;
+	private static final int WRITE_BUFFER_INTS = 64 * 1024;
+
+	private final int kind;
+	private final int maxLength;
+	private final IntBuffer[] sections;
+
+	private DoubleArrayImage(int kind, int maxLength, IntBuffer[] sections) {
+		this.kind = kind;
+		this.maxLength = maxLength;
+		this.sections = sections;
+	}
+
+	public int getKind() {
+		return kind;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int getSectionCount() {
+		return sections.length;
+	}
+
+	/**
+	 * 获取映射后的段，返回的缓冲区是只读的
+	 * @param index 段的序号
+	 * @return 段数据
+	 */
+	public IntBuffer getSection(int index) {
+		return sections[index];
+	}
+
+	/**
+	 * 将双数组写入镜像文件
+	 * @param path 文件路径
+	 * @param kind 镜像的类型，如DICTIONARY
+	 * @param maxLength 最大词长
+	 * @param sections 依次写入的段，如base、check
+	 * @throws IOException 写文件失败
+	 */
+	public static void write(Path path, int kind, int maxLength, IntBuffer... sections) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + 4 * sections.length).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(maxLength).putInt(sections.length);
+			for (IntBuffer section : sections) {
+				header.putInt(section.remaining());
+			}
+			header.flip();
+			writeFully(channel, header);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(4 * WRITE_BUFFER_INTS).order(ByteOrder.LITTLE_ENDIAN);
+			for (IntBuffer section : sections) {
+				IntBuffer src = section.duplicate();
+				while (src.hasRemaining()) {
+					int count = Math.min(src.remaining(), WRITE_BUFFER_INTS);
+					IntBuffer chunk = src.duplicate();
+					chunk.limit(chunk.position() + count);
+					buffer.clear();
+					buffer.asIntBuffer().put(chunk);
+					buffer.limit(4 * count);
+					writeFully(channel, buffer);
+					src.position(src.position() + count);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 以内存映射方式加载镜像文件
+	 * 文件头中的段数和段长度都检查过，不会因为损坏的文件抛出IOException以外的异常
+	 * @param path 文件路径
+	 * @param kind 期望的镜像类型，如DICTIONARY
+	 * @return 镜像
+	 * @throws IOException 读文件失败、文件格式不正确或类型不符
+	 */
+	public static DoubleArrayImage map(Path path, int kind) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_LENGTH) {
+				throw new IOException("not a double array image: " + path);
+			}
+			//一个MappedByteBuffer最多映射2GB，段的位置也按int计算
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("double array image larger than 2GB: " + path);
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			if (mapped.getInt(0) != MAGIC) {
+				throw new IOException("not a double array image: " + path);
+			}
+			if (mapped.getInt(4) != VERSION) {
+				throw new IOException("unsupported double array image version " + mapped.getInt(4) + ": " + path);
+			}
+			if (mapped.getInt(8) != kind) {
+				throw new IOException("expected double array image of kind " + kind + " but was " + mapped.getInt(8) + ": " + path);
+			}
+			int maxLength = mapped.getInt(12);
+			int count = mapped.getInt(16);
+			if (count < 0 || HEADER_LENGTH + 4L * count > size) {
+				throw new IOException("invalid section count " + count + " in double array image: " + path);
+			}
+			IntBuffer[] sections = new IntBuffer[count];
+			long offset = HEADER_LENGTH + 4L * count;
+			for (int i = 0; i < count; i++) {
+				int length = mapped.getInt(HEADER_LENGTH + 4 * i);
+				if (length < 0) {
+					throw new IOException("invalid section length " + length + " in double array image: " + path);
+				}
+				if (offset + 4L * length > size) {
+					throw new IOException("truncated double array image: " + path);
+				}
+				ByteBuffer slice = mapped.duplicate();
+				slice.position((int) offset);
+				slice.limit((int) (offset + 4L * length));
+				sections[i] = slice.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().asReadOnlyBuffer();
+				offset += 4L * length;
+			}
+			return new DoubleArrayImage(kind, maxLength, sections);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -5,64 +5,189 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
 
 /**
  * 词首字索引式通用前缀树，高效存储，快速搜索
- * 为前缀树的一级节点（词首字）建立索引（比二分查找要快）
+ * 为前缀树的一级节点（词首字）建立索引，词首字多时每个字符一个槽位，查找根节点只需读取一次数组
+ * 词首字少时根节点存放在按字排序的数组中，不为很小的前缀树分配整个索引
  */
 @SuppressWarnings("unchecked")
 public class GenericTrie<V> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(GenericTrie.class);
-	//词表的首字母数量在一个可控范围内，默认值为12000
-	private static final int INDEX_LENGTH = 12000;
+	//char只有65536个取值，根节点多时每个字符直接对应一个槽位，不会冲突
+	private static final int INDEX_LENGTH = 65536;
+	//根节点不超过这个数时存放在按字排序的数组中二分查找，超过后才换成直接索引
+	//直接索引每个实例占256KB（开启压缩指针）或512KB，场景词典、屏蔽词、反向索引和它们的副本大多只有很少的词首字
+	private static final int INDEX_THRESHOLD = 1024;
+	@SuppressWarnings("rawtypes")
+	private static final TrieNode[] EMPTY = new TrieNode[0];
 
-	private final TrieNode<V>[] ROOT_NODES_INDEX = new TrieNode[INDEX_LENGTH];
+	//首次加词时才分配，根节点不超过INDEX_THRESHOLD个时按字排序，超过后长度为INDEX_LENGTH、下标即字符
+	private TrieNode<V>[] ROOT_NODES_INDEX;
+	//根节点的查找次数和命中次数，启用统计后才记录
+	private volatile LookupCounter counter;
 
 	public void clear() {
-		for (int i = 0; i < INDEX_LENGTH; i++) {
-			ROOT_NODES_INDEX[i] = null;
+		ROOT_NODES_INDEX = null;
+	}
+
+	/**
+	 * 是否从没有加过词（或者清空后没有再加），删除的词的节点仍然保留，删光后仍返回false
+	 * @return 是否为空
+	 */
+	public boolean isEmpty() {
+		return ROOT_NODES_INDEX == null;
+	}
+
+	/**
+	 * 复制一份前缀树，值对象本身不复制，不复制查找统计
+	 * @return 副本
+	 */
+	public GenericTrie<V> copy() {
+		GenericTrie<V> trie = new GenericTrie<>();
+		TrieNode<V>[] index = ROOT_NODES_INDEX;
+		if (index != null) {
+			TrieNode<V>[] copy = new TrieNode[index.length];
+			for (int i = 0; i < index.length; i++) {
+				if (index[i] != null) {
+					copy[i] = index[i].copy();
+				}
+			}
+			trie.ROOT_NODES_INDEX = copy;
 		}
+		return trie;
 	}
 
 	/**
-	 * 统计根节点冲突情况及预分配的数组空间利用情况
+	 * 启用或停用根节点的查找统计，统计使用LongAdder，多线程查找时竞争很小
+	 * @param enabled 是否启用
 	 */
-	public void showConflict() {
-		int emptySlot = 0;
-		//key:冲突长度 value:冲突个数
-		Map<Integer, Integer> map = new HashMap<>();
-		for (TrieNode<V> node : ROOT_NODES_INDEX) {
-			if (node == null) {
-				emptySlot++;
-			} else {
-				int i = 0;
-				while ((node = node.getSibling()) != null) {
-					i++;
+	public void setStatistics(boolean enabled) {
+		if (enabled) {
+			if (counter == null) {
+				counter = new LookupCounter();
+			}
+		} else {
+			counter = null;
+		}
+	}
+
+	/**
+	 * 根节点的查找次数
+	 * @return 次数，未启用统计则返回0
+	 */
+	public long getLookupCount() {
+		LookupCounter counter = this.counter;
+		return counter == null ? 0 : counter.getLookupCount();
+	}
+
+	/**
+	 * 根节点的命中次数，即查找的字符是词首字的次数
+	 * @return 次数，未启用统计则返回0
+	 */
+	public long getHitCount() {
+		LookupCounter counter = this.counter;
+		return counter == null ? 0 : counter.getHitCount();
+	}
+
+	/**
+	 * 根节点（词首字）的个数
+	 * @return 个数
+	 */
+	public int getRootCount() {
+		TrieNode<V>[] index = ROOT_NODES_INDEX;
+		int count = 0;
+		if (index != null) {
+			for (TrieNode<V> node : index) {
+				if (node != null) {
+					count++;
 				}
-				if (i > 0) {
-					Integer count = map.get(i);
-					if (count == null) {
-						count = 1;
-					} else {
-						count++;
-					}
-					map.put(i, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 估算占用的堆内存，按开启压缩指针的64位JVM计算：对象头12字节，引用4字节，按8字节对齐
+	 * 包含根节点索引、所有节点及其子节点数组，不包含值对象本身
+	 * @return 字节数
+	 */
+	public long getFootprint() {
+		TrieNode<V>[] index = ROOT_NODES_INDEX;
+		if (index == null) {
+			return 0;
+		}
+		long footprint = align(16 + 4L * index.length);
+		for (TrieNode<V> node : index) {
+			if (node != null) {
+				footprint += footprint(node);
+			}
+		}
+		return footprint;
+	}
+
+	private static long footprint(TrieNode<?> node) {
+		//对象头12 + char 2 + boolean 1 + 引用4 * 2
+		long footprint = 32;
+		if (node.children != EMPTY) {
+			footprint += align(16 + 4L * node.children.length);
+		}
+		for (TrieNode<?> child : node.children) {
+			footprint += footprint(child);
+		}
+		return footprint;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * 遍历一次前缀树收集统计信息，词数为有值的键数，内存占用不包含值对象本身
+	 */
+	public DictionaryStats getStats() {
+		TrieNode<V>[] index = ROOT_NODES_INDEX;
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().rootSlots(index == null ? 0 : index.length);
+		long nodes = 0;
+		if (index != null) {
+			for (TrieNode<V> node : index) {
+				if (node != null) {
+					long before = builder.getCountedWords();
+					nodes += collect(node, 1, builder);
+					builder.root(builder.getCountedWords() - before);
 				}
 			}
 		}
-		int count = 0;
-		for (int key : map.keySet()) {
-			int value = map.get(key);
-			count += key * value;
-			LOGGER.info("冲突次数为：" + key + " 的元素个数：" + value);
-		}
-		LOGGER.info("冲突次数：" + count);
-		LOGGER.info("总槽数：" + INDEX_LENGTH);
-		LOGGER.info("用槽数：" + (INDEX_LENGTH - emptySlot));
-		LOGGER.info("使用率：" + (float) (INDEX_LENGTH - emptySlot) / INDEX_LENGTH * 100 + "%");
-		LOGGER.info("剩槽数：" + emptySlot);
+		return builder.nodeCount(nodes).footprint(getFootprint()).build();
+	}
+
+	private static long collect(TrieNode<?> node, int depth, DictionaryStats.Builder builder) {
+		if (node.terminal) {
+			builder.word(depth);
+		}
+		long nodes = 1;
+		for (TrieNode<?> child : node.children) {
+			nodes += collect(child, depth + 1, builder);
+		}
+		return nodes;
+	}
+
+	/**
+	 * 输出根节点索引的使用情况、内存占用和查找统计
+	 * @deprecated 使用getStats取得统计信息，自行输出或导出为监控指标
+	 */
+	@Deprecated
+	public void showConflict() {
+		DictionaryStats stats = getStats();
+		long lookups = getLookupCount();
+		long hits = getHitCount();
+		LOGGER.info(stats.toString());
+		if (stats.getRootSlots() > 0) {
+			LOGGER.info("使用率：" + (float) stats.getRootCount() / stats.getRootSlots() * 100 + "%");
+		}
+		LOGGER.info("根节点查找次数：" + lookups + "，命中次数：" + hits + (lookups > 0 ? "，命中率：" + (float) hits / lookups * 100 + "%" : ""));
 	}
 
 	/**
@@ -74,29 +199,59 @@ public class GenericTrie<V> {
 	 */
 	@SuppressWarnings("rawtypes")
 	private TrieNode<V> getRootNodeIfNotExistThenCreate(char character) {
-		TrieNode<V> trieNode = getRootNode(character);
+		TrieNode<V>[] index = ROOT_NODES_INDEX;
+		TrieNode<V> trieNode = rootOf(index, character);
 		if (trieNode == null) {
 			trieNode = new TrieNode(character);
-			addRootNode(trieNode);
+			ROOT_NODES_INDEX = addRoot(index, trieNode);
 		}
 		return trieNode;
 	}
 
 	/**
-	 * 新增一个根节点
-	 * @param rootNode 根节点
+	 * 在根节点数组中查找字符对应的根节点
 	 */
-	private void addRootNode(TrieNode<V> rootNode) {
-		//计算节点的存储索引
-		int index = rootNode.getCharacter() % INDEX_LENGTH;
-		//检查索引是否和其他节点冲突
-		TrieNode<V> existTrieNode = ROOT_NODES_INDEX[index];
-		if (existTrieNode != null) {
-			//有冲突，将冲突节点附加到当前节点之后
-			rootNode.setSibling(existTrieNode);
-		}
-		//新增的节点总是在最前
-		ROOT_NODES_INDEX[index] = rootNode;
+	private static <V> TrieNode<V> rootOf(TrieNode<V>[] index, char character) {
+		if (index == null) {
+			return null;
+		}
+		if (index.length == INDEX_LENGTH) {
+			return index[character];
+		}
+		int i = TrieNode.indexOf(index, character);
+		return i >= 0 ? index[i] : null;
+	}
+
+	/**
+	 * 加入一个不存在的根节点，根节点少时插入有序数组，超过INDEX_THRESHOLD个时换成直接索引
+	 * 有序数组每次复制一份再替换，查找时看到的总是完整的数组
+	 * @return 新的根节点数组
+	 */
+	@SuppressWarnings("rawtypes")
+	private static <V> TrieNode<V>[] addRoot(TrieNode<V>[] index, TrieNode<V> node) {
+		if (index == null) {
+			TrieNode<V>[] array = new TrieNode[1];
+			array[0] = node;
+			return array;
+		}
+		if (index.length == INDEX_LENGTH) {
+			index[node.character] = node;
+			return index;
+		}
+		if (index.length < INDEX_THRESHOLD) {
+			int i = -TrieNode.indexOf(index, node.character) - 1;
+			TrieNode<V>[] array = new TrieNode[index.length + 1];
+			System.arraycopy(index, 0, array, 0, i);
+			array[i] = node;
+			System.arraycopy(index, i, array, i + 1, index.length - i);
+			return array;
+		}
+		TrieNode<V>[] direct = new TrieNode[INDEX_LENGTH];
+		for (TrieNode<V> root : index) {
+			direct[root.character] = root;
+		}
+		direct[node.character] = node;
+		return direct;
 	}
 
 	/**
@@ -106,12 +261,10 @@ public class GenericTrie<V> {
 	 * @return 字符对应的根节点
 	 */
 	private TrieNode<V> getRootNode(char character) {
-		//计算节点的存储索引
-		int index = character % INDEX_LENGTH;
-		TrieNode<V> trieNode = ROOT_NODES_INDEX[index];
-		while (trieNode != null && character != trieNode.getCharacter()) {
-			//如果节点和其他节点冲突，则需要链式查找
-			trieNode = trieNode.getSibling();
+		TrieNode<V> trieNode = rootOf(ROOT_NODES_INDEX, character);
+		LookupCounter counter = this.counter;
+		if (counter != null) {
+			counter.record(trieNode != null);
 		}
 		return trieNode;
 	}
@@ -230,13 +383,27 @@ public class GenericTrie<V> {
 		private char character;
 		private V value;
 		private boolean terminal;
-		private TrieNode<V> sibling;
-		private TrieNode<V>[] children = new TrieNode[0];
+		//叶子节点共用同一个空数组
+		private TrieNode<V>[] children = EMPTY;
 
 		public TrieNode(char character) {
 			this.character = character;
 		}
 
+		@SuppressWarnings("rawtypes")
+		public TrieNode<V> copy() {
+			TrieNode<V> node = new TrieNode(character);
+			node.terminal = terminal;
+			node.value = value;
+			if (children != EMPTY) {
+				node.children = new TrieNode[children.length];
+				for (int i = 0; i < children.length; i++) {
+					node.children[i] = children[i].copy();
+				}
+			}
+			return node;
+		}
+
 		public boolean isTerminal() {
 			return terminal;
 		}
@@ -257,25 +424,38 @@ public class GenericTrie<V> {
 			this.value = value;
 		}
 
-		public TrieNode<V> getSibling() {
-			return sibling;
-		}
-
-		public void setSibling(TrieNode<V> sibling) {
-			this.sibling = sibling;
-		}
-
 		public Collection<TrieNode<V>> getChildren() {
 			return Arrays.asList(children);
 		}
 
+		/**
+		 * 二分查找子节点，比较的是节点的字，查找时不创建Character对象
+		 * @return 与Arrays.binarySearch相同，找不到时为-(插入位置)-1
+		 */
+		private static int indexOf(TrieNode<?>[] children, char character) {
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				char c = children[mid].character;
+				if (c < character) {
+					low = mid + 1;
+				} else if (c > character) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
 		/**
 		 * 利用二分搜索算法从有序数组中找到特定的节点
 		 * @param character 待查找节点
 		 * @return NULL OR 节点数据
 		 */
 		public TrieNode<V> getChild(char character) {
-			int index = Arrays.binarySearch(children, character);
+			int index = indexOf(children, character);
 			if (index >= 0) {
 				return children[index];
 			}
@@ -346,6 +526,9 @@ public class GenericTrie<V> {
 	}
 
 	public void show() {
+		if (ROOT_NODES_INDEX == null) {
+			return;
+		}
 		for (TrieNode<V> node : ROOT_NODES_INDEX) {
 			if (node != null) {
 				show(node, "");
@@ -0,0 +1,288 @@
+package com.xiechanglei.code.wordx.util;
+
+import java.util.Arrays;
+
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+
+/**
+ * 值为int的词首字索引式前缀树
+ * 结构与GenericTrie相同，值直接存储在节点中，不需要为每个值保存一个对象引用
+ * 和DoubleArrayGenericTrie一样把键映射为int，但可以逐个增加、删除，适合词性编号这类会变化的数据
+ * 0表示没有值，put的值为0时相当于删除
+ */
+public class IntGenericTrie {
+	//char只有65536个取值，根节点多时每个字符直接对应一个槽位，不会冲突
+	private static final int INDEX_LENGTH = 65536;
+	//根节点不超过这个数时存放在按字排序的数组中二分查找，超过后才换成直接索引
+	//直接索引每个实例占256KB（开启压缩指针）或512KB，场景词典、屏蔽词、反向索引和它们的副本大多只有很少的词首字
+	private static final int INDEX_THRESHOLD = 1024;
+	private static final TrieNode[] EMPTY = new TrieNode[0];
+
+	//首次加词时才分配，根节点不超过INDEX_THRESHOLD个时按字排序，超过后长度为INDEX_LENGTH、下标即字符
+	private TrieNode[] ROOT_NODES_INDEX;
+
+	public void clear() {
+		ROOT_NODES_INDEX = null;
+	}
+
+	/**
+	 * 复制一份前缀树
+	 * @return 副本
+	 */
+	public IntGenericTrie copy() {
+		IntGenericTrie trie = new IntGenericTrie();
+		TrieNode[] index = ROOT_NODES_INDEX;
+		if (index != null) {
+			TrieNode[] copy = new TrieNode[index.length];
+			for (int i = 0; i < index.length; i++) {
+				if (index[i] != null) {
+					copy[i] = index[i].copy();
+				}
+			}
+			trie.ROOT_NODES_INDEX = copy;
+		}
+		return trie;
+	}
+
+	/**
+	 * 估算占用的堆内存，按开启压缩指针的64位JVM计算：对象头12字节，引用4字节，按8字节对齐
+	 * @return 字节数
+	 */
+	public long getFootprint() {
+		TrieNode[] index = ROOT_NODES_INDEX;
+		if (index == null) {
+			return 0;
+		}
+		long footprint = align(16 + 4L * index.length);
+		for (TrieNode node : index) {
+			if (node != null) {
+				footprint += footprint(node);
+			}
+		}
+		return footprint;
+	}
+
+	private static long footprint(TrieNode node) {
+		//对象头12 + char 2 + int 4 + 引用4
+		long footprint = 24;
+		if (node.children != EMPTY) {
+			footprint += align(16 + 4L * node.children.length);
+		}
+		for (TrieNode child : node.children) {
+			footprint += footprint(child);
+		}
+		return footprint;
+	}
+
+	/**
+	 * 遍历一次前缀树收集统计信息，词数为值不为0的键数
+	 */
+	public DictionaryStats getStats() {
+		TrieNode[] index = ROOT_NODES_INDEX;
+		DictionaryStats.Builder builder = new DictionaryStats.Builder().rootSlots(index == null ? 0 : index.length);
+		long nodes = 0;
+		if (index != null) {
+			for (TrieNode node : index) {
+				if (node != null) {
+					long before = builder.getCountedWords();
+					nodes += collect(node, 1, builder);
+					builder.root(builder.getCountedWords() - before);
+				}
+			}
+		}
+		return builder.nodeCount(nodes).footprint(getFootprint()).build();
+	}
+
+	private static long collect(TrieNode node, int depth, DictionaryStats.Builder builder) {
+		if (node.value != 0) {
+			builder.word(depth);
+		}
+		long nodes = 1;
+		for (TrieNode child : node.children) {
+			nodes += collect(child, depth + 1, builder);
+		}
+		return nodes;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	public int get(String item) {
+		return get(item, 0, item.length());
+	}
+
+	/**
+	 * @return 值，不存在时返回0
+	 */
+	public int get(String item, int start, int length) {
+		if (start < 0 || length < 1) {
+			return 0;
+		}
+		if (item == null || item.length() < start + length) {
+			return 0;
+		}
+		TrieNode node = rootOf(ROOT_NODES_INDEX, item.charAt(start));
+		for (int i = start + 1; i < start + length && node != null; i++) {
+			node = node.getChild(item.charAt(i));
+		}
+		return node == null ? 0 : node.value;
+	}
+
+	/**
+	 * 只清除值，节点保留
+	 */
+	public void remove(String item) {
+		if (item == null || item.isEmpty()) {
+			return;
+		}
+		TrieNode node = rootOf(ROOT_NODES_INDEX, item.charAt(0));
+		for (int i = 1; i < item.length() && node != null; i++) {
+			node = node.getChild(item.charAt(i));
+		}
+		if (node != null) {
+			node.value = 0;
+		}
+	}
+
+	public void put(String item, int value) {
+		//去掉首尾空白字符
+		item = item.trim();
+		int len = item.length();
+		if (len < 1) {
+			//长度小于1则忽略
+			return;
+		}
+		TrieNode[] index = ROOT_NODES_INDEX;
+		TrieNode node = rootOf(index, item.charAt(0));
+		if (node == null) {
+			node = new TrieNode(item.charAt(0));
+			ROOT_NODES_INDEX = addRoot(index, node);
+		}
+		for (int i = 1; i < len; i++) {
+			node = node.getChildIfNotExistThenCreate(item.charAt(i));
+		}
+		node.value = value;
+	}
+
+	/**
+	 * 在根节点数组中查找字符对应的根节点
+	 */
+	private static TrieNode rootOf(TrieNode[] index, char character) {
+		if (index == null) {
+			return null;
+		}
+		if (index.length == INDEX_LENGTH) {
+			return index[character];
+		}
+		int i = TrieNode.indexOf(index, character);
+		return i >= 0 ? index[i] : null;
+	}
+
+	/**
+	 * 加入一个不存在的根节点，根节点少时插入有序数组，超过INDEX_THRESHOLD个时换成直接索引
+	 * 有序数组每次复制一份再替换，查找时看到的总是完整的数组
+	 * @return 新的根节点数组
+	 */
+	private static TrieNode[] addRoot(TrieNode[] index, TrieNode node) {
+		if (index == null) {
+			TrieNode[] array = new TrieNode[1];
+			array[0] = node;
+			return array;
+		}
+		if (index.length == INDEX_LENGTH) {
+			index[node.character] = node;
+			return index;
+		}
+		if (index.length < INDEX_THRESHOLD) {
+			int i = -TrieNode.indexOf(index, node.character) - 1;
+			TrieNode[] array = new TrieNode[index.length + 1];
+			System.arraycopy(index, 0, array, 0, i);
+			array[i] = node;
+			System.arraycopy(index, i, array, i + 1, index.length - i);
+			return array;
+		}
+		TrieNode[] direct = new TrieNode[INDEX_LENGTH];
+		for (TrieNode root : index) {
+			direct[root.character] = root;
+		}
+		direct[node.character] = node;
+		return direct;
+	}
+
+	private static class TrieNode implements Comparable<Object> {
+		private final char character;
+		//值为0的节点不是词尾
+		private int value;
+		//叶子节点共用同一个空数组
+		private TrieNode[] children = EMPTY;
+
+		TrieNode(char character) {
+			this.character = character;
+		}
+
+		TrieNode copy() {
+			TrieNode node = new TrieNode(character);
+			node.value = value;
+			if (children != EMPTY) {
+				node.children = new TrieNode[children.length];
+				for (int i = 0; i < children.length; i++) {
+					node.children[i] = children[i].copy();
+				}
+			}
+			return node;
+		}
+
+		/**
+		 * 在按字排序的子节点中二分查找，直接比较字，不把字装箱
+		 * @return 与Arrays.binarySearch相同，找不到时为-(插入位置)-1
+		 */
+		private static int indexOf(TrieNode[] children, char character) {
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				char c = children[mid].character;
+				if (c < character) {
+					low = mid + 1;
+				} else if (c > character) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		/**
+		 * 利用二分搜索算法从有序数组中找到特定的节点
+		 */
+		TrieNode getChild(char character) {
+			int index = indexOf(children, character);
+			return index >= 0 ? children[index] : null;
+		}
+
+		TrieNode getChildIfNotExistThenCreate(char character) {
+			int index = indexOf(children, character);
+			if (index >= 0) {
+				return children[index];
+			}
+			index = -index - 1;
+			TrieNode child = new TrieNode(character);
+			TrieNode[] array = new TrieNode[children.length + 1];
+			System.arraycopy(children, 0, array, 0, index);
+			array[index] = child;
+			System.arraycopy(children, index, array, index + 1, children.length - index);
+			children = array;
+			return child;
+		}
+
+		/**
+		 * 注意这里的比较对象是char
+		 */
+		@Override
+		public int compareTo(Object o) {
+			return character - (char) o;
+		}
+	}
+}
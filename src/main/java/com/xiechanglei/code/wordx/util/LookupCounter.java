@@ -0,0 +1,32 @@
+package com.xiechanglei.code.wordx.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 根节点的查找次数和命中次数，DictionaryTrie和GenericTrie共用
+ * 两个计数器放在同一个不可变对象中，前缀树只用一个volatile字段引用它，查找时只读一次该字段，
+ * 停用统计时把字段置为null不会让正在查找的线程看到一半的状态
+ */
+public final class LookupCounter {
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * 记录一次查找
+	 * @param hit 是否命中
+	 */
+	public void record(boolean hit) {
+		lookups.increment();
+		if (hit) {
+			hits.increment();
+		}
+	}
+
+	public long getLookupCount() {
+		return lookups.sum();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+}
@@ -0,0 +1,101 @@
+package com.xiechanglei.code.wordx.util;
+
+/**
+ * 空白字符处理，代替正则表达式替换，避免每次调用都编译正则、创建匹配器
+ * 空白字符的范围与正则表达式的 \s 相同：空格、\t、\n、\x0B、\f、\r
+ */
+public final class Whitespace {
+
+	private Whitespace() {
+	}
+
+	public static boolean is(char _char) {
+		return _char == ' ' || (_char >= '\t' && _char <= '\r');
+	}
+
+	/**
+	 * 删除所有空白字符，等同于 replaceAll("\\s+", "")
+	 * @param text 文本
+	 * @return 没有空白字符时返回原文本
+	 */
+	public static String removeAll(String text) {
+		int length = text.length();
+		int i = 0;
+		while (i < length && !is(text.charAt(i))) {
+			i++;
+		}
+		if (i == length) {
+			return text;
+		}
+		char[] chars = new char[length];
+		text.getChars(0, i, chars, 0);
+		int count = i;
+		for (; i < length; i++) {
+			char _char = text.charAt(i);
+			if (!is(_char)) {
+				chars[count++] = _char;
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * 删除字符数组区间内的所有空白字符
+	 * @param chars 字符数组
+	 * @param start 开始位置
+	 * @param end 结束位置（不包含）
+	 * @return 文本
+	 */
+	public static String removeAll(char[] chars, int start, int end) {
+		int i = start;
+		while (i < end && !is(chars[i])) {
+			i++;
+		}
+		if (i == end) {
+			return new String(chars, start, end - start);
+		}
+		StringBuilder text = new StringBuilder(end - start);
+		text.append(chars, start, i - start);
+		for (; i < end; i++) {
+			if (!is(chars[i])) {
+				text.append(chars[i]);
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 将连续的空白字符替换为一个空格，等同于 replaceAll("\\s+", " ")
+	 * @param text 文本
+	 * @return 不需要替换时返回原文本
+	 */
+	public static String collapse(String text) {
+		int length = text.length();
+		int i = 0;
+		for (; i < length; i++) {
+			char _char = text.charAt(i);
+			if (is(_char) && (_char != ' ' || (i + 1 < length && is(text.charAt(i + 1))))) {
+				break;
+			}
+		}
+		if (i == length) {
+			return text;
+		}
+		StringBuilder result = new StringBuilder(length);
+		result.append(text, 0, i);
+		boolean space = false;
+		for (; i < length; i++) {
+			char _char = text.charAt(i);
+			if (is(_char)) {
+				if (!space) {
+					result.append(' ');
+					space = true;
+				}
+			} else {
+				result.append(_char);
+				space = false;
+			}
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,137 @@
+package com.xiechanglei.code.wordx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.impl.WordSegmenterHolder;
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 异步分词的结果与同步分词相同，同时分词的请求数不超过上限，排队时取消的请求不再分词，分词的异常交给future
+ */
+public class AsyncWordSegSceneTest {
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	@After
+	public void restore() {
+		executor.shutdownNow();
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void sameAsSync() throws Exception {
+		segmenter.addBaseWord("中文", null);
+		segmenter.addBaseWord("分词", null);
+		WordSegScene scene = segmenter.createScene();
+		scene.addWord("中文分词", null);
+		try (AsyncWordSegScene async = new AsyncWordSegScene(scene, 2)) {
+			List<String> texts = new ArrayList<>();
+			List<CompletableFuture<List<Word>>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String text = "中文分词，" + i + "中文，分词";
+				texts.add(text);
+				futures.add(async.segAsync(text));
+			}
+			for (int i = 0; i < texts.size(); i++) {
+				assertEquals(texts.get(i), scene.segSantance(texts.get(i)), futures.get(i).get(10, TimeUnit.SECONDS));
+			}
+		}
+	}
+
+	@Test
+	public void limitsConcurrency() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		AtomicInteger calls = new AtomicInteger();
+		WordSegScene scene = blockingScene(release, running, maxRunning, calls);
+		AsyncWordSegScene async = new AsyncWordSegScene(scene, executor, 3);
+		List<CompletableFuture<List<Word>>> futures = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(async.segAsync("text" + i));
+		}
+		//执行器有8个线程，只有3个请求在分词
+		waitFor(() -> running.get() == 3);
+		assertEquals(3, async.getRunning());
+		assertEquals(17, async.getWaiting());
+		//排队时取消的请求不再分词
+		assertTrue(futures.get(19).cancel(false));
+		release.countDown();
+		for (int i = 0; i < 19; i++) {
+			assertEquals(Collections.emptyList(), futures.get(i).get(10, TimeUnit.SECONDS));
+		}
+		waitFor(() -> async.getRunning() == 0);
+		assertEquals(3, maxRunning.get());
+		assertEquals(19, calls.get());
+		assertEquals(0, async.getWaiting());
+	}
+
+	@Test
+	public void failures() throws Exception {
+		IllegalStateException error = new IllegalStateException("seg failed");
+		WordSegScene scene = (WordSegScene) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { WordSegScene.class }, (proxy, method, args) -> {
+			throw error;
+		});
+		AsyncWordSegScene async = new AsyncWordSegScene(scene, executor, 1);
+		try {
+			async.segAsync("text").get(10, TimeUnit.SECONDS);
+			fail("expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertSame(error, e.getCause());
+		}
+		//执行器拒绝时请求以异常结束，名额归还
+		waitFor(() -> async.getRunning() == 0);
+		executor.shutdown();
+		CompletableFuture<List<Word>> rejected = async.segAsync("text");
+		assertTrue(rejected.isCompletedExceptionally());
+		assertEquals(0, async.getRunning());
+	}
+
+	/**
+	 * 分词时等待release，记录同时分词的请求数
+	 */
+	private WordSegScene blockingScene(CountDownLatch release, AtomicInteger running, AtomicInteger maxRunning, AtomicInteger calls) {
+		return (WordSegScene) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { WordSegScene.class }, (proxy, method, args) -> {
+			if (!method.getName().equals("segSantance")) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+			calls.incrementAndGet();
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				release.await();
+			} finally {
+				running.decrementAndGet();
+			}
+			return Collections.emptyList();
+		});
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("timed out");
+			}
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package com.xiechanglei.code.wordx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 分词完成的顺序打乱时结果仍按文本到达的顺序发布，下游请求多少发布多少，向上游请求的文本数不超过窗口加上已经发布的数目
+ */
+public class SegmentationProcessorTest {
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void publishesInOrder() throws InterruptedException {
+		List<String> texts = texts(500);
+		AtomicInteger maxDepth = new AtomicInteger();
+		SegmentationProcessor[] holder = new SegmentationProcessor[1];
+		SegmentationProcessor processor = new SegmentationProcessor(text -> {
+			maxDepth.accumulateAndGet(holder[0].getQueueDepth(), Math::max);
+			return slowSegment(text);
+		}, executor, 4);
+		holder[0] = processor;
+		Source source = new Source(texts);
+		Sink sink = new Sink(1);
+		source.subscribe(processor);
+		processor.subscribe(sink);
+		assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+		assertNull(sink.error);
+		assertEquals(texts, sink.texts());
+		assertTrue(String.valueOf(maxDepth.get()), maxDepth.get() <= 4);
+		assertEquals(0, processor.getQueueDepth());
+	}
+
+	@Test
+	public void followsDemand() throws InterruptedException {
+		List<String> texts = texts(20);
+		SegmentationProcessor processor = new SegmentationProcessor(SegmentationProcessorTest::slowSegment, executor, 5);
+		Source source = new Source(texts);
+		Sink sink = new Sink(0);
+		source.subscribe(processor);
+		processor.subscribe(sink);
+		//下游没有请求时只收窗口内的文本
+		waitFor(() -> processor.getRunning() == 0 && processor.getQueueDepth() == 5);
+		assertEquals(5, source.requested);
+		assertEquals(0, sink.received.size());
+
+		sink.subscription.request(3);
+		waitFor(() -> sink.received.size() == 3 && processor.getQueueDepth() == 5 && processor.getRunning() == 0);
+		assertEquals(8, source.requested);
+		assertEquals(0, processor.getDemand());
+		assertEquals(texts.subList(0, 3), sink.texts());
+
+		sink.subscription.request(Long.MAX_VALUE);
+		assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+		assertNull(sink.error);
+		assertEquals(texts, sink.texts());
+	}
+
+	@Test
+	public void segmenterFailure() throws InterruptedException {
+		IllegalStateException error = new IllegalStateException("seg failed");
+		SegmentationProcessor processor = new SegmentationProcessor(text -> {
+			if (text.equals("text7")) {
+				throw error;
+			}
+			return slowSegment(text);
+		}, executor, 4);
+		Source source = new Source(texts(100));
+		Sink sink = new Sink(Long.MAX_VALUE);
+		source.subscribe(processor);
+		processor.subscribe(sink);
+		assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+		assertSame(error, sink.error);
+		//出错之前的结果按顺序发布，之后的不再发布
+		assertEquals(texts(7), sink.texts());
+		assertTrue(source.cancelled);
+	}
+
+	@Test
+	public void invalidRequest() throws InterruptedException {
+		SegmentationProcessor processor = new SegmentationProcessor(SegmentationProcessorTest::slowSegment, executor, 4);
+		Source source = new Source(texts(10));
+		Sink sink = new Sink(0);
+		source.subscribe(processor);
+		processor.subscribe(sink);
+		sink.subscription.request(0);
+		assertTrue(sink.done.await(30, TimeUnit.SECONDS));
+		assertTrue(sink.error instanceof IllegalArgumentException);
+		assertTrue(source.cancelled);
+
+		Sink second = new Sink(1);
+		processor.subscribe(second);
+		assertTrue(second.done.await(30, TimeUnit.SECONDS));
+		assertTrue(second.error instanceof IllegalStateException);
+	}
+
+	private static List<String> texts(int count) {
+		List<String> texts = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			texts.add("text" + i);
+		}
+		return texts;
+	}
+
+	/**
+	 * 随机等待一会儿，打乱分词完成的顺序
+	 */
+	private static List<Word> slowSegment(String text) {
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return Collections.singletonList(new Word(text));
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("timed out");
+			}
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * 上游：按请求的数目依次发出文本，记录请求的总数
+	 */
+	private static final class Source implements Flow.Publisher<String>, Flow.Subscription {
+		private final List<String> texts;
+		private Flow.Subscriber<? super String> subscriber;
+		private long pendingRequests;
+		private int index;
+		private boolean emitting;
+		private boolean completed;
+		volatile long requested;
+		volatile boolean cancelled;
+
+		Source(List<String> texts) {
+			this.texts = texts;
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super String> subscriber) {
+			this.subscriber = subscriber;
+			subscriber.onSubscribe(this);
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			requested += n;
+			pendingRequests += n;
+			if (emitting) {
+				return;
+			}
+			emitting = true;
+			while (pendingRequests > 0 && index < texts.size() && !cancelled) {
+				pendingRequests--;
+				subscriber.onNext(texts.get(index++));
+			}
+			if (index == texts.size() && !completed && !cancelled) {
+				completed = true;
+				subscriber.onComplete();
+			}
+			emitting = false;
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+	/**
+	 * 下游：订阅时请求initial个，之后每收到一个请求一个
+	 */
+	private static final class Sink implements Flow.Subscriber<List<Word>> {
+		private final long initial;
+		final List<List<Word>> received = new CopyOnWriteArrayList<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+
+		Sink(long initial) {
+			this.initial = initial;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initial > 0) {
+				subscription.request(initial);
+			}
+		}
+
+		@Override
+		public void onNext(List<Word> item) {
+			received.add(item);
+			if (initial == 1) {
+				subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+
+		List<String> texts() {
+			List<String> texts = new ArrayList<>();
+			for (List<Word> words : received) {
+				texts.add(words.get(0).getText());
+			}
+			return texts;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.xiechanglei.code.wordx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 各个测试共用的随机文本和分词结果的描述
+ * CHARS中有英文字母、汉字和char的最大值，字少所以随机的词有很多共同前缀，也覆盖了字符编码的两端
+ */
+public final class TestTexts {
+	public static final String CHARS = "ab丁一z￿";
+
+	private TestTexts() {
+	}
+
+	/**
+	 * 由CHARS中的字组成的随机文本
+	 */
+	public static String randomText(Random random, int length) {
+		return randomText(random, length, CHARS);
+	}
+
+	/**
+	 * 由chars中的字组成的随机文本
+	 */
+	public static String randomText(Random random, int length, String chars) {
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append(chars.charAt(random.nextInt(chars.length())));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 由parts段组成的随机句子，每段一半可能是words中的词，一半可能是chars中的字（可以是标点符号、英文、数字）
+	 */
+	public static String randomText(Random random, int parts, String[] words, String[] chars) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < parts; i++) {
+			String[] pool = random.nextBoolean() ? words : chars;
+			text.append(pool[random.nextInt(pool.length)]);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 词的文字和在原文中的位置，如“分词@2”
+	 */
+	public static String position(Word word) {
+		return word.getText() + "@" + word.getStart();
+	}
+
+	public static List<String> positions(List<Word> words) {
+		List<String> result = new ArrayList<>(words.size());
+		for (Word word : words) {
+			result.add(position(word));
+		}
+		return result;
+	}
+
+	/**
+	 * 词的文字、位置、词性和词频，如“分词@2-4/v/1”
+	 */
+	public static List<String> details(List<Word> words) {
+		List<String> result = new ArrayList<>(words.size());
+		for (Word word : words) {
+			result.add(word.getText() + "@" + word.getStart() + "-" + word.getEnd() + "/" + word.getPos() + "/" + word.getFrequency());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,135 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+
+/**
+ * 用每一种词典构建AC自动机，在随机文本上比较一次扫描的结果和在每个位置调用commonPrefixSearch的结果
+ */
+public class AhoCorasickDictionaryTrieTest {
+	private static final List<Supplier<Dictionary>> DICTIONARIES = Arrays.asList(DictionaryTrie::new, DoubleArrayDictionaryTrie::new,
+			MutableDoubleArrayDictionaryTrie::new, CompactDictionaryTrie::new, OffHeapDictionaryTrie::new, DawgDictionary::new, AhoCorasickDictionaryTrie::new);
+
+	@Test
+	public void scanMatchesCommonPrefixSearch() {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			Set<String> words = new TreeSet<>();
+			for (int i = 0; i < 300; i++) {
+				words.add(randomText(random, 1 + random.nextInt(5)));
+			}
+			for (Supplier<Dictionary> supplier : DICTIONARIES) {
+				Dictionary dictionary = supplier.get();
+				dictionary.addAll(new ArrayList<>(words));
+				String name = "seed " + seed + " " + dictionary.getClass().getSimpleName();
+
+				AhoCorasickDictionaryTrie automaton = new AhoCorasickDictionaryTrie();
+				automaton.build(dictionary);
+				assertEquals(name, words.size(), automaton.size());
+				List<String> iterated = new ArrayList<>();
+				automaton.forEach(iterated::add);
+				assertEquals(name, new ArrayList<>(words), iterated);
+
+				for (int t = 0; t < 20; t++) {
+					String text = randomText(random, 200);
+					Set<String> expected = new TreeSet<>();
+					for (int start = 0; start < text.length(); start++) {
+						dictionary.commonPrefixSearch(text, start, dictionary.getMaxLength(), (s, length) -> expected.add(s + ":" + length));
+					}
+					Set<String> actual = new TreeSet<>();
+					automaton.scan(text, (start, length, wordId) -> {
+						assertEquals(name, wordId, automaton.indexOf(text.substring(start, start + length)));
+						actual.add(start + ":" + length);
+					});
+					assertEquals(name + " " + text, expected, actual);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 重叠的词和沿失败指针找到的词：同一结束位置从长到短回调，词的编号是字典序的序号
+	 */
+	@Test
+	public void overlappingHits() {
+		DictionaryTrie trie = new DictionaryTrie();
+		String[] words = { "中文", "中文分词", "分词", "文分", "词", "￿", "a￿" };
+		for (int i = 0; i < words.length; i++) {
+			trie.add(words[i], i + 1);
+		}
+		AhoCorasickDictionaryTrie automaton = new AhoCorasickDictionaryTrie();
+		automaton.build(trie);
+		assertEquals(7, automaton.size());
+		assertEquals(4, automaton.getMaxLength());
+		//按字典序编号："a￿" < "中文" < "中文分词" < "分词" < "文分" < "词" < "￿"
+		assertEquals(0, automaton.indexOf("a￿"));
+		assertEquals(1, automaton.indexOf("中文"));
+		assertEquals(2, automaton.indexOf("中文分词"));
+		assertEquals(6, automaton.indexOf("￿"));
+		assertEquals(-1, automaton.indexOf("中"));
+		assertEquals(-1, automaton.indexOf("分析"));
+		assertEquals(2, automaton.getPayload(automaton.indexOf("中文分词")));
+		assertEquals(2, automaton.getPayload("中文分词"));
+		assertTrue(automaton.contains("文分"));
+		assertFalse(automaton.contains("中文分"));
+
+		assertEquals(Arrays.asList("0:2", "1:2", "0:4", "2:2", "3:1"), hits(automaton, "中文分词", 0, 4));
+		//“中文分”之后失败，沿失败指针到“文分”再到根
+		assertEquals(Arrays.asList("0:2", "1:2", "4:1"), hits(automaton, "中文分析词", 0, 5));
+		//只扫描指定部分，开头的“中”不算
+		assertEquals(Arrays.asList("1:2", "2:2", "3:1"), hits(automaton, "中文分词", 1, 4));
+		assertEquals(Arrays.asList("0:1", "1:2", "2:1", "3:1"), hits(automaton, "￿a￿￿", 0, 4));
+		assertEquals(Arrays.asList(), hits(automaton, "", 0, 0));
+	}
+
+	@Test
+	public void buildOnce() {
+		AhoCorasickDictionaryTrie automaton = new AhoCorasickDictionaryTrie();
+		//没有构建时什么也找不到
+		assertEquals(Arrays.asList(), hits(automaton, "中文", 0, 2));
+		assertEquals(-1, automaton.indexOf("中文"));
+		assertEquals(0, automaton.longestMatch("中文", 0, 2));
+
+		automaton.addAll(Arrays.asList("中文", "分词"));
+		try {
+			automaton.addAll(Arrays.asList("词典"));
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		try {
+			automaton.add("词典");
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		//副本共用构建好的数组，clear后可以重新构建
+		AhoCorasickDictionaryTrie copy = automaton.copy();
+		automaton.clear();
+		assertEquals(0, automaton.size());
+		automaton.addAll(Arrays.asList("词典"));
+		assertEquals(Arrays.asList("1:2"), hits(automaton, "的词典", 0, 3));
+		assertEquals(Arrays.asList("0:2", "2:2"), hits(copy, "中文分词", 0, 4));
+	}
+
+	private static List<String> hits(AhoCorasickDictionaryTrie automaton, String text, int start, int end) {
+		List<String> hits = new ArrayList<>();
+		automaton.scan(text, start, end, (s, length, wordId) -> hits.add(s + ":" + length));
+		return hits;
+	}
+}
@@ -0,0 +1,90 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 随机增删词、重新紧凑存储和复制，与HashMap比较查询结果和附加值
+ */
+public class CompactDictionaryTrieTest {
+	@Test
+	public void randomAddRemoveCompactCopy() {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			CompactDictionaryTrie trie = new CompactDictionaryTrie();
+			if (random.nextBoolean()) {
+				trie.setReverseIndex(true);
+			}
+			Map<String, Integer> expected = new HashMap<>();
+			for (int op = 0; op < 3000; op++) {
+				String word = randomWord(random);
+				int action = random.nextInt(20);
+				if (action < 12) {
+					int payload = random.nextInt(100);
+					trie.add(word, payload);
+					expected.put(word, payload);
+				} else if (action < 18) {
+					trie.remove(word);
+					expected.remove(word);
+				} else if (action == 18) {
+					trie.compact();
+				} else {
+					trie = trie.copy();
+				}
+			}
+			assertEquals("seed " + seed, expected.size(), trie.size());
+			for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+				assertTrue("seed " + seed + " lost " + entry.getKey(), trie.contains(entry.getKey()));
+				assertEquals("seed " + seed + " " + entry.getKey(), (int) entry.getValue(), trie.getPayload(entry.getKey()));
+			}
+			for (int i = 0; i < 1000; i++) {
+				String word = randomWord(random);
+				assertEquals("seed " + seed + " " + word, expected.containsKey(word), trie.contains(word));
+				if (expected.containsKey(word)) {
+					int end = word.length();
+					assertEquals("seed " + seed + " " + word, end, trie.longestSuffixMatch(word, end, end));
+				}
+			}
+			List<String> words = new ArrayList<>();
+			trie.forEach(words::add);
+			assertEquals("seed " + seed, expected.size(), words.size());
+		}
+	}
+
+	/**
+	 * 每次加入新词再删除，节点数和内存占用不随增删的次数增长
+	 */
+	@Test
+	public void removeDoesNotLeakNodes() {
+		CompactDictionaryTrie trie = new CompactDictionaryTrie();
+		for (int i = 0; i < 1000; i++) {
+			trie.add("词典" + i);
+		}
+		trie.compact();
+		int nodes = trie.getNodeCount();
+		long footprint = trie.getFootprint();
+		for (int i = 0; i < 100000; i++) {
+			String word = "临时" + i;
+			trie.add(word);
+			trie.remove(word);
+		}
+		assertEquals(1000, trie.size());
+		//摘掉的节点超过一半时已经自动重新紧凑存储
+		assertTrue(trie.getFootprint() <= 4 * footprint);
+		trie.compact();
+		assertEquals(nodes, trie.getNodeCount());
+	}
+
+	private static String randomWord(Random random) {
+		return randomText(random, 1 + random.nextInt(4));
+	}
+}
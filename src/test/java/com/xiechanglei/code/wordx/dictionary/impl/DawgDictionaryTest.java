@@ -0,0 +1,186 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 增量构建的自动机与TreeSet比较查询和遍历的结果，后缀相同的词共用状态，镜像文件和反向索引的结果相同
+ */
+public class DawgDictionaryTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void matchesTreeSet() throws IOException {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			TreeSet<String> words = new TreeSet<>();
+			for (int i = 0; i < 500; i++) {
+				words.add(randomText(random, 1 + random.nextInt(6)));
+			}
+			DawgDictionary dawg = DawgDictionary.build(words);
+			String name = "seed " + seed;
+			assertMatches(name, words, dawg, random);
+
+			Path path = folder.newFile().toPath();
+			dawg.save(path);
+			DawgDictionary loaded = new DawgDictionary();
+			loaded.setReverseIndex(true);
+			loaded.load(path);
+			assertEquals(name, dawg.getStateCount(), loaded.getStateCount());
+			assertMatches(name + " image", words, loaded, random);
+		}
+	}
+
+	/**
+	 * 最小化：只差一个前缀字的词共用后面所有的状态
+	 */
+	@Test
+	public void sharesSuffixes() {
+		List<String> words = new ArrayList<>();
+		for (char c = 'a'; c <= 'z'; c++) {
+			words.add(c + "中文分词");
+		}
+		DawgDictionary dawg = DawgDictionary.build(words);
+		//根状态、四个共用的中间状态和终止状态
+		assertEquals(6, dawg.getStateCount());
+		assertEquals(26, dawg.size());
+		assertEquals(26 + 4, dawg.getArcCount());
+		assertTrue(dawg.contains("q中文分词"));
+		assertEquals(0, dawg.longestMatch("中文分词", 0, 4));
+	}
+
+	@Test
+	public void rejectsUnsortedWords() {
+		DawgDictionary.Builder builder = new DawgDictionary.Builder().add("分词").add("分词");
+		assertEquals(1, builder.size());
+		try {
+			builder.add("中文");
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	/**
+	 * 附加值按词的序号存储，共用状态的词也各有各的附加值，保存后加载不变
+	 */
+	@Test
+	public void payloadsOfSharedStates() throws IOException {
+		DawgDictionary dawg = new DawgDictionary.Builder().add("中文", 1).add("中文分词", 2).add("分词", 3).add("文分词", 4).build();
+		assertEquals(4, dawg.size());
+		assertEquals(4, dawg.getMaxLength());
+		assertEquals(2, dawg.getPayload("中文分词", 0, 4));
+		assertEquals(3, dawg.getPayload("的分词", 1, 2));
+		assertEquals(4, dawg.getPayload("文分词", 0, 3));
+		assertEquals(0, dawg.getPayload("中文分", 0, 3));
+		assertEquals(4, dawg.longestMatch("中文分词典", 0, 5));
+		assertEquals(2, dawg.longestMatch("中文分析", 0, 4));
+		assertFalse(dawg.contains("中"));
+
+		Path path = folder.newFile().toPath();
+		dawg.save(path);
+		DawgDictionary loaded = new DawgDictionary();
+		loaded.load(path);
+		List<String> iterated = new ArrayList<>();
+		loaded.forEachWithPayload((word, payload) -> iterated.add(word + "/" + payload));
+		assertEquals(Arrays.asList("中文/1", "中文分词/2", "分词/3", "文分词/4"), iterated);
+		assertEquals(2, loaded.longestSuffixMatch("中文分词", 4, 2));
+		assertEquals(4, loaded.longestSuffixMatch("中文分词", 4, 4));
+	}
+
+	@Test
+	public void errorPaths() throws IOException {
+		DawgDictionary empty = new DawgDictionary();
+		assertEquals(0, empty.longestMatch("中文", 0, 2));
+		try {
+			empty.save(folder.newFile().toPath());
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		Path garbage = folder.newFile().toPath();
+		Files.write(garbage, "中文分词".getBytes(StandardCharsets.UTF_8));
+		try {
+			empty.load(garbage);
+			fail("expected IOException");
+		} catch (IOException e) {
+			//expected
+		}
+
+		DawgDictionary dawg = DawgDictionary.build(Arrays.asList("中文", "分词"));
+		try {
+			dawg.add("词典");
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		try {
+			dawg.addAll(Arrays.asList("词典"));
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		DawgDictionary.Builder builder = new DawgDictionary.Builder().add("中文");
+		builder.build();
+		try {
+			builder.add("分词");
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+	}
+
+	private static void assertMatches(String name, TreeSet<String> words, DawgDictionary dawg, Random random) {
+		assertEquals(name, words.size(), dawg.size());
+		List<String> iterated = new ArrayList<>();
+		dawg.forEach(iterated::add);
+		assertEquals(name, new ArrayList<>(words), iterated);
+		for (int t = 0; t < 20; t++) {
+			String text = randomText(random, 50);
+			for (int i = 0; i < text.length(); i++) {
+				int limit = Math.min(8, text.length() - i);
+				int longest = 0;
+				List<Integer> prefixes = new ArrayList<>();
+				for (int len = 1; len <= limit; len++) {
+					boolean expected = words.contains(text.substring(i, i + len));
+					assertEquals(name + " " + text.substring(i, i + len), expected, dawg.contains(text, i, len));
+					if (expected) {
+						longest = len;
+						prefixes.add(len);
+					}
+				}
+				assertEquals(name + " " + text + " @" + i, longest, dawg.longestMatch(text, i, limit));
+				List<Integer> found = new ArrayList<>();
+				dawg.commonPrefixSearch(text, i, limit, (start, length) -> found.add(length));
+				assertEquals(name + " " + text + " @" + i, prefixes, found);
+				int end = i + 1;
+				int suffix = 0;
+				for (int len = Math.min(8, end); len > 0; len--) {
+					if (words.contains(text.substring(end - len, end))) {
+						suffix = len;
+						break;
+					}
+				}
+				assertEquals(name + " " + text + " @" + end, suffix, dawg.longestSuffixMatch(text, end, Math.min(8, end)));
+			}
+		}
+	}
+}
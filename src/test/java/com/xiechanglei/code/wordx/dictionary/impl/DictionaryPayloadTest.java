@@ -0,0 +1,162 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+
+/**
+ * 每一种词典用addAll加入词和附加值，查询、遍历和镜像文件中的附加值与HashMap一致；不指定附加值再次加入词时保留原来的附加值
+ */
+public class DictionaryPayloadTest {
+	private static final List<Supplier<Dictionary>> DICTIONARIES = Arrays.asList(DictionaryTrie::new, DoubleArrayDictionaryTrie::new, CompactDictionaryTrie::new,
+			OffHeapDictionaryTrie::new, DawgDictionary::new, AhoCorasickDictionaryTrie::new);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void addAllWithPayloads() throws IOException {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			List<String> items = new ArrayList<>();
+			int[] payloads = new int[400];
+			Map<String, Integer> expected = new TreeMap<>();
+			for (int i = 0; i < payloads.length; i++) {
+				String word = randomText(random, 1 + random.nextInt(5));
+				//重复的词，后出现的非0附加值覆盖前面的
+				payloads[i] = random.nextInt(3) == 0 ? 0 : random.nextInt();
+				items.add(random.nextBoolean() ? word : " " + word);
+				if (payloads[i] != 0 || !expected.containsKey(word)) {
+					expected.put(word, payloads[i]);
+				}
+			}
+			for (Supplier<Dictionary> supplier : DICTIONARIES) {
+				Dictionary dictionary = supplier.get();
+				dictionary.setReverseIndex(true);
+				dictionary.addAll(items, payloads);
+				assertPayloads("seed " + seed + " " + dictionary.getClass().getSimpleName(), expected, dictionary, random);
+			}
+
+			DoubleArrayDictionaryTrie doubleArray = new DoubleArrayDictionaryTrie();
+			doubleArray.setReverseIndex(true);
+			doubleArray.addAll(items, payloads);
+			Path path = folder.newFile().toPath();
+			doubleArray.save(path);
+			doubleArray = new DoubleArrayDictionaryTrie();
+			doubleArray.load(path);
+			assertPayloads("seed " + seed + " double array image", expected, doubleArray, random);
+
+			DawgDictionary dawg = new DawgDictionary();
+			dawg.addAll(items, payloads);
+			path = folder.newFile().toPath();
+			dawg.save(path);
+			dawg = new DawgDictionary();
+			dawg.load(path);
+			assertPayloads("seed " + seed + " dawg image", expected, dawg, random);
+
+			AhoCorasickDictionaryTrie automaton = new AhoCorasickDictionaryTrie();
+			automaton.build(dawg);
+			assertPayloads("seed " + seed + " automaton from dawg", expected, automaton, random);
+		}
+	}
+
+	/**
+	 * 负数和int的两端都能原样取出；重复的词后出现的非0附加值覆盖前面的，0不覆盖
+	 */
+	@Test
+	public void knownPayloads() {
+		assertEquals(Integer.MIN_VALUE, Dictionary.matchPayload(Dictionary.packMatch(3, Integer.MIN_VALUE)));
+		assertEquals(3, Dictionary.matchLength(Dictionary.packMatch(3, -1)));
+		assertEquals(-1, Dictionary.matchPayload(Dictionary.packMatch(3, -1)));
+		List<String> items = Arrays.asList("中文", " 中文", "中文分词", "分词", "分词", "词典", "词");
+		int[] payloads = { 5, 9, -1, 3, 0, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (Supplier<Dictionary> supplier : DICTIONARIES) {
+			Dictionary dictionary = supplier.get();
+			String name = dictionary.getClass().getSimpleName();
+			dictionary.setReverseIndex(true);
+			dictionary.addAll(new ArrayList<>(items), payloads);
+			assertEquals(name, 9, dictionary.getPayload("中文"));
+			assertEquals(name, 3, dictionary.getPayload("分词"));
+			assertEquals(name, Integer.MAX_VALUE, dictionary.getPayload("词典"));
+			assertEquals(name, 0, dictionary.getPayload("中文分"));
+			assertEquals(name, Dictionary.packMatch(4, -1), dictionary.longestMatchWithPayload("中文分词典", 0, 5));
+			assertEquals(name, Dictionary.packMatch(2, 9), dictionary.longestMatchWithPayload("中文分析", 0, 4));
+			assertEquals(name, Dictionary.packMatch(2, Integer.MAX_VALUE), dictionary.longestSuffixMatchWithPayload("中文词典", 4, 4));
+			assertEquals(name, Dictionary.packMatch(1, Integer.MIN_VALUE), dictionary.longestSuffixMatchWithPayload("中文词", 3, 1));
+			assertEquals(name, 0, dictionary.longestMatchWithPayload("典", 0, 1));
+		}
+	}
+
+	/**
+	 * 没有附加值的静态词典和镜像文件不变，附加值都为0
+	 */
+	@Test
+	public void withoutPayloads() throws IOException {
+		List<String> items = Arrays.asList("中文", "中文分词", "分词");
+		DoubleArrayDictionaryTrie doubleArray = new DoubleArrayDictionaryTrie();
+		doubleArray.addAll(new ArrayList<>(items));
+		Path path = folder.newFile().toPath();
+		doubleArray.save(path);
+		doubleArray = new DoubleArrayDictionaryTrie();
+		doubleArray.load(path);
+		assertEquals(Dictionary.packMatch(4, 0), doubleArray.longestMatchWithPayload("中文分词", 0, 4));
+		DawgDictionary dawg = new DawgDictionary();
+		dawg.addAll(new ArrayList<>(items));
+		assertEquals(Dictionary.packMatch(4, 0), dawg.longestMatchWithPayload("中文分词", 0, 4));
+		assertEquals(0, dawg.getPayload("分词"));
+	}
+
+	@Test
+	public void addWithoutPayloadKeepsPayload() {
+		for (Dictionary dictionary : new Dictionary[] { new DictionaryTrie(), new CompactDictionaryTrie() }) {
+			String name = dictionary.getClass().getSimpleName();
+			dictionary.setReverseIndex(true);
+			dictionary.add("分词", 7);
+			dictionary.add("分词");
+			dictionary.addAll(Arrays.asList("分词"));
+			assertEquals(name, 7, dictionary.getPayload("分词"));
+			assertEquals(name, Dictionary.packMatch(2, 7), dictionary.longestSuffixMatchWithPayload("中文分词", 4, 4));
+			dictionary.add("分词", 0);
+			assertEquals(name, 0, dictionary.getPayload("分词"));
+			dictionary.add("中文");
+			assertEquals(name, 0, dictionary.getPayload("中文"));
+		}
+	}
+
+	private static void assertPayloads(String name, Map<String, Integer> expected, Dictionary dictionary, Random random) {
+		for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+			String word = entry.getKey();
+			int payload = entry.getValue();
+			assertEquals(name + " " + word, payload, dictionary.getPayload(word));
+			assertEquals(name + " " + word, Dictionary.packMatch(word.length(), payload), dictionary.longestMatchWithPayload(word, 0, word.length()));
+			assertEquals(name + " " + word, Dictionary.packMatch(word.length(), payload), dictionary.longestSuffixMatchWithPayload(word, word.length(), word.length()));
+		}
+		Map<String, Integer> iterated = new TreeMap<>();
+		dictionary.forEachWithPayload(iterated::put);
+		assertEquals(name, expected, iterated);
+		for (int i = 0; i < 200; i++) {
+			String text = randomText(random, 8);
+			long match = dictionary.longestMatchWithPayload(text, 0, text.length());
+			int length = Dictionary.matchLength(match);
+			assertEquals(name + " " + text, dictionary.longestMatch(text, 0, text.length()), length);
+			int payload = length == 0 ? 0 : expected.get(text.substring(0, length));
+			assertEquals(name + " " + text, payload, Dictionary.matchPayload(match));
+			assertEquals(name + " " + text, expected.containsKey(text) ? expected.get(text) : 0, dictionary.getPayload(text));
+		}
+	}
+}
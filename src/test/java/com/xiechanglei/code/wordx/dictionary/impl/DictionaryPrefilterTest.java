@@ -0,0 +1,204 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.TestTexts;
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+
+/**
+ * 过滤器只会多放行，不会漏掉词典中的词；带过滤器的分层词典和不带过滤器时的正向、逆向匹配结果相同
+ */
+public class DictionaryPrefilterTest {
+	//加上几个常用的汉字，让随机的词有更多的共同前缀
+	private static final String CHARS = TestTexts.CHARS + "中文分词";
+
+	@Test
+	public void windowCoversEveryWord() {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			DictionaryTrie dictionary = randomDictionary(random, 500);
+			//一个从词典构建，一个逐个加词，后者的字对位图更小、误判更多
+			DictionaryPrefilter built = DictionaryPrefilter.of(dictionary);
+			DictionaryPrefilter added = new DictionaryPrefilter();
+			dictionary.forEach(added::add);
+			int limit = dictionary.getMaxLength();
+			for (int t = 0; t < 20; t++) {
+				String text = TestTexts.randomText(random, 100, CHARS);
+				for (int start = 0; start < text.length(); start++) {
+					for (int len = 1; start + len <= text.length() && len <= limit; len++) {
+						if (dictionary.contains(text, start, len)) {
+							for (DictionaryPrefilter prefilter : new DictionaryPrefilter[] { built, added }) {
+								assertTrue("seed " + seed + " " + text.substring(start, start + len), prefilter.window(text, start, limit) >= len);
+								assertTrue("seed " + seed + " " + text.substring(start, start + len), prefilter.suffixWindow(text, start + len, limit) >= len);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void matchesSameWithAndWithoutPrefilter() {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			DictionaryTrie scene = randomDictionary(random, 50);
+			DictionaryTrie base = randomDictionary(random, 500);
+			CompactDictionaryTrie mask = new CompactDictionaryTrie();
+			for (int i = 0; i < 20; i++) {
+				mask.add(TestTexts.randomText(random, 1 + random.nextInt(4), CHARS));
+			}
+			LayeredDictionary plain = new LayeredDictionary(scene, new IntGenericTrie(), base, new IntGenericTrie(), mask);
+			LayeredDictionary filtered = new LayeredDictionary(scene, new IntGenericTrie(), DictionaryPrefilter.of(scene), base, new IntGenericTrie(),
+					DictionaryPrefilter.of(base), mask);
+			int limit = Math.max(plain.getMaxLength(), 16);
+			for (int t = 0; t < 20; t++) {
+				String text = TestTexts.randomText(random, 100, CHARS);
+				for (int i = 0; i < text.length(); i++) {
+					int window = Math.min(limit, text.length() - i);
+					assertEquals("seed " + seed + " " + text + " @" + i, plain.match(text, i, window), filtered.match(text, i, window));
+					int end = i + 1;
+					window = Math.min(limit, end);
+					assertEquals("seed " + seed + " " + text + " @" + end, plain.matchSuffix(text, end, window), filtered.matchSuffix(text, end, window));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void buildsOnlyFromIterableDictionaries() {
+		List<String> words = new ArrayList<>();
+		words.add("分词");
+		DoubleArrayDictionaryTrie dictionary = new DoubleArrayDictionaryTrie();
+		dictionary.addAll(words);
+		DictionaryPrefilter prefilter = DictionaryPrefilter.of(dictionary);
+		assertNotNull(prefilter);
+		assertEquals(2, prefilter.window("分词", 0, 16));
+		assertNull(DictionaryPrefilter.of(new OpaqueDictionary()));
+	}
+
+	/**
+	 * 词首字、词尾字、按字记录的最大词长和字对各自缩小窗口
+	 */
+	@Test
+	public void knownWindows() {
+		DictionaryPrefilter prefilter = new DictionaryPrefilter();
+		for (String word : new String[] { "中文", "中文分词", "分词" }) {
+			prefilter.add(word);
+		}
+		assertEquals(4, prefilter.window("中文分词典", 0, 16));
+		assertEquals(3, prefilter.window("中文分词", 0, 3));
+		assertEquals(2, prefilter.window("分词", 0, 16));
+		//“词”不是词首字，“中分”不是词中的字对
+		assertEquals(0, prefilter.window("词典", 0, 16));
+		assertEquals(1, prefilter.window("中分词", 0, 16));
+		assertEquals(0, prefilter.window("中文", 2, 16));
+		assertEquals(0, prefilter.window("中文", -1, 16));
+
+		assertEquals(4, prefilter.suffixWindow("中文分词", 4, 16));
+		assertEquals(2, prefilter.suffixWindow("中文", 2, 16));
+		assertEquals(0, prefilter.suffixWindow("中文分", 3, 16));
+		assertEquals(0, prefilter.suffixWindow("中文", 3, 16));
+		assertEquals(0, prefilter.suffixWindow("中文", 0, 16));
+
+		//副本和原来的互不影响，clear后什么都不放行
+		DictionaryPrefilter copy = prefilter.copy();
+		copy.add("词典");
+		assertEquals(2, copy.window("词典", 0, 16));
+		assertEquals(0, prefilter.window("词典", 0, 16));
+		prefilter.clear();
+		assertEquals(0, prefilter.window("中文", 0, 16));
+		assertEquals(2, copy.window("中文", 0, 16));
+	}
+
+	/**
+	 * 超过255个字的词不限制窗口
+	 */
+	@Test
+	public void longWords() {
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			word.append('a');
+		}
+		DictionaryPrefilter prefilter = new DictionaryPrefilter();
+		prefilter.add(word.toString());
+		String text = word.toString() + word;
+		assertEquals(600, prefilter.window(text, 0, 600));
+		assertEquals(600, prefilter.suffixWindow(text, 600, 600));
+	}
+
+	/**
+	 * 逐个加词时位图大小固定，字对多了就需要重新构建；从词典构建时位图按字对数分配
+	 */
+	@Test
+	public void saturation() {
+		DictionaryTrie dictionary = new DictionaryTrie();
+		DictionaryPrefilter added = new DictionaryPrefilter();
+		for (int i = 0; i < 2000; i++) {
+			String word = String.valueOf((char) (0x4e00 + i)) + (char) (0x4e00 + i + 1);
+			dictionary.add(word);
+			added.add(word);
+		}
+		assertTrue(added.isSaturated());
+		assertFalse(DictionaryPrefilter.of(dictionary).isSaturated());
+	}
+
+	private static DictionaryTrie randomDictionary(Random random, int size) {
+		DictionaryTrie dictionary = new DictionaryTrie();
+		for (int i = 0; i < size; i++) {
+			dictionary.add(TestTexts.randomText(random, 1 + random.nextInt(5), CHARS));
+		}
+		return dictionary;
+	}
+
+	/**
+	 * 不支持遍历的词典
+	 */
+	private static final class OpaqueDictionary implements Dictionary {
+		@Override
+		public int getMaxLength() {
+			return 0;
+		}
+
+		@Override
+		public boolean contains(String item, int start, int length) {
+			return false;
+		}
+
+		@Override
+		public boolean contains(String item) {
+			return false;
+		}
+
+		@Override
+		public void addAll(List<String> items) {
+		}
+
+		@Override
+		public void add(String item) {
+		}
+
+		@Override
+		public void removeAll(List<String> items) {
+		}
+
+		@Override
+		public void remove(String item) {
+		}
+
+		@Override
+		public void clear() {
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.dictionary.DictionaryStats;
+import com.xiechanglei.code.wordx.util.GenericTrie;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+
+/**
+ * 词首字少时根节点存放在有序数组中，超过1024个后换成每个字一个槽位的直接索引，换之前和之后查询结果相同
+ */
+public class DictionaryTrieTest {
+	private static final int THRESHOLD = 1024;
+
+	@Test
+	public void smallTrieHasNoDirectIndex() {
+		DictionaryTrie trie = new DictionaryTrie();
+		trie.setReverseIndex(true);
+		for (String word : new String[] { "中文", "分词", "中文分词", "词典", "z", "￿一" }) {
+			trie.add(word, word.length());
+		}
+		DictionaryStats stats = trie.getStats();
+		assertEquals(5, trie.getRootCount());
+		assertEquals(5, stats.getRootSlots());
+		//没有直接索引，远小于256KB
+		assertTrue(String.valueOf(stats.getFootprint()), stats.getFootprint() < 4096);
+		assertTrue(trie.contains("中文分词"));
+		assertFalse(trie.contains("中"));
+		assertFalse(trie.contains("文"));
+		assertEquals(4, trie.longestMatch("中文分词典", 0, 5));
+		assertEquals(2, trie.longestSuffixMatch("中文分词典", 5, 5));
+		assertTrue(trie.contains("￿一"));
+		assertEquals(4, trie.getPayload("中文分词"));
+
+		//副本也只复制有序数组
+		DictionaryTrie copy = trie.copy();
+		assertEquals(5, copy.getStats().getRootSlots());
+		copy.add("算法");
+		assertTrue(copy.contains("算法"));
+		assertFalse(trie.contains("算法"));
+
+		GenericTrie<String> generic = new GenericTrie<>();
+		generic.put("中文", "n");
+		assertEquals(1, generic.getStats().getRootSlots());
+		IntGenericTrie tags = new IntGenericTrie();
+		tags.put("中文", 3);
+		assertEquals(1, tags.getStats().getRootSlots());
+	}
+
+	@Test
+	public void switchesToDirectIndex() {
+		List<String> words = new ArrayList<>();
+		for (int i = 0; i < THRESHOLD + 100; i++) {
+			char first = (char) (0x4e00 + i * 7);
+			words.add(first + "词");
+			words.add(String.valueOf(first));
+		}
+		Collections.shuffle(words, new Random(0));
+		DictionaryTrie trie = new DictionaryTrie();
+		GenericTrie<String> generic = new GenericTrie<>();
+		IntGenericTrie tags = new IntGenericTrie();
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			trie.add(word, i + 1);
+			generic.put(word, word);
+			tags.put(word, i + 1);
+			int roots = trie.getRootCount();
+			//不超过1024个时槽位数等于根节点数
+			assertEquals(word, roots <= THRESHOLD ? roots : 65536, trie.getStats().getRootSlots());
+			assertEquals(word, roots <= THRESHOLD ? roots : 65536, generic.getStats().getRootSlots());
+			assertEquals(word, roots <= THRESHOLD ? roots : 65536, tags.getStats().getRootSlots());
+		}
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			assertTrue(word, trie.contains(word));
+			assertEquals(word, i + 1, trie.getPayload(word));
+			assertEquals(word, word, generic.get(word));
+			assertEquals(word, i + 1, tags.get(word));
+		}
+		assertFalse(trie.contains("丁"));
+		assertNull(generic.get("丁"));
+		assertEquals(0, tags.get("丁"));
+
+		//按字的顺序遍历，和之前一样
+		List<String> iterated = new ArrayList<>();
+		trie.copy().forEach(iterated::add);
+		List<String> sorted = new ArrayList<>(words);
+		Collections.sort(sorted);
+		assertEquals(sorted, iterated);
+	}
+}
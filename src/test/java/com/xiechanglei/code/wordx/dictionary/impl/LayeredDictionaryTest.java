@@ -0,0 +1,180 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.tagging.TagRegistry;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+
+/**
+ * 分层词典的一次查找与原来分别查场景词典和基础词典、逐个长度调用contains的结果相同
+ * 原来的正向规则：场景中有长度大于一的词时使用场景的词，否则使用基础词典中最长的词；逆向规则：两层中最长的词，一样长时算作场景的词
+ */
+public class LayeredDictionaryTest {
+	@Test
+	public void matchesTwoLookups() {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			//场景为空时跳过场景这一层
+			DictionaryTrie scene = randomDictionary(random, seed % 5 == 0 ? 0 : 30);
+			DictionaryTrie base = randomDictionary(random, 300);
+			CompactDictionaryTrie mask = new CompactDictionaryTrie();
+			for (int i = 0; i < 30; i++) {
+				mask.add(randomText(random, 1 + random.nextInt(4)));
+			}
+			IntGenericTrie sceneTag = new IntGenericTrie();
+			IntGenericTrie baseTag = new IntGenericTrie();
+			scene.forEach(word -> sceneTag.put(word, 1));
+			base.forEach(word -> baseTag.put(word, 2));
+			LayeredDictionary layered = new LayeredDictionary(scene, sceneTag, base, baseTag, mask);
+			String name = "seed " + seed;
+			for (int t = 0; t < 20; t++) {
+				String text = randomText(random, 60);
+				for (int i = 0; i < text.length(); i++) {
+					int limit = Math.min(16, text.length() - i);
+					long match = layered.match(text, i, limit);
+					assertEquals(name + " " + text + " @" + i, forward(scene, base, mask, text, i, limit), match);
+					if (match != 0) {
+						//词性只在词所在的那一层查找
+						String word = text.substring(i, i + LayeredDictionary.length(match));
+						int layer = LayeredDictionary.layer(match);
+						assertEquals(name + " " + word, layer == LayeredDictionary.SCENE ? 1 : 2, layered.getTagCode(word, layer));
+					}
+					int end = i + 1;
+					limit = Math.min(16, end);
+					assertEquals(name + " " + text + " @" + end, backward(scene, base, mask, text, end, limit), layered.matchSuffix(text, end, limit));
+				}
+			}
+		}
+	}
+
+	/**
+	 * 场景的单字不挡住基础词典的长词，场景中更长的词优先，被屏蔽的词退回到更短的词，逆向一样长时算作场景的词
+	 */
+	@Test
+	public void layerRules() {
+		DictionaryTrie scene = new DictionaryTrie();
+		scene.add("中", 1);
+		scene.add("分词", 7);
+		scene.add("中文分词", 5);
+		DictionaryTrie base = new DictionaryTrie();
+		base.add("中文", 3);
+		base.add("分词", 2);
+		base.add("文分词", 4);
+		base.add("词典", 6);
+		IntGenericTrie sceneTag = new IntGenericTrie();
+		sceneTag.put("分词", 11);
+		IntGenericTrie baseTag = new IntGenericTrie();
+		baseTag.put("分词", 21);
+		baseTag.put("词典", 22);
+		CompactDictionaryTrie mask = new CompactDictionaryTrie();
+		mask.add("词典");
+		LayeredDictionary layered = new LayeredDictionary(scene, sceneTag, base, baseTag, mask);
+
+		assertEquals(pack(4, LayeredDictionary.SCENE, 5), layered.match("中文分词", 0, 4));
+		//场景中只有单字“中”，使用基础词典的“中文”
+		assertEquals(pack(2, LayeredDictionary.BASE, 3), layered.match("中文分析", 0, 4));
+		assertEquals(0, layered.match("词典", 0, 2));
+		assertEquals(pack(2, LayeredDictionary.SCENE, 7), layered.matchSuffix("中分词", 3, 3));
+		//基础词典中的“文分词”更长
+		assertEquals(pack(3, LayeredDictionary.BASE, 4), layered.matchSuffix("的文分词", 4, 4));
+		assertEquals(pack(1, LayeredDictionary.SCENE, 1), layered.matchSuffix("的中", 2, 2));
+		assertEquals(0, layered.matchSuffix("的词典", 3, 3));
+
+		assertEquals(LayeredDictionary.SCENE, layered.layerOf("分词", 0, 2));
+		assertEquals(LayeredDictionary.BASE, layered.layerOf("中文", 0, 2));
+		assertEquals(LayeredDictionary.NONE, layered.layerOf("词典", 0, 2));
+		assertEquals(7, layered.getPayload("分词", 0, 2));
+		assertEquals(0, layered.getPayload("词典", 0, 2));
+		assertEquals(11, layered.getTagCode("分词"));
+		assertEquals(21, layered.getTagCode("分词", LayeredDictionary.BASE));
+		assertEquals(TagRegistry.NONE, layered.getTagCode("词典"));
+		assertFalse(layered.contains("词典"));
+		assertTrue(layered.contains("中"));
+
+		//两层都有的词只回调一次，被屏蔽的词不回调
+		List<String> found = new ArrayList<>();
+		layered.commonPrefixSearch("分词典", 0, 3, (s, length) -> found.add(s + ":" + length));
+		assertEquals(Arrays.asList("0:2"), found);
+		List<String> iterated = new ArrayList<>();
+		layered.forEach(iterated::add);
+		assertEquals(Arrays.asList("中", "中文分词", "分词", "中文", "文分词"), iterated);
+
+		try {
+			layered.add("算法");
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+	}
+
+	/**
+	 * 场景为空时只查基础词典
+	 */
+	@Test
+	public void emptyScene() {
+		DictionaryTrie base = new DictionaryTrie();
+		base.add("中文", 3);
+		LayeredDictionary layered = new LayeredDictionary(new DictionaryTrie(), new IntGenericTrie(), base, new IntGenericTrie(), null);
+		assertEquals(2, layered.getMaxLength());
+		assertEquals(pack(2, LayeredDictionary.BASE, 3), layered.match("中文", 0, 2));
+		assertEquals(pack(2, LayeredDictionary.BASE, 3), layered.matchSuffix("中文", 2, 2));
+		assertEquals(0, layered.match("分词", 0, 2));
+		assertEquals(2, layered.window("中文", 0, 2));
+	}
+
+	/**
+	 * 原来的正向查找
+	 */
+	private static long forward(Dictionary scene, Dictionary base, Dictionary mask, String text, int start, int limit) {
+		for (int len = limit; len > 1; len--) {
+			if (scene.contains(text, start, len)) {
+				return pack(len, LayeredDictionary.SCENE, scene.getPayload(text, start, len));
+			}
+		}
+		for (int len = limit; len > 0; len--) {
+			if (base.contains(text, start, len) && !mask.contains(text, start, len)) {
+				return pack(len, LayeredDictionary.BASE, base.getPayload(text, start, len));
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 原来的逆向查找
+	 */
+	private static long backward(Dictionary scene, Dictionary base, Dictionary mask, String text, int end, int limit) {
+		for (int len = limit; len > 0; len--) {
+			if (scene.contains(text, end - len, len)) {
+				return pack(len, LayeredDictionary.SCENE, scene.getPayload(text, end - len, len));
+			}
+			if (base.contains(text, end - len, len) && !mask.contains(text, end - len, len)) {
+				return pack(len, LayeredDictionary.BASE, base.getPayload(text, end - len, len));
+			}
+		}
+		return 0;
+	}
+
+	private static long pack(int length, int layer, int payload) {
+		return ((long) payload << 32) | (layer << 16) | length;
+	}
+
+	private static DictionaryTrie randomDictionary(Random random, int size) {
+		DictionaryTrie dictionary = new DictionaryTrie();
+		for (int i = 0; i < size; i++) {
+			dictionary.add(randomText(random, 1 + random.nextInt(5)), random.nextInt(1000));
+		}
+		return dictionary;
+	}
+}
@@ -0,0 +1,86 @@
+package com.xiechanglei.code.wordx.dictionary.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.TestTexts;
+
+/**
+ * 随机增删词，与HashSet比较查询结果
+ * 字符同时包含很小的编码和很大的编码，兄弟节点的偏移量会以较大的编码对齐，较小的编码落到0之前
+ */
+public class MutableDoubleArrayDictionaryTrieTest {
+	private static final String CHARS = "!" + TestTexts.CHARS;
+
+	@Test
+	public void smallCodeBelowAnchor() {
+		MutableDoubleArrayDictionaryTrie trie = new MutableDoubleArrayDictionaryTrie(4);
+		for (String word : new String[] { "!", "a丁一一", "baa", "a丁" }) {
+			trie.add(word);
+		}
+		for (String word : new String[] { "!", "a丁一一", "baa", "a丁" }) {
+			assertTrue(word, trie.contains(word));
+		}
+	}
+
+	@Test
+	public void removeTrimsLikeAdd() {
+		MutableDoubleArrayDictionaryTrie trie = new MutableDoubleArrayDictionaryTrie(4);
+		trie.add(" 词典 ");
+		assertTrue(trie.contains("词典"));
+		trie.remove(" 词典 ");
+		assertFalse(trie.contains("词典"));
+		assertEquals(0, trie.size());
+	}
+
+	@Test
+	public void clearKeepsInitialSize() {
+		MutableDoubleArrayDictionaryTrie trie = new MutableDoubleArrayDictionaryTrie(64);
+		long footprint = trie.getFootprint();
+		trie.add("词典");
+		trie.clear();
+		assertEquals(footprint, trie.getFootprint());
+	}
+
+	@Test
+	public void randomAddRemoveCompactCopy() {
+		for (int seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			MutableDoubleArrayDictionaryTrie trie = new MutableDoubleArrayDictionaryTrie(random.nextBoolean() ? 4 : 1024);
+			Set<String> expected = new HashSet<>();
+			for (int op = 0; op < 3000; op++) {
+				String word = randomWord(random);
+				int action = random.nextInt(20);
+				if (action < 12) {
+					trie.add(word);
+					expected.add(word);
+				} else if (action < 18) {
+					trie.remove(word);
+					expected.remove(word);
+				} else if (action == 18) {
+					trie.compact();
+				} else {
+					trie = trie.copy();
+				}
+			}
+			for (String word : expected) {
+				assertTrue("seed " + seed + " lost " + word, trie.contains(word));
+			}
+			for (int i = 0; i < 1000; i++) {
+				String word = randomWord(random);
+				assertEquals("seed " + seed + " " + word, expected.contains(word), trie.contains(word));
+			}
+		}
+	}
+
+	private static String randomWord(Random random) {
+		return TestTexts.randomText(random, 1 + random.nextInt(4), CHARS);
+	}
+}
@@ -0,0 +1,236 @@
+package com.xiechanglei.code.wordx.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 场景的修改在完成时立即发布为新的快照：读取快照不等待正在进行的修改，持有的快照不受之后修改的影响，
+ * reload整体替换，删除、屏蔽在调用返回后立即生效，每次写调用（批量算一次）版本号加一
+ */
+public class SceneSnapshotTest {
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void restore() {
+		executor.shutdownNow();
+		segmenter.clearAll();
+	}
+
+	/**
+	 * 写操作在锁内阻塞时，读取版本号和分词都不等待
+	 */
+	@Test
+	public void readersDoNotWaitForWriters() throws Exception {
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		scene.addWord("中文分词", null);
+		long version = scene.getVersion();
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Map<String, String> blocking = new HashMap<String, String>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void forEach(BiConsumer<? super String, ? super String> action) {
+				entered.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				action.accept("词典算法", null);
+			}
+		};
+		Future<?> writer = executor.submit(() -> scene.addWords(blocking));
+		try {
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			Future<List<String>> reader = executor.submit(() -> {
+				assertEquals(version, scene.getVersion());
+				return texts(scene.segSantance("中文分词词典算法"));
+			});
+			//写操作还没有发布，读到的是原来的快照
+			assertEquals(Arrays.asList("中文分词", "词", "典", "算", "法"), reader.get(10, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+		writer.get(10, TimeUnit.SECONDS);
+		assertEquals(version + 1, scene.getVersion());
+		assertEquals(Arrays.asList("中文分词", "词典算法"), texts(scene.segSantance("中文分词词典算法")));
+	}
+
+	/**
+	 * 两个词总是一起加入、一起删除，任何时候读到的快照中两个词要么都在要么都不在，持有的快照之后也不变
+	 */
+	@Test
+	public void readersSeeConsistentSnapshots() throws Exception {
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		Map<String, String> pair = new LinkedHashMap<>();
+		pair.put("中文分词", null);
+		pair.put("词典算法", null);
+		AtomicBoolean running = new AtomicBoolean(true);
+		Future<?> writer = executor.submit(() -> {
+			while (running.get()) {
+				scene.addWords(pair);
+				scene.removeWords(pair.keySet());
+			}
+		});
+		AtomicReference<String> failure = new AtomicReference<>();
+		Future<?> reader = executor.submit(() -> {
+			long lastVersion = -1;
+			for (int i = 0; i < 20000 && failure.get() == null; i++) {
+				SceneSnapshot snapshot = scene.getSnapshot();
+				boolean first = snapshot.getDictionary().contains("中文分词");
+				if (first != snapshot.getDictionary().contains("词典算法")) {
+					failure.set("half published snapshot, version " + snapshot.getVersion());
+				}
+				if (snapshot.getVersion() < lastVersion) {
+					failure.set("version went back from " + lastVersion + " to " + snapshot.getVersion());
+				}
+				lastVersion = snapshot.getVersion();
+				List<String> words = texts(scene.segSantance("中文分词，词典算法"));
+				if (!words.equals(Arrays.asList("中文分词", "词典算法")) && !words.equals(Arrays.asList("中", "文", "分", "词", "词", "典", "算", "法"))) {
+					failure.set("mixed segmentation " + words);
+				}
+				//持有的快照不受之后修改的影响
+				if (snapshot.getDictionary().contains("中文分词") != first) {
+					failure.set("held snapshot changed, version " + snapshot.getVersion());
+				}
+			}
+		});
+		try {
+			reader.get(60, TimeUnit.SECONDS);
+		} finally {
+			running.set(false);
+		}
+		writer.get(10, TimeUnit.SECONDS);
+		assertNull(failure.get());
+	}
+
+	/**
+	 * reload的新内容整体替换旧内容，读到的快照只有一组词，版本号只加一
+	 */
+	@Test
+	public void reloadSwapsAtomically() throws Exception {
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		Map<String, String> oldWords = new HashMap<>();
+		Map<String, String> newWords = new HashMap<>();
+		for (int i = 0; i < 200; i++) {
+			oldWords.put("旧词" + i, null);
+			newWords.put("新词" + i, null);
+		}
+		scene.reload(oldWords, Collections.singletonList("旧词1 旧词2=旧词1旧词2"));
+		scene.maskWord("中文");
+		AtomicBoolean running = new AtomicBoolean(true);
+		Future<?> writer = executor.submit(() -> {
+			for (int i = 0; running.get(); i++) {
+				scene.reload(i % 2 == 0 ? newWords : oldWords, null);
+			}
+		});
+		AtomicReference<String> failure = new AtomicReference<>();
+		Future<?> reader = executor.submit(() -> {
+			for (int i = 0; i < 5000 && failure.get() == null; i++) {
+				SceneSnapshot snapshot = scene.getSnapshot();
+				int old = 0;
+				int added = 0;
+				for (int j = 0; j < 200; j += 20) {
+					old += snapshot.getDictionary().contains("旧词" + j) ? 1 : 0;
+					added += snapshot.getDictionary().contains("新词" + j) ? 1 : 0;
+				}
+				if (!(old == 10 && added == 0) && !(old == 0 && added == 10)) {
+					failure.set("mixed reload, old " + old + " new " + added);
+				}
+			}
+		});
+		try {
+			reader.get(60, TimeUnit.SECONDS);
+		} finally {
+			running.set(false);
+		}
+		writer.get(10, TimeUnit.SECONDS);
+		assertNull(failure.get());
+
+		long version = scene.getVersion();
+		scene.reload(newWords, null);
+		assertEquals(version + 1, scene.getVersion());
+		//reload替换细分规则和屏蔽的词
+		SceneSnapshot snapshot = scene.getSnapshot();
+		assertTrue(snapshot.getRefine().isEmpty());
+		assertNull(snapshot.getMask());
+		assertTrue(snapshot.getDictionary().contains("新词199"));
+		assertFalse(snapshot.getDictionary().contains("旧词199"));
+	}
+
+	/**
+	 * 删除和屏蔽在调用返回后的第一次分词就生效，没有改变任何内容的调用不发布新的版本
+	 */
+	@Test
+	public void removalAndMaskVisibleAfterPublish() {
+		segmenter.addBaseWord("中文", null);
+		segmenter.addBaseWord("分词", null);
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		long version = scene.getVersion();
+		scene.addWord("中文分词", null);
+		assertEquals(version + 1, scene.getVersion());
+		assertEquals(Arrays.asList("中文分词"), texts(scene.segSantance("中文分词")));
+
+		SceneSnapshot held = scene.getSnapshot();
+		scene.removeWord("中文分词");
+		assertEquals(version + 2, scene.getVersion());
+		assertEquals(Arrays.asList("中文", "分词"), texts(scene.segSantance("中文分词")));
+		assertTrue(held.getDictionary().contains("中文分词"));
+
+		scene.maskWord("中文");
+		assertEquals(version + 3, scene.getVersion());
+		assertEquals(Arrays.asList("中", "文", "分词"), texts(scene.segSantance("中文分词")));
+		scene.unmaskWord("中文");
+		assertEquals(version + 4, scene.getVersion());
+		assertEquals(Arrays.asList("中文", "分词"), texts(scene.segSantance("中文分词")));
+
+		//空词、不存在的屏蔽不发布
+		scene.addWord(" ", null);
+		scene.unmaskWord("分词");
+		assertEquals(version + 4, scene.getVersion());
+
+		//一批只发布一次
+		Map<String, String> words = new LinkedHashMap<>();
+		words.put("中文分词", null);
+		words.put("分词算法", null);
+		scene.addWords(words);
+		assertEquals(version + 5, scene.getVersion());
+		SceneSnapshot before = scene.getSnapshot();
+		assertSame(before, scene.getSnapshot());
+		assertFalse(before.getDictionary().contains("词典"));
+	}
+
+	private static List<String> texts(List<Word> words) {
+		String[] texts = new String[words.size()];
+		for (int i = 0; i < texts.length; i++) {
+			texts[i] = words.get(i).getText();
+		}
+		return Arrays.asList(texts);
+	}
+}
@@ -0,0 +1,197 @@
+package com.xiechanglei.code.wordx.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.position;
+import static com.xiechanglei.code.wordx.TestTexts.positions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.SegmentationAlgorithm;
+import com.xiechanglei.code.wordx.TestTexts;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 分段读入、在标点符号或没有词跨过的位置切开后分词，与整段文本调用segSantance的结果相同，位置是在整个输入中的位置
+ */
+public class StreamSegmenterTest {
+	private static final String[] WORDS = { "中文", "分词", "中文分词", "词典", "算法", "正向", "最大", "匹配", "最大匹配", "分词算法", "典型" };
+	private static final String[] CHARS = { "中", "文", "分", "词", "典", "算", "法", "型", "a", "1" };
+	//加上标点符号，在标点符号处切开
+	private static final String[] CHARS_PUNCTUATIONS = { "中", "文", "分", "词", "典", "算", "法", "型", "a", "1", "，", "。", "！", "\n" };
+
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void sameAsWholeText() throws IOException {
+		for (String word : WORDS) {
+			segmenter.addBaseWord(word, null);
+		}
+		for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+			WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+			scene.setSegmentation(algorithm);
+			for (int seed = 0; seed < 10; seed++) {
+				Random random = new Random(seed);
+				//有标点符号时在标点符号处切开，没有时缓冲区满了在没有词跨过的位置切开
+				boolean punctuation = seed % 2 == 0;
+				String text = TestTexts.randomText(random, 3000, WORDS, punctuation ? CHARS_PUNCTUATIONS : CHARS);
+				String name = algorithm + " seed " + seed;
+				List<String> expected = positions(scene.segSantance(text));
+
+				List<String> streamed = new ArrayList<>();
+				new StreamSegmenter(scene, 1024).seg(new ChunkedReader(text, random, 300), word -> streamed.add(position(word)));
+				assertEquals(name, expected, streamed);
+
+				List<String> channel = new ArrayList<>();
+				scene.segStream(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8,
+						word -> channel.add(position(word)));
+				assertEquals(name + " channel", expected, channel);
+			}
+		}
+	}
+
+	/**
+	 * 没有标点符号时缓冲区满了在没有词跨过的位置切开，两种算法的结果都与整段分词相同
+	 * “研究生命”正向是“研究生 命”，逆向是“研究 生命”，逆向时按以后面的字结尾的词找切开的位置
+	 */
+	@Test
+	public void cutsBetweenWords() throws IOException {
+		for (String word : new String[] { "研究", "研究生", "生命", "命" }) {
+			segmenter.addBaseWord(word, null);
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 700; i++) {
+			builder.append("研究生命");
+		}
+		String text = builder.toString();
+		for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+			WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+			scene.setSegmentation(algorithm);
+			List<Word> whole = scene.segSantance(text);
+			List<String> expected = positions(whole);
+			assertEquals(algorithm.name(), algorithm == SegmentationAlgorithm.ReverseMaximumMatching ? "生命" : "命", whole.get(1).getText());
+
+			List<String> streamed = new ArrayList<>();
+			new StreamSegmenter(scene, 1024).seg(new StringReader(text), word -> streamed.add(position(word)));
+			assertEquals(algorithm.name(), expected, streamed);
+		}
+	}
+
+	/**
+	 * 只在缓冲区满了和读完时切开：Reader每次只返回一个字时，不满一个缓冲区的文本仍然整段分词
+	 * 标点符号两边的词被细分规则合并，在标点符号处切开就合并不了
+	 */
+	@Test
+	public void cutsDoNotDependOnReads() throws IOException {
+		segmenter.addBaseWord("中文", null);
+		segmenter.addBaseWord("分词", null);
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		scene.addRefine("中文 分词=中文分词");
+		String text = "中文，分词。中文，分词";
+		List<String> expected = positions(scene.segSantance(text));
+		assertEquals(Arrays.asList("中文分词@0", "中文分词@6"), expected);
+		List<String> streamed = new ArrayList<>();
+		new StreamSegmenter(scene, 1024).seg(new ChunkedReader(text, new Random(0), 1), word -> streamed.add(position(word)));
+		assertEquals(expected, streamed);
+	}
+
+	/**
+	 * 空的输入没有词；缓冲区小于最小值时按最小值分配；刚好一个缓冲区、多出几个字、两个缓冲区的文本都与整段分词相同
+	 */
+	@Test
+	public void boundaries() throws IOException {
+		segmenter.addBaseWord("中文", null);
+		segmenter.addBaseWord("分词", null);
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		List<String> streamed = new ArrayList<>();
+		new StreamSegmenter(scene, 1024).seg(new StringReader(""), word -> streamed.add(position(word)));
+		assertTrue(streamed.isEmpty());
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 512; i++) {
+			builder.append(i % 2 == 0 ? "中文" : "分词");
+		}
+		for (String text : new String[] { builder.toString(), builder.toString() + "中文", builder.toString() + builder }) {
+			List<String> expected = positions(scene.segSantance(text));
+			for (int bufferSize : new int[] { 1, 1024 }) {
+				List<String> words = new ArrayList<>();
+				new StreamSegmenter(scene, bufferSize).seg(new StringReader(text), word -> words.add(position(word)));
+				assertEquals(text.length() + " buffer " + bufferSize, expected, words);
+			}
+		}
+	}
+
+	/**
+	 * 流式分词过程中修改场景，之后的缓冲区仍然使用开始时的词典快照
+	 */
+	@Test
+	public void usesSnapshotFromStart() throws IOException {
+		segmenter.addBaseWord("中文", null);
+		segmenter.addBaseWord("分词", null);
+		WordSegSceneImpl scene = (WordSegSceneImpl) segmenter.createScene();
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append("中文分词，");
+		}
+		String text = builder.toString();
+		List<String> expected = positions(scene.segSantance(text));
+		List<String> streamed = new ArrayList<>();
+		new StreamSegmenter(scene, 1024).seg(new StringReader(text), word -> {
+			if (streamed.isEmpty()) {
+				scene.addWord("中文分词", null);
+			}
+			streamed.add(position(word));
+		});
+		assertEquals(expected, streamed);
+		assertEquals(Arrays.asList("中文分词@0"), positions(scene.segSantance("中文分词")));
+	}
+
+	/**
+	 * 每次只读入随机的几个字
+	 */
+	private static final class ChunkedReader extends Reader {
+		private final String text;
+		private final Random random;
+		private final int maxRead;
+		private int position;
+
+		ChunkedReader(String text, Random random, int maxRead) {
+			this.text = text;
+			this.random = random;
+			this.maxRead = maxRead;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) {
+			if (position == text.length()) {
+				return -1;
+			}
+			int count = Math.min(Math.min(len, 1 + random.nextInt(maxRead)), text.length() - position);
+			text.getChars(position, position + count, cbuf, off);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.xiechanglei.code.wordx.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.positions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.SegmentationAlgorithm;
+import com.xiechanglei.code.wordx.TestTexts;
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 批量分词的结果与逐个调用segSantance的结果相同，按输入的顺序在调用线程中交给consumer，null视为空文本
+ */
+public class WordSegSceneImplTest {
+	private static final String[] WORDS = { "中文", "分词", "中文分词", "词典", "算法", "正向", "最大", "匹配", "最大匹配", "王", "小明" };
+	private static final String[] CHARS = { "中", "文", "分", "词", "典", "算", "法", "a", "1", " ", "，", "。" };
+
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void batchInInputOrder() {
+		for (String word : WORDS) {
+			segmenter.addBaseWord(word, null);
+		}
+		segmenter.addSurname("王");
+		Random random = new Random(0);
+		//超过一组的文本数，正在处理的组数达到上限
+		List<String> texts = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			texts.add(i % 100 == 0 ? null : TestTexts.randomText(random, random.nextInt(40), WORDS, CHARS));
+		}
+		for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+			for (int parallelism : new int[] { 1, 4 }) {
+				ForkJoinPool pool = new ForkJoinPool(parallelism);
+				try {
+					WordSegScene scene = segmenter.createScene();
+					scene.setSegmentation(algorithm);
+					scene.addWord("分词算法", null);
+					scene.setBatchPool(pool);
+					String name = algorithm + " parallelism " + parallelism;
+					List<List<String>> expected = new ArrayList<>();
+					for (String text : texts) {
+						expected.add(positions(scene.segSantance(text == null ? "" : text)));
+					}
+					List<List<String>> batch = new ArrayList<>();
+					for (List<Word> words : scene.segBatch(texts)) {
+						batch.add(positions(words));
+					}
+					assertEquals(name, expected, batch);
+
+					Thread caller = Thread.currentThread();
+					List<List<String>> consumed = new ArrayList<>();
+					scene.segBatch(texts.iterator(), words -> {
+						assertSame(name, caller, Thread.currentThread());
+						consumed.add(positions(words));
+					});
+					assertEquals(name, expected, consumed);
+				} finally {
+					pool.shutdown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * null和空文本得到空的结果，细分规则和单独分词时一样生效
+	 */
+	@Test
+	public void knownTexts() {
+		segmenter.addBaseWord("中文", null);
+		segmenter.addBaseWord("分词", null);
+		segmenter.addBaseWord("词典", null);
+		segmenter.addBaseWord("算法", null);
+		WordSegScene scene = segmenter.createScene();
+		scene.addRefine("词典 算法=词典算法");
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			scene.setBatchPool(pool);
+			List<List<String>> batch = new ArrayList<>();
+			for (List<Word> words : scene.segBatch(Arrays.asList("中文分词", null, "", "词典算法，中文"))) {
+				batch.add(positions(words));
+			}
+			assertEquals(Arrays.asList(Arrays.asList("中文@0", "分词@2"), Collections.emptyList(), Collections.emptyList(), Arrays.asList("词典算法@0", "中文@5")), batch);
+			assertTrue(scene.segBatch(Collections.<String> emptyList()).isEmpty());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * 读取文本或consumer出错时异常交给调用方，之后还能继续使用
+	 */
+	@Test
+	public void errorsReachCaller() {
+		segmenter.addBaseWord("中文", null);
+		WordSegScene scene = segmenter.createScene();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			scene.setBatchPool(pool);
+			Iterator<String> failing = new Iterator<String>() {
+				private int count;
+
+				@Override
+				public boolean hasNext() {
+					return true;
+				}
+
+				@Override
+				public String next() {
+					if (++count > 5000) {
+						throw new IllegalStateException("read failed");
+					}
+					return "中文";
+				}
+			};
+			try {
+				scene.segBatch(failing, words -> {
+				});
+				fail("expected IllegalStateException");
+			} catch (IllegalStateException e) {
+				assertEquals("read failed", e.getMessage());
+			}
+			List<String> texts = Collections.nCopies(5000, "中文");
+			try {
+				scene.segBatch(texts.iterator(), words -> {
+					throw new IllegalStateException("consumer failed");
+				});
+				fail("expected IllegalStateException");
+			} catch (IllegalStateException e) {
+				assertEquals("consumer failed", e.getMessage());
+			}
+			assertEquals(5000, scene.segBatch(texts).size());
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.xiechanglei.code.wordx.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.dictionary.impl.DictionaryTrie;
+import com.xiechanglei.code.wordx.dictionary.impl.DoubleArrayDictionaryTrie;
+import com.xiechanglei.code.wordx.segmentation.Word;
+
+/**
+ * 词频作为附加值存储在词典中，不指定词频再次加入词（包括加入复姓）时保留原来的词频，静态的基础词典也能得到词频
+ */
+public class WordSegmenterImplTest {
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.setBaseDictionary(new DictionaryTrie());
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void addWithoutFrequencyKeepsFrequency() {
+		segmenter.addBaseWord("分词", null, 7);
+		segmenter.addBaseWord("分词", "v");
+		segmenter.addBaseWords(Collections.singletonMap("分词", "v"));
+		segmenter.addBaseWord("欧阳", null, 5);
+		segmenter.addSurname("欧阳");
+		assertEquals(7, segmenter.getBaseDictionary().getPayload("分词"));
+		assertEquals(5, segmenter.getBaseDictionary().getPayload("欧阳"));
+
+		WordSegScene scene = segmenter.createScene();
+		scene.addWord("中文", null, 3);
+		scene.addWord("中文", "n");
+		scene.addWords(Collections.singletonMap("中文", "n"));
+		assertEquals(Arrays.asList(3, 7), frequencies(scene.segSantance("中文分词")));
+	}
+
+	@Test
+	public void staticBaseDictionaryHasFrequency() {
+		DoubleArrayDictionaryTrie dictionary = new DoubleArrayDictionaryTrie();
+		dictionary.addAll(Arrays.asList("中文", "分词"), new int[] { 3, 7 });
+		segmenter.setBaseDictionary(dictionary);
+		assertEquals(Arrays.asList(3, 7), frequencies(segmenter.createScene().segSantance("中文分词")));
+	}
+
+	private static List<Integer> frequencies(List<Word> words) {
+		Integer[] frequencies = new Integer[words.size()];
+		for (int i = 0; i < frequencies.length; i++) {
+			frequencies[i] = words.get(i).getFrequency();
+		}
+		return Arrays.asList(frequencies);
+	}
+}
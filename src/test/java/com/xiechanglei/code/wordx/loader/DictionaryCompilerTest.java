@@ -0,0 +1,202 @@
+package com.xiechanglei.code.wordx.loader;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xiechanglei.code.wordx.dictionary.impl.DoubleArrayDictionaryTrie;
+import com.xiechanglei.code.wordx.util.DoubleArrayGenericTrie;
+
+/**
+ * 块很小、需要多轮归并时编译出的镜像与在内存中一次构建的结果相同，重复的键保留第一次出现的值，临时文件全部删除
+ */
+public class DictionaryCompilerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void compilesWords() throws IOException {
+		for (int runSize : new int[] { 1000000, 50, 3 }) {
+			Random random = new Random(runSize);
+			TreeSet<String> words = new TreeSet<>();
+			List<String> lines = new ArrayList<>();
+			lines.add("﻿");
+			for (int i = 0; i < 1000; i++) {
+				String word = randomText(random, 1 + random.nextInt(6));
+				words.add(word);
+				//词之后的词性忽略，重复的词只算一次
+				lines.add(random.nextBoolean() ? word : " " + word + "\tn");
+				if (random.nextInt(10) == 0) {
+					lines.add(word);
+					lines.add("");
+				}
+			}
+			Path input = folder.newFile().toPath();
+			Files.write(input, lines, StandardCharsets.UTF_8);
+			Path temp = folder.newFolder().toPath();
+			DictionaryCompiler compiler = new DictionaryCompiler();
+			compiler.setRunSize(runSize);
+			compiler.setTempDirectory(temp);
+			compiler.setReverseIndex(true);
+			Path image = folder.newFile().toPath();
+			LoadReport report = compiler.compileWords(input, image);
+			String name = "run size " + runSize;
+			assertEquals(name, words.size(), report.getEntries());
+			assertEquals(name, lines.size(), report.getLines());
+			//每块放runSize个非空行，块数为3时超过一次归并的文件数
+			long entries = lines.stream().filter(line -> !line.trim().isEmpty() && !line.equals("\uFEFF")).count();
+			assertEquals(name, (entries + runSize - 1) / runSize, report.getChunks());
+			assertTrue(name, runSize > 3 || report.getChunks() > 64);
+			assertEquals(name, 0, Files.list(temp).count());
+
+			DoubleArrayDictionaryTrie compiled = new DoubleArrayDictionaryTrie();
+			compiled.setReverseIndex(true);
+			compiled.load(image);
+			DoubleArrayDictionaryTrie direct = new DoubleArrayDictionaryTrie();
+			direct.setReverseIndex(true);
+			direct.addAll(new ArrayList<>(words));
+			assertEquals(name, direct.getMaxLength(), compiled.getMaxLength());
+			List<String> iterated = new ArrayList<>();
+			compiled.forEach(iterated::add);
+			assertEquals(name, new ArrayList<>(words), iterated);
+			for (int t = 0; t < 20; t++) {
+				String text = randomText(random, 40);
+				for (int i = 0; i < text.length(); i++) {
+					int limit = Math.min(8, text.length() - i);
+					assertEquals(name + " " + text + " @" + i, direct.longestMatch(text, i, limit), compiled.longestMatch(text, i, limit));
+					int end = i + 1;
+					assertEquals(name + " " + text + " @" + end, direct.longestSuffixMatch(text, end, Math.min(8, end)),
+							compiled.longestSuffixMatch(text, end, Math.min(8, end)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void compilesValues() throws IOException {
+		for (int runSize : new int[] { 1000000, 50, 3 }) {
+			Random random = new Random(runSize);
+			Map<String, Integer> expected = new HashMap<>();
+			List<String> lines = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				String key = randomText(random, 1 + random.nextInt(6));
+				int value = random.nextInt(100000);
+				expected.putIfAbsent(key, value);
+				lines.add(key + " " + value);
+				if (random.nextInt(10) == 0) {
+					//没有值或值不是整数的行忽略
+					lines.add(randomText(random, 7));
+					lines.add(randomText(random, 7) + " x");
+				}
+			}
+			Path input = folder.newFile().toPath();
+			Files.write(input, lines, StandardCharsets.UTF_8);
+			DictionaryCompiler compiler = new DictionaryCompiler();
+			compiler.setRunSize(runSize);
+			compiler.setTempDirectory(folder.newFolder().toPath());
+			Path image = folder.newFile().toPath();
+			LoadReport report = compiler.compileValues(input, image);
+			String name = "run size " + runSize;
+			assertEquals(name, expected.size(), report.getEntries());
+			DoubleArrayGenericTrie trie = new DoubleArrayGenericTrie();
+			trie.load(image);
+			for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+				assertEquals(name + " " + entry.getKey(), (int) entry.getValue(), trie.get(entry.getKey()));
+			}
+			assertEquals(name, Integer.MIN_VALUE, trie.get(randomText(random, 7)));
+		}
+	}
+
+	/**
+	 * 每行一块：不同块中重复的键保留第一次出现的值，没有值、值不是整数和空白的行忽略
+	 */
+	@Test
+	public void knownValues() throws IOException {
+		Path input = folder.newFile().toPath();
+		Files.write(input, Arrays.asList("中文 3", "分词\t-5", "词典", "中文 9", "算法 x", " \t", "中文分词 2147483647"), StandardCharsets.UTF_8);
+		Path temp = folder.newFolder().toPath();
+		DictionaryCompiler compiler = new DictionaryCompiler();
+		compiler.setRunSize(1);
+		compiler.setTempDirectory(temp);
+		Path image = folder.newFile().toPath();
+		LoadReport report = compiler.compileValues(input, image);
+		assertEquals(7, report.getLines());
+		assertEquals(3, report.getEntries());
+		assertEquals(4, report.getChunks());
+		assertEquals(0, Files.list(temp).count());
+		DoubleArrayGenericTrie trie = new DoubleArrayGenericTrie();
+		trie.load(image);
+		assertEquals(3, trie.get("中文"));
+		assertEquals(-5, trie.get("分词"));
+		assertEquals(Integer.MAX_VALUE, trie.get("中文分词"));
+		assertEquals(Integer.MIN_VALUE, trie.get("词典"));
+		assertEquals(Integer.MIN_VALUE, trie.get("算法"));
+	}
+
+	@Test
+	public void knownWords() throws IOException {
+		Path input = folder.newFile().toPath();
+		Files.write(input, Arrays.asList("中文分词", "中文 n", "", "分词", "中文"), StandardCharsets.UTF_8);
+		DictionaryCompiler compiler = new DictionaryCompiler();
+		compiler.setRunSize(2);
+		compiler.setTempDirectory(folder.newFolder().toPath());
+		compiler.setReverseIndex(true);
+		Path image = folder.newFile().toPath();
+		LoadReport report = compiler.compileWords(input, image);
+		assertEquals(3, report.getEntries());
+		assertEquals(2, report.getChunks());
+		DoubleArrayDictionaryTrie trie = new DoubleArrayDictionaryTrie();
+		trie.setReverseIndex(true);
+		trie.load(image);
+		assertEquals(4, trie.getMaxLength());
+		assertTrue(trie.contains("中文"));
+		assertFalse(trie.contains("n"));
+		assertEquals(4, trie.longestMatch("中文分词典", 0, 5));
+		assertEquals(2, trie.longestSuffixMatch("的分词", 3, 3));
+	}
+
+	@Test
+	public void errorPaths() throws IOException {
+		DictionaryCompiler compiler = new DictionaryCompiler();
+		try {
+			compiler.setRunSize(0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			compiler.setCharset(null);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		//输入文件不存在时临时目录也删除
+		Path temp = folder.newFolder().toPath();
+		compiler.setTempDirectory(temp);
+		try {
+			compiler.compileWords(temp.resolve("missing.txt"), folder.newFile().toPath());
+			fail("expected IOException");
+		} catch (IOException e) {
+			//expected
+		}
+		assertEquals(0, Files.list(temp).count());
+	}
+}
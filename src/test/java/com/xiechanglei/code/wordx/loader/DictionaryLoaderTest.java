@@ -0,0 +1,104 @@
+package com.xiechanglei.code.wordx.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.dictionary.Dictionary;
+import com.xiechanglei.code.wordx.dictionary.impl.DawgDictionary;
+import com.xiechanglei.code.wordx.dictionary.impl.DictionaryTrie;
+import com.xiechanglei.code.wordx.dictionary.impl.DoubleArrayDictionaryTrie;
+import com.xiechanglei.code.wordx.dictionary.impl.MutableDoubleArrayDictionaryTrie;
+import com.xiechanglei.code.wordx.impl.WordSegmenterHolder;
+
+/**
+ * 加载比一批更长的基础词典，只能构建一次的词典和可以逐个加词的词典都能加载所有的词
+ * 并行加载时块数多于同时保留的块数，所有的块都按顺序写入
+ */
+public class DictionaryLoaderTest {
+	private static final int WORDS = 20000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.setBaseDictionary(new DictionaryTrie());
+		segmenter.clearBaseWord();
+	}
+
+	@Test
+	public void loadsBuildOnceDictionaryInOneCall() throws IOException {
+		assertLoaded(new DoubleArrayDictionaryTrie(), 1);
+		assertLoaded(new DawgDictionary(), 1);
+	}
+
+	@Test
+	public void loadsIncrementalDictionaryInBatches() throws IOException {
+		assertLoaded(new DictionaryTrie(), 1);
+		assertLoaded(new MutableDoubleArrayDictionaryTrie(), 1);
+	}
+
+	@Test
+	public void loadsInParallel() throws IOException {
+		assertLoaded(new DoubleArrayDictionaryTrie(), 4);
+		assertLoaded(new DictionaryTrie(), 4);
+	}
+
+	/**
+	 * 同一个词出现在第一块和最后一块，按文件顺序写入时最后的词性生效
+	 */
+	@Test
+	public void parallelWritesInFileOrder() throws IOException {
+		Path path = folder.newFile().toPath();
+		List<String> lines = new ArrayList<>();
+		lines.add("重复的词 a");
+		for (int i = 0; i < WORDS; i++) {
+			lines.add("加载的词" + i + " n " + String.format("%060d", i));
+		}
+		lines.add("重复的词 v");
+		Files.write(path, lines, StandardCharsets.UTF_8);
+		DictionaryLoader loader = new DictionaryLoader();
+		loader.setParallelism(2);
+		loader.setBatchSize(100);
+		LoadReport report = loader.loadBaseWords(segmenter, path.toString());
+		assertEquals(8, report.getChunks());
+		assertEquals("v", segmenter.createScene().segSantance("重复的词").get(0).getPos());
+	}
+
+	private void assertLoaded(Dictionary dictionary, int parallelism) throws IOException {
+		Path path = folder.newFile().toPath();
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < WORDS; i++) {
+			//并行解析需要至少1MB的文件
+			lines.add("加载的词" + i + " n " + (parallelism > 1 ? String.format("%060d", i) : ""));
+		}
+		Files.write(path, lines, StandardCharsets.UTF_8);
+		segmenter.setBaseDictionary(dictionary);
+		DictionaryLoader loader = new DictionaryLoader();
+		loader.setParallelism(parallelism);
+		LoadReport report = loader.loadBaseWords(segmenter, path.toString());
+		assertEquals(WORDS, report.getEntries());
+		assertEquals(WORDS, report.getLines());
+		//并行时块数是线程数的四倍，多于同时保留的块数
+		assertEquals(parallelism > 1 ? parallelism * 4 : 1, report.getChunks());
+		assertTrue(report.getHeapGrowth() >= -1);
+		for (int i = 0; i < WORDS; i++) {
+			assertTrue(dictionary.getClass().getSimpleName() + " lost 加载的词" + i, dictionary.contains("加载的词" + i));
+		}
+	}
+}
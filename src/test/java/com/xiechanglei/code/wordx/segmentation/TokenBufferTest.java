@@ -0,0 +1,159 @@
+package com.xiechanglei.code.wordx.segmentation;
+
+import static com.xiechanglei.code.wordx.TestTexts.details;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.SegmentationAlgorithm;
+import com.xiechanglei.code.wordx.TestTexts;
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.impl.WordSegmenterHolder;
+
+/**
+ * 分词写入缓冲区的结果与返回词列表的结果相同：文字、位置、词性和词频，包括人名识别和细分规则改写的词
+ * 同一个缓冲区反复使用，从很小的容量开始扩大
+ */
+public class TokenBufferTest {
+	private static final String[] WORDS = { "中文", "分词", "中文分词", "词典", "算法", "正向", "最大", "匹配", "最大匹配", "小明" };
+	private static final String[] CHARS = { "中", "文", "分", "词", "典", "算", "法", "欧", "阳", "a", "1", "二", "个", " ", "，", "。", "！" };
+
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void sameAsWordList() {
+		for (int i = 0; i < WORDS.length; i++) {
+			segmenter.addBaseWord(WORDS[i], i % 2 == 0 ? "n" : "v", i);
+		}
+		segmenter.addSurname("欧阳");
+		segmenter.addQuantifier("个");
+		for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+			for (boolean refines : new boolean[] { false, true }) {
+				WordSegScene scene = segmenter.createScene();
+				scene.setSegmentation(algorithm);
+				scene.addWord("分词算法", "n", 9);
+				if (refines) {
+					//拆成原文的片段、合成原文的片段、改写成原文中没有的词
+					scene.addRefine("中文分词=中文 分词");
+					scene.addRefine("词典 算法=词典算法");
+					scene.addRefine("正向=正 向向");
+				}
+				TokenBuffer buffer = new TokenBuffer(1);
+				Random random = new Random(0);
+				for (int t = 0; t < 300; t++) {
+					String text = TestTexts.randomText(random, random.nextInt(60), WORDS, CHARS);
+					String name = algorithm + " refines " + refines + " " + text;
+					List<String> expected = details(scene.segSantance(text));
+					scene.segSantance(text, buffer);
+					assertSame(name, text, buffer.getText());
+					List<String> buffered = new ArrayList<>(buffer.size());
+					for (int i = 0; i < buffer.size(); i++) {
+						buffered.add(buffer.getWord(i) + "@" + buffer.getStart(i) + "-" + buffer.getEnd(i) + "/" + buffer.getPos(i) + "/" + buffer.getFrequency(i));
+						assertEquals(name, buffer.getWord(i), buffer.view(i).toString());
+						assertEquals(name, buffer.getLength(i), buffer.getWord(i).length());
+					}
+					assertEquals(name, expected, buffered);
+					assertEquals(name, expected, details(buffer.toWords()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void editing() {
+		String text = "中文分词算法";
+		TokenBuffer buffer = new TokenBuffer(1);
+		buffer.reset(text);
+		//逆向匹配从后往前添加，再倒过来
+		buffer.add(4, 2, 1, TokenBuffer.BASE);
+		buffer.add(2, 2, 2, TokenBuffer.SCENE);
+		buffer.add(0, 2, 3, TokenBuffer.BASE);
+		buffer.reverse(0, buffer.size());
+		assertEquals(Arrays.asList("中文@0-2/null/3", "分词@2-4/null/2", "算法@4-6/null/1"), details(buffer.toWords()));
+
+		//位置和长度相同的词保留原来的来源
+		Word rewritten = new Word("分析");
+		buffer.replace(1, Arrays.asList(new Word(text, 2, 2), rewritten), TokenBuffer.REFINED);
+		assertEquals(3, buffer.size());
+		assertEquals(TokenBuffer.SCENE, buffer.getFlags(1));
+		assertEquals(TokenBuffer.REFINED, buffer.getFlags(2));
+		assertEquals(-1, buffer.getStart(2));
+		assertEquals("分析", buffer.getWord(2));
+
+		//合并不相邻的词，字符与原文不同但仍有位置
+		buffer.replace(1, Arrays.asList(Word.join(Arrays.asList(new Word(text, 0, 1), new Word(text, 4, 2)))), TokenBuffer.REFINED);
+		assertFalse(buffer.isSlice(1));
+		assertEquals("中算法", buffer.getWord(1));
+		assertEquals("中算法", buffer.view(1).toString());
+		assertEquals(0, buffer.getStart(1));
+		assertEquals(6, buffer.getEnd(1));
+		assertEquals("中算法@0-6/null/0", details(buffer.toWords()).get(1));
+
+		buffer.truncate(1);
+		assertEquals(1, buffer.size());
+		buffer.reset("算法");
+		assertEquals(0, buffer.size());
+		buffer.add(0, 2, 0, TokenBuffer.BASE);
+		assertEquals("算法", buffer.getWord(0));
+	}
+
+	/**
+	 * 词性、词频按词所在的层取，标点符号不进缓冲区，同一个缓冲区换一段文本时先清空
+	 */
+	@Test
+	public void knownSentence() {
+		segmenter.addBaseWord("中文", "n", 3);
+		segmenter.addBaseWord("分词", "v", 5);
+		WordSegScene scene = segmenter.createScene();
+		scene.addWord("分词", "vn", 8);
+		TokenBuffer buffer = new TokenBuffer(1);
+		scene.segSantance("中文，分词", buffer);
+		assertEquals(2, buffer.size());
+		assertEquals(Arrays.asList("中文@0-2/n/3", "分词@3-5/vn/8"), details(buffer.toWords()));
+		assertEquals("[中文/n, 分词/vn]", buffer.toString());
+		assertEquals(TokenBuffer.BASE, buffer.getFlags(0) & TokenBuffer.BASE);
+		assertEquals(TokenBuffer.SCENE, buffer.getFlags(1) & TokenBuffer.SCENE);
+		scene.segSantance("", buffer);
+		assertTrue(buffer.isEmpty());
+		assertEquals("[]", buffer.toString());
+	}
+
+	@Test
+	public void errorPaths() {
+		try {
+			new TokenBuffer(0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		TokenBuffer buffer = new TokenBuffer(1);
+		buffer.reset("中文分词");
+		buffer.add(0, 2, 0, TokenBuffer.BASE);
+		for (Runnable access : new Runnable[] { () -> buffer.getFrequency(1), () -> buffer.getTag(-1), () -> buffer.truncate(2), () -> buffer.view(0).charAt(2),
+				() -> buffer.view(0).subSequence(1, 3) }) {
+			try {
+				access.run();
+				fail("expected IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				//expected
+			}
+		}
+		assertEquals("文", buffer.view(0).subSequence(1, 2));
+	}
+}
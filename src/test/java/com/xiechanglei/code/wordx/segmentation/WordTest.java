@@ -0,0 +1,164 @@
+package com.xiechanglei.code.wordx.segmentation;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.SegmentationAlgorithm;
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.impl.WordSegmenterHolder;
+
+/**
+ * 原文片段的文字、哈希值、相等和比较与同样文字的字符串一致，分词得到的词都是原文的片段，位置与原文对应
+ */
+public class WordTest {
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void sliceMatchesString() {
+		Random random = new Random(0);
+		String source = randomText(random, 200);
+		for (int t = 0; t < 1000; t++) {
+			int start = random.nextInt(source.length());
+			int length = random.nextInt(Math.min(8, source.length() - start) + 1);
+			String text = source.substring(start, start + length);
+			Word slice = new Word(source, start, length);
+			Word word = new Word(text);
+			assertSame(source, slice.getSource());
+			assertEquals(text, slice.getText());
+			assertEquals(length, slice.length());
+			assertEquals(start, slice.getStart());
+			assertEquals(start + length, slice.getEnd());
+			assertEquals(text.hashCode(), slice.hashCode());
+			assertEquals(word, slice);
+			assertEquals(slice, word);
+			assertEquals(0, slice.compareTo(word));
+			for (int i = 0; i < length; i++) {
+				assertEquals(text.charAt(i), slice.charAt(i));
+			}
+			int otherStart = random.nextInt(source.length());
+			int otherLength = random.nextInt(Math.min(8, source.length() - otherStart) + 1);
+			String otherText = source.substring(otherStart, otherStart + otherLength);
+			Word other = new Word(source, otherStart, otherLength);
+			assertEquals(text + " " + otherText, Integer.signum(text.compareTo(otherText)), Integer.signum(slice.compareTo(other)));
+			assertEquals(text + " " + otherText, text.equals(otherText), slice.equals(other));
+		}
+	}
+
+	/**
+	 * 空的片段、原文末尾的片段，按char比较时前缀在前、编码大的在后
+	 */
+	@Test
+	public void knownSlices() {
+		String source = "中文分词￿";
+		Word empty = new Word(source, 5, 0);
+		assertEquals("", empty.getText());
+		assertEquals("".hashCode(), empty.hashCode());
+		assertEquals(new Word(""), empty);
+		Word last = new Word(source, 4, 1);
+		assertEquals("￿", last.getText());
+		assertEquals(5, last.getEnd());
+
+		Word chinese = new Word(source, 0, 2);
+		Word longer = new Word(source, 0, 4);
+		assertTrue(chinese.compareTo(longer) < 0);
+		assertTrue(longer.compareTo(chinese) > 0);
+		assertTrue(last.compareTo(longer) > 0);
+		assertTrue(empty.compareTo(chinese) < 0);
+		//不同原文中文字相同的片段相等
+		assertEquals(new Word("的中文", 1, 2), chinese);
+		assertEquals(0, new Word("的中文", 1, 2).compareTo(chinese));
+		assertFalse(chinese.equals(new Word(source, 1, 2)));
+
+		for (int[] bounds : new int[][] { { -1, 1 }, { 0, -1 }, { 5, 1 }, { 6, 0 } }) {
+			try {
+				new Word(source, bounds[0], bounds[1]);
+				fail("expected IndexOutOfBoundsException " + bounds[0] + " " + bounds[1]);
+			} catch (IndexOutOfBoundsException e) {
+				//expected
+			}
+		}
+	}
+
+	@Test
+	public void subSequenceAndJoin() {
+		String source = "我叫欧阳小明。";
+		Word slice = new Word(source, 2, 4);
+		Word name = slice.subSequence(2, 4);
+		assertSame(source, name.getSource());
+		assertEquals("小明", name.getText());
+		assertEquals(4, name.getStart());
+		assertEquals(6, name.getEnd());
+
+		//紧挨着的词合成后仍是原文的片段
+		Word joined = Word.join(Arrays.asList(new Word(source, 2, 2), new Word(source, 4, 2)));
+		assertSame(source, joined.getSource());
+		assertEquals("欧阳小明", joined.getText());
+		assertEquals(2, joined.getStart());
+		assertEquals(6, joined.getEnd());
+
+		//不挨着的词合成新的字符串，位置从第一个词的开始到最后一个词的结束
+		joined = Word.join(Arrays.asList(new Word(source, 0, 1), new Word(source, 4, 2)));
+		assertEquals("我小明", joined.getText());
+		assertNotSame(source, joined.getSource());
+		assertEquals(0, joined.getStart());
+		assertEquals(6, joined.getEnd());
+
+		//改写文字后位置不变，不再对应原文的子序列没有位置
+		Word rewritten = new Word(source, 2, 4);
+		rewritten.setText("欧阳");
+		assertEquals("欧阳".hashCode(), rewritten.hashCode());
+		assertEquals(2, rewritten.getStart());
+		assertEquals(-1, rewritten.subSequence(0, 1).getStart());
+
+		try {
+			new Word(source, 5, 3);
+			fail("expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			//expected
+		}
+		try {
+			slice.charAt(4);
+			fail("expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void segmentedWordsAreSlices() {
+		for (String word : new String[] { "中文", "分词", "中文分词", "词典", "算法" }) {
+			segmenter.addBaseWord(word, null);
+		}
+		segmenter.addSurname("欧阳");
+		String text = "欧阳小明在中文分词，词典算法abc 123。中文分词！欧阳说";
+		for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+			WordSegScene scene = segmenter.createScene();
+			scene.setSegmentation(algorithm);
+			List<Word> words = scene.segSantance(text);
+			assertEquals(algorithm.name(), "欧阳小明", words.get(0).getText());
+			for (Word word : words) {
+				assertSame(algorithm + " " + word, text, word.getSource());
+				assertEquals(algorithm + " " + word, word.getSourceStart(), word.getStart());
+				assertEquals(algorithm + " " + word, text.substring(word.getStart(), word.getEnd()), word.getText());
+			}
+		}
+	}
+}
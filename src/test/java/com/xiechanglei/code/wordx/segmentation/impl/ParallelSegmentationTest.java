@@ -0,0 +1,106 @@
+package com.xiechanglei.code.wordx.segmentation.impl;
+
+import static com.xiechanglei.code.wordx.TestTexts.positions;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.SegmentationAlgorithm;
+import com.xiechanglei.code.wordx.TestTexts;
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.impl.WordSegmenterHolder;
+
+/**
+ * 多个句子在线程池中并行分词的结果与单线程顺序分词的结果相同，词的顺序和位置都不变
+ */
+public class ParallelSegmentationTest {
+	private static final String[] WORDS = { "中文", "分词", "中文分词", "词典", "算法", "正向", "最大", "匹配", "最大匹配", "王", "小明" };
+	private static final String[] CHARS = { "中", "文", "分", "词", "典", "算", "法", "a", "1", " ", "，", "。", "！", "\n" };
+
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@After
+	public void restore() {
+		for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+			AbstractSegmentation segmentation = (AbstractSegmentation) algorithm.algorithm;
+			segmentation.setPool(null);
+			segmentation.setParallelThreshold(4096);
+		}
+		pool.shutdown();
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void sameAsSequential() {
+		for (String word : WORDS) {
+			segmenter.addBaseWord(word, null);
+		}
+		segmenter.addSurname("王");
+		ForkJoinPool single = new ForkJoinPool(1);
+		try {
+			for (SegmentationAlgorithm algorithm : SegmentationAlgorithm.values()) {
+				WordSegScene scene = segmenter.createScene();
+				scene.setSegmentation(algorithm);
+				scene.addWord("分词算法", null);
+				AbstractSegmentation segmentation = (AbstractSegmentation) algorithm.algorithm;
+				//阈值很小，几个句子就分成多段
+				segmentation.setParallelThreshold(8);
+				for (int seed = 0; seed < 30; seed++) {
+					String text = TestTexts.randomText(new Random(seed), 50 + seed * 50, WORDS, CHARS);
+					String name = algorithm + " seed " + seed;
+					segmentation.setPool(single);
+					List<String> expected = positions(scene.segSantance(text));
+					segmentation.setPool(pool);
+					assertEquals(name, expected, positions(scene.segSantance(text)));
+				}
+			}
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	/**
+	 * 长短不一的句子每句一段，结果按句子原来的顺序拼接；在同一个线程池中的任务里调用时直接执行，不等待自己所在的线程池
+	 */
+	@Test
+	public void knownSentences() throws InterruptedException, ExecutionException {
+		for (String word : WORDS) {
+			segmenter.addBaseWord(word, null);
+		}
+		String text = "中文分词，算法。最大匹配的正向最大匹配算法！词典\n分词";
+		List<String> expected = Arrays.asList("中文分词@0", "算法@5", "最大匹配@8", "的@12", "正向@13", "最大匹配@15", "算法@19", "词典@22", "分词@25");
+		WordSegScene scene = segmenter.createScene();
+		AbstractSegmentation segmentation = (AbstractSegmentation) SegmentationAlgorithm.MaximumMatching.algorithm;
+		segmentation.setParallelThreshold(1);
+		segmentation.setPool(pool);
+		assertEquals(expected, positions(scene.segSantance(text)));
+		assertEquals(expected, pool.submit(() -> positions(scene.segSantance(text))).get());
+		//只有一个句子时不分段
+		assertEquals(Arrays.asList("中文分词@0", "算法@4"), positions(scene.segSantance("中文分词算法")));
+	}
+
+	@Test
+	public void rejectsBadThreshold() {
+		AbstractSegmentation segmentation = (AbstractSegmentation) SegmentationAlgorithm.MaximumMatching.algorithm;
+		try {
+			segmentation.setParallelThreshold(0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		assertEquals(4096, segmentation.getParallelThreshold());
+		//没有指定线程池时使用共用的线程池
+		assertNotNull(segmentation.getPool());
+	}
+}
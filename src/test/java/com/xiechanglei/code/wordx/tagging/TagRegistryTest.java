@@ -0,0 +1,144 @@
+package com.xiechanglei.code.wordx.tagging;
+
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xiechanglei.code.wordx.WordSegScene;
+import com.xiechanglei.code.wordx.WordSegmenter;
+import com.xiechanglei.code.wordx.impl.WordSegmenterHolder;
+import com.xiechanglei.code.wordx.segmentation.Word;
+import com.xiechanglei.code.wordx.util.IntGenericTrie;
+
+/**
+ * 词性编号与词性字符串一一对应，编号前缀树与HashMap一致，分词结果中的词性与加入词时的词性相同
+ */
+public class TagRegistryTest {
+	private final WordSegmenter segmenter = WordSegmenterHolder.getWordSegmenter();
+
+	@After
+	public void restore() {
+		segmenter.clearAll();
+	}
+
+	@Test
+	public void codesAreStable() {
+		int code = TagRegistry.code("nrf");
+		assertTrue(code > TagRegistry.NONE);
+		assertEquals(code, TagRegistry.code("nrf"));
+		assertEquals(code, TagRegistry.find("nrf"));
+		assertEquals("nrf", TagRegistry.name(code));
+		assertEquals(TagRegistry.code("n"), TagRegistry.initial(code));
+		assertEquals(TagRegistry.code("n"), TagRegistry.initial(TagRegistry.code("n")));
+		assertEquals(TagRegistry.NONE, TagRegistry.code(""));
+		assertEquals(TagRegistry.NONE, TagRegistry.find("never registered"));
+		assertNull(TagRegistry.name(TagRegistry.NONE));
+
+		Word word = new Word("分词");
+		word.setPos("v");
+		assertEquals(TagRegistry.code("v"), word.getPosCode());
+		word.setPosCode(code);
+		assertEquals("nrf", word.getPos());
+	}
+
+	/**
+	 * 超过初始容量后编号表扩大，之前分配的编号和词性不变；越界的编号没有词性
+	 */
+	@Test
+	public void growsPastInitialCapacity() {
+		int first = TagRegistry.code("tag registry test 0");
+		for (int i = 1; i < 200; i++) {
+			assertEquals("tag registry test " + i, first + i, TagRegistry.code("tag registry test " + i));
+		}
+		for (int i = 0; i < 200; i++) {
+			assertEquals("tag registry test " + i, TagRegistry.name(first + i));
+			assertEquals(TagRegistry.code("t"), TagRegistry.initial(first + i));
+		}
+		assertTrue(TagRegistry.size() >= 200);
+		assertNull(TagRegistry.name(-1));
+		assertNull(TagRegistry.name(Integer.MAX_VALUE));
+		assertEquals(TagRegistry.NONE, TagRegistry.initial(TagRegistry.NONE));
+		assertEquals(TagRegistry.NONE, TagRegistry.initial(Integer.MAX_VALUE));
+		assertEquals(TagRegistry.NONE, TagRegistry.code(null));
+		assertEquals(TagRegistry.NONE, TagRegistry.find(null));
+	}
+
+	/**
+	 * 前缀、删除、文本中的一段、首尾空白和副本
+	 */
+	@Test
+	public void intTrieKnownWords() {
+		IntGenericTrie trie = new IntGenericTrie();
+		trie.put("中文", 1);
+		trie.put(" 中文分词 ", 2);
+		assertEquals(1, trie.get("中文"));
+		assertEquals(2, trie.get("中文分词"));
+		assertEquals(TagRegistry.NONE, trie.get("中文分"));
+		assertEquals(TagRegistry.NONE, trie.get("中"));
+		assertEquals(2, trie.get("的中文分词", 1, 4));
+		assertEquals(TagRegistry.NONE, trie.get("中文", 1, 2));
+		assertEquals(TagRegistry.NONE, trie.get("中文", -1, 2));
+
+		IntGenericTrie copy = trie.copy();
+		trie.remove("中文");
+		assertEquals(TagRegistry.NONE, trie.get("中文"));
+		assertEquals(2, trie.get("中文分词"));
+		assertEquals(1, copy.get("中文"));
+		copy.put("中文", 3);
+		assertEquals(3, copy.get("中文"));
+		assertEquals(TagRegistry.NONE, trie.get("中文"));
+	}
+
+	@Test
+	public void intTrieMatchesHashMap() {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			IntGenericTrie trie = new IntGenericTrie();
+			Map<String, Integer> expected = new HashMap<>();
+			for (int op = 0; op < 3000; op++) {
+				String word = randomText(random, 1 + random.nextInt(4));
+				int action = random.nextInt(10);
+				if (action < 6) {
+					int value = 1 + random.nextInt(50);
+					trie.put(word, value);
+					expected.put(word, value);
+				} else if (action < 9) {
+					trie.remove(word);
+					expected.remove(word);
+				} else {
+					trie = trie.copy();
+				}
+			}
+			for (int i = 0; i < 1000; i++) {
+				String word = randomText(random, 1 + random.nextInt(4));
+				String text = "前" + word + "后";
+				int value = expected.containsKey(word) ? expected.get(word) : TagRegistry.NONE;
+				assertEquals("seed " + seed + " " + word, value, trie.get(word));
+				assertEquals("seed " + seed + " " + word, value, trie.get(text, 1, word.length()));
+			}
+		}
+	}
+
+	@Test
+	public void segmentedWordsCarryTags() {
+		segmenter.addBaseWord("中文", "nz");
+		segmenter.addBaseWord("分词", "v");
+		WordSegScene scene = segmenter.createScene();
+		scene.addWord("分词", "vn");
+		List<Word> words = scene.segSantance("中文分词");
+		assertEquals(2, words.size());
+		assertEquals("nz", words.get(0).getPos());
+		assertEquals(TagRegistry.code("nz"), words.get(0).getPosCode());
+		//场景中的词性优先
+		assertEquals("vn", words.get(1).getPos());
+	}
+}
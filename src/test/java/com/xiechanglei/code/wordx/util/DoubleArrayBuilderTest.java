@@ -0,0 +1,282 @@
+package com.xiechanglei.code.wordx.util;
+
+import static com.xiechanglei.code.wordx.TestTexts.CHARS;
+import static com.xiechanglei.code.wordx.TestTexts.randomText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * 与原来先序递归、空间不够时整体重试的构建方式比较
+ * 两种方式放置节点的顺序不同，下标不会逐个相同，但数组布局相同：同一段查找代码在两组base、check上得到相同的结果，遍历出相同的键
+ */
+public class DoubleArrayBuilderTest {
+	@Test
+	public void sameLayoutAsOldBuilder() {
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			TreeSet<String> keys = new TreeSet<>();
+			for (int i = 0; i < 500; i++) {
+				keys.add(randomText(random, 1 + random.nextInt(6)));
+			}
+			List<String> sorted = new ArrayList<>(keys);
+			//初始容量很小，构建过程中原地扩容
+			DoubleArrayBuilder builder = new DoubleArrayBuilder(sorted, null, 0).build();
+			OldBuilder old = new OldBuilder(sorted);
+			String name = "seed " + seed;
+			assertEquals(name, keys.size(), builder.getKeyCount());
+			assertEquals(name, keys, collect(builder.getBase(), builder.getCheck()));
+			assertEquals(name, keys, collect(old.base, old.check));
+			for (int t = 0; t < 2000; t++) {
+				String text = randomText(random, 1 + random.nextInt(6));
+				boolean expected = keys.contains(text);
+				assertEquals(name + " " + text, expected, contains(old.base, old.check, text));
+				assertEquals(name + " " + text, expected, contains(builder.getBase(), builder.getCheck(), text));
+			}
+		}
+	}
+
+	/**
+	 * 保存值时值写入词尾节点的check
+	 */
+	@Test
+	public void storesValues() {
+		Random random = new Random(7);
+		Map<String, Integer> map = new TreeMap<>();
+		for (int i = 0; i < 1000; i++) {
+			map.put(randomText(random, 1 + random.nextInt(6)), random.nextInt(100000));
+		}
+		DoubleArrayGenericTrie trie = new DoubleArrayGenericTrie(0);
+		trie.putAll(new HashMap<>(map));
+		for (Map.Entry<String, Integer> entry : map.entrySet()) {
+			assertEquals(entry.getKey(), (int) entry.getValue(), trie.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void incrementalAdd() {
+		DoubleArrayBuilder builder = new DoubleArrayBuilder(0, false);
+		assertTrue(builder.add("ab"));
+		assertFalse(builder.add("ab"));
+		assertTrue(builder.add("ab丁一"));
+		try {
+			builder.add("a");
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		builder.build();
+		assertEquals(2, builder.getKeyCount());
+		assertEquals(new TreeSet<>(Arrays.asList("ab", "ab丁一")), collect(builder.getBase(), builder.getCheck()));
+	}
+
+	/**
+	 * 空键和重复的键忽略，前缀不是键，字符编码两端的键都能放下；保存的值可以是负数和int的两端
+	 */
+	@Test
+	public void knownKeys() {
+		List<String> keys = Arrays.asList("", "a￿", "一z", "丁一", "丁一", "丁一z￿", "￿");
+		DoubleArrayBuilder builder = new DoubleArrayBuilder(keys, null).build();
+		assertEquals(5, builder.getKeyCount());
+		assertEquals(new TreeSet<>(Arrays.asList("a￿", "一z", "丁一", "丁一z￿", "￿")), collect(builder.getBase(), builder.getCheck()));
+		assertFalse(contains(builder.getBase(), builder.getCheck(), "丁一z"));
+		assertFalse(contains(builder.getBase(), builder.getCheck(), "a"));
+		//一个根节点，每个键与前一个键不同的字和词尾节点
+		assertEquals(2 * 15 + 65536, DoubleArrayBuilder.estimate(keys));
+
+		Map<String, Integer> map = new HashMap<>();
+		map.put("丁一", 3);
+		map.put("丁一z￿", -7);
+		map.put("￿", Integer.MAX_VALUE);
+		DoubleArrayGenericTrie trie = new DoubleArrayGenericTrie(0);
+		trie.putAll(map);
+		assertEquals(3, trie.get("丁一"));
+		assertEquals(-7, trie.get("b丁一z￿", 1, 4));
+		assertEquals(Integer.MAX_VALUE, trie.get("￿"));
+		assertEquals(Integer.MIN_VALUE, trie.get("丁一z"));
+		assertEquals(Integer.MIN_VALUE, trie.get("一z"));
+	}
+
+	@Test
+	public void rejectsBadInput() {
+		try {
+			new DoubleArrayBuilder(Arrays.asList("中文", "分词"), new int[1]);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		DoubleArrayBuilder builder = new DoubleArrayBuilder(0, true);
+		try {
+			builder.add("");
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		builder.add("中文", 1);
+		builder.build();
+		try {
+			builder.add("分词", 2);
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		DoubleArrayGenericTrie trie = new DoubleArrayGenericTrie(0);
+		assertEquals(Integer.MIN_VALUE, trie.get("中文"));
+		trie.putAll(new HashMap<>(Collections.singletonMap("中文", 1)));
+		try {
+			trie.putAll(new HashMap<>(Collections.singletonMap("分词", 2)));
+			fail("expected RuntimeException");
+		} catch (RuntimeException e) {
+			//expected
+		}
+	}
+
+	/**
+	 * DoubleArrayDictionaryTrie中的查找方式
+	 */
+	private static boolean contains(int[] base, int[] check, String item) {
+		int lastChar = base[0];
+		for (int i = 0; i < item.length(); i++) {
+			int index = lastChar + item.charAt(i);
+			if (index >= check.length || index < 0 || lastChar != check[index]) {
+				return false;
+			}
+			lastChar = base[index];
+		}
+		return lastChar >= 0 && lastChar < check.length && base[lastChar] < 0 && check[lastChar] == lastChar;
+	}
+
+	/**
+	 * 试遍所有的字符遍历双数组中的键
+	 */
+	private static TreeSet<String> collect(int[] base, int[] check) {
+		TreeSet<String> keys = new TreeSet<>();
+		collect(base, check, base[0], new StringBuilder(), keys);
+		return keys;
+	}
+
+	private static void collect(int[] base, int[] check, int begin, StringBuilder prefix, TreeSet<String> keys) {
+		if (begin < check.length && base[begin] < 0 && check[begin] == begin) {
+			keys.add(prefix.toString());
+		}
+		for (int i = 0; i < CHARS.length(); i++) {
+			char c = CHARS.charAt(i);
+			int index = begin + c;
+			if (index < check.length && check[index] == begin && base[index] >= 0) {
+				prefix.append(c);
+				collect(base, check, base[index], prefix, keys);
+				prefix.setLength(prefix.length() - 1);
+			}
+		}
+	}
+
+	/**
+	 * 原来DoubleArrayDictionaryTrie中的构建方式：先序递归放置兄弟节点，空间不够时加大一成后整体重试
+	 */
+	private static final class OldBuilder {
+		private int[] base;
+		private int[] check;
+		private boolean[] used;
+		private int nextCheckPos;
+
+		private static final class Node {
+			private int code;
+			private int depth;
+			private int left;
+			private int right;
+		}
+
+		OldBuilder(List<String> words) {
+			Node root = new Node();
+			root.right = words.size();
+			int size = 65536 + 2 * words.size();
+			while (true) {
+				try {
+					base = new int[size];
+					check = new int[size];
+					used = new boolean[size];
+					nextCheckPos = 0;
+					base[0] = 1;
+					toDoubleArray(toTree(root, words), words);
+					break;
+				} catch (ArrayIndexOutOfBoundsException e) {
+					size += size / 10;
+				}
+			}
+		}
+
+		private List<Node> toTree(Node parent, List<String> words) {
+			List<Node> siblings = new ArrayList<>();
+			int prev = 0;
+			for (int i = parent.left; i < parent.right; i++) {
+				String word = words.get(i);
+				if (word.length() < parent.depth) {
+					continue;
+				}
+				int cur = word.length() != parent.depth ? word.charAt(parent.depth) : 0;
+				if (cur != prev || siblings.isEmpty()) {
+					Node node = new Node();
+					node.depth = parent.depth + 1;
+					node.code = cur;
+					node.left = i;
+					if (!siblings.isEmpty()) {
+						siblings.get(siblings.size() - 1).right = i;
+					}
+					siblings.add(node);
+				}
+				prev = cur;
+			}
+			if (!siblings.isEmpty()) {
+				siblings.get(siblings.size() - 1).right = parent.right;
+			}
+			return siblings;
+		}
+
+		private int toDoubleArray(List<Node> siblings, List<String> words) {
+			int begin;
+			int index = Math.max(siblings.get(0).code, nextCheckPos);
+			boolean isFirst = true;
+			outer: while (true) {
+				index++;
+				if (check[index] != 0) {
+					continue;
+				} else if (isFirst) {
+					nextCheckPos = index;
+					isFirst = false;
+				}
+				begin = index - siblings.get(0).code;
+				if (used[begin]) {
+					continue;
+				}
+				for (int i = 1; i < siblings.size(); i++) {
+					if (check[begin + siblings.get(i).code] != 0) {
+						continue outer;
+					}
+				}
+				break;
+			}
+			used[begin] = true;
+			for (Node sibling : siblings) {
+				check[begin + sibling.code] = begin;
+			}
+			for (Node sibling : siblings) {
+				List<Node> children = toTree(sibling, words);
+				base[begin + sibling.code] = children.isEmpty() ? -1 : toDoubleArray(children, words);
+			}
+			return begin;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.xiechanglei.code.wordx.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * 写入镜像再映射回来，比较各段的内容；损坏或过大的文件只抛出IOException
+ */
+public class DoubleArrayImageTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTrip() throws IOException {
+		Random random = new Random(1);
+		//跨过写缓冲区的大小
+		int[][] sections = { new int[0], new int[7], new int[200000] };
+		for (int[] section : sections) {
+			for (int i = 0; i < section.length; i++) {
+				section[i] = random.nextInt();
+			}
+		}
+		Path path = folder.newFile().toPath();
+		DoubleArrayImage.write(path, DoubleArrayImage.DICTIONARY, 9, IntBuffer.wrap(sections[0]), IntBuffer.wrap(sections[1]), IntBuffer.wrap(sections[2]));
+		DoubleArrayImage image = DoubleArrayImage.map(path, DoubleArrayImage.DICTIONARY);
+		assertEquals(DoubleArrayImage.DICTIONARY, image.getKind());
+		assertEquals(9, image.getMaxLength());
+		assertEquals(sections.length, image.getSectionCount());
+		for (int s = 0; s < sections.length; s++) {
+			IntBuffer section = image.getSection(s);
+			assertEquals(sections[s].length, section.limit());
+			for (int i = 0; i < sections[s].length; i++) {
+				assertEquals(sections[s][i], section.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void rejectsOtherKind() throws IOException {
+		Path path = folder.newFile().toPath();
+		DoubleArrayImage.write(path, DoubleArrayImage.GENERIC_TRIE, 0, IntBuffer.wrap(new int[] { 1, 2 }));
+		assertRejected(path, DoubleArrayImage.DICTIONARY);
+	}
+
+	@Test
+	public void rejectsTruncatedFile() throws IOException {
+		Path path = folder.newFile().toPath();
+		DoubleArrayImage.write(path, DoubleArrayImage.DICTIONARY, 0, IntBuffer.wrap(new int[] { 1, 2, 3 }));
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+		assertRejected(path, DoubleArrayImage.DICTIONARY);
+	}
+
+	@Test
+	public void rejectsFileLargerThan2GB() throws IOException {
+		Path path = folder.newFile().toPath();
+		//稀疏文件，不占用磁盘空间
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.setLength(Integer.MAX_VALUE + 1L);
+		}
+		assertRejected(path, DoubleArrayImage.DICTIONARY);
+	}
+
+	private static void assertRejected(Path path, int kind) {
+		try {
+			DoubleArrayImage.map(path, kind);
+			fail("expected IOException for " + path);
+		} catch (IOException e) {
+			//expected
+		}
+	}
+}